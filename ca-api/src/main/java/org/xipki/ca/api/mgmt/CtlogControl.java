@@ -48,12 +48,28 @@ public class CtlogControl {
    */
   public static final String KEY_SSLCONTEXT_NAME = "sslcontext.name";
 
+  /**
+   * Number of SCTs required to issue the certificate. Defaults to the number of servers.
+   */
+  public static final String KEY_QUORUM = "quorum";
+
+  /**
+   * Timeout in milliseconds to get the SCT from a CT Log server. Defaults to 10000.
+   */
+  public static final String KEY_TIMEOUT = "timeout";
+
+  private static final int DFLT_TIMEOUT = 10000;
+
   private boolean enabled;
 
   private String sslContextName;
 
   private List<String> servers;
 
+  private int quorum;
+
+  private int timeout;
+
   private String conf;
 
   public CtlogControl(String conf)
@@ -71,6 +87,16 @@ public class CtlogControl {
       throw new InvalidConfException(KEY_SERVERS + " is not specified");
     }
 
+    quorum = getInt(pairs, KEY_QUORUM, servers.size());
+    if (quorum < 1 || quorum > servers.size()) {
+      throw new InvalidConfException(KEY_QUORUM + " is not between 1 and " + servers.size());
+    }
+
+    timeout = getInt(pairs, KEY_TIMEOUT, DFLT_TIMEOUT);
+    if (timeout < 1) {
+      throw new InvalidConfException(KEY_TIMEOUT + " is not positive");
+    }
+
     this.conf = pairs.getEncoded();
   } // constructor
 
@@ -84,6 +110,8 @@ public class CtlogControl {
 
     pairs.putPair(KEY_SERVERS, StringUtil.collectionAsString(servers, ";"));
     this.servers = servers;
+    this.quorum = servers.size();
+    this.timeout = DFLT_TIMEOUT;
 
     this.sslContextName = sslContextName;
     if (sslContextName != null) {
@@ -117,6 +145,14 @@ public class CtlogControl {
     this.servers = servers;
   }
 
+  public int getQuorum() {
+    return quorum;
+  }
+
+  public int getTimeout() {
+    return timeout;
+  }
+
   public void setEnabled(boolean enabled) {
     this.enabled = enabled;
   }
@@ -135,7 +171,9 @@ public class CtlogControl {
     return StringUtil.concatObjects(
         "  enabled: ", enabled,
         "\n  SSL context name: ", sslContextName,
-        "\n  Servers: ", servers);
+        "\n  Servers: ", servers,
+        "\n  Quorum: ", quorum,
+        "\n  Timeout: ", timeout, " ms");
   }
 
   @Override
@@ -156,4 +194,18 @@ public class CtlogControl {
     return ret;
   } // method getBoolean
 
+  private static int getInt(ConfPairs pairs, String key, int defaultValue)
+      throws InvalidConfException {
+    String str = pairs.value(key);
+    if (StringUtil.isBlank(str)) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(str.trim());
+    } catch (NumberFormatException ex) {
+      throw new InvalidConfException("invalid " + key + ": " + str);
+    }
+  } // method getInt
+
 }
@@ -59,8 +59,8 @@ import org.xipki.security.util.AlgorithmUtil;
 import org.xipki.security.util.X509Util;
 import org.xipki.util.Args;
 import org.xipki.util.CollectionUtil;
+import org.xipki.util.ConcurrentCache;
 import org.xipki.util.LogUtil;
-import org.xipki.util.LruCache;
 import org.xipki.util.StringUtil;
 
 /**
@@ -74,7 +74,8 @@ public abstract class BaseCertprofile extends Certprofile {
 
   private static final Logger LOG = LoggerFactory.getLogger(BaseCertprofile.class);
 
-  private static LruCache<ASN1ObjectIdentifier, Integer> ecCurveFieldSizes = new LruCache<>(100);
+  private static ConcurrentCache<ASN1ObjectIdentifier, Integer> ecCurveFieldSizes
+      = new ConcurrentCache<>(100);
 
   protected BaseCertprofile() {
   }
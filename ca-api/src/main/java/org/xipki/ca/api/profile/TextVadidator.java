@@ -19,7 +19,7 @@ package org.xipki.ca.api.profile;
 
 import java.util.regex.Pattern;
 
-import org.xipki.util.LruCache;
+import org.xipki.util.ConcurrentCache;
 
 /**
  * Text validator.
@@ -75,7 +75,7 @@ public abstract class TextVadidator {
 
   public static final TextVadidator FQDN = new FQDNValidator();
 
-  private static final LruCache<String, TextVadidator> cache = new LruCache<>(200);
+  private static final ConcurrentCache<String, TextVadidator> cache = new ConcurrentCache<>(200);
 
   private TextVadidator() {
   }
@@ -18,6 +18,7 @@
 package org.xipki.ca.api.publisher;
 
 import java.io.Closeable;
+import java.util.List;
 import java.util.Map;
 
 import org.bouncycastle.cert.X509CRLHolder;
@@ -82,6 +83,30 @@ public abstract class CertPublisher implements Closeable {
    */
   public abstract boolean certificateAdded(CertificateInfo certInfo);
 
+  /**
+   * Publishes several certificates in the given order. Publishers writing to a database should
+   * overwrite this method to write the certificates in batches. The default implementation
+   * publishes the certificates one by one and stops at the first failure.
+   *
+   * <p>The caller does not publish the first <i>n</i> certificates again, where <i>n</i> is the
+   * returned value.
+   *
+   * @param certInfos
+   *          Certificates to be published. Must not be {@code null}.
+   * @return number of certificates published before the first failure, equals
+   *         {@code certInfos.size()} if all certificates are published.
+   * @since 5.3.12
+   */
+  public int certificatesAdded(List<CertificateInfo> certInfos) {
+    int size = certInfos.size();
+    for (int i = 0; i < size; i++) {
+      if (!certificateAdded(certInfos.get(i))) {
+        return i;
+      }
+    }
+    return size;
+  } // method certificatesAdded
+
   /**
    * Publishes the revocation of a certificate.
    *
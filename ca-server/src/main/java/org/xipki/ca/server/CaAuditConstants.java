@@ -165,4 +165,6 @@ public class CaAuditConstants {
 
   public static final String TYPE_revoke_suspendedCert = "revoke_suspended_cert";
 
+  public static final String TYPE_verify_cert = "verify_cert";
+
 }
@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import org.xipki.ca.api.CaUris;
 import org.xipki.ca.api.NameId;
 import org.xipki.ca.api.OperationException;
+import org.xipki.ca.api.OperationException.ErrorCode;
 import org.xipki.ca.api.PublicCaInfo;
 import org.xipki.ca.api.mgmt.CaStatus;
 import org.xipki.ca.api.mgmt.CmpControl;
@@ -90,6 +91,8 @@ public class CaInfo {
 
   private final RandomSerialNumberGenerator randomSnGenerator;
 
+  private final CertVerificationPolicy certVerificationPolicy;
+
   private DhpocControl dhpocControl;
 
   private Map<String, ConcurrentContentSigner> signers;
@@ -114,6 +117,11 @@ public class CaInfo {
     this.certchain = certs == null ? Collections.emptyList() : new ArrayList<>(certs);
     this.noNewCertificateAfter = notAfter.getTime() - MS_PER_DAY * caEntry.getExpirationPeriod();
     this.randomSnGenerator = RandomSerialNumberGenerator.getInstance();
+    try {
+      this.certVerificationPolicy = CertVerificationPolicy.getInstance(caEntry.getExtraControl());
+    } catch (IllegalArgumentException ex) {
+      throw new OperationException(ErrorCode.SYSTEM_FAILURE, ex.getMessage());
+    }
   } // constructor
 
   public PublicCaInfo getPublicCaInfo() {
@@ -220,6 +228,10 @@ public class CaInfo {
     return caEntry.getCtlogControl();
   }
 
+  public CertVerificationPolicy getCertVerificationPolicy() {
+    return certVerificationPolicy;
+  }
+
   public DhpocControl getDhpocControl() {
     return dhpocControl;
   }
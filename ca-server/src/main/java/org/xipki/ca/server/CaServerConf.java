@@ -145,6 +145,50 @@ public class CaServerConf extends ValidatableConf {
    */
   private int shardId = 0;
 
+  /**
+   * Max. number of threads to generate the certificates of one request (e.g. CMP message
+   * with several CertReqMsg) in parallel. Values less than 2 disable the parallel generation.
+   * The default is 1.
+   */
+  private int certGenerationThreads = 1;
+
+  /**
+   * Max. number of certificates, publish queue entries and request-certificate associations
+   * of concurrent requests written to the CA database in one transaction. Values less than 2
+   * disable the group commit. The default is 0.
+   */
+  private int certStoreGroupCommitSize = 0;
+
+  /**
+   * Max. time in milliseconds to wait for further rows before a group is committed. If 0,
+   * the rows which arrived while the previous group was being committed are written together.
+   * The default is 0.
+   */
+  private int certStoreGroupCommitDelay = 0;
+
+  /**
+   * Number of keypairs generated in background for each key type of the enrollment with
+   * keypair generated by the CA. Values less than 1 disable the keypair pool, and the keypairs
+   * are generated on demand. The default is 0.
+   */
+  private int keypairPoolDepth = 0;
+
+  /**
+   * Number of threads to refill the keypair pool. The default is 1.
+   */
+  private int keypairPoolThreads = 1;
+
+  /**
+   * Time in seconds a successful verification of the user password (SCEP and REST) is cached
+   * in memory. Values less than 1 disable the cache. The default is 0.
+   */
+  private int userAuthCacheTtl = 0;
+
+  /**
+   * Max. number of users in the cache of password verifications. The default is 10000.
+   */
+  private int userAuthCacheSize = 10000;
+
   private List<DataSourceConf> datasources;
 
   private List<SslContext> sslContexts;
@@ -186,6 +230,62 @@ public class CaServerConf extends ValidatableConf {
     this.shardId = shardId;
   }
 
+  public int getCertGenerationThreads() {
+    return certGenerationThreads;
+  }
+
+  public void setCertGenerationThreads(int certGenerationThreads) {
+    this.certGenerationThreads = certGenerationThreads;
+  }
+
+  public int getCertStoreGroupCommitSize() {
+    return certStoreGroupCommitSize;
+  }
+
+  public void setCertStoreGroupCommitSize(int certStoreGroupCommitSize) {
+    this.certStoreGroupCommitSize = certStoreGroupCommitSize;
+  }
+
+  public int getCertStoreGroupCommitDelay() {
+    return certStoreGroupCommitDelay;
+  }
+
+  public void setCertStoreGroupCommitDelay(int certStoreGroupCommitDelay) {
+    this.certStoreGroupCommitDelay = certStoreGroupCommitDelay;
+  }
+
+  public int getKeypairPoolDepth() {
+    return keypairPoolDepth;
+  }
+
+  public void setKeypairPoolDepth(int keypairPoolDepth) {
+    this.keypairPoolDepth = keypairPoolDepth;
+  }
+
+  public int getKeypairPoolThreads() {
+    return keypairPoolThreads;
+  }
+
+  public void setKeypairPoolThreads(int keypairPoolThreads) {
+    this.keypairPoolThreads = keypairPoolThreads;
+  }
+
+  public int getUserAuthCacheTtl() {
+    return userAuthCacheTtl;
+  }
+
+  public void setUserAuthCacheTtl(int userAuthCacheTtl) {
+    this.userAuthCacheTtl = userAuthCacheTtl;
+  }
+
+  public int getUserAuthCacheSize() {
+    return userAuthCacheSize;
+  }
+
+  public void setUserAuthCacheSize(int userAuthCacheSize) {
+    this.userAuthCacheSize = userAuthCacheSize;
+  }
+
   public List<DataSourceConf> getDatasources() {
     return datasources;
   }
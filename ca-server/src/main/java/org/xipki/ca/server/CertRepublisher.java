@@ -130,48 +130,72 @@ class CertRepublisher {
 
     @Override
     public void run() {
-      while (!failed) {
-        QueueEntry entry;
+      List<QueueEntry> entries = new ArrayList<>(BATCH_SIZE);
+      boolean endOfQueue = false;
+
+      while (!failed && !endOfQueue) {
+        entries.clear();
         try {
-          entry = queue.take();
+          entries.add(queue.take());
         } catch (InterruptedException ex) {
           LogUtil.error(LOG, ex, "could not take from queue");
           failed = true;
           break;
         }
+        queue.drainTo(entries, BATCH_SIZE - 1);
+
+        List<CertificateInfo> certInfos = new ArrayList<>(entries.size());
+        for (QueueEntry entry : entries) {
+          if (entry instanceof QueueEntry.EndOfQueue) {
+            if (!endOfQueue) {
+              endOfQueue = true;
+              // re-add it to queue so that other consumers know it
+              try {
+                queue.put(entry);
+              } catch (InterruptedException ex) {
+                LogUtil.warn(LOG, ex, "could not re-add EndOfQueue to queue");
+              }
+            }
+            continue;
+          }
 
-        if (entry instanceof QueueEntry.EndOfQueue) {
-          // re-add it to queue so that other consumers know it
+          SerialWithId sid = ((SerialWithIdQueueEntry) entry).serialWithId();
           try {
-            queue.put(entry);
-          } catch (InterruptedException ex) {
-            LogUtil.warn(LOG, ex, "could not re-add EndOfQueue to queue");
+            certInfos.add(certstore.getCertForId(ca, caCert, sid.getId(), caIdNameMap));
+          } catch (OperationException ex) {
+            LogUtil.error(LOG, ex);
+            failed = true;
+            break;
           }
-          break;
         }
 
-        SerialWithId sid = ((SerialWithIdQueueEntry) entry).serialWithId();
-
-        CertificateInfo certInfo;
-
-        try {
-          certInfo = certstore.getCertForId(ca, caCert, sid.getId(), caIdNameMap);
-        } catch (OperationException ex) {
-          LogUtil.error(LOG, ex);
-          failed = true;
+        if (failed) {
           break;
         }
 
+        if (certInfos.isEmpty()) {
+          continue;
+        }
+
         boolean allSucc = true;
         for (IdentifiedCertPublisher publisher : publishers) {
-          if (!certInfo.isRevoked() && !publisher.publishsGoodCert()) {
+          List<CertificateInfo> toPublish = new ArrayList<>(certInfos.size());
+          for (CertificateInfo certInfo : certInfos) {
+            if (certInfo.isRevoked() || publisher.publishsGoodCert()) {
+              toPublish.add(certInfo);
+            }
+          }
+
+          if (toPublish.isEmpty()) {
             continue;
           }
 
-          boolean successful = publisher.certificateAdded(certInfo);
-          if (!successful) {
+          int numPublished = publisher.certificatesAdded(toPublish);
+          if (numPublished < toPublish.size()) {
+            CertificateInfo certInfo = toPublish.get(numPublished);
             LOG.error("republish certificate serial={} to publisher {} failed",
-                LogUtil.formatCsn(sid.getSerial()), publisher.getIdent());
+                LogUtil.formatCsn(certInfo.getCert().getCert().getSerialNumber()),
+                publisher.getIdent());
             allSucc = false;
           }
         }
@@ -179,7 +203,7 @@ class CertRepublisher {
         if (!allSucc) {
           break;
         }
-        processLog.addNumProcessed(1);
+        processLog.addNumProcessed(certInfos.size());
       }
     } // method run
 
@@ -187,6 +211,9 @@ class CertRepublisher {
 
   private static final Logger LOG = LoggerFactory.getLogger(CertRepublisher.class);
 
+  // max. number of certificates published to a publisher at once
+  private static final int BATCH_SIZE = 100;
+
   private final NameId ca;
 
   private final X509Cert caCert;
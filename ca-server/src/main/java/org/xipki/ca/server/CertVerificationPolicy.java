@@ -0,0 +1,125 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xipki.util.ConfPairs;
+import org.xipki.util.StringUtil;
+
+/**
+ * Policy to verify the signature of the newly generated certificates. It is configured in the
+ * extra control of the CA.
+ *
+ * <p>Example configuration
+ *<pre>
+ * certVerification=&lt;always|sampled:&lt;n&gt;|background&gt;
+ *</pre>
+ * <ul>
+ *   <li>always: every certificate is verified before it is returned (default).</li>
+ *   <li>sampled:n: every n-th certificate is verified before it is returned.</li>
+ *   <li>background: every certificate is verified after it has been returned, a failure is
+ *       logged and audited.</li>
+ * </ul>
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class CertVerificationPolicy {
+
+  public enum Mode {
+    ALWAYS,
+    SAMPLED,
+    BACKGROUND
+  }
+
+  public static final String KEY_CERT_VERIFICATION = "certVerification";
+
+  public static final CertVerificationPolicy ALWAYS = new CertVerificationPolicy(Mode.ALWAYS, 1);
+
+  private static final String SAMPLED_PREFIX = "sampled:";
+
+  private final Mode mode;
+
+  private final int sampleRate;
+
+  private final AtomicLong counter = new AtomicLong();
+
+  private CertVerificationPolicy(Mode mode, int sampleRate) {
+    this.mode = mode;
+    this.sampleRate = sampleRate;
+  }
+
+  public static CertVerificationPolicy getInstance(ConfPairs extraControl) {
+    String str = (extraControl == null) ? null : extraControl.value(KEY_CERT_VERIFICATION);
+    if (StringUtil.isBlank(str)) {
+      return ALWAYS;
+    }
+
+    str = str.trim();
+    if ("always".equalsIgnoreCase(str)) {
+      return ALWAYS;
+    } else if ("background".equalsIgnoreCase(str)) {
+      return new CertVerificationPolicy(Mode.BACKGROUND, 1);
+    } else if (StringUtil.startsWithIgnoreCase(str, SAMPLED_PREFIX)) {
+      int rate;
+      try {
+        rate = Integer.parseInt(str.substring(SAMPLED_PREFIX.length()).trim());
+      } catch (NumberFormatException ex) {
+        throw new IllegalArgumentException("invalid " + KEY_CERT_VERIFICATION + " " + str);
+      }
+
+      if (rate < 1) {
+        throw new IllegalArgumentException("invalid " + KEY_CERT_VERIFICATION + " " + str);
+      }
+      return rate == 1 ? ALWAYS : new CertVerificationPolicy(Mode.SAMPLED, rate);
+    } else {
+      throw new IllegalArgumentException("invalid " + KEY_CERT_VERIFICATION + " " + str);
+    }
+  } // method getInstance
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Returns whether the next certificate shall be verified before it is returned.
+   * @return whether the certificate shall be verified before it is returned.
+   */
+  public boolean verifyNow() {
+    switch (mode) {
+      case ALWAYS:
+        return true;
+      case SAMPLED:
+        return counter.getAndIncrement() % sampleRate == 0;
+      default:
+        return false;
+    }
+  } // method verifyNow
+
+  @Override
+  public String toString() {
+    return mode == Mode.SAMPLED ? SAMPLED_PREFIX + sampleRate : mode.name().toLowerCase();
+  }
+
+}
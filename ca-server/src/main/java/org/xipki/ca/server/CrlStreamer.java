@@ -0,0 +1,502 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xipki.ca.server;
+
+import static org.xipki.util.Args.notNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.CertificateList;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.xipki.security.CrlReason;
+import org.xipki.security.XiContentSigner;
+import org.xipki.util.IoUtil;
+
+/**
+ * Builds a CRL without keeping all revoked entries in memory.
+ *
+ * <p>The entries are collected in runs of at most {@link #RUN_SIZE} entries, each run is
+ * sorted by the serial number and spilled to a temporary file. While building the CRL the runs
+ * are merged, and the DER-encoded {@code revokedCertificates} are written to a temporary file.
+ * The TBSCertList is then streamed once through the signer, and the CRL is assembled from the
+ * temporary file. Hence the memory consumption does not depend on the number of entries, apart
+ * from the encoded CRL itself.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+class CrlStreamer implements Closeable {
+
+  private static class RevokedEntry implements Comparable<RevokedEntry> {
+
+    private final BigInteger serial;
+
+    private final int reason;
+
+    private final long revocationTime;
+
+    // 0 if not present
+    private final long invalidityTime;
+
+    private RevokedEntry(BigInteger serial, int reason, long revocationTime,
+        long invalidityTime) {
+      this.serial = serial;
+      this.reason = reason;
+      this.revocationTime = revocationTime;
+      this.invalidityTime = invalidityTime;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      byte[] encodedSerial = serial.toByteArray();
+      out.writeShort(encodedSerial.length);
+      out.write(encodedSerial);
+      out.writeByte(reason);
+      out.writeLong(revocationTime);
+      out.writeLong(invalidityTime);
+    }
+
+    private static RevokedEntry read(DataInputStream in) throws IOException {
+      int len;
+      try {
+        len = in.readUnsignedShort();
+      } catch (EOFException ex) {
+        return null;
+      }
+
+      byte[] encodedSerial = new byte[len];
+      in.readFully(encodedSerial);
+      return new RevokedEntry(new BigInteger(encodedSerial), in.readUnsignedByte(),
+          in.readLong(), in.readLong());
+    }
+
+    @Override
+    public int compareTo(RevokedEntry obj) {
+      return serial.compareTo(obj.serial);
+    }
+
+  } // class RevokedEntry
+
+  private static class RunReader implements Comparable<RunReader>, Closeable {
+
+    private final DataInputStream in;
+
+    private RevokedEntry current;
+
+    private RunReader(File file) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      this.current = RevokedEntry.read(in);
+    }
+
+    private RevokedEntry next() throws IOException {
+      RevokedEntry ret = current;
+      current = RevokedEntry.read(in);
+      return ret;
+    }
+
+    @Override
+    public int compareTo(RunReader obj) {
+      return current.compareTo(obj.current);
+    }
+
+    @Override
+    public void close() {
+      IoUtil.closeQuietly(in);
+    }
+
+  } // class RunReader
+
+  private static class TeeOutputStream extends OutputStream {
+
+    private final OutputStream out1;
+
+    private final OutputStream out2;
+
+    private TeeOutputStream(OutputStream out1, OutputStream out2) {
+      this.out1 = out1;
+      this.out2 = out2;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out1.write(b);
+      out2.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out1.write(b, off, len);
+      out2.write(b, off, len);
+    }
+
+  } // class TeeOutputStream
+
+  static final int RUN_SIZE = 100000;
+
+  private static final int TAG_SEQUENCE = 0x30;
+
+  private final boolean indirectCrl;
+
+  private final X500Name caSubject;
+
+  private final List<File> runFiles = new LinkedList<>();
+
+  private final List<File> tmpFiles = new LinkedList<>();
+
+  private List<RevokedEntry> currentRun = new ArrayList<>();
+
+  private long numEntries;
+
+  /**
+   * Constructor.
+   * @param indirectCrl
+   *          whether the CRL is an indirect CRL.
+   * @param caSubject
+   *          subject of the CA, used in the extension certificateIssuer of indirect CRL.
+   */
+  CrlStreamer(boolean indirectCrl, X500Name caSubject) {
+    this.indirectCrl = indirectCrl;
+    this.caSubject = notNull(caSubject, "caSubject");
+  }
+
+  long getNumEntries() {
+    return numEntries;
+  }
+
+  void addEntry(BigInteger serial, CrlReason reason, Date revocationTime, Date invalidityTime)
+      throws IOException {
+    currentRun.add(new RevokedEntry(serial, reason.getCode(), revocationTime.getTime(),
+        invalidityTime == null ? 0 : invalidityTime.getTime()));
+    numEntries++;
+
+    if (currentRun.size() >= RUN_SIZE) {
+      spillCurrentRun();
+    }
+  } // method addEntry
+
+  /**
+   * Builds and signs the CRL.
+   * @param issuer
+   *          issuer of the CRL.
+   * @param thisUpdate
+   *          thisUpdate of the CRL.
+   * @param nextUpdate
+   *          nextUpdate of the CRL, may be {@code null}.
+   * @param extensions
+   *          CRL extensions, may be {@code null}.
+   * @param signer
+   *          signer to sign the CRL.
+   * @return the DER-encoded signed CRL.
+   * @throws IOException
+   *           if error occurs while encoding or signing the CRL.
+   */
+  byte[] build(X500Name issuer, Date thisUpdate, Date nextUpdate, Extensions extensions,
+      XiContentSigner signer) throws IOException {
+    File revokedFile = writeRevokedCertificates();
+    long revokedLen = revokedFile.length();
+
+    AlgorithmIdentifier sigAlgId = signer.getAlgorithmIdentifier();
+    List<byte[]> tbsParts = new ArrayList<>(5);
+    tbsParts.add(new ASN1Integer(1).getEncoded(ASN1Encoding.DER)); // version 2
+    tbsParts.add(sigAlgId.getEncoded(ASN1Encoding.DER));
+    tbsParts.add(issuer.getEncoded(ASN1Encoding.DER));
+    tbsParts.add(new Time(thisUpdate).getEncoded(ASN1Encoding.DER));
+    if (nextUpdate != null) {
+      tbsParts.add(new Time(nextUpdate).getEncoded(ASN1Encoding.DER));
+    }
+
+    byte[] encodedExtensions = (extensions == null) ? null
+        : new DERTaggedObject(true, 0, extensions).getEncoded(ASN1Encoding.DER);
+
+    long tbsContentLen = 0;
+    for (byte[] part : tbsParts) {
+      tbsContentLen += part.length;
+    }
+
+    byte[] revokedHeader = null;
+    if (revokedLen > 0) {
+      revokedHeader = encodeHeader(TAG_SEQUENCE, revokedLen);
+      tbsContentLen += revokedHeader.length + revokedLen;
+    }
+
+    if (encodedExtensions != null) {
+      tbsContentLen += encodedExtensions.length;
+    }
+
+    // write the TBSCertList to file and feed it to the signer at the same time
+    File tbsFile = newTmpFile();
+    OutputStream signerOut = signer.getOutputStream();
+    try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(tbsFile))) {
+      OutputStream tbsOut = new TeeOutputStream(fileOut, signerOut);
+      tbsOut.write(encodeHeader(TAG_SEQUENCE, tbsContentLen));
+      for (byte[] part : tbsParts) {
+        tbsOut.write(part);
+      }
+
+      if (revokedHeader != null) {
+        tbsOut.write(revokedHeader);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(revokedFile))) {
+          copy(in, tbsOut);
+        }
+      }
+
+      if (encodedExtensions != null) {
+        tbsOut.write(encodedExtensions);
+      }
+    } finally {
+      signerOut.close();
+    }
+
+    byte[] signature = signer.getSignature();
+
+    // assemble the CRL
+    long tbsLen = tbsFile.length();
+    byte[] encodedSigAlgId = tbsParts.get(1);
+    byte[] encodedSignature = new DERBitString(signature).getEncoded(ASN1Encoding.DER);
+    long crlContentLen = tbsLen + encodedSigAlgId.length + encodedSignature.length;
+    byte[] crlHeader = encodeHeader(TAG_SEQUENCE, crlContentLen);
+
+    long crlLen = crlHeader.length + crlContentLen;
+    if (crlLen > Integer.MAX_VALUE - 8) {
+      throw new IOException("CRL too large: " + crlLen + " bytes");
+    }
+
+    byte[] encodedCrl = new byte[(int) crlLen];
+    int off = 0;
+    System.arraycopy(crlHeader, 0, encodedCrl, off, crlHeader.length);
+    off += crlHeader.length;
+
+    try (DataInputStream in = new DataInputStream(new FileInputStream(tbsFile))) {
+      in.readFully(encodedCrl, off, (int) tbsLen);
+    }
+    off += (int) tbsLen;
+
+    System.arraycopy(encodedSigAlgId, 0, encodedCrl, off, encodedSigAlgId.length);
+    off += encodedSigAlgId.length;
+    System.arraycopy(encodedSignature, 0, encodedCrl, off, encodedSignature.length);
+    return encodedCrl;
+  } // method build
+
+  /**
+   * Parses the CRL lazily, the revokedCertificates are kept encoded until accessed.
+   * @param encodedCrl
+   *          DER-encoded CRL.
+   * @return the parsed CRL.
+   * @throws IOException
+   *           if the CRL is not well-formed.
+   */
+  static X509CRLHolder parse(byte[] encodedCrl) throws IOException {
+    try (ASN1InputStream asn1In = new ASN1InputStream(encodedCrl, true)) {
+      return new X509CRLHolder(CertificateList.getInstance(asn1In.readObject()));
+    }
+  } // method parse
+
+  @Override
+  public void close() {
+    currentRun = null;
+    for (File file : tmpFiles) {
+      if (file.exists() && !file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+    tmpFiles.clear();
+    runFiles.clear();
+  } // method close
+
+  private void spillCurrentRun() throws IOException {
+    Collections.sort(currentRun);
+    File runFile = newTmpFile();
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(runFile)))) {
+      for (RevokedEntry entry : currentRun) {
+        entry.write(out);
+      }
+    }
+    runFiles.add(runFile);
+    currentRun.clear();
+  } // method spillCurrentRun
+
+  private File writeRevokedCertificates() throws IOException {
+    File file = newTmpFile();
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      boolean first = true;
+      if (runFiles.isEmpty()) {
+        // all entries fit into one run
+        Collections.sort(currentRun);
+        for (RevokedEntry entry : currentRun) {
+          out.write(encodeEntry(entry, first));
+          first = false;
+        }
+        currentRun.clear();
+        return file;
+      }
+
+      if (!currentRun.isEmpty()) {
+        spillCurrentRun();
+      }
+
+      PriorityQueue<RunReader> readers = new PriorityQueue<>(runFiles.size());
+      try {
+        for (File runFile : runFiles) {
+          RunReader reader = new RunReader(runFile);
+          if (reader.current == null) {
+            reader.close();
+          } else {
+            readers.add(reader);
+          }
+        }
+
+        while (!readers.isEmpty()) {
+          RunReader reader = readers.poll();
+          out.write(encodeEntry(reader.next(), first));
+          first = false;
+
+          if (reader.current == null) {
+            reader.close();
+          } else {
+            readers.add(reader);
+          }
+        }
+      } finally {
+        for (RunReader reader : readers) {
+          reader.close();
+        }
+      }
+    }
+
+    return file;
+  } // method writeRevokedCertificates
+
+  private byte[] encodeEntry(RevokedEntry entry, boolean first) throws IOException {
+    List<Extension> extensions = new ArrayList<>(3);
+    if (entry.reason != CrlReason.UNSPECIFIED.getCode()) {
+      extensions.add(createReasonExtension(entry.reason));
+    }
+
+    if (entry.invalidityTime != 0) {
+      extensions.add(createInvalidityDateExtension(new Date(entry.invalidityTime)));
+    }
+
+    // the certificateIssuer of the following entries is inherited from the first one
+    if (indirectCrl && first) {
+      extensions.add(createCertificateIssuerExtension(caSubject));
+    }
+
+    ASN1EncodableVector vec = new ASN1EncodableVector(3);
+    vec.add(new ASN1Integer(entry.serial));
+    vec.add(new Time(new Date(entry.revocationTime)));
+    if (!extensions.isEmpty()) {
+      vec.add(new Extensions(extensions.toArray(new Extension[0])));
+    }
+    return new DERSequence(vec).getEncoded(ASN1Encoding.DER);
+  } // method encodeEntry
+
+  private File newTmpFile() throws IOException {
+    File file = File.createTempFile("xipki-crl-", ".tmp");
+    tmpFiles.add(file);
+    return file;
+  }
+
+  private static byte[] encodeHeader(int tag, long length) {
+    if (length < 0x80) {
+      return new byte[] {(byte) tag, (byte) length};
+    }
+
+    int numLenBytes = 0;
+    for (long len = length; len != 0; len >>>= 8) {
+      numLenBytes++;
+    }
+
+    byte[] header = new byte[2 + numLenBytes];
+    header[0] = (byte) tag;
+    header[1] = (byte) (0x80 | numLenBytes);
+    for (int i = 0; i < numLenBytes; i++) {
+      header[header.length - 1 - i] = (byte) (length >>> (8 * i));
+    }
+    return header;
+  } // method encodeHeader
+
+  private static void copy(InputStream in, OutputStream out) throws IOException {
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+  }
+
+  private static Extension createReasonExtension(int reasonCode) {
+    CRLReason crlReason = CRLReason.lookup(reasonCode);
+    try {
+      return new Extension(Extension.reasonCode, false, crlReason.getEncoded());
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("error encoding reason: " + ex.getMessage(), ex);
+    }
+  }
+
+  private static Extension createInvalidityDateExtension(Date invalidityDate) {
+    try {
+      ASN1GeneralizedTime asnTime = new ASN1GeneralizedTime(invalidityDate);
+      return new Extension(Extension.invalidityDate, false, asnTime.getEncoded());
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("error encoding reason: " + ex.getMessage(), ex);
+    }
+  }
+
+  private static Extension createCertificateIssuerExtension(X500Name certificateIssuer) {
+    try {
+      GeneralNames generalNames = new GeneralNames(new GeneralName(certificateIssuer));
+      return new Extension(Extension.certificateIssuer, true, generalNames.getEncoded());
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("error encoding reason: " + ex.getMessage(), ex);
+    }
+  }
+
+}
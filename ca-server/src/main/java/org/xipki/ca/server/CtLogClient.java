@@ -18,6 +18,10 @@
 package org.xipki.ca.server;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -25,11 +29,24 @@ import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
 
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.slf4j.Logger;
@@ -47,40 +64,129 @@ import org.xipki.security.ctlog.CtLog.SignedCertificateTimestampList;
 import org.xipki.security.ctlog.CtLogMessages.AddPreChainRequest;
 import org.xipki.security.ctlog.CtLogMessages.AddPreChainResponse;
 import org.xipki.util.Args;
-import org.xipki.util.Curl;
-import org.xipki.util.Curl.CurlResult;
-import org.xipki.util.DefaultCurl;
 import org.xipki.util.Hex;
+import org.xipki.util.IoUtil;
+import org.xipki.util.ObjectCreationException;
 import org.xipki.util.StringUtil;
 import org.xipki.util.http.SslContextConf;
 
 import com.alibaba.fastjson.JSON;
 
 /**
- * Certificate transparency (CT) log client.
+ * Certificate transparency (CT) log client. The precertificate is submitted to all CT Log
+ * servers in parallel, and the SCTs are returned as soon as the required number (quorum) of
+ * SCTs has been received.
  *
  * @author Lijun Liao
  */
 public class CtLogClient {
 
+  private static class LogStats {
+
+    private final LongAdder successes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    // responses not waited for, since the quorum has been reached or the timeout elapsed.
+    private final LongAdder lates = new LongAdder();
+
+    private volatile long lastLatency;
+
+    @Override
+    public String toString() {
+      return StringUtil.concatObjects("successes=", successes.sum(), ", failures=",
+          failures.sum(), ", lates=", lates.sum(), ", lastLatency=", lastLatency, " ms");
+    }
+
+  } // class LogStats
+
+  /**
+   * Connection of one submission. It is disconnected if the response is not waited for any more,
+   * since interrupting the thread does not abort the blocking I/O of HttpURLConnection.
+   */
+  private static class Submission {
+
+    private HttpURLConnection conn;
+
+    private boolean aborted;
+
+    synchronized boolean setConnection(HttpURLConnection conn) {
+      if (aborted) {
+        return false;
+      }
+      this.conn = conn;
+      return true;
+    }
+
+    synchronized void abort() {
+      aborted = true;
+      if (conn != null) {
+        conn.disconnect();
+      }
+    }
+
+  } // class Submission
+
   private static Logger LOG = LoggerFactory.getLogger(CtLogClient.class);
 
-  private final Curl curl;
+  private static final int DFLT_TIMEOUT = 10000;
+
+  // max. number of concurrent submissions per CT Log server
+  private static final int THREADS_PER_SERVER = 4;
+
+  private static final AtomicInteger THREAD_INDEX = new AtomicInteger(0);
+
+  private final SslContextConf sslContextConf;
 
   private final List<String> addPreChainUrls;
 
+  private final Map<String, LogStats> stats = new LinkedHashMap<>();
+
+  private final int quorum;
+
+  private final int timeout;
+
+  private final ThreadPoolExecutor executor;
+
   public CtLogClient(List<String> serverUrls, SslContextConf sslContextConf) {
+    this(serverUrls, sslContextConf, Args.notEmpty(serverUrls, "serverUrls").size(),
+        DFLT_TIMEOUT);
+  }
+
+  /**
+   * Constructor.
+   * @param serverUrls
+   *          URLs of the CT Log servers.
+   * @param sslContextConf
+   *          SSL context configuration. Could be {@code null}.
+   * @param quorum
+   *          Number of SCTs required.
+   * @param timeout
+   *          Timeout in milliseconds to get the SCTs.
+   */
+  public CtLogClient(List<String> serverUrls, SslContextConf sslContextConf, int quorum,
+      int timeout) {
     Args.notEmpty(serverUrls, "serverUrls");
+    this.quorum = Args.range(quorum, "quorum", 1, serverUrls.size());
+    this.timeout = Args.positive(timeout, "timeout");
 
-    DefaultCurl dfltCurl  = new DefaultCurl();
-    dfltCurl.setSslContextConf(sslContextConf);
-    this.curl = dfltCurl;
+    this.sslContextConf = sslContextConf;
     this.addPreChainUrls = new ArrayList<>(serverUrls.size());
     for (String m : serverUrls) {
       String addPreChainUrl = m.endsWith("/")
           ? m + "ct/v1/add-pre-chain" : m + "/ct/v1/add-pre-chain";
       this.addPreChainUrls.add(addPreChainUrl);
+      this.stats.put(addPreChainUrl, new LogStats());
     }
+
+    int threads = THREADS_PER_SERVER * serverUrls.size();
+    this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+          Thread thread = new Thread(r, "ctlog-client-" + THREAD_INDEX.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.executor.allowCoreThreadTimeOut(true);
   } // constructor
 
   public SignedCertificateTimestampList getCtLogScts(
@@ -125,69 +231,195 @@ public class CtLogClient {
       LOG.debug("CTLog Request: {}", StringUtil.toUtf8String(content));
     }
 
-    List<SignedCertificateTimestamp> scts = new ArrayList<>(addPreChainUrls.size());
-    Map<String, String> headers = new HashMap<>();
-    headers.put("content-type", "application/json");
-    for (String url : addPreChainUrls) {
-      CurlResult res;
-      try {
-        res = curl.curlPost(url, false, headers, null, content);
-      } catch (Exception ex) {
-        throw new OperationException(ErrorCode.SYSTEM_FAILURE,
-            "error while calling " + url + ": " + ex.getMessage());
-      }
+    final int n = addPreChainUrls.size();
+    final long start = System.currentTimeMillis();
+    final long deadline = start + timeout;
 
-      byte[] respContent = res.getContent();
-      if (respContent == null) {
-        throw new OperationException(ErrorCode.SYSTEM_FAILURE,
-            "server does not return any content while responding " + url);
+    // submit to all servers in parallel
+    CompletionService<Integer> ecs = new ExecutorCompletionService<>(executor);
+    SignedCertificateTimestamp[] scts = new SignedCertificateTimestamp[n];
+    Submission[] submissions = new Submission[n];
+    List<Future<Integer>> futures = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      final int index = i;
+      final Submission submission = new Submission();
+      submissions[i] = submission;
+      futures.add(ecs.submit(() -> {
+        scts[index] = getCtLogSct(addPreChainUrls.get(index), content, issuerKeyHash,
+            preCertTbsCert, publicKeyFinder, submission);
+        return index;
+      }));
+    }
+
+    boolean[] done = new boolean[n];
+    int numScts = 0;
+    int numFailures = 0;
+    String lastError = null;
+
+    try {
+      while (numScts < quorum && n - numFailures >= quorum) {
+        long wait = deadline - System.currentTimeMillis();
+        Future<Integer> future = (wait > 0) ? ecs.poll(wait, TimeUnit.MILLISECONDS) : null;
+        if (future == null) {
+          lastError = "timeout after " + timeout + " ms";
+          break;
+        }
+
+        int index = futures.indexOf(future);
+        done[index] = true;
+        String url = addPreChainUrls.get(index);
+        LogStats stat = stats.get(url);
+        stat.lastLatency = System.currentTimeMillis() - start;
+
+        try {
+          future.get();
+          numScts++;
+          stat.successes.increment();
+        } catch (ExecutionException ex) {
+          numFailures++;
+          stat.failures.increment();
+          Throwable cause = ex.getCause();
+          lastError = "error while calling " + url + ": " + cause.getMessage();
+          LOG.warn("could not get SCT from {}: {}", url, cause.getMessage());
+          LOG.debug("could not get SCT from " + url, cause);
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      lastError = "interrupted";
+    } finally {
+      for (int i = 0; i < n; i++) {
+        if (!done[i]) {
+          futures.get(i).cancel(false);
+          submissions[i].abort();
+          stats.get(addPreChainUrls.get(i)).lates.increment();
+        }
       }
+    }
+
+    if (numScts < quorum) {
+      throw new OperationException(ErrorCode.SYSTEM_FAILURE, "got only " + numScts
+          + " of required " + quorum + " SCTs, last error: " + lastError);
+    }
 
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("CTLog Response: {}", StringUtil.toUtf8String(respContent));
+    List<SignedCertificateTimestamp> list = new ArrayList<>(numScts);
+    for (int i = 0; i < n; i++) {
+      // only the SCTs of the completed submissions, in the order of the servers.
+      if (done[i] && scts[i] != null) {
+        list.add(scts[i]);
       }
+    }
+
+    return new SignedCertificateTimestampList(new SerializedSCT(list));
+  } // method getCtLogScts
+
+  /**
+   * Returns the statistics of the CT Log servers.
+   * @return map of URL to the statistics.
+   */
+  public Map<String, String> getStatistics() {
+    Map<String, String> ret = new LinkedHashMap<>();
+    for (Entry<String, LogStats> m : stats.entrySet()) {
+      ret.put(m.getKey(), m.getValue().toString());
+    }
+    return ret;
+  } // method getStatistics
+
+  private SignedCertificateTimestamp getCtLogSct(String url, byte[] content,
+      byte[] issuerKeyHash, byte[] preCertTbsCert, CtLogPublicKeyFinder publicKeyFinder,
+      Submission submission)
+          throws OperationException, IOException, ObjectCreationException {
+    byte[] respContent = post(url, content, submission);
+    if (respContent == null) {
+      throw new OperationException(ErrorCode.SYSTEM_FAILURE,
+          "server does not return any content while responding " + url);
+    }
 
-      AddPreChainResponse resp = JSON.parseObject(respContent, AddPreChainResponse.class);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("CTLog Response: {}", StringUtil.toUtf8String(respContent));
+    }
+
+    AddPreChainResponse resp = JSON.parseObject(respContent, AddPreChainResponse.class);
 
-      DigitallySigned ds = DigitallySigned.getInstance(resp.getSignature(), new AtomicInteger(0));
-      byte sctVersion = resp.getSct_version();
-      byte[] logId = resp.getId();
-      String hexLogId = Hex.encodeUpper(logId);
-      long timestamp = resp.getTimestamp();
-      byte[] extensions = resp.getExtensions();
+    DigitallySigned ds = DigitallySigned.getInstance(resp.getSignature(), new AtomicInteger(0));
+    byte sctVersion = resp.getSct_version();
+    byte[] logId = resp.getId();
+    String hexLogId = Hex.encodeUpper(logId);
+    long timestamp = resp.getTimestamp();
+    byte[] extensions = resp.getExtensions();
 
-      PublicKey verifyKey = publicKeyFinder == null ? null : publicKeyFinder.getPublicKey(logId);
-      if (verifyKey == null) {
-        LOG.warn("could not find CtLog public key 0x{} to verify the SCT", hexLogId);
+    PublicKey verifyKey = publicKeyFinder == null ? null : publicKeyFinder.getPublicKey(logId);
+    if (verifyKey == null) {
+      LOG.warn("could not find CtLog public key 0x{} to verify the SCT", hexLogId);
+    } else {
+      SignatureAndHashAlgorithm algorithm = ds.getAlgorithm();
+      String sigAlgo = getSignatureAlgo(algorithm);
+
+      boolean sigValid;
+      try {
+        Signature sig = Signature.getInstance(sigAlgo, "BC");
+        sig.initVerify(verifyKey);
+        CtLog.update(sig, sctVersion, timestamp, extensions, issuerKeyHash, preCertTbsCert);
+        sigValid = sig.verify(ds.getSignature());
+      } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeyException
+          | SignatureException ex) {
+        throw new OperationException(ErrorCode.SYSTEM_FAILURE, "error verifying SCT signature");
+      }
+
+      if (sigValid) {
+        LOG.info("verified SCT signature with logId {} and timestamp {}", hexLogId, timestamp);
       } else {
-        SignatureAndHashAlgorithm algorithm = ds.getAlgorithm();
-        String sigAlgo = getSignatureAlgo(algorithm);
+        throw new OperationException(ErrorCode.SYSTEM_FAILURE, "SCT signature is invalid");
+      }
+    }
 
-        boolean sigValid;
-        try {
-          Signature sig = Signature.getInstance(sigAlgo, "BC");
-          sig.initVerify(verifyKey);
-          CtLog.update(sig, sctVersion, timestamp, extensions, issuerKeyHash, preCertTbsCert);
-          sigValid = sig.verify(ds.getSignature());
-        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeyException
-            | SignatureException ex) {
-          throw new OperationException(ErrorCode.SYSTEM_FAILURE, "error verifying SCT signature");
-        }
+    return new SignedCertificateTimestamp(sctVersion, logId, timestamp, extensions, ds);
+  } // method getCtLogSct
 
-        if (sigValid) {
-          LOG.info("verified SCT signature with logId {} and timestamp {}", hexLogId, timestamp);
-        } else {
-          throw new OperationException(ErrorCode.SYSTEM_FAILURE, "SCT signature is invalid");
-        }
+  private byte[] post(String url, byte[] content, Submission submission)
+      throws IOException, ObjectCreationException {
+    HttpURLConnection httpConn = IoUtil.openHttpConn(new URL(url));
+    if (!submission.setConnection(httpConn)) {
+      throw new IOException("submission to " + url + " has been aborted");
+    }
+
+    if (httpConn instanceof HttpsURLConnection && sslContextConf != null) {
+      SSLSocketFactory sslSocketFactory = sslContextConf.getSslSocketFactory();
+      if (sslSocketFactory != null) {
+        ((HttpsURLConnection) httpConn).setSSLSocketFactory(sslSocketFactory);
       }
 
-      SignedCertificateTimestamp sct = new SignedCertificateTimestamp(sctVersion,
-          logId, timestamp, extensions, ds);
-      scts.add(sct);
+      HostnameVerifier hostnameVerifier = sslContextConf.buildHostnameVerifier();
+      if (hostnameVerifier != null) {
+        ((HttpsURLConnection) httpConn).setHostnameVerifier(hostnameVerifier);
+      }
     }
 
-    return new SignedCertificateTimestampList(new SerializedSCT(scts));
-  } // method getCtLogScts
+    try {
+      httpConn.setConnectTimeout(timeout);
+      httpConn.setReadTimeout(timeout);
+      httpConn.setRequestMethod("POST");
+      httpConn.setUseCaches(false);
+      httpConn.setDoOutput(true);
+      httpConn.setRequestProperty("Content-Type", "application/json");
+      httpConn.setRequestProperty("Content-Length", Integer.toString(content.length));
+
+      try (OutputStream os = httpConn.getOutputStream()) {
+        os.write(content);
+      }
+
+      int respCode = httpConn.getResponseCode();
+      if (respCode != HttpURLConnection.HTTP_OK) {
+        throw new IOException("bad response: " + respCode + " " + httpConn.getResponseMessage());
+      }
+
+      try (InputStream is = httpConn.getInputStream()) {
+        return IoUtil.read(is);
+      }
+    } finally {
+      httpConn.disconnect();
+    }
+  } // method post
 
   private static String getSignatureAlgo(SignatureAndHashAlgorithm algorithm)
       throws OperationException {
@@ -0,0 +1,77 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xipki.ca.server;
+
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Args;
+
+/**
+ * DER-encoded CRL with the metadata required to serve it via HTTP. Instances are immutable,
+ * the caller must not modify the array returned by {@link #getEncoded()}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class EncodedCrl {
+
+  private final byte[] encoded;
+
+  private final long thisUpdate;
+
+  private final Long nextUpdate;
+
+  private final String etag;
+
+  /**
+   * Constructor.
+   * @param encoded
+   *          DER-encoded CRL. Must not be {@code null}.
+   * @param thisUpdate
+   *          thisUpdate of the CRL, in seconds since January 1, 1970, 00:00:00 GMT.
+   * @param nextUpdate
+   *          nextUpdate of the CRL, in seconds since January 1, 1970, 00:00:00 GMT.
+   *          May be {@code null}.
+   */
+  public EncodedCrl(byte[] encoded, long thisUpdate, Long nextUpdate) {
+    this.encoded = Args.notNull(encoded, "encoded");
+    this.thisUpdate = thisUpdate;
+    this.nextUpdate = nextUpdate;
+    this.etag = "\"" + HashAlgo.SHA1.hexHash(encoded).toLowerCase() + "\"";
+  }
+
+  public byte[] getEncoded() {
+    return encoded;
+  }
+
+  public long getThisUpdate() {
+    return thisUpdate;
+  }
+
+  public Long getNextUpdate() {
+    return nextUpdate;
+  }
+
+  /**
+   * Returns the quoted entity tag of the CRL.
+   * @return the entity tag.
+   */
+  public String getEtag() {
+    return etag;
+  }
+
+}
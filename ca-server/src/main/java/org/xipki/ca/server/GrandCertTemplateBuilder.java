@@ -25,19 +25,8 @@ import static org.xipki.ca.api.OperationException.ErrorCode.SYSTEM_FAILURE;
 import static org.xipki.ca.api.OperationException.ErrorCode.UNKNOWN_CERT;
 import static org.xipki.ca.api.OperationException.ErrorCode.UNKNOWN_CERT_PROFILE;
 
-import java.io.IOException;
 import java.math.BigInteger;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.KeyPair;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
-import java.security.interfaces.DSAPrivateKey;
-import java.security.interfaces.DSAPublicKey;
-import java.security.interfaces.ECPrivateKey;
-import java.security.interfaces.ECPublicKey;
-import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Date;
 
@@ -48,12 +37,10 @@ import org.bouncycastle.asn1.DERSequence;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
 import org.bouncycastle.asn1.pkcs.RSAPrivateKey;
-import org.bouncycastle.asn1.pkcs.RSAPublicKey;
 import org.bouncycastle.asn1.x500.RDN;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
-import org.bouncycastle.crypto.RuntimeCryptoException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.ca.api.BadCertTemplateException;
@@ -70,7 +57,6 @@ import org.xipki.security.ConcurrentContentSigner;
 import org.xipki.security.EdECConstants;
 import org.xipki.security.ObjectIdentifiers;
 import org.xipki.security.X509Cert;
-import org.xipki.security.util.KeyUtil;
 import org.xipki.security.util.RSABrokenKey;
 import org.xipki.security.util.X509Util;
 import org.xipki.util.LogUtil;
@@ -99,9 +85,13 @@ class GrandCertTemplateBuilder {
 
   private final SecureRandom random = new SecureRandom();
 
-  GrandCertTemplateBuilder(CaInfo caInfo, CertStore certstore) {
+  // null if the keypairs are generated on demand
+  private final KeypairPool keypairPool;
+
+  GrandCertTemplateBuilder(CaInfo caInfo, CertStore certstore, KeypairPool keypairPool) {
     this.caInfo = caInfo;
     this.certstore = certstore;
+    this.keypairPool = keypairPool;
 
     X509Cert caCert = caInfo.getCaEntry().getCert();
     SubjectPublicKeyInfo caSpki = caCert.getSubjectPublicKeyInfo();
@@ -245,111 +235,27 @@ class GrandCertTemplateBuilder {
     } else if (certTemplate.isCaGenerateKeypair()) {
       KeypairGenControl kg = certprofile.getKeypairGenControl();
 
-      try {
-        if (kg instanceof KeypairGenControl.InheritCAKeypairGenControl) {
-          kg = keypairGenControlByImplictCA;
-        }
-
-        if (kg == null || kg instanceof KeypairGenControl.ForbiddenKeypairGenControl) {
-          throw new OperationException(BAD_CERT_TEMPLATE, "no public key is specified");
-        }
-
-        if (kg instanceof KeypairGenControl.RSAKeypairGenControl) {
-          KeypairGenControl.RSAKeypairGenControl tkg = (KeypairGenControl.RSAKeypairGenControl) kg;
+      if (kg instanceof KeypairGenControl.InheritCAKeypairGenControl) {
+        kg = keypairGenControlByImplictCA;
+      }
 
-          int keysize = tkg.getKeysize();
-          if (keysize > 4096) {
-            throw new OperationException(BAD_CERT_TEMPLATE, "keysize too large");
-          }
+      if (kg == null || kg instanceof KeypairGenControl.ForbiddenKeypairGenControl) {
+        throw new OperationException(BAD_CERT_TEMPLATE, "no public key is specified");
+      }
 
-          BigInteger publicExponent = tkg.getPublicExponent();
-
-          KeyPair kp = KeyUtil.generateRSAKeypair(keysize, publicExponent, random);
-          java.security.interfaces.RSAPublicKey rsaPubKey =
-              (java.security.interfaces.RSAPublicKey) kp.getPublic();
-
-          grantedPublicKeyInfo = new SubjectPublicKeyInfo(tkg.getKeyAlgorithm(),
-              new RSAPublicKey(rsaPubKey.getModulus(), rsaPubKey.getPublicExponent()));
-
-          /*
-           * RSA private keys are BER-encoded according to PKCS #1’s RSAPrivateKey ASN.1 type.
-           *
-           * RSAPrivateKey ::= SEQUENCE {
-           *   version           Version,
-           *   modulus           INTEGER,  -- n
-           *   publicExponent    INTEGER,  -- e
-           *   privateExponent   INTEGER,  -- d
-           *   prime1            INTEGER,  -- p
-           *   prime2            INTEGER,  -- q
-           *   exponent1         INTEGER,  -- d mod (p-1)
-           *   exponent2         INTEGER,  -- d mod (q-1)
-           *   coefficient       INTEGER,  -- (inverse of q) mod p
-           *   otherPrimeInfos   OtherPrimeInfos OPTIONAL.
-           * }
-           */
-          RSAPrivateCrtKey priv = (RSAPrivateCrtKey) kp.getPrivate();
-          privateKey = new PrivateKeyInfo(tkg.getKeyAlgorithm(),
-             new RSAPrivateKey(priv.getModulus(),
-                 priv.getPublicExponent(), priv.getPrivateExponent(),
-                 priv.getPrimeP(), priv.getPrimeQ(),
-                 priv.getPrimeExponentP(), priv.getPrimeExponentQ(),
-                 priv.getCrtCoefficient()));
-        } else if (kg instanceof KeypairGenControl.ECKeypairGenControl) {
-          KeypairGenControl.ECKeypairGenControl tkg = (KeypairGenControl.ECKeypairGenControl) kg;
-          ASN1ObjectIdentifier curveOid = tkg.getCurveOid();
-          KeyPair kp = KeyUtil.generateECKeypair(curveOid, random);
-          ECPublicKey pub = (ECPublicKey) kp.getPublic();
-          int orderBitLength = pub.getParams().getOrder().bitLength();
-
-          byte[] keyData = KeyUtil.getUncompressedEncodedECPoint(pub.getW(), orderBitLength);
-          grantedPublicKeyInfo = new SubjectPublicKeyInfo(tkg.getKeyAlgorithm(), keyData);
-
-          /*
-           * ECPrivateKey ::= SEQUENCE {
-           *   Version INTEGER { ecPrivkeyVer1(1) }
-           *                   (ecPrivkeyVer1),
-           *   privateKey      OCTET STRING,
-           *   parameters [0]  Parameters OPTIONAL,
-           *   publicKey  [1]  BIT STRING OPTIONAL
-           * }
-           *
-           * Since the EC domain parameters are placed in the PKCS #8’s privateKeyAlgorithm field,
-           * the optional parameters field in an ECPrivateKey must be omitted. A Cryptoki
-           * application must be able to unwrap an ECPrivateKey that contains the optional publicKey
-           * field; however, what is done with this publicKey field is outside the scope of
-           * Cryptoki.
-           */
-          ECPrivateKey priv = (ECPrivateKey) kp.getPrivate();
-          privateKey = new PrivateKeyInfo(tkg.getKeyAlgorithm(),
-              new org.bouncycastle.asn1.sec.ECPrivateKey(orderBitLength, priv.getS()));
-        } else if (kg instanceof KeypairGenControl.DSAKeypairGenControl) {
-          KeypairGenControl.DSAKeypairGenControl tkg = (KeypairGenControl.DSAKeypairGenControl) kg;
-          KeyPair kp = KeyUtil.generateDSAKeypair(tkg.getParameterSpec(), random);
-
-          grantedPublicKeyInfo = new SubjectPublicKeyInfo(tkg.getKeyAlgorithm(),
-              new ASN1Integer(((DSAPublicKey) kp.getPublic()).getY()));
-
-          // DSA private keys are represented as BER-encoded ASN.1 type INTEGER.
-          DSAPrivateKey priv = (DSAPrivateKey) kp.getPrivate();
-          privateKey = new PrivateKeyInfo(grantedPublicKeyInfo.getAlgorithm(),
-              new ASN1Integer(priv.getX()));
-        } else if (kg instanceof KeypairGenControl.EDDSAKeypairGenControl) {
-          KeypairGenControl.EDDSAKeypairGenControl tkg =
-              (KeypairGenControl.EDDSAKeypairGenControl) kg;
-          KeyPair kp = KeyUtil.generateEdECKeypair(tkg.getKeyAlgorithm().getAlgorithm(), random);
-          grantedPublicKeyInfo = KeyUtil.createSubjectPublicKeyInfo(kp.getPublic());
-          // make sure that the algorithm match
-          if (!grantedPublicKeyInfo.getAlgorithm().equals(tkg.getKeyAlgorithm())) {
-            throw new OperationException(SYSTEM_FAILURE, "invalid SubjectPublicKeyInfo.algorithm");
-          }
-          privateKey = PrivateKeyInfo.getInstance(kp.getPrivate().getEncoded());
-        } else {
-          throw new RuntimeCryptoException("unknown KeyPairGenControl " + kg);
+      if (kg instanceof KeypairGenControl.RSAKeypairGenControl) {
+        if (((KeypairGenControl.RSAKeypairGenControl) kg).getKeysize() > 4096) {
+          throw new OperationException(BAD_CERT_TEMPLATE, "keysize too large");
         }
-      } catch (InvalidAlgorithmParameterException | NoSuchAlgorithmException
-          | NoSuchProviderException | InvalidKeyException | IOException ex) {
-        throw new OperationException(SYSTEM_FAILURE, ex);
       }
+
+      KeypairPool.GeneratedKeypair kp = (keypairPool == null) ? null : keypairPool.take(kg);
+      if (kp == null) {
+        kp = KeypairPool.generateKeypair(kg, random);
+      }
+
+      grantedPublicKeyInfo = kp.getPublicKeyInfo();
+      privateKey = kp.getPrivateKeyInfo();
     } else {
       // show not reach here
       throw new OperationException(BAD_CERT_TEMPLATE, "no public key is specified  genkey");
@@ -20,6 +20,7 @@ package org.xipki.ca.server;
 import static org.xipki.util.Args.notNull;
 
 import java.io.Closeable;
+import java.util.List;
 import java.util.Map;
 
 import org.bouncycastle.cert.X509CRLHolder;
@@ -66,6 +67,10 @@ public class IdentifiedCertPublisher implements Closeable {
     return certPublisher.certificateAdded(certInfo);
   }
 
+  public int certificatesAdded(List<CertificateInfo> certInfos) {
+    return certPublisher.certificatesAdded(certInfos);
+  }
+
   public boolean certificateRevoked(X509Cert caCert, CertWithDbId cert, String certprofile,
       CertRevocationInfo revInfo) {
     return certPublisher.certificateRevoked(caCert, cert, certprofile, revInfo);
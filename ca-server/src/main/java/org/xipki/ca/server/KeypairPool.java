@@ -0,0 +1,383 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import static org.xipki.ca.api.OperationException.ErrorCode.SYSTEM_FAILURE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.SecureRandom;
+import java.security.interfaces.DSAPrivateKey;
+import java.security.interfaces.DSAPublicKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.asn1.pkcs.RSAPrivateKey;
+import org.bouncycastle.asn1.pkcs.RSAPublicKey;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.crypto.RuntimeCryptoException;
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ca.api.OperationException;
+import org.xipki.ca.api.profile.KeypairGenControl;
+import org.xipki.security.util.KeyUtil;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+
+/**
+ * Pool of keypairs generated in background for the enrollment with keypair generated by the
+ * CA. There is one pool per key type (algorithm, key size or curve), created when a keypair of
+ * this type is requested for the first time. The private keys are held encrypted in memory
+ * with a random AES key.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class KeypairPool implements Closeable {
+
+  static class GeneratedKeypair {
+
+    private final SubjectPublicKeyInfo publicKeyInfo;
+
+    private final PrivateKeyInfo privateKeyInfo;
+
+    GeneratedKeypair(SubjectPublicKeyInfo publicKeyInfo, PrivateKeyInfo privateKeyInfo) {
+      this.publicKeyInfo = publicKeyInfo;
+      this.privateKeyInfo = privateKeyInfo;
+    }
+
+    SubjectPublicKeyInfo getPublicKeyInfo() {
+      return publicKeyInfo;
+    }
+
+    PrivateKeyInfo getPrivateKeyInfo() {
+      return privateKeyInfo;
+    }
+
+  } // class GeneratedKeypair
+
+  private static class Pool {
+
+    private final String name;
+
+    private final KeypairGenControl keypairGenControl;
+
+    // entries: encoded SubjectPublicKeyInfo, encrypted PrivateKeyInfo
+    private final BlockingQueue<byte[][]> keypairs = new LinkedBlockingQueue<>();
+
+    private final AtomicInteger refillers = new AtomicInteger(0);
+
+    Pool(String name, KeypairGenControl keypairGenControl) {
+      this.name = name;
+      this.keypairGenControl = keypairGenControl;
+    }
+
+  } // class Pool
+
+  private static final Logger LOG = LoggerFactory.getLogger(KeypairPool.class);
+
+  private static final int GCM_IV_LEN = 12;
+
+  private static final int GCM_TAG_BITS = 128;
+
+  private final int depth;
+
+  private final int threads;
+
+  private final ConcurrentHashMap<String, Pool> pools = new ConcurrentHashMap<>();
+
+  private final ExecutorService executor;
+
+  private final SecretKey encKey;
+
+  private final SecureRandom random = new SecureRandom();
+
+  /**
+   * Constructor.
+   * @param depth
+   *          Number of keypairs held in the pool of each key type.
+   * @param threads
+   *          Number of threads to refill the pools.
+   * @throws NoSuchAlgorithmException
+   *          If AES is not supported.
+   */
+  public KeypairPool(int depth, int threads) throws NoSuchAlgorithmException {
+    this.depth = Args.positive(depth, "depth");
+    this.threads = Args.positive(threads, "threads");
+
+    KeyGenerator kg = KeyGenerator.getInstance("AES");
+    kg.init(128, random);
+    this.encKey = kg.generateKey();
+
+    AtomicInteger threadIndex = new AtomicInteger(0);
+    this.executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r, "keypair-pool-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      // the request threads have precedence
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+  } // constructor
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    pools.clear();
+  }
+
+  /**
+   * Takes a keypair from the pool and triggers the refill of the pool.
+   * @param keypairGenControl
+   *          Control how to generate the keypair.
+   * @return a pre-generated keypair, or {@code null} if the pool is empty or the key type
+   *         is not pooled.
+   */
+  GeneratedKeypair take(KeypairGenControl keypairGenControl) {
+    String name = getPoolName(keypairGenControl);
+    if (name == null) {
+      return null;
+    }
+
+    Pool pool = pools.computeIfAbsent(name, k -> new Pool(k, keypairGenControl));
+    byte[][] entry = pool.keypairs.poll();
+    refill(pool);
+
+    if (entry == null) {
+      LOG.debug("keypair pool {} is empty", name);
+      return null;
+    }
+
+    try {
+      return new GeneratedKeypair(SubjectPublicKeyInfo.getInstance(entry[0]),
+          PrivateKeyInfo.getInstance(decrypt(entry[1])));
+    } catch (GeneralSecurityException | RuntimeException ex) {
+      LogUtil.error(LOG, ex, "could not decrypt keypair from pool " + name);
+      return null;
+    }
+  } // method take
+
+  private void refill(Pool pool) {
+    while (true) {
+      int refillers = pool.refillers.get();
+      if (refillers >= threads || pool.keypairs.size() + refillers >= depth) {
+        return;
+      }
+
+      if (pool.refillers.compareAndSet(refillers, refillers + 1)) {
+        break;
+      }
+    }
+
+    try {
+      executor.execute(() -> {
+        try {
+          GeneratedKeypair kp = generateKeypair(pool.keypairGenControl, random);
+          pool.keypairs.offer(new byte[][] {kp.getPublicKeyInfo().getEncoded(),
+              encrypt(kp.getPrivateKeyInfo().getEncoded())});
+        } catch (Exception ex) {
+          // no retry here, the next take() triggers the refill again.
+          LogUtil.error(LOG, ex, "could not generate keypair for pool " + pool.name);
+          pool.refillers.decrementAndGet();
+          return;
+        }
+
+        pool.refillers.decrementAndGet();
+        refill(pool);
+      });
+    } catch (RejectedExecutionException ex) {
+      // pool is closed.
+      pool.refillers.decrementAndGet();
+    }
+  } // method refill
+
+  private byte[] encrypt(byte[] data) throws GeneralSecurityException {
+    byte[] iv = new byte[GCM_IV_LEN];
+    random.nextBytes(iv);
+
+    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    cipher.init(Cipher.ENCRYPT_MODE, encKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+    byte[] ret = new byte[GCM_IV_LEN + cipher.getOutputSize(data.length)];
+    System.arraycopy(iv, 0, ret, 0, GCM_IV_LEN);
+    cipher.doFinal(data, 0, data.length, ret, GCM_IV_LEN);
+    Arrays.fill(data, (byte) 0);
+    return ret;
+  } // method encrypt
+
+  private byte[] decrypt(byte[] data) throws GeneralSecurityException {
+    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    cipher.init(Cipher.DECRYPT_MODE, encKey, new GCMParameterSpec(GCM_TAG_BITS, data, 0,
+        GCM_IV_LEN));
+    return cipher.doFinal(data, GCM_IV_LEN, data.length - GCM_IV_LEN);
+  } // method decrypt
+
+  /**
+   * Returns the name of the pool for the given control, or {@code null} if the keypairs are
+   * not pooled. DSA keypairs are not pooled, since they are cheap to generate for the given
+   * domain parameters.
+   */
+  private static String getPoolName(KeypairGenControl kg) {
+    String keyAlg;
+    try {
+      if (kg instanceof KeypairGenControl.RSAKeypairGenControl) {
+        KeypairGenControl.RSAKeypairGenControl tkg = (KeypairGenControl.RSAKeypairGenControl) kg;
+        keyAlg = Hex.toHexString(tkg.getKeyAlgorithm().getEncoded());
+        return "RSA/" + tkg.getKeysize() + "/" + tkg.getPublicExponent().toString(16)
+            + "/" + keyAlg;
+      } else if (kg instanceof KeypairGenControl.ECKeypairGenControl) {
+        KeypairGenControl.ECKeypairGenControl tkg = (KeypairGenControl.ECKeypairGenControl) kg;
+        keyAlg = Hex.toHexString(tkg.getKeyAlgorithm().getEncoded());
+        return "EC/" + tkg.getCurveOid().getId() + "/" + keyAlg;
+      } else if (kg instanceof KeypairGenControl.EDDSAKeypairGenControl) {
+        KeypairGenControl.EDDSAKeypairGenControl tkg =
+            (KeypairGenControl.EDDSAKeypairGenControl) kg;
+        return "EDDSA/" + tkg.getKeyAlgorithm().getAlgorithm().getId();
+      } else {
+        return null;
+      }
+    } catch (IOException ex) {
+      return null;
+    }
+  } // method getPoolName
+
+  static GeneratedKeypair generateKeypair(KeypairGenControl kg, SecureRandom random)
+      throws OperationException {
+    try {
+      if (kg instanceof KeypairGenControl.RSAKeypairGenControl) {
+        KeypairGenControl.RSAKeypairGenControl tkg = (KeypairGenControl.RSAKeypairGenControl) kg;
+
+        int keysize = tkg.getKeysize();
+        BigInteger publicExponent = tkg.getPublicExponent();
+
+        KeyPair kp = KeyUtil.generateRSAKeypair(keysize, publicExponent, random);
+        java.security.interfaces.RSAPublicKey rsaPubKey =
+            (java.security.interfaces.RSAPublicKey) kp.getPublic();
+
+        SubjectPublicKeyInfo spki = new SubjectPublicKeyInfo(tkg.getKeyAlgorithm(),
+            new RSAPublicKey(rsaPubKey.getModulus(), rsaPubKey.getPublicExponent()));
+
+        /*
+         * RSA private keys are BER-encoded according to PKCS #1’s RSAPrivateKey ASN.1 type.
+         *
+         * RSAPrivateKey ::= SEQUENCE {
+         *   version           Version,
+         *   modulus           INTEGER,  -- n
+         *   publicExponent    INTEGER,  -- e
+         *   privateExponent   INTEGER,  -- d
+         *   prime1            INTEGER,  -- p
+         *   prime2            INTEGER,  -- q
+         *   exponent1         INTEGER,  -- d mod (p-1)
+         *   exponent2         INTEGER,  -- d mod (q-1)
+         *   coefficient       INTEGER,  -- (inverse of q) mod p
+         *   otherPrimeInfos   OtherPrimeInfos OPTIONAL.
+         * }
+         */
+        RSAPrivateCrtKey priv = (RSAPrivateCrtKey) kp.getPrivate();
+        PrivateKeyInfo privateKey = new PrivateKeyInfo(tkg.getKeyAlgorithm(),
+           new RSAPrivateKey(priv.getModulus(),
+               priv.getPublicExponent(), priv.getPrivateExponent(),
+               priv.getPrimeP(), priv.getPrimeQ(),
+               priv.getPrimeExponentP(), priv.getPrimeExponentQ(),
+               priv.getCrtCoefficient()));
+        return new GeneratedKeypair(spki, privateKey);
+      } else if (kg instanceof KeypairGenControl.ECKeypairGenControl) {
+        KeypairGenControl.ECKeypairGenControl tkg = (KeypairGenControl.ECKeypairGenControl) kg;
+        ASN1ObjectIdentifier curveOid = tkg.getCurveOid();
+        KeyPair kp = KeyUtil.generateECKeypair(curveOid, random);
+        ECPublicKey pub = (ECPublicKey) kp.getPublic();
+        int orderBitLength = pub.getParams().getOrder().bitLength();
+
+        byte[] keyData = KeyUtil.getUncompressedEncodedECPoint(pub.getW(), orderBitLength);
+        SubjectPublicKeyInfo spki = new SubjectPublicKeyInfo(tkg.getKeyAlgorithm(), keyData);
+
+        /*
+         * ECPrivateKey ::= SEQUENCE {
+         *   Version INTEGER { ecPrivkeyVer1(1) }
+         *                   (ecPrivkeyVer1),
+         *   privateKey      OCTET STRING,
+         *   parameters [0]  Parameters OPTIONAL,
+         *   publicKey  [1]  BIT STRING OPTIONAL
+         * }
+         *
+         * Since the EC domain parameters are placed in the PKCS #8’s privateKeyAlgorithm field,
+         * the optional parameters field in an ECPrivateKey must be omitted. A Cryptoki
+         * application must be able to unwrap an ECPrivateKey that contains the optional publicKey
+         * field; however, what is done with this publicKey field is outside the scope of
+         * Cryptoki.
+         */
+        ECPrivateKey priv = (ECPrivateKey) kp.getPrivate();
+        PrivateKeyInfo privateKey = new PrivateKeyInfo(tkg.getKeyAlgorithm(),
+            new org.bouncycastle.asn1.sec.ECPrivateKey(orderBitLength, priv.getS()));
+        return new GeneratedKeypair(spki, privateKey);
+      } else if (kg instanceof KeypairGenControl.DSAKeypairGenControl) {
+        KeypairGenControl.DSAKeypairGenControl tkg = (KeypairGenControl.DSAKeypairGenControl) kg;
+        KeyPair kp = KeyUtil.generateDSAKeypair(tkg.getParameterSpec(), random);
+
+        SubjectPublicKeyInfo spki = new SubjectPublicKeyInfo(tkg.getKeyAlgorithm(),
+            new ASN1Integer(((DSAPublicKey) kp.getPublic()).getY()));
+
+        // DSA private keys are represented as BER-encoded ASN.1 type INTEGER.
+        DSAPrivateKey priv = (DSAPrivateKey) kp.getPrivate();
+        PrivateKeyInfo privateKey = new PrivateKeyInfo(spki.getAlgorithm(),
+            new ASN1Integer(priv.getX()));
+        return new GeneratedKeypair(spki, privateKey);
+      } else if (kg instanceof KeypairGenControl.EDDSAKeypairGenControl) {
+        KeypairGenControl.EDDSAKeypairGenControl tkg =
+            (KeypairGenControl.EDDSAKeypairGenControl) kg;
+        KeyPair kp = KeyUtil.generateEdECKeypair(tkg.getKeyAlgorithm().getAlgorithm(), random);
+        SubjectPublicKeyInfo spki = KeyUtil.createSubjectPublicKeyInfo(kp.getPublic());
+        // make sure that the algorithm match
+        if (!spki.getAlgorithm().equals(tkg.getKeyAlgorithm())) {
+          throw new OperationException(SYSTEM_FAILURE, "invalid SubjectPublicKeyInfo.algorithm");
+        }
+        return new GeneratedKeypair(spki, PrivateKeyInfo.getInstance(kp.getPrivate().getEncoded()));
+      } else {
+        throw new RuntimeCryptoException("unknown KeyPairGenControl " + kg);
+      }
+    } catch (InvalidAlgorithmParameterException | NoSuchAlgorithmException
+        | NoSuchProviderException | InvalidKeyException | IOException ex) {
+      throw new OperationException(SYSTEM_FAILURE, ex);
+    }
+  } // method generateKeypair
+
+}
@@ -24,9 +24,15 @@ import static org.xipki.audit.AuditStatus.FAILED;
 import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.math.BigInteger;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
@@ -169,6 +175,8 @@ public class RestResponder {
 
   private static final int OK = 200;
 
+  private static final int NOT_MODIFIED = 304;
+
   private static final int BAD_REQUEST = 400;
 
   private static final int UNAUTHORIZED = 401;
@@ -185,6 +193,20 @@ public class RestResponder {
 
   private static final Logger LOG = LoggerFactory.getLogger(RestResponder.class);
 
+  private static final String HEADER_ETAG = "ETag";
+
+  private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+  private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+  private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+  private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+  private static final DateTimeFormatter HTTP_DATE_FORMATTER =
+      DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+        .withZone(ZoneOffset.UTC);
+
   private final CaManagerImpl responderManager;
 
   public RestResponder(CaManagerImpl responderManager) {
@@ -537,15 +559,25 @@ public class RestResponder {
           }
         }
 
-        X509CRLHolder crl = ca.getCrl(crlNumber);
-        if (crl == null) {
+        if (crlNumber == null) {
+          EncodedCrl crl = ca.getCurrentEncodedCrl();
+          if (crl == null) {
+            String message = "could not get CRL";
+            LOG.warn(message);
+            throw new HttpRespAuditException(INTERNAL_SERVER_ERROR, message, INFO, FAILED);
+          }
+
+          return buildCrlResponse(crl, httpRetriever);
+        }
+
+        respBytes = ca.getEncodedCrl(crlNumber);
+        if (respBytes == null) {
           String message = "could not get CRL";
           LOG.warn(message);
           throw new HttpRespAuditException(INTERNAL_SERVER_ERROR, message, INFO, FAILED);
         }
 
         respCt = RestAPIConstants.CT_pkix_crl;
-        respBytes = crl.getEncoded();
       } else if (RestAPIConstants.CMD_new_crl.equals(command)) {
         try {
           requestor.assertPermitted(PermissionConstants.GEN_CRL);
@@ -680,6 +712,48 @@ public class RestResponder {
     }
   } // method service
 
+  private static RestResponse buildCrlResponse(EncodedCrl crl,
+      HttpRequestMetadataRetriever httpRetriever) {
+    Map<String, String> headers = new HashMap<>();
+    headers.put(HEADER_ETAG, crl.getEtag());
+    headers.put(HEADER_LAST_MODIFIED, HTTP_DATE_FORMATTER.format(
+        Instant.ofEpochSecond(crl.getThisUpdate())));
+
+    Long nextUpdate = crl.getNextUpdate();
+    if (nextUpdate == null) {
+      headers.put(HEADER_CACHE_CONTROL, "no-cache");
+    } else {
+      long maxAge = Math.max(0, nextUpdate - System.currentTimeMillis() / 1000);
+      headers.put(HEADER_CACHE_CONTROL, "max-age=" + maxAge + ",public,no-transform");
+    }
+
+    boolean notModified;
+    // If-None-Match takes precedence over If-Modified-Since, see RFC 7232
+    String ifNoneMatch = httpRetriever.getHeader(HEADER_IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      notModified = "*".equals(ifNoneMatch.trim()) || ifNoneMatch.contains(crl.getEtag());
+    } else {
+      notModified = false;
+      String ifModifiedSince = httpRetriever.getHeader(HEADER_IF_MODIFIED_SINCE);
+      if (ifModifiedSince != null) {
+        try {
+          long since = ZonedDateTime.parse(ifModifiedSince.trim(),
+              DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+          notModified = crl.getThisUpdate() <= since;
+        } catch (DateTimeParseException ex) {
+          LOG.debug("ignore invalid If-Modified-Since '{}'", ifModifiedSince);
+        }
+      }
+    }
+
+    if (notModified) {
+      return new RestResponse(NOT_MODIFIED, null, headers, null);
+    }
+
+    headers.put(RestAPIConstants.HEADER_PKISTATUS, RestAPIConstants.PKISTATUS_accepted);
+    return new RestResponse(OK, RestAPIConstants.CT_pkix_crl, headers, crl.getEncoded());
+  } // method buildCrlResponse
+
   private static BigInteger toBigInt(String str) {
     String tmpStr = str.trim();
     if (tmpStr.startsWith("0x") || tmpStr.startsWith("0X")) {
@@ -32,8 +32,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.DERNull;
@@ -201,7 +208,8 @@ public class X509Ca extends X509CaModule implements Closeable {
 
     this.publisherModule = new X509PublisherModule(caManager, caInfo, certstore);
     this.crlModule = new X509CrlModule(caManager, caInfo, certstore, publisherModule);
-    this.grandCertTemplateBuilder = new GrandCertTemplateBuilder(caInfo, certstore);
+    this.grandCertTemplateBuilder = new GrandCertTemplateBuilder(caInfo, certstore,
+        caManager.getKeypairPool());
     this.revokerModule = new X509RevokerModule(caManager, caInfo, certstore, publisherModule);
     this.removerModule = new X509RemoverModule(caManager, caInfo, certstore, publisherModule);
 
@@ -302,6 +310,14 @@ public class X509Ca extends X509CaModule implements Closeable {
     return crlModule.getCrl(crlNumber);
   } // method getCrl
 
+  public EncodedCrl getCurrentEncodedCrl() throws OperationException {
+    return crlModule.getCurrentEncodedCrl();
+  }
+
+  public byte[] getEncodedCrl(BigInteger crlNumber) throws OperationException {
+    return crlModule.getEncodedCrl(crlNumber);
+  }
+
   public CertificateList getBcCurrentCrl() throws OperationException {
     return crlModule.getBcCurrentCrl();
   }
@@ -403,40 +419,28 @@ public class X509Ca extends X509CaModule implements Closeable {
       }
     }
 
-    List<CertificateInfo> certInfos = new ArrayList<>(n);
+    CertificateInfo[] certInfos = new CertificateInfo[n];
     OperationExceptionWithIndex exception = null;
 
-    for (int i = 0; i < n; i++) {
-      if (exception != null) {
-        break;
-      }
-      GrantedCertTemplate gct = gcts.get(i);
-      final NameId certprofilIdent = gct.certprofile.getIdent();
-      final String subjectText = gct.grantedSubjectText;
-      LOG.info("     START generateCertificate: CA={}, profile={}, subject='{}'",
-          caIdent.getName(), certprofilIdent.getName(), subjectText);
+    ExecutorService executor = caManager.getCertGenerationExecutor();
+    int parallelism = 1;
+    if (n > 1 && executor != null) {
+      // the calling thread generates certificates too
+      parallelism = Math.min(n, caManager.getCaServerConf().getCertGenerationThreads() + 1);
+      // more threads than signers would only wait for an idle signer
+      parallelism = Math.min(parallelism, gcts.get(0).signer.getPoolSize());
+    }
 
-      boolean successful = false;
-      try {
-        CertificateInfo certInfo = generateCert(gct, requestor, reqType, transactionId, msgId);
-        successful = true;
-        certInfos.add(certInfo);
-
-        if (LOG.isInfoEnabled()) {
-          String prefix = certInfo.isAlreadyIssued() ? "RETURN_OLD_CERT" : "SUCCESSFUL";
-          CertWithDbId cert = certInfo.getCert();
-          LOG.info("{} generateCertificate: CA={}, profile={}, subject='{}', serialNumber={}",
-              prefix, caIdent.getName(), certprofilIdent.getName(),
-              cert.getCert().getSubjectRfc4519Text(), cert.getCert().getSerialNumberHex());
-        }
-      } catch (OperationException ex) {
-        exception = new OperationExceptionWithIndex(i, ex);
-      } catch (Throwable th) {
-        exception = new OperationExceptionWithIndex(i, new OperationException(SYSTEM_FAILURE, th));
-      } finally {
-        if (!successful) {
-          LOG.error("    FAILED generateCertificate: CA={}, profile={}, subject='{}'",
-              caIdent.getName(), certprofilIdent.getName(), subjectText);
+    if (parallelism > 1) {
+      exception = generateCertsInParallel(executor, parallelism, gcts, certInfos,
+          requestor, reqType, transactionId, msgId);
+    } else {
+      for (int i = 0; i < n; i++) {
+        try {
+          certInfos[i] = generateCert(i, gcts.get(i), requestor, reqType, transactionId, msgId);
+        } catch (OperationExceptionWithIndex ex) {
+          exception = ex;
+          break;
         }
       }
     }
@@ -446,6 +450,10 @@ public class X509Ca extends X509CaModule implements Closeable {
           + " certificates", exception.getIndex());
       // delete generated certificates
       for (CertificateInfo m : certInfos) {
+        if (m == null) {
+          continue;
+        }
+
         BigInteger serial = m.getCert().getCert().getSerialNumber();
         try {
           removeCert(serial, msgId);
@@ -458,8 +466,123 @@ public class X509Ca extends X509CaModule implements Closeable {
       throw exception;
     }
 
-    return certInfos;
-  }
+    return new ArrayList<>(Arrays.asList(certInfos));
+  } // method generateCerts
+
+  /**
+   * Generates the certificates with {@code parallelism} threads, including the calling thread.
+   * After the first failure no further certificate is generated.
+   *
+   * @return the failure with the lowest index, or {@code null} if all certificates have been
+   *     generated.
+   */
+  private OperationExceptionWithIndex generateCertsInParallel(ExecutorService executor,
+      int parallelism, List<GrantedCertTemplate> gcts, CertificateInfo[] certInfos,
+      RequestorInfo requestor, RequestType reqType, byte[] transactionId, String msgId) {
+    final int n = gcts.size();
+    final OperationExceptionWithIndex[] failures = new OperationExceptionWithIndex[n];
+    final AtomicInteger nextIndex = new AtomicInteger();
+    final AtomicBoolean failed = new AtomicBoolean(false);
+
+    Runnable worker = () -> {
+      int i;
+      while (!failed.get() && (i = nextIndex.getAndIncrement()) < n) {
+        try {
+          certInfos[i] = generateCert(i, gcts.get(i), requestor, reqType, transactionId, msgId);
+        } catch (OperationExceptionWithIndex ex) {
+          failures[i] = ex;
+          failed.set(true);
+        }
+      }
+    };
+
+    List<Future<?>> futures = new ArrayList<>(parallelism - 1);
+    try {
+      for (int i = 1; i < parallelism; i++) {
+        futures.add(executor.submit(worker));
+      }
+    } catch (RejectedExecutionException ex) {
+      // executor is shutting down, generate the remaining certificates in this thread
+      LOG.warn("could not submit certificate generation task: {}", ex.getMessage());
+    }
+
+    worker.run();
+
+    // all certificates have been claimed: the tasks which have not started yet are not needed
+    // any more, wait only for the started ones, their certificates must be known before
+    // returning.
+    boolean interrupted = false;
+    for (Future<?> future : futures) {
+      if (future.cancel(false)) {
+        continue;
+      }
+
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        } catch (ExecutionException ex) {
+          LogUtil.error(LOG, ex.getCause(), "error in certificate generation task");
+          break;
+        }
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    for (int i = 0; i < n; i++) {
+      if (failures[i] != null) {
+        return failures[i];
+      }
+    }
+
+    // a task may have terminated unexpectedly
+    for (int i = 0; i < n; i++) {
+      if (certInfos[i] == null) {
+        return new OperationExceptionWithIndex(i,
+            new OperationException(SYSTEM_FAILURE, "certificate has not been generated"));
+      }
+    }
+
+    return null;
+  } // method generateCertsInParallel
+
+  private CertificateInfo generateCert(int index, GrantedCertTemplate gct,
+      RequestorInfo requestor, RequestType reqType, byte[] transactionId, String msgId)
+      throws OperationExceptionWithIndex {
+    final NameId certprofilIdent = gct.certprofile.getIdent();
+    final String subjectText = gct.grantedSubjectText;
+    LOG.info("     START generateCertificate: CA={}, profile={}, subject='{}'",
+        caIdent.getName(), certprofilIdent.getName(), subjectText);
+
+    boolean successful = false;
+    try {
+      CertificateInfo certInfo = generateCert(gct, requestor, reqType, transactionId, msgId);
+      successful = true;
+
+      if (LOG.isInfoEnabled()) {
+        String prefix = certInfo.isAlreadyIssued() ? "RETURN_OLD_CERT" : "SUCCESSFUL";
+        CertWithDbId cert = certInfo.getCert();
+        LOG.info("{} generateCertificate: CA={}, profile={}, subject='{}', serialNumber={}",
+            prefix, caIdent.getName(), certprofilIdent.getName(),
+            cert.getCert().getSubjectRfc4519Text(), cert.getCert().getSerialNumberHex());
+      }
+      return certInfo;
+    } catch (OperationException ex) {
+      throw new OperationExceptionWithIndex(index, ex);
+    } catch (Throwable th) {
+      throw new OperationExceptionWithIndex(index, new OperationException(SYSTEM_FAILURE, th));
+    } finally {
+      if (!successful) {
+        LOG.error("    FAILED generateCertificate: CA={}, profile={}, subject='{}'",
+            caIdent.getName(), certprofilIdent.getName(), subjectText);
+      }
+    }
+  } // method generateCert
 
   public CertificateInfo generateCert(CertTemplateData certTemplate, RequestorInfo requestor,
       RequestType reqType, byte[] transactionId, String msgId) throws OperationException {
@@ -474,7 +597,7 @@ public class X509Ca extends X509CaModule implements Closeable {
 
     boolean successful = false;
     try {
-      CertificateInfo ret = generateCert0(gct, requestor, reqType, transactionId, event);
+      CertificateInfo ret = generateCert0(gct, requestor, reqType, transactionId, msgId, event);
       successful = (ret != null);
       return ret;
     } finally {
@@ -483,7 +606,8 @@ public class X509Ca extends X509CaModule implements Closeable {
   }
 
   private CertificateInfo generateCert0(GrantedCertTemplate gct, RequestorInfo requestor,
-      RequestType reqType, byte[] transactionId, AuditEvent event) throws OperationException {
+      RequestType reqType, byte[] transactionId, String msgId, AuditEvent event)
+      throws OperationException {
     notNull(gct, "gct");
 
     event.addEventData(CaAuditConstants.NAME_req_subject,
@@ -597,9 +721,19 @@ public class X509Ca extends X509CaModule implements Closeable {
       }
 
       X509Cert cert = new X509Cert(bcCert, encodedCert);
-      if (!verifySignature(cert)) {
-        throw new OperationException(SYSTEM_FAILURE,
-            "could not verify the signature of generated certificate");
+      CertVerificationPolicy verificationPolicy = caInfo.getCertVerificationPolicy();
+      ScheduledThreadPoolExecutor executor = caManager.getScheduledThreadPoolExecutor();
+      boolean verifyInBackground = false;
+      if (verificationPolicy.getMode() == CertVerificationPolicy.Mode.BACKGROUND) {
+        // without executor the certificate is verified now
+        verifyInBackground = executor != null;
+      }
+
+      if (!verifyInBackground && verificationPolicy.verifyNow()) {
+        if (!verifySignature(cert)) {
+          throw new OperationException(SYSTEM_FAILURE,
+              "could not verify the signature of generated certificate");
+        }
       }
 
       CertWithDbId certWithMeta = new CertWithDbId(cert);
@@ -615,6 +749,10 @@ public class X509Ca extends X509CaModule implements Closeable {
       if (publisherModule.publishCert0(ret) == 1) {
         throw new OperationException(SYSTEM_FAILURE, "could not save certificate");
       }
+
+      if (verifyInBackground) {
+        verifySignatureInBackground(executor, cert, msgId);
+      }
     } catch (BadCertTemplateException ex) {
       throw new OperationException(BAD_CERT_TEMPLATE, ex);
     } catch (OperationException ex) {
@@ -631,6 +769,32 @@ public class X509Ca extends X509CaModule implements Closeable {
     return ret;
   } // method generateCertificate0
 
+  private void verifySignatureInBackground(ScheduledThreadPoolExecutor executor, X509Cert cert,
+      String msgId) {
+    Runnable task = () -> {
+      if (verifySignature(cert)) {
+        return;
+      }
+
+      LOG.error("ALARM: could not verify the signature of generated certificate: CA={},"
+          + " serialNumber={}", caIdent.getName(), cert.getSerialNumberHex());
+      AuditEvent event = newAuditEvent(CaAuditConstants.NAME_perf,
+          CaAuditConstants.TYPE_verify_cert, msgId);
+      event.addEventData(CaAuditConstants.NAME_serial, cert.getSerialNumberHex());
+      event.addEventData(CaAuditConstants.NAME_subject, cert.getSubjectRfc4519Text());
+      event.addEventData(CaAuditConstants.NAME_message,
+          "could not verify the signature of generated certificate");
+      finish(event, false);
+    };
+
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException ex) {
+      // executor is shutting down
+      task.run();
+    }
+  } // method verifySignatureInBackground
+
   public IdentifiedCertprofile getX509Certprofile(String certprofileName) {
     if (certprofileName == null) {
       return null;
@@ -743,9 +907,27 @@ public class X509Ca extends X509CaModule implements Closeable {
     databaseHealth.setHealthy(databaseHealthy);
     result.addChildCheck(databaseHealth);
 
+    Map<String, Object> userAuthCacheStatistics = certstore.getUserAuthCacheStatistics();
+    if (userAuthCacheStatistics != null) {
+      HealthCheckResult userAuthCacheHealth = new HealthCheckResult();
+      userAuthCacheHealth.setName("UserAuthCache");
+      userAuthCacheHealth.setHealthy(true);
+      userAuthCacheHealth.getStatuses().putAll(userAuthCacheStatistics);
+      result.addChildCheck(userAuthCacheHealth);
+    }
+
     healthy &= crlModule.healthCheck(result);
     healthy &= publisherModule.healthCheck(result);
 
+    if (ctlogClient != null) {
+      // failures of single CT Log servers are tolerated as long as the quorum is reached.
+      HealthCheckResult ctlogHealth = new HealthCheckResult();
+      ctlogHealth.setName("CtLog");
+      ctlogHealth.setHealthy(true);
+      ctlogHealth.getStatuses().putAll(ctlogClient.getStatistics());
+      result.addChildCheck(ctlogHealth);
+    }
+
     result.setHealthy(healthy);
 
     return result;
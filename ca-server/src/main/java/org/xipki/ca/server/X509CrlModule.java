@@ -28,11 +28,8 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.security.cert.CRLException;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ScheduledFuture;
@@ -40,24 +37,18 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.bouncycastle.asn1.ASN1GeneralizedTime;
 import org.bouncycastle.asn1.ASN1Integer;
 import org.bouncycastle.asn1.DERGeneralizedTime;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
 import org.bouncycastle.asn1.x509.CRLDistPoint;
-import org.bouncycastle.asn1.x509.CRLReason;
 import org.bouncycastle.asn1.x509.CertificateList;
 import org.bouncycastle.asn1.x509.DistributionPointName;
 import org.bouncycastle.asn1.x509.Extension;
-import org.bouncycastle.asn1.x509.Extensions;
-import org.bouncycastle.asn1.x509.GeneralName;
-import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
 import org.bouncycastle.asn1.x509.IssuingDistributionPoint;
 import org.bouncycastle.asn1.x509.ReasonFlags;
-import org.bouncycastle.cert.CertIOException;
 import org.bouncycastle.cert.X509CRLHolder;
-import org.bouncycastle.cert.X509v2CRLBuilder;
 import org.xipki.audit.AuditEvent;
 import org.xipki.ca.api.OperationException;
 import org.xipki.ca.api.PublicCaInfo;
@@ -237,6 +228,28 @@ public class X509CrlModule extends X509CaModule implements Closeable {
     return getCrl(null);
   }
 
+  /**
+   * Returns the current CRL without parsing it.
+   * @return the current CRL, or {@code null} if no CRL is available.
+   * @throws OperationException
+   *           If error occurs.
+   */
+  public EncodedCrl getCurrentEncodedCrl() throws OperationException {
+    return certstore.getCurrentEncodedCrl(caIdent);
+  }
+
+  /**
+   * Returns the DER-encoded CRL without parsing it.
+   * @param crlNumber
+   *          CRL number. {@code null} for the current CRL.
+   * @return the DER-encoded CRL, or {@code null} if the specified CRL is not available.
+   * @throws OperationException
+   *           If error occurs.
+   */
+  public byte[] getEncodedCrl(BigInteger crlNumber) throws OperationException {
+    return certstore.getEncodedCrl(caIdent, crlNumber);
+  }
+
   public X509CRLHolder getCrl(BigInteger crlNumber) throws OperationException {
     LOG.info("     START getCrl: ca={}, crlNumber={}", caIdent.getName(), crlNumber);
     boolean successful = false;
@@ -409,11 +422,6 @@ public class X509CrlModule extends X509CaModule implements Closeable {
       boolean indirectCrl = (crlSigner != null);
       X500Name crlIssuer = indirectCrl ? crlSigner.getSubject() : pci.getSubject();
 
-      X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(crlIssuer, thisUpdate);
-      if (nextUpdate != null) {
-        crlBuilder.setNextUpdate(nextUpdate);
-      }
-
       final int numEntries = 100;
 
       CrlControl crlControl = caInfo.getCrlControl();
@@ -424,177 +432,122 @@ public class X509CrlModule extends X509CaModule implements Closeable {
       Date notExpiredAt = withExpiredCerts
                           ? new Date(0) : new Date(thisUpdate.getTime() - 600L * MS_PER_SECOND);
 
-      // we have to cache the serial entries to sort them
-      List<CertRevInfoWithSerial> allRevInfos = new LinkedList<>();
-
-      if (deltaCrl) {
-        allRevInfos = certstore.getCertsForDeltaCrl(caIdent, baseCrlNumber, notExpiredAt);
-      } else {
-        long startId = 1;
+      BigInteger crlNumber;
+      byte[] encodedCrl;
+      X509CRLHolder crl;
+      // the streamer sorts the entries by SerialNumber ASC without keeping them all in memory
+      try (CrlStreamer crlStreamer = new CrlStreamer(indirectCrl, pci.getSubject())) {
+        if (deltaCrl) {
+          List<CertRevInfoWithSerial> revInfos =
+              certstore.getCertsForDeltaCrl(caIdent, baseCrlNumber, notExpiredAt);
+          for (CertRevInfoWithSerial revInfo : revInfos) {
+            addCrlEntry(crlStreamer, revInfo);
+          }
+        } else {
+          long startId = 1;
 
-        List<CertRevInfoWithSerial> revInfos;
-        do {
-          revInfos = certstore.getRevokedCerts(caIdent, notExpiredAt, startId, numEntries);
-          allRevInfos.addAll(revInfos);
+          List<CertRevInfoWithSerial> revInfos;
+          do {
+            revInfos = certstore.getRevokedCerts(caIdent, notExpiredAt, startId, numEntries);
 
-          long maxId = 1;
-          for (CertRevInfoWithSerial revInfo : revInfos) {
-            if (revInfo.getId() > maxId) {
-              maxId = revInfo.getId();
-            }
-          } // end for
-          startId = maxId + 1;
-        } while (revInfos.size() >= numEntries); // end do
-
-        if (revInfos != null) { // free the memory
-          revInfos.clear();
+            long maxId = 1;
+            for (CertRevInfoWithSerial revInfo : revInfos) {
+              if (revInfo.getId() > maxId) {
+                maxId = revInfo.getId();
+              }
+              addCrlEntry(crlStreamer, revInfo);
+            } // end for
+            startId = maxId + 1;
+          } while (revInfos.size() >= numEntries); // end do
         }
-      }
 
-      if (indirectCrl && allRevInfos.isEmpty()) {
-        // add dummy entry, see https://github.com/xipki/xipki/issues/189
-        Extensions extensions = new Extensions(createCertificateIssuerExtension(pci.getSubject()));
-        crlBuilder.addCRLEntry(BigInteger.ZERO, new Date(0), extensions);
-        LOG.debug("added cert ca={} serial=0 to the indirect CRL", caIdent);
-      } else {
-        // sort the list by SerialNumber ASC
-        Collections.sort(allRevInfos);
+        if (indirectCrl && crlStreamer.getNumEntries() == 0) {
+          // add dummy entry, see https://github.com/xipki/xipki/issues/189
+          crlStreamer.addEntry(BigInteger.ZERO, CrlReason.UNSPECIFIED, new Date(0), null);
+          LOG.debug("added cert ca={} serial=0 to the indirect CRL", caIdent);
+        }
 
-        boolean isFirstCrlEntry = true;
+        crlNumber = caInfo.nextCrlNumber();
+        event.addEventData(CaAuditConstants.NAME_crl_number, crlNumber);
+        if (baseCrlNumber != null) {
+          event.addEventData(CaAuditConstants.NAME_basecrl_number, baseCrlNumber);
+        }
 
-        for (CertRevInfoWithSerial revInfo : allRevInfos) {
-          CrlReason reason = revInfo.getReason();
-          if (crlControl.isExcludeReason() && reason != CrlReason.REMOVE_FROM_CRL) {
-            reason = CrlReason.UNSPECIFIED;
+        ExtensionsGenerator extnGen = new ExtensionsGenerator();
+        try {
+          // AuthorityKeyIdentifier
+          byte[] akiValues = indirectCrl
+              ? crlSigner.getSigner().getCertificate().getSubjectKeyId()
+              : pci.getSubjectKeyIdentifer();
+          AuthorityKeyIdentifier aki = new AuthorityKeyIdentifier(akiValues);
+          extnGen.addExtension(Extension.authorityKeyIdentifier, false, aki);
+
+          // add extension CRL Number
+          extnGen.addExtension(Extension.cRLNumber, false, new ASN1Integer(crlNumber));
+
+          // IssuingDistributionPoint
+          if (indirectCrl) {
+            IssuingDistributionPoint idp = new IssuingDistributionPoint(
+                (DistributionPointName) null, // distributionPoint,
+                false, // onlyContainsUserCerts,
+                false, // onlyContainsCACerts,
+                (ReasonFlags) null, // onlySomeReasons,
+                indirectCrl, // indirectCRL,
+                false); // onlyContainsAttributeCerts
+
+            extnGen.addExtension(Extension.issuingDistributionPoint, true, idp);
           }
 
-          Date revocationTime = revInfo.getRevocationTime();
-          Date invalidityTime = revInfo.getInvalidityTime();
-
-          switch (crlControl.getInvalidityDateMode()) {
-            case forbidden:
-              invalidityTime = null;
-              break;
-            case optional:
-              break;
-            case required:
-              if (invalidityTime == null) {
-                invalidityTime = revocationTime;
-              }
-              break;
-            default:
-              throw new IllegalStateException(
-                  "unknown TripleState " + crlControl.getInvalidityDateMode());
+          // Delta CRL Indicator
+          if (deltaCrl) {
+            extnGen.addExtension(Extension.deltaCRLIndicator, true,
+                new ASN1Integer(baseCrlNumber));
           }
 
-          BigInteger serial = revInfo.getSerial();
-          LOG.debug("added cert ca={} serial={} to CRL", caIdent, serial);
-
-          if (!indirectCrl || !isFirstCrlEntry) {
-            if (invalidityTime != null) {
-              crlBuilder.addCRLEntry(serial, revocationTime, reason.getCode(),
-                  invalidityTime);
-            } else {
-              crlBuilder.addCRLEntry(serial, revocationTime, reason.getCode());
-            }
-            continue;
+          // freshestCRL
+          List<String> deltaCrlUris = pci.getCaUris().getDeltaCrlUris();
+          if (control.getDeltaCrlIntervals() > 0 && CollectionUtil.isNotEmpty(deltaCrlUris)) {
+            CRLDistPoint cdp = CaUtil.createCrlDistributionPoints(deltaCrlUris, pci.getSubject(),
+                crlIssuer);
+            extnGen.addExtension(Extension.freshestCRL, false, cdp);
           }
 
-          List<Extension> extensions = new ArrayList<>(3);
-          if (reason != CrlReason.UNSPECIFIED) {
-            Extension ext = createReasonExtension(reason.getCode());
-            extensions.add(ext);
+          if (withExpiredCerts) {
+            DERGeneralizedTime statusSince = new DERGeneralizedTime(caCert.getNotBefore());
+            extnGen.addExtension(Extension.expiredCertsOnCRL, false, statusSince);
           }
-          if (invalidityTime != null) {
-            Extension ext = createInvalidityDateExtension(invalidityTime);
-            extensions.add(ext);
-          }
-
-          Extension ext = createCertificateIssuerExtension(pci.getSubject());
-          extensions.add(ext);
-
-          crlBuilder.addCRLEntry(serial, revocationTime,
-              new Extensions(extensions.toArray(new Extension[0])));
-          isFirstCrlEntry = false;
+        } catch (IOException ex) {
+          LogUtil.error(LOG, ex, "extnGen.addExtension");
+          throw new OperationException(INVALID_EXTENSION, ex);
         }
 
-        allRevInfos.clear(); // free the memory
-      }
-
-      BigInteger crlNumber = caInfo.nextCrlNumber();
-      event.addEventData(CaAuditConstants.NAME_crl_number, crlNumber);
-      if (baseCrlNumber != null) {
-        event.addEventData(CaAuditConstants.NAME_basecrl_number, baseCrlNumber);
-      }
+        @SuppressWarnings("resource")
+        ConcurrentContentSigner concurrentSigner = (crlSigner == null)
+            ? caInfo.getSigner(null) : crlSigner.getSigner();
 
-      try {
-        // AuthorityKeyIdentifier
-        byte[] akiValues = indirectCrl
-            ? crlSigner.getSigner().getCertificate().getSubjectKeyId()
-            : pci.getSubjectKeyIdentifer();
-        AuthorityKeyIdentifier aki = new AuthorityKeyIdentifier(akiValues);
-        crlBuilder.addExtension(Extension.authorityKeyIdentifier, false, aki);
-
-        // add extension CRL Number
-        crlBuilder.addExtension(Extension.cRLNumber, false, new ASN1Integer(crlNumber));
-
-        // IssuingDistributionPoint
-        if (indirectCrl) {
-          IssuingDistributionPoint idp = new IssuingDistributionPoint(
-              (DistributionPointName) null, // distributionPoint,
-              false, // onlyContainsUserCerts,
-              false, // onlyContainsCACerts,
-              (ReasonFlags) null, // onlySomeReasons,
-              indirectCrl, // indirectCRL,
-              false); // onlyContainsAttributeCerts
-
-          crlBuilder.addExtension(Extension.issuingDistributionPoint, true, idp);
+        ConcurrentBagEntrySigner signer0;
+        try {
+          signer0 = concurrentSigner.borrowSigner();
+        } catch (NoIdleSignerException ex) {
+          throw new OperationException(SYSTEM_FAILURE,
+              "NoIdleSignerException: " + ex.getMessage());
         }
 
-        // Delta CRL Indicator
-        if (deltaCrl) {
-          crlBuilder.addExtension(Extension.deltaCRLIndicator, true,
-              new ASN1Integer(baseCrlNumber));
+        try {
+          encodedCrl = crlStreamer.build(crlIssuer, thisUpdate, nextUpdate, extnGen.generate(),
+              signer0.value());
+        } finally {
+          concurrentSigner.requiteSigner(signer0);
         }
-
-        // freshestCRL
-        List<String> deltaCrlUris = pci.getCaUris().getDeltaCrlUris();
-        if (control.getDeltaCrlIntervals() > 0 && CollectionUtil.isNotEmpty(deltaCrlUris)) {
-          CRLDistPoint cdp = CaUtil.createCrlDistributionPoints(deltaCrlUris, pci.getSubject(),
-              crlIssuer);
-          crlBuilder.addExtension(Extension.freshestCRL, false, cdp);
-        }
-
-        if (withExpiredCerts) {
-          DERGeneralizedTime statusSince = new DERGeneralizedTime(caCert.getNotBefore());
-          crlBuilder.addExtension(Extension.expiredCertsOnCRL, false, statusSince);
-        }
-      } catch (CertIOException ex) {
-        LogUtil.error(LOG, ex, "crlBuilder.addExtension");
-        throw new OperationException(INVALID_EXTENSION, ex);
-      }
-
-      @SuppressWarnings("resource")
-      ConcurrentContentSigner concurrentSigner = (crlSigner == null)
-          ? caInfo.getSigner(null) : crlSigner.getSigner();
-
-      ConcurrentBagEntrySigner signer0;
-      try {
-        signer0 = concurrentSigner.borrowSigner();
-      } catch (NoIdleSignerException ex) {
-        throw new OperationException(SYSTEM_FAILURE, "NoIdleSignerException: " + ex.getMessage());
-      }
-
-      X509CRLHolder crl;
-      try {
-        crl = crlBuilder.build(signer0.value());
-      } finally {
-        concurrentSigner.requiteSigner(signer0);
+        crl = CrlStreamer.parse(encodedCrl);
+      } catch (IOException ex) {
+        LogUtil.error(LOG, ex, "could not build CRL");
+        throw new OperationException(CRL_FAILURE, ex);
       }
 
       caInfo.getCaEntry().setNextCrlNumber(crlNumber.longValue() + 1);
       caManager.commitNextCrlNo(caIdent, caInfo.getCaEntry().getNextCrlNumber());
-      publisher.publishCrl(crl);
+      publisher.publishCrl(crl, encodedCrl);
 
       successful = true;
       LOG.info("SUCCESSFUL generateCrl: ca={}, crlNumber={}, thisUpdate={}", caIdent.getName(),
@@ -612,6 +565,38 @@ public class X509CrlModule extends X509CaModule implements Closeable {
     }
   } // method generateCrl
 
+  private void addCrlEntry(CrlStreamer crlStreamer, CertRevInfoWithSerial revInfo)
+      throws IOException {
+    CrlControl crlControl = caInfo.getCrlControl();
+    CrlReason reason = revInfo.getReason();
+    if (crlControl.isExcludeReason() && reason != CrlReason.REMOVE_FROM_CRL) {
+      reason = CrlReason.UNSPECIFIED;
+    }
+
+    Date revocationTime = revInfo.getRevocationTime();
+    Date invalidityTime = revInfo.getInvalidityTime();
+
+    switch (crlControl.getInvalidityDateMode()) {
+      case forbidden:
+        invalidityTime = null;
+        break;
+      case optional:
+        break;
+      case required:
+        if (invalidityTime == null) {
+          invalidityTime = revocationTime;
+        }
+        break;
+      default:
+        throw new IllegalStateException(
+            "unknown TripleState " + crlControl.getInvalidityDateMode());
+    }
+
+    BigInteger serial = revInfo.getSerial();
+    LOG.debug("added cert ca={} serial={} to CRL", caIdent, serial);
+    crlStreamer.addEntry(serial, reason, revocationTime, invalidityTime);
+  } // method addCrlEntry
+
   /**
    * Gets the nearest scheduled CRL generation time which is not after the given {@code time}.
    * @param time the reference time
@@ -659,31 +644,4 @@ public class X509CrlModule extends X509CaModule implements Closeable {
     return healthy;
   }
 
-  private static Extension createReasonExtension(int reasonCode) {
-    CRLReason crlReason = CRLReason.lookup(reasonCode);
-    try {
-      return new Extension(Extension.reasonCode, false, crlReason.getEncoded());
-    } catch (IOException ex) {
-      throw new IllegalArgumentException("error encoding reason: " + ex.getMessage(), ex);
-    }
-  }
-
-  private static Extension createInvalidityDateExtension(Date invalidityDate) {
-    try {
-      ASN1GeneralizedTime asnTime = new ASN1GeneralizedTime(invalidityDate);
-      return new Extension(Extension.invalidityDate, false, asnTime.getEncoded());
-    } catch (IOException ex) {
-      throw new IllegalArgumentException("error encoding reason: " + ex.getMessage(), ex);
-    }
-  }
-
-  private static Extension createCertificateIssuerExtension(X500Name certificateIssuer) {
-    try {
-      GeneralNames generalNames = new GeneralNames(new GeneralName(certificateIssuer));
-      return new Extension(Extension.certificateIssuer, true, generalNames.getEncoded());
-    } catch (IOException ex) {
-      throw new IllegalArgumentException("error encoding reason: " + ex.getMessage(), ex);
-    }
-  }
-
 }
@@ -21,6 +21,13 @@ import static org.xipki.util.Args.notNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.bouncycastle.cert.X509CRLHolder;
 import org.xipki.ca.api.CertWithDbId;
@@ -46,6 +53,120 @@ import org.xipki.util.LogUtil;
 
 class X509PublisherModule extends X509CaModule {
 
+  /**
+   * Drains the PUBLISHQUEUE entries of one publisher as soon as new entries are added. If
+   * the publisher fails, the drain is retried with exponential backoff. The periodic
+   * publishing of the queue in CaManagerImpl remains as safety net, e.g. for entries added by
+   * other CA instances or before a restart.
+   */
+  private class PublishQueueWorker implements Runnable {
+
+    private static final long MIN_BACKOFF_MS = 1000;
+
+    private static final long MAX_BACKOFF_MS = 120_000;
+
+    private final NameId publisherIdent;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    // time in ms when the oldest not yet published entry has been added, 0 if there is none.
+    private final AtomicLong pendingSince = new AtomicLong(0);
+
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    private volatile long lastLag;
+
+    // guarded by drainLock
+    private long backoff;
+
+    PublishQueueWorker(NameId publisherIdent) {
+      this.publisherIdent = publisherIdent;
+    }
+
+    void signal() {
+      pendingSince.compareAndSet(0, System.currentTimeMillis());
+      schedule(0);
+    }
+
+    long getLag() {
+      long since = pendingSince.get();
+      return since == 0 ? 0 : System.currentTimeMillis() - since;
+    }
+
+    long getLastLag() {
+      return lastLag;
+    }
+
+    @Override
+    public void run() {
+      scheduled.set(false);
+
+      IdentifiedCertPublisher publisher = null;
+      for (IdentifiedCertPublisher p : publishers()) {
+        if (p.getIdent().getId().equals(publisherIdent.getId())) {
+          publisher = p;
+          break;
+        }
+      }
+
+      if (publisher == null) {
+        // publisher has been removed from the CA
+        pendingSince.set(0);
+        workers.remove(publisherIdent.getId());
+        return;
+      }
+
+      drain(publisher);
+    } // method run
+
+    boolean drain(IdentifiedCertPublisher publisher) {
+      drainLock.lock();
+      try {
+        long since = pendingSince.getAndSet(0);
+        boolean successful = publishCertsInQueue0(publisher);
+        if (successful) {
+          backoff = 0;
+          if (since != 0) {
+            lastLag = System.currentTimeMillis() - since;
+          }
+        } else {
+          pendingSince.compareAndSet(0, since == 0 ? System.currentTimeMillis() : since);
+          backoff = (backoff == 0) ? MIN_BACKOFF_MS : Math.min(backoff * 2, MAX_BACKOFF_MS);
+          LOG.warn("could not publish certificates in PUBLISHQUEUE to publisher {}, "
+              + "retry in {} ms", publisherIdent.getName(), backoff);
+          schedule(backoff);
+        }
+        return successful;
+      } finally {
+        drainLock.unlock();
+      }
+    } // method drain
+
+    private void schedule(long delayMs) {
+      if (!scheduled.compareAndSet(false, true)) {
+        return;
+      }
+
+      ScheduledThreadPoolExecutor executor = caManager.getScheduledThreadPoolExecutor();
+      if (executor == null) {
+        // the periodic publishing will process the queue.
+        scheduled.set(false);
+        return;
+      }
+
+      try {
+        executor.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException ex) {
+        // CA system is being shutdown or restarted.
+        scheduled.set(false);
+      }
+    } // method schedule
+
+  } // class PublishQueueWorker
+
+  private final ConcurrentHashMap<Integer, PublishQueueWorker> workers =
+      new ConcurrentHashMap<>();
+
   private final CertStore certstore;
 
   private final CaIdNameMap caIdNameMap;
@@ -109,6 +230,7 @@ class X509PublisherModule extends X509CaModule {
         LogUtil.error(LOG, th, "could not add entry to PublishQueue");
         return 2;
       }
+      getWorker(publisher).signal();
     } // end for
 
     return 0;
@@ -229,6 +351,15 @@ class X509PublisherModule extends X509CaModule {
 
   boolean publishCertsInQueue(IdentifiedCertPublisher publisher) {
     notNull(publisher, "publisher");
+    return getWorker(publisher).drain(publisher);
+  }
+
+  private PublishQueueWorker getWorker(IdentifiedCertPublisher publisher) {
+    NameId ident = publisher.getIdent();
+    return workers.computeIfAbsent(ident.getId(), k -> new PublishQueueWorker(ident));
+  }
+
+  private boolean publishCertsInQueue0(IdentifiedCertPublisher publisher) {
     final int numEntries = 500;
 
     while (true) {
@@ -244,38 +375,41 @@ class X509PublisherModule extends X509CaModule {
         break;
       }
 
+      List<CertificateInfo> certInfos = new ArrayList<>(certIds.size());
       for (Long certId : certIds) {
-        CertificateInfo certInfo;
-
         try {
-          certInfo = certstore.getCertForId(caIdent, caCert, certId, caIdNameMap);
+          certInfos.add(certstore.getCertForId(caIdent, caCert, certId, caIdNameMap));
         } catch (OperationException ex) {
           LogUtil.error(LOG, ex);
           return false;
         }
+      }
 
-        boolean successful = publisher.certificateAdded(certInfo);
-        if (!successful) {
-          LOG.error("republishing certificate id={} failed", certId);
-          return false;
-        }
-
+      int numPublished = publisher.certificatesAdded(certInfos);
+      if (numPublished > 0) {
+        List<Long> publishedIds = certIds.subList(0, numPublished);
         try {
-          certstore.removeFromPublishQueue(publisher.getIdent(), certId);
+          certstore.removeFromPublishQueue(publisher.getIdent(), publishedIds);
         } catch (OperationException ex) {
-          LogUtil.warn(LOG, ex, "could not remove republished cert id=" + certId
-              + " and publisher=" + publisher.getIdent().getName());
-          continue;
+          LogUtil.error(LOG, ex, "could not remove " + numPublished
+              + " republished certs for publisher=" + publisher.getIdent().getName());
+          return false;
         }
-      } // end for
+      }
+
+      if (numPublished < certIds.size()) {
+        // the remaining certificates stay in the queue
+        LOG.error("republishing certificate id={} failed", certIds.get(numPublished));
+        return false;
+      }
     } // end while
 
     return true;
-  } // method publishCertsInQueue
+  } // method publishCertsInQueue0
 
-  boolean publishCrl(X509CRLHolder crl) {
+  boolean publishCrl(X509CRLHolder crl, byte[] encodedCrl) {
     try {
-      certstore.addCrl(caIdent, crl);
+      certstore.addCrl(caIdent, crl, encodedCrl);
     } catch (Exception ex) {
       LOG.error("could not add CRL ca={}, thisUpdate={}: {}, ",
           caIdent.getName(), crl.getThisUpdate(), ex.getMessage());
@@ -343,6 +477,7 @@ class X509PublisherModule extends X509CaModule {
       Long certId = revokedCert.getCert().getCertId();
       try {
         certstore.addToPublishQueue(publisher.getIdent(), certId.longValue(), caIdent);
+        getWorker(publisher).signal();
       } catch (Throwable th) {
         LogUtil.error(LOG, th, "could not add entry to PublishQueue");
       }
@@ -369,6 +504,7 @@ class X509PublisherModule extends X509CaModule {
       Long certId = unrevokedCert.getCertId();
       try {
         certstore.addToPublishQueue(publisher.getIdent(), certId.longValue(), caIdent);
+        getWorker(publisher).signal();
       } catch (Throwable th) {
         LogUtil.error(LOG, th, "could not add entry to PublishQueue");
       }
@@ -420,6 +556,12 @@ class X509PublisherModule extends X509CaModule {
       HealthCheckResult publisherHealth = new HealthCheckResult();
       publisherHealth.setName("Publisher");
       publisherHealth.setHealthy(publisher.isHealthy());
+
+      // lag (in ms) between adding entries to the PUBLISHQUEUE and publishing them
+      PublishQueueWorker worker = workers.get(publisher.getIdent().getId());
+      publisherHealth.getStatuses().put("publishLag", worker == null ? 0 : worker.getLag());
+      publisherHealth.getStatuses().put("lastPublishLag",
+          worker == null ? 0 : worker.getLastLag());
       parentResult.addChildCheck(publisherHealth);
     }
     return healthy;
@@ -30,7 +30,6 @@ import static org.xipki.util.Args.positive;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.security.cert.CRLException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -41,7 +40,9 @@ import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bouncycastle.asn1.ASN1Integer;
@@ -66,6 +67,7 @@ import org.xipki.ca.api.mgmt.entry.CaHasUserEntry;
 import org.xipki.ca.server.CaIdNameMap;
 import org.xipki.ca.server.CaUtil;
 import org.xipki.ca.server.CertRevInfoWithSerial;
+import org.xipki.ca.server.EncodedCrl;
 import org.xipki.ca.server.PasswordHash;
 import org.xipki.ca.server.UniqueIdGenerator;
 import org.xipki.datasource.DataAccessException;
@@ -76,8 +78,8 @@ import org.xipki.security.HashAlgo;
 import org.xipki.security.X509Cert;
 import org.xipki.security.util.X509Util;
 import org.xipki.util.Base64;
+import org.xipki.util.ConcurrentCache;
 import org.xipki.util.LogUtil;
-import org.xipki.util.LruCache;
 import org.xipki.util.StringUtil;
 
 /**
@@ -199,24 +201,58 @@ public class CertStore extends CertStoreBase {
 
   private final String sqlSelectUnrevokedSn;
 
-  private final LruCache<Integer, String> cacheSqlCidFromPublishQueue = new LruCache<>(5);
+  private final ConcurrentCache<Integer, String> cacheSqlCidFromPublishQueue
+      = new ConcurrentCache<>(5);
 
-  private final LruCache<Integer, String> cacheSqlExpiredSerials = new LruCache<>(5);
+  private final ConcurrentCache<Integer, String> cacheSqlExpiredSerials = new ConcurrentCache<>(5);
 
-  private final LruCache<Integer, String> cacheSqlSuspendedSerials = new LruCache<>(5);
+  private final ConcurrentCache<Integer, String> cacheSqlSuspendedSerials
+      = new ConcurrentCache<>(5);
 
-  private final LruCache<Integer, String> cacheSqlRevokedCerts = new LruCache<>(5);
+  private final ConcurrentCache<Integer, String> cacheSqlRevokedCerts = new ConcurrentCache<>(5);
 
-  private final LruCache<Integer, String> cacheSqlSerials = new LruCache<>(5);
+  private final ConcurrentCache<Integer, String> cacheSqlSerials = new ConcurrentCache<>(5);
 
-  private final LruCache<Integer, String> cacheSqlSerialsRevoked = new LruCache<>(5);
+  private final ConcurrentCache<Integer, String> cacheSqlSerialsRevoked = new ConcurrentCache<>(5);
 
   private final UniqueIdGenerator idGenerator;
 
   private final AtomicInteger cachedCrlId = new AtomicInteger(0);
 
+  // the current CRL per CA (CA id as key)
+  private final ConcurrentHashMap<Integer, EncodedCrl> currentCrls = new ConcurrentHashMap<>();
+
+  // null if the group commit is disabled
+  private final GroupCommitWriter groupCommitWriter;
+
+  // null if the cache of user password verifications is disabled
+  private UserAuthCache userAuthCache;
+
   public CertStore(DataSourceWrapper datasource, UniqueIdGenerator idGenerator)
       throws DataAccessException, CaMgmtException {
+    this(datasource, idGenerator, 0, 0);
+  }
+
+  /**
+   * Constructor.
+   * @param datasource
+   *          Datasource of the CA database.
+   * @param idGenerator
+   *          Generator of the database ids.
+   * @param groupCommitSize
+   *          Max. number of certificates, publish queue entries and request-certificate
+   *          associations written in one transaction. Values less than 2 disable the group
+   *          commit, and every row is written in its own transaction.
+   * @param groupCommitDelayMs
+   *          Max. time in milliseconds to wait for further rows before a group is committed.
+   * @throws DataAccessException
+   *          If database error occurs.
+   * @throws CaMgmtException
+   *          If other error occurs.
+   */
+  public CertStore(DataSourceWrapper datasource, UniqueIdGenerator idGenerator,
+      int groupCommitSize, int groupCommitDelayMs)
+      throws DataAccessException, CaMgmtException {
     super(datasource);
 
     this.idGenerator = notNull(idGenerator, "idGenerator");
@@ -236,15 +272,69 @@ public class CertStore extends CertStoreBase {
     this.sqlReqIdForSerial = buildSelectFirstSql("REQCERT.RID as REQ_ID FROM REQCERT INNER JOIN "
         + "CERT ON CERT.CA_ID=? AND CERT.SN=? AND REQCERT.CID=CERT.ID");
     this.sqlReqForId = buildSelectFirstSql("DATA FROM REQUEST WHERE ID=?");
-    this.sqlCrl = buildSelectFirstSql("THISUPDATE DESC", "THISUPDATE,CRL FROM CRL WHERE CA_ID=?");
+    this.sqlCrl = buildSelectFirstSql("THISUPDATE DESC",
+        "THISUPDATE,NEXTUPDATE,CRL FROM CRL WHERE CA_ID=?");
     this.sqlCrlWithNo = buildSelectFirstSql("THISUPDATE DESC",
         "THISUPDATE,CRL FROM CRL WHERE CA_ID=? AND CRL_NO=?");
 
     this.sqlSelectUnrevokedSn = buildSelectFirstSql("LUPDATE FROM CERT WHERE REV=0 AND SN=?");
     final String prefix = "SN,LUPDATE FROM CERT WHERE REV=0 AND SN";
     this.sqlSelectUnrevokedSn100 = buildArraySql(datasource, prefix, 100);
+
+    this.groupCommitWriter = groupCommitSize < 2 ? null
+        : new GroupCommitWriter(this, datasource, groupCommitSize, groupCommitDelayMs);
   } // constructor
 
+  /**
+   * Enables the cache of successful user password verifications.
+   * @param ttlSeconds
+   *          Time in seconds a successful verification is cached. Values less than 1 disable
+   *          the cache.
+   * @param maxSize
+   *          Max. number of cached users.
+   */
+  public void setUserAuthCache(int ttlSeconds, int maxSize) {
+    this.userAuthCache = (ttlSeconds < 1 || maxSize < 1) ? null
+        : new UserAuthCache(ttlSeconds, maxSize);
+  }
+
+  /**
+   * Removes the cached password verification of the given user.
+   * @param user
+   *          User name. If {@code null}, the cached verifications of all users are removed.
+   */
+  public void invalidateUserAuthCache(String user) {
+    if (userAuthCache != null) {
+      if (user == null) {
+        userAuthCache.invalidateAll();
+      } else {
+        userAuthCache.invalidate(user.toLowerCase());
+      }
+    }
+  } // method invalidateUserAuthCache
+
+  public Map<String, Object> getUserAuthCacheStatistics() {
+    return userAuthCache == null ? null : userAuthCache.getStatistics();
+  }
+
+  public void close() {
+    if (groupCommitWriter != null) {
+      groupCommitWriter.close();
+    }
+  } // method close
+
+  private void execInsert(String sql, SqlColumn2... params) throws OperationException {
+    if (groupCommitWriter == null) {
+      execUpdatePrepStmt0(sql, params);
+    } else {
+      try {
+        groupCommitWriter.write(sql, params);
+      } catch (DataAccessException ex) {
+        throw new OperationException(DATABASE_FAILURE, ex);
+      }
+    }
+  } // method execInsert
+
   public boolean addCert(CertificateInfo certInfo) {
     notNull(certInfo, "certInfo");
 
@@ -278,7 +368,7 @@ public class CertStore extends CertStoreBase {
       X509Cert cert0 = cert.getCert();
       boolean isEeCert = cert0.getBasicConstraints() == -1;
 
-      execUpdatePrepStmt0(dbSchemaVersion < 5 ? SQL_ADD_CERT_V4 : SQL_ADD_CERT,
+      execInsert(dbSchemaVersion < 5 ? SQL_ADD_CERT_V4 : SQL_ADD_CERT,
           col2Long(certId), col2Long(System.currentTimeMillis() / 1000), // currentTimeSeconds
           col2Str(cert0.getSerialNumber().toString(16)),
           col2Str(subjectText),  col2Long(fpSubject), col2Long(fpReqSubject),
@@ -307,7 +397,7 @@ public class CertStore extends CertStoreBase {
   public void addToPublishQueue(NameId publisher, long certId, NameId ca)
       throws OperationException {
     notNull(ca, "ca");
-    execUpdatePrepStmt0(SQL_INSERT_PUBLISHQUEUE,
+    execInsert(SQL_INSERT_PUBLISHQUEUE,
         col2Int(publisher.getId()), col2Int(ca.getId()), col2Long(certId));
   } // method addToPublishQueue
 
@@ -315,6 +405,27 @@ public class CertStore extends CertStoreBase {
     execUpdatePrepStmt0(SQL_REMOVE_PUBLISHQUEUE, col2Int(publisher.getId()), col2Long(certId));
   } // method removeFromPublishQueue
 
+  public void removeFromPublishQueue(NameId publisher, List<Long> certIds)
+      throws OperationException {
+    final String sql = SQL_REMOVE_PUBLISHQUEUE;
+    PreparedStatement ps = null;
+    try {
+      ps = datasource.prepareStatement(sql);
+      for (Long certId : certIds) {
+        ps.setInt(1, publisher.getId());
+        ps.setLong(2, certId);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    } catch (SQLException ex) {
+      throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex));
+    } catch (DataAccessException ex) {
+      throw new OperationException(DATABASE_FAILURE, ex);
+    } finally {
+      datasource.releaseResources(ps, null);
+    }
+  } // method removeFromPublishQueue
+
   public void clearPublishQueue(NameId ca, NameId publisher) throws OperationException {
     StringBuilder sqlBuilder = new StringBuilder(80);
     sqlBuilder.append("DELETE FROM PUBLISHQUEUE");
@@ -361,8 +472,9 @@ public class CertStore extends CertStoreBase {
         col2Int(ca.getId()), col2Int(deltaCrl ? 1 : 0));
   } // method getThisUpdateOfCurrentCrl
 
-  public void addCrl(NameId ca, X509CRLHolder crl) throws OperationException, CRLException {
-    notNulls(ca, "ca", crl, "crl");
+  public void addCrl(NameId ca, X509CRLHolder crl, byte[] encodedCrl)
+      throws OperationException {
+    notNulls(ca, "ca", crl, "crl", encodedCrl, "encodedCrl");
 
     Extensions extns = crl.getExtensions();
     byte[] extnValue = X509Util.getCoreExtValue(extns, Extension.cRLNumber);
@@ -381,18 +493,19 @@ public class CertStore extends CertStoreBase {
     int crlId = Math.max(cachedCrlId.get(), currentMaxCrlId) + 1;
     cachedCrlId.set(crlId);
 
-    String b64Crl;
-    try {
-      b64Crl = Base64.encodeToString(crl.getEncoded());
-    } catch (IOException ex) {
-      throw new CRLException(ex.getMessage(), ex);
-    }
+    String b64Crl = Base64.encodeToString(encodedCrl);
 
+    long thisUpdate = crl.getThisUpdate().getTime() / 1000;
+    Long nextUpdate = getDateSeconds(crl.getNextUpdate());
     execUpdatePrepStmt0(sql, col2Int(crlId), col2Int(ca.getId()), col2Long(crlNumber),
-        col2Long(crl.getThisUpdate().getTime() / 1000),
-        col2Long(getDateSeconds(crl.getNextUpdate())), col2Bool((baseCrlNumber != null)),
+        col2Long(thisUpdate), col2Long(nextUpdate), col2Bool((baseCrlNumber != null)),
         // in this version we set CRL_SCOPE to fixed value 0
         col2Long(baseCrlNumber), col2Int(0), col2Str(b64Crl));
+
+    // replace the cached current CRL
+    EncodedCrl newCrl = new EncodedCrl(encodedCrl, thisUpdate, nextUpdate);
+    currentCrls.merge(ca.getId(), newCrl,
+        (oldCrl, value) -> value.getThisUpdate() >= oldCrl.getThisUpdate() ? value : oldCrl);
   } // method addCrl
 
   public CertWithRevocationInfo revokeCert(NameId ca, BigInteger serialNumber,
@@ -573,7 +686,7 @@ public class CertStore extends CertStoreBase {
       boolean onlyRevoked) throws OperationException {
     notNulls(ca, "ca", numEntries, "numEntries");
 
-    LruCache<Integer, String> cache = onlyRevoked ? cacheSqlSerialsRevoked : cacheSqlSerials;
+    ConcurrentCache<Integer, String> cache = onlyRevoked ? cacheSqlSerialsRevoked : cacheSqlSerials;
     String sql = cache.get(numEntries);
     if (sql == null) {
       String coreSql = "ID,SN FROM CERT WHERE ID>? AND CA_ID=?";
@@ -647,30 +760,67 @@ public class CertStore extends CertStoreBase {
     return ret;
   } // method getExpiredSerialNumbers
 
-  private byte[] getEncodedCrl(NameId ca) throws OperationException {
+  /**
+   * Returns the current CRL of the given CA. The DER-encoded CRL is cached per CA, and replaced
+   * by {@link #addCrl(NameId, X509CRLHolder, byte[])}. It is loaded from the database only if
+   * it is not cached, has been removed by {@link #clearCurrentCrls()}, or is expired.
+   * @param ca
+   *          CA identifier. Must not be {@code null}.
+   * @return the current CRL, or {@code null} if the CA has no CRL.
+   * @throws OperationException
+   *           If database error occurs.
+   */
+  public EncodedCrl getCurrentEncodedCrl(NameId ca) throws OperationException {
     notNull(ca, "ca");
 
+    EncodedCrl cached = currentCrls.get(ca.getId());
+    if (cached != null) {
+      // after the nextUpdate a newer CRL may have been stored by another CA instance
+      Long nextUpdate = cached.getNextUpdate();
+      if (nextUpdate == null || nextUpdate > System.currentTimeMillis() / 1000) {
+        return cached;
+      }
+    }
+
     List<ResultRow> rows = execQueryPrepStmt0(sqlCrl, col2Int(ca.getId()));
+    ResultRow currentRow = null;
     long currentThisUpdate = 0;
 
-    String b64Crl = null;
     // iterate all entries to make sure that the latest CRL will be returned
     for (ResultRow rs : rows) {
       long thisUpdate = getLong(rs, "THISUPDATE");
       if (thisUpdate >= currentThisUpdate) {
-        b64Crl = rs.getString("CRL");
+        currentRow = rs;
         currentThisUpdate = thisUpdate;
       }
     }
 
-    return (b64Crl == null) ? null : Base64.decodeFast(b64Crl);
-  } // method getEncodedCrl
+    if (currentRow == null) {
+      currentCrls.remove(ca.getId());
+      return null;
+    }
+
+    long nextUpdate = getLong(currentRow, "NEXTUPDATE");
+    EncodedCrl crl = new EncodedCrl(Base64.decodeFast(currentRow.getString("CRL")),
+        currentThisUpdate, nextUpdate == 0 ? null : nextUpdate);
+    currentCrls.put(ca.getId(), crl);
+    return crl;
+  } // method getCurrentEncodedCrl
+
+  /**
+   * Removes the cached current CRLs of all CAs, so that CRLs stored by another CA instance are
+   * loaded on the next request.
+   */
+  public void clearCurrentCrls() {
+    currentCrls.clear();
+  }
 
   public byte[] getEncodedCrl(NameId ca, BigInteger crlNumber) throws OperationException {
     notNull(ca, "ca");
 
     if (crlNumber == null) {
-      return getEncodedCrl(ca);
+      EncodedCrl crl = getCurrentEncodedCrl(ca);
+      return crl == null ? null : crl.getEncoded();
     }
 
     ResultRow rs = execQuery1PrepStmt0(sqlCrlWithNo,
@@ -913,6 +1063,16 @@ public class CertStore extends CertStoreBase {
   } // method listCerts
 
   public NameId authenticateUser(String user, byte[] password) throws OperationException {
+    UserAuthCache cache = userAuthCache;
+    long cacheGeneration = 0;
+    if (cache != null) {
+      cacheGeneration = cache.generation();
+      NameId ident = cache.get(user, password);
+      if (ident != null) {
+        return ident;
+      }
+    }
+
     final String sql = sqlActiveUserInfoForName;
 
     ResultRow rs = execQuery1PrepStmt0(sql, col2Str(user));
@@ -927,8 +1087,15 @@ public class CertStore extends CertStoreBase {
       return null;
     }
 
-    boolean valid = PasswordHash.validatePassword(password, expPasswordText);
-    return valid ? new NameId(id, user) : null;
+    if (!PasswordHash.validatePassword(password, expPasswordText)) {
+      return null;
+    }
+
+    NameId ident = new NameId(id, user);
+    if (cache != null) {
+      cache.put(ident, password, cacheGeneration);
+    }
+    return ident;
   } // method authenticateUser
 
   public String getUsername(int id) throws OperationException {
@@ -1181,7 +1348,7 @@ public class CertStore extends CertStoreBase {
 
   public void addRequestCert(long requestId, long certId) throws OperationException {
     long id = idGenerator.nextId();
-    execUpdatePrepStmt0(SQL_ADD_REQCERT, col2Long(id), col2Long(requestId), col2Long(certId));
+    execInsert(SQL_ADD_REQCERT, col2Long(id), col2Long(requestId), col2Long(certId));
   } // method addRequestCert
 
   private static Long getDateSeconds(Date date) {
@@ -0,0 +1,290 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server.db;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ca.server.db.QueryExecutor.SqlColumn2;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+
+/**
+ * Collects the INSERT statements of concurrent callers and writes them with JDBC batches
+ * in one transaction. Each caller blocks until the transaction containing its row has been
+ * committed. If the batch fails, the rows are written one by one, so that only the callers
+ * whose rows are really bad get an exception.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+class GroupCommitWriter implements Closeable {
+
+  private static class Entry {
+
+    private final String sql;
+
+    private final SqlColumn2[] params;
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    Entry(String sql, SqlColumn2[] params) {
+      this.sql = sql;
+      this.params = params;
+    }
+
+  } // class Entry
+
+  private static final Logger LOG = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+  private final QueryExecutor executor;
+
+  private final DataSourceWrapper datasource;
+
+  private final int maxBatchSize;
+
+  private final long maxDelayNanos;
+
+  private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+
+  private final Thread writerThread;
+
+  private volatile boolean running = true;
+
+  /**
+   * Constructor.
+   * @param executor
+   *          Executor to write the rows one by one if the batch fails.
+   * @param datasource
+   *          Datasource.
+   * @param maxBatchSize
+   *          Max. number of rows written in one transaction.
+   * @param maxDelayMs
+   *          Max. time in milliseconds to wait for further rows before the transaction is
+   *          committed. If 0, all rows which arrived while the previous transaction was being
+   *          committed are written together.
+   */
+  GroupCommitWriter(QueryExecutor executor, DataSourceWrapper datasource, int maxBatchSize,
+      int maxDelayMs) {
+    this.executor = Args.notNull(executor, "executor");
+    this.datasource = Args.notNull(datasource, "datasource");
+    this.maxBatchSize = Args.min(maxBatchSize, "maxBatchSize", 2);
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Args.notNegative(maxDelayMs, "maxDelayMs"));
+
+    this.writerThread = new Thread(this::run, "certstore-group-commit");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  } // constructor
+
+  /**
+   * Writes the row and waits until it has been committed.
+   * @param sql
+   *          The INSERT statement.
+   * @param params
+   *          Parameters of the statement.
+   * @throws DataAccessException
+   *          If the row could not be written.
+   */
+  void write(String sql, SqlColumn2... params) throws DataAccessException {
+    if (!running) {
+      executor.execUpdatePrepStmt(sql, params);
+      return;
+    }
+
+    Entry entry = new Entry(sql, params);
+    queue.add(entry);
+    if (!running && queue.remove(entry)) {
+      // close() has been called concurrently and the entry will not be taken by the writer.
+      executor.execUpdatePrepStmt(sql, params);
+      return;
+    }
+
+    try {
+      entry.future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new DataAccessException("interrupted while waiting for the commit", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof DataAccessException) {
+        throw (DataAccessException) cause;
+      }
+      throw new DataAccessException(cause.getMessage(), cause);
+    }
+  } // method write
+
+  @Override
+  public void close() {
+    running = false;
+    writerThread.interrupt();
+    try {
+      writerThread.join();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    // rows added concurrently to close()
+    List<Entry> batch = new ArrayList<>();
+    while (queue.drainTo(batch, maxBatchSize) > 0) {
+      flush(batch);
+      batch.clear();
+    }
+  } // method close
+
+  private void run() {
+    List<Entry> batch = new ArrayList<>(maxBatchSize);
+    while (running) {
+      try {
+        Entry first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+
+        batch.add(first);
+        queue.drainTo(batch, maxBatchSize - 1);
+
+        if (maxDelayNanos > 0) {
+          long deadline = System.nanoTime() + maxDelayNanos;
+          while (batch.size() < maxBatchSize) {
+            long wait = deadline - System.nanoTime();
+            Entry next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+              break;
+            }
+            batch.add(next);
+          }
+        }
+      } catch (InterruptedException ex) {
+        // close() has been called, the rows collected so far are written below.
+      }
+
+      if (!batch.isEmpty()) {
+        flush(batch);
+        batch.clear();
+      }
+    }
+  } // method run
+
+  private void flush(List<Entry> batch) {
+    try {
+      writeBatch(batch);
+      for (Entry entry : batch) {
+        entry.future.complete(null);
+      }
+      return;
+    } catch (Throwable th) {
+      if (batch.size() == 1) {
+        Entry entry = batch.get(0);
+        entry.future.completeExceptionally(toDataAccessException(entry.sql, th));
+        return;
+      }
+
+      LogUtil.warn(LOG, th, "could not write " + batch.size() + " rows in batch, write them "
+          + "one by one");
+    }
+
+    for (Entry entry : batch) {
+      try {
+        executor.execUpdatePrepStmt(entry.sql, entry.params);
+        entry.future.complete(null);
+      } catch (Throwable th) {
+        entry.future.completeExceptionally(toDataAccessException(entry.sql, th));
+      }
+    }
+  } // method flush
+
+  private void writeBatch(List<Entry> batch) throws DataAccessException, SQLException {
+    // keep the order of first appearance, so that referenced rows are inserted first.
+    Map<String, List<Entry>> bySql = new LinkedHashMap<>();
+    for (Entry entry : batch) {
+      List<Entry> entries = bySql.get(entry.sql);
+      if (entries == null) {
+        entries = new ArrayList<>(batch.size());
+        bySql.put(entry.sql, entries);
+      }
+      entries.add(entry);
+    }
+
+    Connection conn = datasource.getConnection();
+    boolean succ = false;
+    try {
+      conn.setAutoCommit(false);
+
+      for (Map.Entry<String, List<Entry>> m : bySql.entrySet()) {
+        String sql = m.getKey();
+        PreparedStatement ps = datasource.prepareStatement(conn, sql);
+        try {
+          for (Entry entry : m.getValue()) {
+            QueryExecutor.bindParams(ps, entry.params);
+            ps.addBatch();
+          }
+          ps.executeBatch();
+        } catch (SQLException ex) {
+          throw datasource.translate(sql, ex);
+        } finally {
+          datasource.releaseResources(ps, null, false);
+        }
+      }
+
+      conn.commit();
+      succ = true;
+    } finally {
+      if (!succ) {
+        try {
+          conn.rollback();
+        } catch (SQLException ex) {
+          LOG.error("could not rollback: {}", ex.getMessage());
+        }
+      }
+
+      try {
+        conn.setAutoCommit(true);
+      } catch (SQLException ex) {
+        LOG.error("could not set autoCommit to true: {}", ex.getMessage());
+      }
+      datasource.returnConnection(conn);
+    }
+  } // method writeBatch
+
+  private DataAccessException toDataAccessException(String sql, Throwable th) {
+    if (th instanceof DataAccessException) {
+      return (DataAccessException) th;
+    } else if (th instanceof SQLException) {
+      return datasource.translate(sql, (SQLException) th);
+    } else {
+      return new DataAccessException(th.getMessage(), th);
+    }
+  } // method toDataAccessException
+
+}
@@ -0,0 +1,186 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xipki.ca.server.db;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.xipki.ca.api.NameId;
+import org.xipki.util.Args;
+import org.xipki.util.StringUtil;
+
+/**
+ * Cache of the successful user password verifications. The presented password is never stored,
+ * only its HMAC under a random key which lives in memory of this instance only. An entry
+ * expires after the TTL, and is removed when the user is changed or removed.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+class UserAuthCache {
+
+  private static class Entry {
+
+    private final NameId ident;
+
+    private final byte[] passwordMac;
+
+    private final long expiresAt;
+
+    Entry(NameId ident, byte[] passwordMac, long expiresAt) {
+      this.ident = ident;
+      this.passwordMac = passwordMac;
+      this.expiresAt = expiresAt;
+    }
+
+  } // class Entry
+
+  private final byte[] macKey = new byte[32];
+
+  private final long ttlNanos;
+
+  private final int maxSize;
+
+  // user name as key
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  // incremented on each invalidation, to ignore the verifications started before it.
+  private final AtomicLong generation = new AtomicLong();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  UserAuthCache(int ttlSeconds, int maxSize) {
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(Args.positive(ttlSeconds, "ttlSeconds"));
+    this.maxSize = Args.positive(maxSize, "maxSize");
+    new SecureRandom().nextBytes(macKey);
+  }
+
+  /**
+   * Returns the identifier of the user if the same password has been verified successfully
+   * within the TTL.
+   * @param user
+   *          User name.
+   * @param password
+   *          Presented password.
+   * @return the identifier of the user, or {@code null} if not cached.
+   */
+  NameId get(String user, byte[] password) {
+    Entry entry = entries.get(user);
+    if (entry != null) {
+      if (entry.expiresAt - System.nanoTime() > 0) {
+        if (MessageDigest.isEqual(entry.passwordMac, mac(user, password))) {
+          hits.increment();
+          return entry.ident;
+        }
+      } else {
+        entries.remove(user, entry);
+      }
+    }
+
+    misses.increment();
+    return null;
+  } // method get
+
+  long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Caches the successful verification.
+   * @param ident
+   *          Identifier of the user.
+   * @param password
+   *          Verified password.
+   * @param startGeneration
+   *          Value of {@link #generation()} before the user has been read from the database.
+   *          If an invalidation occurred since then, the verification is not cached.
+   */
+  void put(NameId ident, byte[] password, long startGeneration) {
+    if (entries.size() >= maxSize) {
+      purgeExpired();
+      if (entries.size() >= maxSize) {
+        return;
+      }
+    }
+
+    String user = ident.getName();
+    entries.put(user, new Entry(ident, mac(user, password), System.nanoTime() + ttlNanos));
+    if (generation.get() != startGeneration) {
+      // invalidated concurrently
+      entries.remove(user);
+    }
+  } // method put
+
+  void invalidate(String user) {
+    generation.incrementAndGet();
+    entries.remove(user);
+  }
+
+  void invalidateAll() {
+    generation.incrementAndGet();
+    entries.clear();
+  }
+
+  Map<String, Object> getStatistics() {
+    long hitCount = hits.sum();
+    long missCount = misses.sum();
+    long total = hitCount + missCount;
+
+    Map<String, Object> statistics = new LinkedHashMap<>();
+    statistics.put("size", entries.size());
+    statistics.put("hits", hitCount);
+    statistics.put("misses", missCount);
+    statistics.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+    return statistics;
+  } // method getStatistics
+
+  private void purgeExpired() {
+    long now = System.nanoTime();
+    Iterator<Entry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().expiresAt - now <= 0) {
+        it.remove();
+      }
+    }
+  } // method purgeExpired
+
+  private byte[] mac(String user, byte[] password) {
+    HMac hmac = new HMac(new SHA256Digest());
+    hmac.init(new KeyParameter(macKey));
+    byte[] userBytes = StringUtil.toUtf8Bytes(user);
+    hmac.update(userBytes, 0, userBytes.length);
+    hmac.update((byte) 0);
+    hmac.update(password, 0, password.length);
+    byte[] ret = new byte[hmac.getMacSize()];
+    hmac.doFinal(ret, 0);
+    return ret;
+  } // method mac
+
+}
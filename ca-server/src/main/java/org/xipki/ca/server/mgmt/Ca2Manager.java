@@ -171,7 +171,8 @@ class Ca2Manager {
           }
         }
       }
-      ctlogClient = new CtLogClient(ctlogControl.getServers(), ctxConf);
+      ctlogClient = new CtLogClient(ctlogControl.getServers(), ctxConf,
+          ctlogControl.getQuorum(), ctlogControl.getTimeout());
     }
 
     X509Ca ca;
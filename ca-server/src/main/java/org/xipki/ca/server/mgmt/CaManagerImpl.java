@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.net.SocketException;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.util.Date;
 import java.util.HashSet;
@@ -38,7 +39,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.cert.X509CRLHolder;
@@ -78,6 +82,7 @@ import org.xipki.ca.server.CaServerConf;
 import org.xipki.ca.server.CtLogPublicKeyFinder;
 import org.xipki.ca.server.IdentifiedCertPublisher;
 import org.xipki.ca.server.IdentifiedCertprofile;
+import org.xipki.ca.server.KeypairPool;
 import org.xipki.ca.server.RequestorEntryWrapper;
 import org.xipki.ca.server.RestResponder;
 import org.xipki.ca.server.ScepResponder;
@@ -182,6 +187,9 @@ public class CaManagerImpl implements CaManager, Closeable {
         } else {
           LOG.debug("received no event to restart CA");
         }
+
+        // the CRLs are generated by the master instance
+        certstore.clearCurrentCrls();
       } catch (Throwable th) {
         LogUtil.error(LOG, th, "ScheduledCaRestarter");
       } finally {
@@ -266,6 +274,10 @@ public class CaManagerImpl implements CaManager, Closeable {
 
   private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
 
+  private ExecutorService certGenerationExecutor;
+
+  private KeypairPool keypairPool;
+
   private final DataSourceFactory datasourceFactory;
 
   private CtLogPublicKeyFinder ctLogPublicKeyFinder;
@@ -390,6 +402,28 @@ public class CaManagerImpl implements CaManager, Closeable {
     int shardId = caServerConf.getShardId();
     LOG.info("ca.shardId: {}", shardId);
 
+    int certGenerationThreads = caServerConf.getCertGenerationThreads();
+    LOG.info("ca.certGenerationThreads: {}", certGenerationThreads);
+    if (certGenerationThreads > 1 && certGenerationExecutor == null) {
+      AtomicInteger threadIndex = new AtomicInteger(0);
+      certGenerationExecutor = Executors.newFixedThreadPool(certGenerationThreads, r -> {
+        Thread thread = new Thread(r, "cert-generation-" + threadIndex.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    int keypairPoolDepth = caServerConf.getKeypairPoolDepth();
+    LOG.info("ca.keypairPoolDepth: {}", keypairPoolDepth);
+    if (keypairPoolDepth > 0 && keypairPool == null) {
+      try {
+        keypairPool = new KeypairPool(keypairPoolDepth,
+            Math.max(1, caServerConf.getKeypairPoolThreads()));
+      } catch (NoSuchAlgorithmException ex) {
+        throw new CaMgmtException("could not create keypair pool: " + ex.getMessage(), ex);
+      }
+    }
+
     if (caServerConf.getCtLog() != null) {
       try {
         ctLogPublicKeyFinder = new CtLogPublicKeyFinder(caServerConf.getCtLog());
@@ -446,7 +480,19 @@ public class CaManagerImpl implements CaManager, Closeable {
     UniqueIdGenerator idGen = new UniqueIdGenerator(epoch, shardId);
 
     try {
-      this.certstore = new CertStore(datasource, idGen);
+      int groupCommitSize = caServerConf.getCertStoreGroupCommitSize();
+      int groupCommitDelay = caServerConf.getCertStoreGroupCommitDelay();
+      LOG.info("ca.certStoreGroupCommitSize: {}, ca.certStoreGroupCommitDelay: {} ms",
+          groupCommitSize, groupCommitDelay);
+      if (this.certstore != null) {
+        // restart of the CA system
+        this.certstore.close();
+      }
+      this.certstore = new CertStore(datasource, idGen, groupCommitSize, groupCommitDelay);
+
+      int userAuthCacheTtl = caServerConf.getUserAuthCacheTtl();
+      LOG.info("ca.userAuthCacheTtl: {} s", userAuthCacheTtl);
+      this.certstore.setUserAuthCache(userAuthCacheTtl, caServerConf.getUserAuthCacheSize());
     } catch (DataAccessException ex) {
       throw new CaMgmtException(ex.getMessage(), ex);
     }
@@ -715,8 +761,22 @@ public class CaManagerImpl implements CaManager, Closeable {
       persistentScheduledThreadPoolExecutor = null;
     }
 
+    if (certGenerationExecutor != null) {
+      certGenerationExecutor.shutdown();
+      certGenerationExecutor = null;
+    }
+
+    if (keypairPool != null) {
+      keypairPool.close();
+      keypairPool = null;
+    }
+
     ca2Manager.close();
 
+    if (certstore != null) {
+      certstore.close();
+    }
+
     if (caLockedByMe) {
       try {
         unlockCa();
@@ -754,6 +814,18 @@ public class CaManagerImpl implements CaManager, Closeable {
     return scheduledThreadPoolExecutor;
   }
 
+  /**
+   * Returns the executor to generate the certificates of one request in parallel.
+   * @return the executor, or {@code null} if the parallel generation is disabled.
+   */
+  public ExecutorService getCertGenerationExecutor() {
+    return certGenerationExecutor;
+  }
+
+  public KeypairPool getKeypairPool() {
+    return keypairPool;
+  }
+
   @Override
   public Set<String> getCertprofileNames() {
     return certprofileDbEntries.keySet();
@@ -1163,6 +1235,7 @@ public class CaManagerImpl implements CaManager, Closeable {
   public void changeUser(ChangeUserEntry changeUserEntry) throws CaMgmtException {
     assertMasterModeAndSetuped();
     queryExecutor.changeUser(changeUserEntry);
+    certstore.invalidateUserAuthCache(changeUserEntry.getIdent().getName());
   }
 
   @Override
@@ -1172,6 +1245,7 @@ public class CaManagerImpl implements CaManager, Closeable {
     if (!queryExecutor.deleteRowWithName(username, "TUSER")) {
       throw new CaMgmtException("unknown user " + username);
     }
+    certstore.invalidateUserAuthCache(username);
   } // method removeUser
 
   @Override
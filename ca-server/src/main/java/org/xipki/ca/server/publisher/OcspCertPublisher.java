@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import org.bouncycastle.cert.X509CRLHolder;
@@ -151,6 +152,20 @@ public class OcspCertPublisher extends CertPublisher {
     }
   } // method certificateAdded
 
+  @Override
+  public int certificatesAdded(List<CertificateInfo> certInfos) {
+    try {
+      queryExecutor.addCerts(certInfos);
+      return certInfos.size();
+    } catch (Exception ex) {
+      LOG.warn("could not save {} certificates in batch: {}", certInfos.size(), ex.getMessage());
+      LOG.debug("could not save certificates in batch", ex);
+    }
+
+    // batch failed, publish the certificates one by one, the failed one will be audited.
+    return super.certificatesAdded(certInfos);
+  } // method certificatesAdded
+
   @Override
   public boolean certificateRevoked(X509Cert caCert, CertWithDbId cert,
       String certprofile, CertRevocationInfo revInfo) {
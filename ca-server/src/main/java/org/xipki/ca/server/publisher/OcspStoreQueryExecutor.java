@@ -21,6 +21,7 @@ import static org.xipki.util.Args.notNull;
 
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -29,14 +30,17 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.ca.api.CertWithDbId;
+import org.xipki.ca.api.CertificateInfo;
 import org.xipki.ca.api.OperationException;
 import org.xipki.ca.api.OperationException.ErrorCode;
 import org.xipki.datasource.DataAccessException;
@@ -123,6 +127,11 @@ class OcspStoreQueryExecutor {
       "INSERT INTO CERT (ID,LUPDATE,SN,NBEFORE,NAFTER,REV,IID,HASH,SUBJECT) "
       + "VALUES (?,?,?,?,?,?,?,?,?)";
 
+  private static final String SQL_UPDATE_CERT =
+      "UPDATE CERT SET LUPDATE=?,REV=?,RT=?,RIT=?,RR=? WHERE ID=?";
+
+  private static final int MAX_SERIALS_PER_QUERY = 100;
+
   private static final Logger LOG = LoggerFactory.getLogger(OcspStoreQueryExecutor.class);
 
   private final DataSourceWrapper datasource;
@@ -236,41 +245,10 @@ class OcspStoreQueryExecutor {
     final String sql = revoked ? SQL_ADD_REVOKED_CERT : SQL_ADD_CERT;
 
     long certId = certificate.getCertId();
-    byte[] encodedCert = certificate.getCert().getEncoded();
-    String certHash = certhashAlgo.base64Hash(encodedCert);
-
-    X509Cert cert = certificate.getCert();
-    long notBeforeSeconds = cert.getNotBefore().getTime() / 1000;
-    long notAfterSeconds = cert.getNotAfter().getTime() / 1000;
-    String cuttedSubject = X509Util.cutText(certificate.getCert().getSubjectRfc4519Text(),
-                            maxX500nameLen);
-
     PreparedStatement ps = datasource.prepareStatement(sql);
 
     try {
-      // CERT
-      int idx = 1;
-      ps.setLong(idx++, certId);
-      ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
-      ps.setString(idx++, serialNumber.toString(16));
-      ps.setLong(idx++, notBeforeSeconds);
-      ps.setLong(idx++, notAfterSeconds);
-      setBoolean(ps, idx++, revoked);
-      ps.setInt(idx++, issuerId);
-      ps.setString(idx++, certHash);
-      ps.setString(idx++, cuttedSubject);
-
-      if (revoked) {
-        long revTime = revInfo.getRevocationTime().getTime() / 1000;
-        ps.setLong(idx++, revTime);
-        if (revInfo.getInvalidityTime() != null) {
-          ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
-        } else {
-          ps.setNull(idx++, Types.BIGINT);
-        }
-        int reasonCode = (revInfo.getReason() == null) ? 0 : revInfo.getReason().getCode();
-        ps.setInt(idx++, reasonCode);
-      }
+      setInsertCertParams(ps, System.currentTimeMillis() / 1000, issuerId, certificate, revInfo);
 
       try {
         ps.executeUpdate();
@@ -294,33 +272,165 @@ class OcspStoreQueryExecutor {
     }
   } // method addOrUpdateCert
 
-  private void updateRegisteredCert(long registeredCertId, CertRevocationInfo revInfo)
-      throws DataAccessException {
-    boolean revoked = (revInfo != null);
+  /**
+   * Adds or updates several certificates. The ids of the already registered certificates are
+   * retrieved with one query per issuer and {@link #MAX_SERIALS_PER_QUERY} serial numbers, and
+   * all certificates are written with JDBC batches in one transaction.
+   *
+   * @param certInfos
+   *          Certificates to be added or updated.
+   * @throws DataAccessException
+   *          If database error occurs. In this case none of the certificates is written.
+   */
+  void addCerts(List<CertificateInfo> certInfos) throws DataAccessException {
+    notNull(certInfos, "certInfos");
+    if (certInfos.isEmpty()) {
+      return;
+    }
 
-    final String sql = "UPDATE CERT SET LUPDATE=?,REV=?,RT=?,RIT=?,RR=? WHERE ID=?";
+    int[] issuerIds = new int[certInfos.size()];
+    Map<Integer, Set<String>> serialsPerIssuer = new HashMap<>();
+    for (int i = 0; i < issuerIds.length; i++) {
+      CertificateInfo certInfo = certInfos.get(i);
+      issuerIds[i] = getIssuerId(certInfo.getIssuerCert());
+      serialsPerIssuer.computeIfAbsent(issuerIds[i], k -> new LinkedHashSet<>())
+          .add(certInfo.getCert().getCert().getSerialNumber().toString(16));
+    }
 
-    PreparedStatement ps = datasource.prepareStatement(sql);
+    // key: issuerId:serialNumber
+    Map<String, Long> registeredIds = new HashMap<>();
+    for (Map.Entry<Integer, Set<String>> m : serialsPerIssuer.entrySet()) {
+      getCertIds(m.getKey(), new ArrayList<>(m.getValue()), registeredIds);
+    }
 
+    List<Integer> goodInserts = new ArrayList<>(issuerIds.length);
+    List<Integer> revokedInserts = new ArrayList<>(issuerIds.length);
+    List<Integer> updates = new ArrayList<>(issuerIds.length);
+    long[] updateIds = new long[issuerIds.length];
+
+    for (int i = 0; i < issuerIds.length; i++) {
+      CertificateInfo certInfo = certInfos.get(i);
+      boolean revoked = certInfo.getRevocationInfo() != null;
+      String key = issuerIds[i] + ":" + certInfo.getCert().getCert().getSerialNumber().toString(16);
+      Long registeredId = registeredIds.get(key);
+
+      if (!publishGoodCerts && !revoked && registeredId != null) {
+        continue;
+      }
+
+      if (registeredId != null) {
+        updates.add(i);
+        updateIds[i] = registeredId;
+      } else {
+        (revoked ? revokedInserts : goodInserts).add(i);
+        // the same certificate may appear twice in the list
+        registeredIds.put(key, certInfo.getCert().getCertId());
+      }
+    }
+
+    long currentTimeSeconds = System.currentTimeMillis() / 1000;
+
+    Connection conn = datasource.getConnection();
+    boolean succ = false;
     try {
-      int idx = 1;
-      ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
-      setBoolean(ps, idx++, revoked);
-      if (revoked) {
-        long revTime = revInfo.getRevocationTime().getTime() / 1000;
-        ps.setLong(idx++, revTime);
-        if (revInfo.getInvalidityTime() != null) {
-          ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
+      conn.setAutoCommit(false);
+      writeBatch(conn, SQL_ADD_CERT, certInfos, goodInserts, issuerIds, null,
+          currentTimeSeconds);
+      writeBatch(conn, SQL_ADD_REVOKED_CERT, certInfos, revokedInserts, issuerIds, null,
+          currentTimeSeconds);
+      writeBatch(conn, SQL_UPDATE_CERT, certInfos, updates, null, updateIds,
+          currentTimeSeconds);
+      conn.commit();
+      succ = true;
+    } catch (SQLException ex) {
+      throw datasource.translate(null, ex);
+    } finally {
+      try {
+        if (!succ) {
+          conn.rollback();
+        }
+        conn.setAutoCommit(true);
+      } catch (SQLException ex) {
+        LOG.error("could not rollback or set autoCommit to true: {}", ex.getMessage());
+      }
+      datasource.returnConnection(conn);
+    }
+  } // method addCerts
+
+  /**
+   * Writes the certificates at the given indexes with one JDBC batch. If {@code updateIds} is
+   * not {@code null}, the registered certificates are updated, otherwise the certificates are
+   * inserted.
+   */
+  private void writeBatch(Connection conn, String sql, List<CertificateInfo> certInfos,
+      List<Integer> indexes, int[] issuerIds, long[] updateIds, long currentTimeSeconds)
+          throws DataAccessException {
+    if (indexes.isEmpty()) {
+      return;
+    }
+
+    PreparedStatement ps = datasource.prepareStatement(conn, sql);
+    try {
+      for (Integer i : indexes) {
+        CertificateInfo certInfo = certInfos.get(i);
+        if (updateIds != null) {
+          setUpdateCertParams(ps, currentTimeSeconds, updateIds[i],
+              certInfo.getRevocationInfo());
         } else {
-          ps.setNull(idx++, Types.INTEGER);
+          setInsertCertParams(ps, currentTimeSeconds, issuerIds[i], certInfo.getCert(),
+              certInfo.getRevocationInfo());
         }
-        ps.setInt(idx++, revInfo.getReason().getCode());
+        ps.addBatch();
+      }
+
+      ps.executeBatch();
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      datasource.releaseResources(ps, null, false);
+    }
+  } // method writeBatch
+
+  private void setInsertCertParams(PreparedStatement ps, long currentTimeSeconds, int issuerId,
+      CertWithDbId certificate, CertRevocationInfo revInfo) throws SQLException {
+    X509Cert cert = certificate.getCert();
+    String certHash = certhashAlgo.base64Hash(cert.getEncoded());
+    String cuttedSubject = X509Util.cutText(cert.getSubjectRfc4519Text(), maxX500nameLen);
+    boolean revoked = (revInfo != null);
+
+    // CERT
+    int idx = 1;
+    ps.setLong(idx++, certificate.getCertId());
+    ps.setLong(idx++, currentTimeSeconds);
+    ps.setString(idx++, cert.getSerialNumber().toString(16));
+    ps.setLong(idx++, cert.getNotBefore().getTime() / 1000); // notBeforeSeconds
+    ps.setLong(idx++, cert.getNotAfter().getTime() / 1000); // notAfterSeconds
+    setBoolean(ps, idx++, revoked);
+    ps.setInt(idx++, issuerId);
+    ps.setString(idx++, certHash);
+    ps.setString(idx++, cuttedSubject);
+
+    if (revoked) {
+      long revTime = revInfo.getRevocationTime().getTime() / 1000;
+      ps.setLong(idx++, revTime);
+      if (revInfo.getInvalidityTime() != null) {
+        ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
       } else {
-        ps.setNull(idx++, Types.INTEGER); // rev_time
-        ps.setNull(idx++, Types.INTEGER); // rev_invalidity_time
-        ps.setNull(idx++, Types.INTEGER); // rev_reason
+        ps.setNull(idx++, Types.BIGINT);
       }
-      ps.setLong(idx++, registeredCertId);
+      int reasonCode = (revInfo.getReason() == null) ? 0 : revInfo.getReason().getCode();
+      ps.setInt(idx++, reasonCode);
+    }
+  } // method setInsertCertParams
+
+  private void updateRegisteredCert(long registeredCertId, CertRevocationInfo revInfo)
+      throws DataAccessException {
+    final String sql = SQL_UPDATE_CERT;
+
+    PreparedStatement ps = datasource.prepareStatement(sql);
+
+    try {
+      setUpdateCertParams(ps, System.currentTimeMillis() / 1000, registeredCertId, revInfo);
       ps.executeUpdate();
     } catch (SQLException ex) {
       throw datasource.translate(sql, ex);
@@ -329,6 +439,30 @@ class OcspStoreQueryExecutor {
     }
   } // method updateRegisteredCert
 
+  private static void setUpdateCertParams(PreparedStatement ps, long currentTimeSeconds,
+      long registeredCertId, CertRevocationInfo revInfo) throws SQLException {
+    boolean revoked = (revInfo != null);
+
+    int idx = 1;
+    ps.setLong(idx++, currentTimeSeconds);
+    setBoolean(ps, idx++, revoked);
+    if (revoked) {
+      long revTime = revInfo.getRevocationTime().getTime() / 1000;
+      ps.setLong(idx++, revTime);
+      if (revInfo.getInvalidityTime() != null) {
+        ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
+      } else {
+        ps.setNull(idx++, Types.INTEGER);
+      }
+      ps.setInt(idx++, revInfo.getReason().getCode());
+    } else {
+      ps.setNull(idx++, Types.INTEGER); // rev_time
+      ps.setNull(idx++, Types.INTEGER); // rev_invalidity_time
+      ps.setNull(idx++, Types.INTEGER); // rev_reason
+    }
+    ps.setLong(idx++, registeredCertId);
+  } // method setUpdateCertParams
+
   void revokeCert(X509Cert caCert, CertWithDbId cert, CertRevocationInfo revInfo)
       throws DataAccessException, OperationException {
     addOrUpdateCert(caCert, cert, revInfo);
@@ -521,6 +655,45 @@ class OcspStoreQueryExecutor {
     }
   } // method getCertId
 
+  /**
+   * Retrieves the database ids of the registered certificates of the given issuer and serial
+   * numbers, and puts them in {@code ids} with the key {@code issuerId:serialNumber}.
+   */
+  private void getCertIds(int issuerId, List<String> serials, Map<String, Long> ids)
+      throws DataAccessException {
+    for (int off = 0; off < serials.size(); off += MAX_SERIALS_PER_QUERY) {
+      int num = Math.min(MAX_SERIALS_PER_QUERY, serials.size() - off);
+
+      StringBuilder sb = new StringBuilder(50 + 2 * num);
+      sb.append("SELECT ID,SN FROM CERT WHERE IID=? AND SN IN (?");
+      for (int i = 1; i < num; i++) {
+        sb.append(",?");
+      }
+      sb.append(")");
+
+      final String sql = sb.toString();
+      ResultSet rs = null;
+      PreparedStatement ps = datasource.prepareStatement(sql);
+
+      try {
+        int idx = 1;
+        ps.setInt(idx++, issuerId);
+        for (int i = 0; i < num; i++) {
+          ps.setString(idx++, serials.get(off + i));
+        }
+
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          ids.put(issuerId + ":" + rs.getString("SN"), rs.getLong("ID"));
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, rs);
+      }
+    }
+  } // method getCertIds
+
   boolean isHealthy() {
     final String sql = "SELECT ID FROM ISSUER";
 
@@ -0,0 +1,237 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.IssuingDistributionPoint;
+import org.bouncycastle.asn1.x509.ReasonFlags;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.security.CrlReason;
+import org.xipki.security.SignatureSigner;
+import org.xipki.security.XiContentSigner;
+
+/**
+ * CrlStreamer test. The CRL built by {@link CrlStreamer} must be identical to the one built by
+ * {@link X509v2CRLBuilder}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class CrlStreamerTest {
+
+  private static class Entry {
+
+    private final BigInteger serial;
+
+    private final CrlReason reason;
+
+    private final Date revocationTime;
+
+    private final Date invalidityTime;
+
+    private Entry(long serial, CrlReason reason, long revocationTime, Long invalidityTime) {
+      this.serial = BigInteger.valueOf(serial);
+      this.reason = reason;
+      this.revocationTime = new Date(revocationTime * 1000);
+      this.invalidityTime = (invalidityTime == null) ? null : new Date(invalidityTime * 1000);
+    }
+
+  } // class Entry
+
+  private static final X500Name CA_SUBJECT = new X500Name("CN=ca,O=example,C=DE");
+
+  private static final X500Name CRL_SIGNER_SUBJECT = new X500Name("CN=crl-signer,O=example,C=DE");
+
+  private static final Date THIS_UPDATE = new Date(1600000000000L);
+
+  private static final Date NEXT_UPDATE = new Date(1600086400000L);
+
+  private static KeyPair keypair;
+
+  @BeforeClass
+  public static void generateKeypair() throws Exception {
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
+    kpGen.initialize(1024);
+    keypair = kpGen.generateKeyPair();
+  }
+
+  @Test
+  public void testDirectCrl() throws Exception {
+    assertSameCrl(false, false, entries());
+  }
+
+  @Test
+  public void testIndirectCrl() throws Exception {
+    assertSameCrl(true, false, entries());
+  }
+
+  @Test
+  public void testDirectDeltaCrl() throws Exception {
+    assertSameCrl(false, true, entries());
+  }
+
+  @Test
+  public void testIndirectDeltaCrl() throws Exception {
+    assertSameCrl(true, true, entries());
+  }
+
+  @Test
+  public void testIndirectCrlFirstEntryWithInvalidityDate() throws Exception {
+    List<Entry> entries = new ArrayList<>(2);
+    entries.add(new Entry(5, CrlReason.KEY_COMPROMISE, 1590000000L, 1580000000L));
+    entries.add(new Entry(9, CrlReason.UNSPECIFIED, 1590000000L, 1580000000L));
+    assertSameCrl(true, false, entries);
+  }
+
+  @Test
+  public void testCrlWithoutEntries() throws Exception {
+    assertSameCrl(false, false, new ArrayList<>(0));
+  }
+
+  private static List<Entry> entries() {
+    // entries are passed to CrlStreamer in reverse order, and must be sorted by serial
+    List<Entry> entries = new ArrayList<>();
+    entries.add(new Entry(0x01, CrlReason.UNSPECIFIED, 1590000000L, null));
+    entries.add(new Entry(0x7F, CrlReason.KEY_COMPROMISE, 1590000001L, 1580000000L));
+    entries.add(new Entry(0x80, CrlReason.CESSATION_OF_OPERATION, 1590000002L, null));
+    entries.add(new Entry(0xFF00, CrlReason.UNSPECIFIED, 1590000003L, 1580000001L));
+    entries.add(new Entry(0x123456789ABCDEFL, CrlReason.CERTIFICATE_HOLD, 1590000004L, null));
+    return entries;
+  }
+
+  private static void assertSameCrl(boolean indirectCrl, boolean deltaCrl, List<Entry> entries)
+      throws Exception {
+    X500Name crlIssuer = indirectCrl ? CRL_SIGNER_SUBJECT : CA_SUBJECT;
+    Extensions extensions = crlExtensions(indirectCrl, deltaCrl);
+
+    byte[] expected = buildWithBc(crlIssuer, indirectCrl, extensions, entries);
+
+    byte[] actual;
+    try (CrlStreamer crlStreamer = new CrlStreamer(indirectCrl, CA_SUBJECT)) {
+      for (int i = entries.size() - 1; i >= 0; i--) {
+        Entry entry = entries.get(i);
+        crlStreamer.addEntry(entry.serial, entry.reason, entry.revocationTime,
+            entry.invalidityTime);
+      }
+      actual = crlStreamer.build(crlIssuer, THIS_UPDATE, NEXT_UPDATE, extensions, newSigner());
+    }
+
+    Assert.assertArrayEquals("encoded CRL", expected, actual);
+    Assert.assertArrayEquals("parsed CRL", expected, CrlStreamer.parse(actual).getEncoded());
+  } // method assertSameCrl
+
+  private static byte[] buildWithBc(X500Name crlIssuer, boolean indirectCrl,
+      Extensions extensions, List<Entry> entries) throws Exception {
+    X509v2CRLBuilder builder = new X509v2CRLBuilder(crlIssuer, THIS_UPDATE);
+    builder.setNextUpdate(NEXT_UPDATE);
+
+    boolean first = true;
+    for (Entry entry : entries) {
+      if (!indirectCrl || !first) {
+        if (entry.invalidityTime != null) {
+          builder.addCRLEntry(entry.serial, entry.revocationTime, entry.reason.getCode(),
+              entry.invalidityTime);
+        } else {
+          builder.addCRLEntry(entry.serial, entry.revocationTime, entry.reason.getCode());
+        }
+        continue;
+      }
+
+      List<Extension> extns = new ArrayList<>(3);
+      if (entry.reason != CrlReason.UNSPECIFIED) {
+        extns.add(new Extension(Extension.reasonCode, false,
+            CRLReason.lookup(entry.reason.getCode()).getEncoded()));
+      }
+
+      if (entry.invalidityTime != null) {
+        extns.add(new Extension(Extension.invalidityDate, false,
+            new ASN1GeneralizedTime(entry.invalidityTime).getEncoded()));
+      }
+
+      extns.add(new Extension(Extension.certificateIssuer, true,
+          new GeneralNames(new GeneralName(CA_SUBJECT)).getEncoded()));
+      builder.addCRLEntry(entry.serial, entry.revocationTime,
+          new Extensions(extns.toArray(new Extension[0])));
+      first = false;
+    }
+
+    for (Extension extn : extensionList(extensions)) {
+      builder.addExtension(extn);
+    }
+
+    return builder.build(newSigner()).getEncoded();
+  } // method buildWithBc
+
+  private static Extensions crlExtensions(boolean indirectCrl, boolean deltaCrl)
+      throws Exception {
+    ExtensionsGenerator extnGen = new ExtensionsGenerator();
+    extnGen.addExtension(Extension.cRLNumber, false, new ASN1Integer(10));
+    if (indirectCrl) {
+      IssuingDistributionPoint idp = new IssuingDistributionPoint((DistributionPointName) null,
+          false, false, (ReasonFlags) null, true, false);
+      extnGen.addExtension(Extension.issuingDistributionPoint, true, idp);
+    }
+
+    if (deltaCrl) {
+      extnGen.addExtension(Extension.deltaCRLIndicator, true, new ASN1Integer(9));
+    }
+    return extnGen.generate();
+  } // method crlExtensions
+
+  private static List<Extension> extensionList(Extensions extensions) {
+    List<Extension> list = new ArrayList<>();
+    for (ASN1ObjectIdentifier oid : extensions.getExtensionOIDs()) {
+      list.add(extensions.getExtension(oid));
+    }
+    return list;
+  }
+
+  private static XiContentSigner newSigner() throws Exception {
+    // RSA PKCS#1 v1.5 signatures are deterministic
+    AlgorithmIdentifier sigAlgId = new AlgorithmIdentifier(
+        PKCSObjectIdentifiers.sha256WithRSAEncryption, DERNull.INSTANCE);
+    return new SignatureSigner(sigAlgId, Signature.getInstance("SHA256withRSA"),
+        keypair.getPrivate());
+  }
+
+}
@@ -27,7 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.security.X509Cert;
 import org.xipki.security.util.X509Util;
-import org.xipki.util.LruCache;
+import org.xipki.util.ConcurrentCache;
 import org.xipki.util.StringUtil;
 
 /**
@@ -69,8 +69,9 @@ public class TlsHelper {
 
   private static final Logger LOG = LoggerFactory.getLogger(TlsHelper.class);
 
-  private static final LruCache<String, X509Cert> clientCerts = new LruCache<>(50);
-  private static final LruCache<Reference, X509Cert> clientCerts0 = new LruCache<>(50);
+  private static final ConcurrentCache<String, X509Cert> clientCerts = new ConcurrentCache<>(50);
+  private static final ConcurrentCache<Reference, X509Cert> clientCerts0
+      = new ConcurrentCache<>(50);
 
   private static String reverseProxyMode = null;
 
@@ -38,8 +38,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.datasource.DataAccessException.Reason;
+import org.xipki.util.ConcurrentCache;
 import org.xipki.util.LogUtil;
-import org.xipki.util.LruCache;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
@@ -391,7 +391,7 @@ public abstract class DataSourceWrapper implements Closeable {
 
   private final DatabaseType databaseType;
 
-  private final LruCache<String, String> cacheSeqNameSqls;
+  private final ConcurrentCache<String, String> cacheSeqNameSqls;
 
   private DataSourceWrapper(String name, HikariDataSource service, DatabaseType dbType) {
     this.service = notNull(service, "service");
@@ -399,7 +399,7 @@ public abstract class DataSourceWrapper implements Closeable {
     this.name = name;
     this.sqlErrorCodes = SqlErrorCodes.newInstance(dbType);
     this.sqlStateCodes = SqlStateCodes.newInstance(dbType);
-    this.cacheSeqNameSqls = new LruCache<>(100);
+    this.cacheSeqNameSqls = new ConcurrentCache<>(100);
   }
 
   public final String getName() {
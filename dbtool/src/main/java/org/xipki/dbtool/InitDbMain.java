@@ -53,6 +53,7 @@ public class InitDbMain {
     }
 
     boolean force = false;
+    boolean update = false;
     String dbConfFile = null;
     String dbSchemaFile = null;
 
@@ -75,6 +76,9 @@ public class InitDbMain {
         case "-f":
           force = true;
           break;
+        case "--update":
+          update = true;
+          break;
         default:
           break;
       }
@@ -91,14 +95,15 @@ public class InitDbMain {
     }
 
     try {
-      exec(dbConfFile, dbSchemaFile, force);
+      exec(dbConfFile, dbSchemaFile, force, update);
     } catch (Exception ex) {
       System.err.println("Error while initializing database: " + ex.getMessage());
       LOG.error("Error while initializing database", ex);
     }
   } // method main
 
-  private static void exec(String dbConfFile, String dbSchemaFile, boolean force)
+  private static void exec(String dbConfFile, String dbSchemaFile, boolean force,
+      boolean update)
       throws Exception {
     Properties props = new Properties();
     props.load(Files.newInputStream(Paths.get(IoUtil.expandFilepath(dbConfFile))));
@@ -122,13 +127,17 @@ public class InitDbMain {
 
     printDatabaseInfo(dbConf, dbSchemaFile);
     if (!force) {
-      if (!confirm("reset and initialize")) {
+      if (!confirm(update ? "update" : "reset and initialize")) {
         System.out.println("cancelled");
         return;
       }
     }
 
-    initDb(dbConf, dbSchemaFile);
+    if (update) {
+      updateDb(dbConf, dbSchemaFile);
+    } else {
+      initDb(dbConf, dbSchemaFile);
+    }
   } // method exec
 
   public static void initDb(LiquibaseMain.DatabaseConf dbConf, String dbSchemaFile)
@@ -146,6 +155,24 @@ public class InitDbMain {
     dropLiquibaseTables(dbConf);
   } // method initDb
 
+  /**
+   * Applies the change sets in the schema file to the existing database, without dropping
+   * the existing tables.
+   */
+  public static void updateDb(LiquibaseMain.DatabaseConf dbConf, String dbSchemaFile)
+      throws Exception {
+    LiquibaseMain liquibase = new LiquibaseMain(dbConf, dbSchemaFile);
+    try {
+      liquibase.init();
+      liquibase.releaseLocks();
+      liquibase.update();
+    } finally {
+      liquibase.close();
+    }
+
+    dropLiquibaseTables(dbConf);
+  } // method updateDb
+
   private static void printDatabaseInfo(LiquibaseMain.DatabaseConf dbParams, String schemaFile) {
     String msg = StringUtil.concat("\n--------------------------------------------",
         "\n     driver: ", dbParams.getDriver(),  "\n       user: ", dbParams.getUsername(),
@@ -182,7 +209,9 @@ public class InitDbMain {
     sb.append("\t--help\n");
     sb.append("\t\tDisplay this help message\n");
     sb.append("\t--force, -f\n");
-    sb.append("\t\tNever prompt for confirmation");
+    sb.append("\t\tNever prompt for confirmation\n");
+    sb.append("\t--update\n");
+    sb.append("\t\tApply the schema file to the existing database without resetting it");
 
     System.out.println(sb.toString());
   } // method printUsage
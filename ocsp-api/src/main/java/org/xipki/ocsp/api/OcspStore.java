@@ -21,11 +21,16 @@ import static org.xipki.util.Args.notBlank;
 
 import java.io.Closeable;
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 import org.xipki.datasource.DataSourceWrapper;
 import org.xipki.ocsp.api.CertStatusInfo.UnknownCertBehaviour;
+import org.xipki.security.HashAlgo;
 import org.xipki.security.X509Cert;
 import org.xipki.util.Validity;
 
@@ -69,6 +74,19 @@ public abstract class OcspStore implements Closeable {
    */
   public abstract boolean knowsIssuer(RequestIssuer reqIssuer);
 
+  /**
+   * Returns the version of the issuers known by this store. The returned value must change
+   * whenever {@link #knowsIssuer(RequestIssuer)} may return a different result, so that the
+   * caller can cache the results of {@link #knowsIssuer(RequestIssuer)}. The default
+   * implementation returns -1.
+   *
+   * @return the version of the issuers, or -1 if the results of
+   *         {@link #knowsIssuer(RequestIssuer)} must not be cached.
+   */
+  public long getIssuersVersion() {
+    return -1;
+  }
+
   /**
    * Returns the certificate for the given {@link RequestIssuer}.
    *
@@ -78,6 +96,42 @@ public abstract class OcspStore implements Closeable {
    */
   public abstract X509Cert getIssuerCert(RequestIssuer reqIssuer);
 
+  /**
+   * Returns all issuers known by this store. Used to pre-generate the OCSP responses.
+   * The default implementation returns {@code null}.
+   *
+   * @param hashAlgo
+   *          Hash algorithm of the issuer name and key hash.
+   * @return the issuers, or {@code null} if this store cannot enumerate its issuers.
+   */
+  public List<RequestIssuer> getIssuers(HashAlgo hashAlgo) {
+    return null;
+  }
+
+  /**
+   * Returns serial numbers of the certificates issued by the given issuer, ordered by
+   * the store-internal ID of the certificates. Used to pre-generate the OCSP responses.
+   * The default implementation returns {@code null}.
+   *
+   * @param reqIssuer
+   *          Requested issuer
+   * @param fromId
+   *          Only certificates with internal ID greater than {@code fromId} will be
+   *          returned. Use 0 to start from the first certificate, and the last key of the
+   *          previous result to get the next page.
+   * @param numEntries
+   *          Maximal number of returned serial numbers.
+   * @return the serial numbers indexed by the internal ID, an empty map if there is no more
+   *         certificate, or {@code null} if this store cannot enumerate its certificates.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the serial numbers.
+   */
+  public SortedMap<Long, BigInteger> getSerialNumbers(RequestIssuer reqIssuer, long fromId,
+      int numEntries)
+          throws OcspStoreException {
+    return null;
+  }
+
   /**
    * Ignores expired CRLs. Only applied to CRL-based datasource.
    *
@@ -112,7 +166,44 @@ public abstract class OcspStore implements Closeable {
           throws OcspStoreException {
     CertStatusInfo info = getCertStatus0(time, reqIssuer, serialNumber,
         includeCertHash, includeRit, inheritCaRevocation);
+    adjustNextUpdate(time, info);
+    return info;
+  } // method getCertStatus
+
+  /**
+   * Return the status of several certificates of the same issuer.
+   *
+   * @param time
+   *          Time of the certificate status. Must not be {@code null}.
+   * @param reqIssuer
+   *          Requested issuer
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param includeCertHash
+   *          Whether to include the hash of target certificate in the response.
+   * @param includeRit
+   *          Whether to include the revocation invalidity time in the response.
+   * @param inheritCaRevocation
+   *          Whether to inherit CA revocation
+   * @return the certificate status for each of the given serial numbers, with the same
+   *         semantic as the value returned by
+   *         {@link #getCertStatus(Date, RequestIssuer, BigInteger, boolean, boolean, boolean)}.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the status.
+   */
+  public final Map<BigInteger, CertStatusInfo> getCertStatuses(Date time,
+      RequestIssuer reqIssuer, Collection<BigInteger> serialNumbers, boolean includeCertHash,
+      boolean includeRit, boolean inheritCaRevocation)
+          throws OcspStoreException {
+    Map<BigInteger, CertStatusInfo> infos = getCertStatuses0(time, reqIssuer, serialNumbers,
+        includeCertHash, includeRit, inheritCaRevocation);
+    for (CertStatusInfo info : infos.values()) {
+      adjustNextUpdate(time, info);
+    }
+    return infos;
+  } // method getCertStatuses
 
+  private void adjustNextUpdate(Date time, CertStatusInfo info) {
     if (info != null && minNextUpdatePeriod != null && !isIgnoreExpiredCrls()) {
       if (unknownCertBehaviour == UnknownCertBehaviour.good
           || unknownCertBehaviour == UnknownCertBehaviour.unknown) {
@@ -128,9 +219,7 @@ public abstract class OcspStore implements Closeable {
         }
       }
     }
-
-    return info;
-  } // method getCertStatus
+  } // method adjustNextUpdate
 
   /**
    * Return the certificate status.
@@ -156,6 +245,42 @@ public abstract class OcspStore implements Closeable {
       boolean inheritCaRevocation)
           throws OcspStoreException;
 
+  /**
+   * Return the status of several certificates of the same issuer. The default implementation
+   * calls {@link #getCertStatus0(Date, RequestIssuer, BigInteger, boolean, boolean, boolean)}
+   * for each serial number. Stores which can retrieve the status of several certificates at
+   * once should overwrite this method.
+   *
+   * @param time
+   *          Time of the certificate status. Must not be {@code null}.
+   * @param reqIssuer
+   *          Requested issuer
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param includeCertHash
+   *          Whether to include the hash of target certificate in the response.
+   * @param includeRit
+   *          Whether to include the revocation invalidity time in the response.
+   * @param inheritCaRevocation
+   *          Whether to inherit CA revocation
+   * @return the certificate status for each of the given serial numbers.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the status.
+   */
+  protected Map<BigInteger, CertStatusInfo> getCertStatuses0(Date time,
+      RequestIssuer reqIssuer, Collection<BigInteger> serialNumbers, boolean includeCertHash,
+      boolean includeRit, boolean inheritCaRevocation)
+          throws OcspStoreException {
+    Map<BigInteger, CertStatusInfo> infos = new HashMap<>();
+    for (BigInteger serialNumber : serialNumbers) {
+      if (!infos.containsKey(serialNumber)) {
+        infos.put(serialNumber, getCertStatus0(time, reqIssuer, serialNumber,
+            includeCertHash, includeRit, inheritCaRevocation));
+      }
+    }
+    return infos;
+  } // method getCertStatuses0
+
   /**
    * Initialize the OCSP store.
    *
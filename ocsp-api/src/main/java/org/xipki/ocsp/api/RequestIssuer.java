@@ -120,7 +120,11 @@ public class RequestIssuer {
 
   @Override
   public int hashCode() {
-    return toString().hashCode();
+    int hash = 1;
+    for (int i = from; i < from + length; i++) {
+      hash = 31 * hash + data[i];
+    }
+    return hash;
   }
 
   @Override
@@ -19,6 +19,7 @@ package org.xipki.ocsp.server;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -49,6 +50,18 @@ public class OCSPRespBuilder {
   private static final byte[] successfulStatus = Hex.decode("0a0100");
   private static final byte[] responseTypeBasic = Hex.decode("06092b0601050507300101");
 
+  /**
+   * Max. size of the per-thread scratch buffer. Larger ResponseData are encoded in a
+   * temporary array.
+   */
+  private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+  /**
+   * Per-thread scratch buffer in which the ResponseData is encoded and signed, so that only
+   * the final OCSPResponse needs to be allocated.
+   */
+  private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[2048]);
+
   private List<SingleResponse> list = new LinkedList<>();
   private Extensions responseExtensions = null;
   private ResponderID responderId;
@@ -90,40 +103,98 @@ public class OCSPRespBuilder {
   public byte[] buildOCSPResponse(ConcurrentContentSigner signer,
       TaggedCertSequence taggedCertSequence, Date producedAt)
       throws OCSPException, NoIdleSignerException {
-    ResponseData responseData = new ResponseData(0,
-        responderId, producedAt, list, responseExtensions);
-
-    byte[] tbs = new byte[responseData.getEncodedLength()];
-    responseData.write(tbs, 0);
-
     ConcurrentBagEntrySigner signer0 = signer.borrowSigner();
+    try {
+      return buildOCSPResponse(signer0.value(), taggedCertSequence, producedAt);
+    } finally {
+      signer.requiteSigner(signer0);
+    }
+  } // method buildOCSPResponse
 
-    byte[] signature;
-    byte[] sigAlgId;
+  /**
+   * Builds the OCSP responses of several builders. All responses are signed by one
+   * borrowed signer, so that the overhead to borrow the signer (e.g. a PKCS#11 session)
+   * is paid only once.
+   *
+   * @param signer
+   *          Signer.
+   * @param builders
+   *          Builders of the responses.
+   * @param taggedCertSequence
+   *          Certificates to be embedded in the responses. Could be {@code null}.
+   * @param producedAt
+   *          The producedAt field of the responses.
+   * @return the encoded responses, in the same order as the builders.
+   * @throws OCSPException
+   *           If signing the responses failed.
+   * @throws NoIdleSignerException
+   *           If no idle signer is available.
+   */
+  // CHECKSTYLE:SKIP
+  public static List<byte[]> buildOCSPResponses(ConcurrentContentSigner signer,
+      List<OCSPRespBuilder> builders, TaggedCertSequence taggedCertSequence, Date producedAt)
+      throws OCSPException, NoIdleSignerException {
+    final int n = builders.size();
+    List<byte[]> responses = new ArrayList<>(n);
 
+    ConcurrentBagEntrySigner signer0 = signer.borrowSigner();
     try {
       XiContentSigner csigner0 = signer0.value();
-      OutputStream sigOut = csigner0.getOutputStream();
-      try {
-        sigOut.write(tbs);
-        sigOut.close();
-      } catch (IOException ex) {
-        throw new OCSPException("exception signing TBSRequest: " + ex.getMessage(), ex);
+      for (int i = 0; i < n; i++) {
+        responses.add(builders.get(i).buildOCSPResponse(csigner0, taggedCertSequence, producedAt));
       }
-
-      signature = csigner0.getSignature();
-      sigAlgId = csigner0.getEncodedAlgorithmIdentifier();
     } finally {
       signer.requiteSigner(signer0);
     }
 
+    return responses;
+  } // method buildOCSPResponses
+
+  // CHECKSTYLE:SKIP
+  private byte[] buildOCSPResponse(XiContentSigner signer,
+      TaggedCertSequence taggedCertSequence, Date producedAt)
+      throws OCSPException {
+    ResponseData responseData = new ResponseData(0,
+        responderId, producedAt, list, responseExtensions);
+    final int tbsLen = responseData.getEncodedLength();
+
+    // encode the ResponseData in the scratch buffer, and copy it only once into the response
+    byte[] tbs;
+    if (tbsLen > MAX_SCRATCH_SIZE) {
+      tbs = new byte[tbsLen];
+    } else {
+      tbs = scratch.get();
+      if (tbs.length < tbsLen) {
+        tbs = new byte[Math.max(tbsLen, Math.min(MAX_SCRATCH_SIZE, tbs.length << 1))];
+        scratch.set(tbs);
+      }
+    }
+    responseData.write(tbs, 0);
+
+    OutputStream sigOut = signer.getOutputStream();
+    try {
+      sigOut.write(tbs, 0, tbsLen);
+      sigOut.close();
+    } catch (IOException ex) {
+      throw new OCSPException("exception signing TBSRequest: " + ex.getMessage(), ex);
+    }
+
+    byte[] signature = signer.getSignature();
+    // the algorithm identifier must be read after the signature, e.g. it contains the IV in GMAC
+    byte[] sigAlgId = signer.getEncodedAlgorithmIdentifier();
+    return encodeOCSPResponse(tbs, tbsLen, sigAlgId, signature, taggedCertSequence);
+  } // method buildOCSPResponse
+
+  // CHECKSTYLE:SKIP
+  private static byte[] encodeOCSPResponse(byte[] tbs, int tbsLen, byte[] sigAlgId,
+      byte[] signature, TaggedCertSequence taggedCertSequence) {
     // ----- Get the length -----
     // BasicOCSPResponse.signature
     int signatureBodyLen = signature.length + 1;
     int signatureLen = getLen(signatureBodyLen);
 
     // BasicOCSPResponse
-    int basicResponseBodyLen = tbs.length + sigAlgId.length + signatureLen;
+    int basicResponseBodyLen = tbsLen + sigAlgId.length + signatureLen;
     if (taggedCertSequence != null) {
       basicResponseBodyLen += taggedCertSequence.getEncodedLength();
     }
@@ -163,7 +234,8 @@ public class OCSPRespBuilder {
     // BasicOCSPResponse
     offset += ASN1Type.writeHeader((byte) 0x30, basicResponseBodyLen, out, offset);
     // BasicOCSPResponse.tbsResponseData
-    offset += arraycopy(tbs, out, offset);
+    System.arraycopy(tbs, 0, out, offset, tbsLen);
+    offset += tbsLen;
 
     // BasicOCSPResponse.signatureAlgorithm
     offset += arraycopy(sigAlgId, out, offset);
@@ -177,7 +249,7 @@ public class OCSPRespBuilder {
       offset += taggedCertSequence.write(out, offset);
     }
     return out;
-  } // method buildOCSPResponse
+  } // method encodeOCSPResponse
 
   private static int getLen(int bodyLen) {
     return ASN1Type.getHeaderLen(bodyLen) + bodyLen;
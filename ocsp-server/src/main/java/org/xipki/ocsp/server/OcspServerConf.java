@@ -409,12 +409,104 @@ public class OcspServerConf extends ValidatableConf {
 
   } // class Responder
 
+  public static class Pregeneration extends ValidatableConf {
+
+    /**
+     * Names of the responders whose responses are pre-generated. If not set, the responses
+     * of all responders are pre-generated.
+     */
+    private List<String> responders;
+
+    /**
+     * How long before the cached response expires a new one will be generated.
+     * The default is 1 hour.
+     */
+    private String leadTime;
+
+    /**
+     * Interval between two runs. The default is 10 minutes.
+     */
+    private String interval;
+
+    /**
+     * Number of threads to sign the responses. The default is 4.
+     */
+    private int parallelism = 4;
+
+    public List<String> getResponders() {
+      return responders;
+    }
+
+    public void setResponders(List<String> responders) {
+      this.responders = responders;
+    }
+
+    public String getLeadTime() {
+      return leadTime;
+    }
+
+    public void setLeadTime(String leadTime) {
+      this.leadTime = leadTime;
+    }
+
+    public Validity leadTime() {
+      return leadTime == null ? new Validity(1, Unit.HOUR) : Validity.getInstance(leadTime);
+    }
+
+    public String getInterval() {
+      return interval;
+    }
+
+    public void setInterval(String interval) {
+      this.interval = interval;
+    }
+
+    public Validity interval() {
+      return interval == null ? new Validity(10, Unit.MINUTE) : Validity.getInstance(interval);
+    }
+
+    public int getParallelism() {
+      return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+      this.parallelism = parallelism;
+    }
+
+    @Override
+    public void validate()
+        throws InvalidConfException {
+      if (parallelism < 1) {
+        throw new InvalidConfException("parallelism must not be less than 1: " + parallelism);
+      }
+    }
+
+  } // class Pregeneration
+
   public static class ResponseCache extends ValidatableConf {
 
     private DataSourceConf datasource;
 
     private String validity;
 
+    /**
+     * Maximal number of responses held in memory in front of the database.
+     * The default is 0, namely no in-memory cache.
+     */
+    private int memCacheSize;
+
+    /**
+     * Maximal number of responses waiting to be written to the database in background.
+     * The default is 10000. Values less than 1 let the responses be written synchronously.
+     */
+    private int writeQueueSize = 10000;
+
+    /**
+     * Configuration of the background pre-generation of responses. If not set, the
+     * responses are generated on demand only.
+     */
+    private Pregeneration pregeneration;
+
     public DataSourceConf getDatasource() {
       return datasource;
     }
@@ -435,10 +527,35 @@ public class OcspServerConf extends ValidatableConf {
       return validity == null ? new Validity(1, Unit.DAY) : Validity.getInstance(validity);
     }
 
+    public int getMemCacheSize() {
+      return memCacheSize;
+    }
+
+    public void setMemCacheSize(int memCacheSize) {
+      this.memCacheSize = memCacheSize;
+    }
+
+    public int getWriteQueueSize() {
+      return writeQueueSize;
+    }
+
+    public void setWriteQueueSize(int writeQueueSize) {
+      this.writeQueueSize = writeQueueSize;
+    }
+
+    public Pregeneration getPregeneration() {
+      return pregeneration;
+    }
+
+    public void setPregeneration(Pregeneration pregeneration) {
+      this.pregeneration = pregeneration;
+    }
+
     @Override
     public void validate()
         throws InvalidConfException {
       notNull(datasource, "datasource");
+      validate(pregeneration);
     }
 
   } // class ResponseCache
@@ -145,6 +145,20 @@ public class OcspServerImpl implements OcspServer {
     }
   } // class OcspRespControl
 
+  /**
+   * Status of the certificates of one issuer, retrieved at once from the first store which
+   * knows the issuer.
+   */
+  private static class PrefetchedCertStatuses {
+    private final OcspStore store;
+    private final Map<BigInteger, CertStatusInfo> statuses;
+
+    PrefetchedCertStatuses(OcspStore store, Map<BigInteger, CertStatusInfo> statuses) {
+      this.store = store;
+      this.statuses = statuses;
+    }
+  } // class PrefetchedCertStatuses
+
   public static final long DFLT_CACHE_MAX_AGE = 60; // 1 minute
 
   private static final byte[] DERNullBytes = new byte[]{0x05, 0x00};
@@ -178,6 +192,8 @@ public class OcspServerImpl implements OcspServer {
 
   private ResponseCacher responseCacher;
 
+  private ResponsePregenerator responsePregenerator;
+
   private Map<String, ResponderImpl> responders = new HashMap<>();
 
   private Map<String, ResponseSigner> signers = new HashMap<>();
@@ -311,6 +327,10 @@ public class OcspServerImpl implements OcspServer {
     initialized.set(false);
 
     // reset
+    if (responsePregenerator != null) {
+      responsePregenerator.close();
+      responsePregenerator = null;
+    }
     responseCacher = null;
     responders.clear();
     signers.clear();
@@ -464,7 +484,8 @@ public class OcspServerImpl implements OcspServer {
       } finally {
         closeStream(dsStream);
       }
-      responseCacher = new ResponseCacher(datasource, master, cacheType.validity());
+      responseCacher = new ResponseCacher(datasource, master, cacheType.validity(),
+          cacheType.getMemCacheSize(), cacheType.getWriteQueueSize());
       responseCacher.init();
     }
 
@@ -593,11 +614,41 @@ public class OcspServerImpl implements OcspServer {
       list2.add(m.str);
     }
     this.servletPaths = list2;
+
+    // pre-generation of responses
+    OcspServerConf.Pregeneration pregenConf =
+        cacheType == null ? null : cacheType.getPregeneration();
+    if (pregenConf != null) {
+      if (!master) {
+        throw new InvalidConfException("pre-generation of responses requires the master mode");
+      }
+
+      List<ResponderImpl> pregenResponders = new LinkedList<>();
+      if (CollectionUtil.isEmpty(pregenConf.getResponders())) {
+        pregenResponders.addAll(responders.values());
+      } else {
+        for (String name : pregenConf.getResponders()) {
+          ResponderImpl responder = responders.get(name);
+          if (responder == null) {
+            throw new InvalidConfException("no responder named '" + name + "' is defined");
+          }
+          pregenResponders.add(responder);
+        }
+      }
+
+      responsePregenerator = new ResponsePregenerator(this, responseCacher, pregenResponders,
+          pregenConf);
+      responsePregenerator.init();
+    }
   } // method init0
 
   @Override
   public void close() {
     LOG.info("stopped OCSP Responder");
+    if (responsePregenerator != null) {
+      responsePregenerator.close();
+    }
+
     if (responseCacher != null) {
       responseCacher.close();
     }
@@ -616,15 +667,21 @@ public class OcspServerImpl implements OcspServer {
     ResponderImpl responder = (ResponderImpl) responder2;
     RequestOption reqOpt = responder.getRequestOption();
 
-    int version;
+    if (request.length > reqOpt.getMaxRequestSize()) {
+      LOG.warn("request too large: {} > {}", request.length, reqOpt.getMaxRequestSize());
+      return unsuccesfulOCSPRespMap.get(OcspResponseStatus.malformedRequest);
+    }
+
+    // parse the request only once, the CertIDs and extensions reference the request bytes
+    OcspRequest parsedReq;
     try {
-      version = OcspRequest.readRequestVersion(request);
+      parsedReq = OcspRequest.getInstance(request);
     } catch (EncodingException ex) {
-      String message = "could not extract version from request";
-      LOG.warn(message);
+      LOG.warn("could not parse request: {}", ex.getMessage());
       return unsuccesfulOCSPRespMap.get(OcspResponseStatus.malformedRequest);
     }
 
+    int version = parsedReq.getVersion();
     if (!reqOpt.isVersionAllowed(version)) {
       String message = "invalid request version " + version;
       LOG.warn(message);
@@ -635,7 +692,7 @@ public class OcspServerImpl implements OcspServer {
     OcspServerConf.ResponseOption repOpt = responder.getResponseOption();
 
     try {
-      Object reqOrRrrorResp = checkSignature(request, reqOpt);
+      Object reqOrRrrorResp = checkSignature(request, parsedReq, reqOpt);
       if (reqOrRrrorResp instanceof OcspRespWithCacheInfo) {
         return (OcspRespWithCacheInfo) reqOrRrrorResp;
       }
@@ -764,6 +821,7 @@ public class OcspServerImpl implements OcspServer {
       }
 
       AlgorithmCode cacheDbSigAlgCode = null;
+      HashAlgo cacheDbCertIdHashAlgo = null;
       BigInteger cacheDbSerialNumber = null;
       Integer cacheDbIssuerId = null;
 
@@ -780,20 +838,22 @@ public class OcspServerImpl implements OcspServer {
         }
 
         cacheDbSigAlgCode = concurrentSigner.getAlgorithmCode();
+        cacheDbCertIdHashAlgo = reqHashAlgo;
 
         cacheDbIssuerId = responseCacher.getIssuerId(certId.getIssuer());
         cacheDbSerialNumber = certId.getSerialNumber();
 
         if (cacheDbIssuerId != null) {
           OcspRespWithCacheInfo cachedResp = responseCacher.getOcspResponse(
-              cacheDbIssuerId.intValue(), cacheDbSerialNumber, cacheDbSigAlgCode);
+              cacheDbIssuerId.intValue(), cacheDbSerialNumber, cacheDbSigAlgCode,
+              cacheDbCertIdHashAlgo);
           if (cachedResp != null) {
             return cachedResp;
           }
         } else if (master) {
           // store the issuer certificate in cache database.
           X509Cert issuerCert = null;
-          for (OcspStore store : responder.getStores()) {
+          for (OcspStore store : responder.getStores(certId.getIssuer())) {
             issuerCert = store.getIssuerCert(certId.getIssuer());
             if (issuerCert != null) {
               break;
@@ -813,10 +873,14 @@ public class OcspServerImpl implements OcspServer {
       ResponderID responderId = signer.getResponderId(repOpt.isResponderIdByName());
       OCSPRespBuilder builder = new OCSPRespBuilder(responderId);
 
+      Date now = new Date();
+      Map<RequestIssuer, PrefetchedCertStatuses> prefetchedStatuses = (requestsSize > 1)
+          ? prefetchCertStatuses(now, requestList, responder, reqOpt, repOpt) : null;
+
       boolean unknownAsRevoked = false;
       AtomicBoolean unknownAsRevoked0 = new AtomicBoolean(false);
       for (int i = 0; i < requestsSize; i++) {
-        OcspRespWithCacheInfo failureOcspResp = processCertReq(
+        OcspRespWithCacheInfo failureOcspResp = processCertReq(now, prefetchedStatuses,
             unknownAsRevoked0, requestList.get(i),
             builder, responder, reqOpt, repOpt, repControl);
 
@@ -837,16 +901,7 @@ public class OcspServerImpl implements OcspServer {
         builder.setResponseExtensions(new Extensions(respExtensions));
       }
 
-      TaggedCertSequence certsInResp;
-      EmbedCertsMode certsMode = repOpt.getEmbedCertsMode();
-      if (certsMode == EmbedCertsMode.SIGNER) {
-        certsInResp = signer.getSequenceOfCert();
-      } else if (certsMode == EmbedCertsMode.NONE) {
-        certsInResp = null;
-      } else {
-        // certsMode == EmbedCertsMode.SIGNER_AND_CA
-        certsInResp = signer.getSequenceOfCertChain();
-      }
+      TaggedCertSequence certsInResp = getCertsInResp(signer, repOpt);
 
       Date producedAt = new Date();
       byte[] encodeOcspResponse;
@@ -866,7 +921,7 @@ public class OcspServerImpl implements OcspServer {
         // of storage
         responseCacher.storeOcspResponse(cacheDbIssuerId.intValue(), cacheDbSerialNumber,
             producedAtSeconds, repControl.cacheNextUpdate, cacheDbSigAlgCode,
-            encodeOcspResponse);
+            cacheDbCertIdHashAlgo, encodeOcspResponse);
       }
 
       if (viaGet && repControl.canCacheInfo) {
@@ -884,8 +939,133 @@ public class OcspServerImpl implements OcspServer {
     }
   } // method ask
 
-  private OcspRespWithCacheInfo processCertReq(AtomicBoolean unknownAsRevoked,
-      CertID certId, OCSPRespBuilder builder,
+  /**
+   * Generates the nonce-less responses for the given CertIDs with the default signer of the
+   * responder, and stores them in the response cache. All responses are signed with one
+   * borrowed signer.
+   *
+   * @param responder
+   *          Responder.
+   * @param certIds
+   *          CertIDs of the target certificates.
+   * @param cacheIssuerId
+   *          Issuer ID in the cache database.
+   * @return number of cached responses. Responses with status unknown are not cached.
+   */
+  int pregenerateResponses(ResponderImpl responder, List<CertID> certIds, int cacheIssuerId)
+      throws IOException, NoIdleSignerException, OCSPException {
+    RequestOption reqOpt = responder.getRequestOption();
+    OcspServerConf.ResponseOption repOpt = responder.getResponseOption();
+    ResponseSigner signer = responder.getSigner();
+    ConcurrentContentSigner concurrentSigner = signer.getFirstSigner();
+    ResponderID responderId = signer.getResponderId(repOpt.isResponderIdByName());
+
+    List<OCSPRespBuilder> builders = new ArrayList<>(certIds.size());
+    List<CertID> builtCertIds = new ArrayList<>(certIds.size());
+    List<Long> nextUpdates = new ArrayList<>(certIds.size());
+
+    Date now = new Date();
+    Map<RequestIssuer, PrefetchedCertStatuses> prefetchedStatuses =
+        prefetchCertStatuses(now, certIds, responder, reqOpt, repOpt);
+
+    for (CertID certId : certIds) {
+      OcspRespControl repControl = new OcspRespControl();
+      repControl.canCacheInfo = true;
+
+      OCSPRespBuilder builder = new OCSPRespBuilder(responderId);
+      OcspRespWithCacheInfo failureOcspResp = processCertReq(now, prefetchedStatuses,
+          new AtomicBoolean(false), certId, builder, responder, reqOpt, repOpt, repControl);
+      if (failureOcspResp == null && repControl.canCacheInfo) {
+        builders.add(builder);
+        builtCertIds.add(certId);
+        nextUpdates.add(repControl.cacheNextUpdate);
+      }
+    }
+
+    if (builders.isEmpty()) {
+      return 0;
+    }
+
+    Date producedAt = new Date();
+    List<byte[]> encodedOcspResponses = OCSPRespBuilder.buildOCSPResponses(concurrentSigner,
+        builders, getCertsInResp(signer, repOpt), producedAt);
+
+    int num = 0;
+    for (int i = 0; i < encodedOcspResponses.size(); i++) {
+      CertID certId = builtCertIds.get(i);
+      if (responseCacher.storeOcspResponse(cacheIssuerId, certId.getSerialNumber(),
+          producedAt.getTime() / 1000, nextUpdates.get(i), concurrentSigner.getAlgorithmCode(),
+          certId.getIssuer().hashAlgorithm(), encodedOcspResponses.get(i), true)) {
+        num++;
+      }
+    }
+    return num;
+  } // method pregenerateResponses
+
+  private static TaggedCertSequence getCertsInResp(ResponseSigner signer,
+      OcspServerConf.ResponseOption repOpt) {
+    EmbedCertsMode certsMode = repOpt.getEmbedCertsMode();
+    if (certsMode == EmbedCertsMode.SIGNER) {
+      return signer.getSequenceOfCert();
+    } else if (certsMode == EmbedCertsMode.NONE) {
+      return null;
+    } else {
+      // certsMode == EmbedCertsMode.SIGNER_AND_CA
+      return signer.getSequenceOfCertChain();
+    }
+  } // method getCertsInResp
+
+  /**
+   * Retrieves the status of the requested certificates at once for each issuer with more than
+   * one requested certificate.
+   */
+  private Map<RequestIssuer, PrefetchedCertStatuses> prefetchCertStatuses(Date now,
+      List<CertID> certIds, ResponderImpl responder, RequestOption reqOpt,
+      OcspServerConf.ResponseOption repOpt) {
+    Map<RequestIssuer, List<BigInteger>> serialsMap = new HashMap<>();
+    for (CertID certId : certIds) {
+      RequestIssuer reqIssuer = certId.getIssuer();
+      if (!reqOpt.allows(reqIssuer.hashAlgorithm())) {
+        continue;
+      }
+
+      List<BigInteger> serials = serialsMap.get(reqIssuer);
+      if (serials == null) {
+        serials = new ArrayList<>();
+        serialsMap.put(reqIssuer, serials);
+      }
+      serials.add(certId.getSerialNumber());
+    }
+
+    Map<RequestIssuer, PrefetchedCertStatuses> prefetchedStatuses = new HashMap<>();
+    for (Map.Entry<RequestIssuer, List<BigInteger>> entry : serialsMap.entrySet()) {
+      if (entry.getValue().size() < 2) {
+        continue;
+      }
+
+      RequestIssuer reqIssuer = entry.getKey();
+      List<OcspStore> stores = responder.getStores(reqIssuer);
+      if (stores.isEmpty()) {
+        continue;
+      }
+
+      OcspStore store = stores.get(0);
+      try {
+        Map<BigInteger, CertStatusInfo> statuses = store.getCertStatuses(now, reqIssuer,
+            entry.getValue(), repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
+            responder.getResponderOption().isInheritCaRevocation());
+        prefetchedStatuses.put(reqIssuer, new PrefetchedCertStatuses(store, statuses));
+      } catch (OcspStoreException ex) {
+        // the status will be retrieved for each certificate separately
+        LogUtil.warn(LOG, ex, "getCertStatuses() of CertStatusStore " + store.getName());
+      }
+    }
+    return prefetchedStatuses;
+  } // method prefetchCertStatuses
+
+  private OcspRespWithCacheInfo processCertReq(Date now,
+      Map<RequestIssuer, PrefetchedCertStatuses> prefetchedStatuses,
+      AtomicBoolean unknownAsRevoked, CertID certId, OCSPRespBuilder builder,
       ResponderImpl responder, RequestOption reqOpt, OcspServerConf.ResponseOption repOpt,
       OcspRespControl repControl)
           throws IOException {
@@ -901,16 +1081,18 @@ public class OcspServerImpl implements OcspServer {
     BigInteger serial = certId.getSerialNumber();
 
     RequestIssuer reqIssuer = certId.getIssuer();
-    Date now = new Date();
-    for (OcspStore store : responder.getStores()) {
-      if (!store.knowsIssuer(reqIssuer)) {
-        continue;
-      }
-
+    PrefetchedCertStatuses prefetched = (prefetchedStatuses == null)
+        ? null : prefetchedStatuses.get(reqIssuer);
+    for (OcspStore store : responder.getStores(reqIssuer)) {
       try {
-        certStatusInfo = store.getCertStatus(now, certId.getIssuer(), serial,
-            repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
-            responder.getResponderOption().isInheritCaRevocation());
+        if (prefetched != null && prefetched.store == store
+            && prefetched.statuses.containsKey(serial)) {
+          certStatusInfo = prefetched.statuses.get(serial);
+        } else {
+          certStatusInfo = store.getCertStatus(now, certId.getIssuer(), serial,
+              repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
+              responder.getResponderOption().isInheritCaRevocation());
+        }
         if (certStatusInfo != null) {
           CertStatus status = certStatusInfo.getCertStatus();
           if (status == CertStatus.UNKNOWN || status == CertStatus.IGNORE) {
@@ -1090,6 +1272,22 @@ public class OcspServerImpl implements OcspServer {
     signerHealth.setHealthy(signerHealthy);
     result.addChildCheck(signerHealth);
 
+    if (responseCacher != null) {
+      HealthCheckResult cacheHealth = new HealthCheckResult();
+      cacheHealth.setName("ResponseCache");
+      cacheHealth.setHealthy(responseCacher.isOnService());
+      cacheHealth.setStatuses(responseCacher.getStatuses());
+      result.addChildCheck(cacheHealth);
+    }
+
+    if (responsePregenerator != null) {
+      HealthCheckResult pregenHealth = new HealthCheckResult();
+      pregenHealth.setName("ResponsePregenerator");
+      pregenHealth.setHealthy(true);
+      pregenHealth.setStatuses(responsePregenerator.getStatuses());
+      result.addChildCheck(pregenHealth);
+    }
+
     result.setHealthy(healthy);
     return result;
   } // method healthCheck
@@ -1099,23 +1297,24 @@ public class OcspServerImpl implements OcspServer {
     securityFactory.refreshTokenForSignerType(signerType);
   }
 
-  private Object checkSignature(byte[] request, RequestOption requestOption)
+  private Object checkSignature(byte[] request, OcspRequest parsedReq,
+      RequestOption requestOption)
           throws OCSPException, CertificateParsingException, InvalidAlgorithmParameterException {
-    OCSPRequest req;
-    try {
-      if (!requestOption.isValidateSignature()) {
-        return OcspRequest.getInstance(request);
-      }
+    if (!requestOption.isValidateSignature()) {
+      return parsedReq;
+    }
 
-      if (!OcspRequest.containsSignature(request)) {
-        if (requestOption.isSignatureRequired()) {
-          LOG.warn("signature in request required");
-          return unsuccesfulOCSPRespMap.get(OcspResponseStatus.sigRequired);
-        } else {
-          return OcspRequest.getInstance(request);
-        }
+    if (!parsedReq.isSignaturePresent()) {
+      if (requestOption.isSignatureRequired()) {
+        LOG.warn("signature in request required");
+        return unsuccesfulOCSPRespMap.get(OcspResponseStatus.sigRequired);
+      } else {
+        return parsedReq;
       }
+    }
 
+    OCSPRequest req;
+    try {
       try {
         req = OCSPRequest.getInstance(request);
       } catch (IllegalArgumentException ex) {
@@ -1156,11 +1355,7 @@ public class OcspServerImpl implements OcspServer {
     // validate the certPath
     Date referenceTime = new Date();
     if (canBuildCertpath(certs, requestOption, referenceTime)) {
-      try {
-        return OcspRequest.getInstance(req);
-      } catch (EncodingException ex) {
-        return unsuccesfulOCSPRespMap.get(OcspResponseStatus.malformedRequest);
-      }
+      return parsedReq;
     }
 
     LOG.warn("could not build certpath for the request's signer certificate");
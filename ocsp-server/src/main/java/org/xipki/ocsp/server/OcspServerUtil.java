@@ -40,6 +40,7 @@ import org.xipki.ocsp.api.OcspStoreException;
 import org.xipki.ocsp.server.store.CaDbCertStatusStore;
 import org.xipki.ocsp.server.store.CrlDbCertStatusStore;
 import org.xipki.ocsp.server.store.DbCertStatusStore;
+import org.xipki.ocsp.server.store.InMemoryCertStatusStore;
 import org.xipki.ocsp.server.store.ejbca.EjbcaCertStatusStore;
 import org.xipki.ocsp.server.type.ExtendedExtension;
 import org.xipki.ocsp.server.type.OID;
@@ -74,6 +75,8 @@ public class OcspServerUtil {
 
   private static final String STORE_TYPE_XIPKI_DB = "xipki-db";
 
+  private static final String STORE_TYPE_XIPKI_DB_INMEMORY = "xipki-db-inmemory";
+
   private static final String STORE_TYPE_XIPKI_CA_DB = "xipki-ca-db";
 
   private static final String STORE_TYPE_CRL = "crl";
@@ -144,6 +147,8 @@ public class OcspServerUtil {
         throw new ObjectCreationException("OCSP store type is not specified");
       } else if (STORE_TYPE_XIPKI_DB.equals(type)) {
         store = new DbCertStatusStore();
+      } else if (STORE_TYPE_XIPKI_DB_INMEMORY.equals(type)) {
+        store = new InMemoryCertStatusStore();
       } else if (STORE_TYPE_CRL.equals(type)) {
         store = new CrlDbCertStatusStore();
       } else if (STORE_TYPE_XIPKI_CA_DB.equals(type)) {
@@ -20,9 +20,15 @@ package org.xipki.ocsp.server;
 import static org.xipki.util.Args.notEmpty;
 import static org.xipki.util.Args.notNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.xipki.ocsp.api.OcspStore;
+import org.xipki.ocsp.api.RequestIssuer;
 import org.xipki.ocsp.api.Responder;
 import org.xipki.ocsp.server.OcspServerConf.ResponseOption;
 
@@ -35,6 +41,22 @@ import org.xipki.ocsp.server.OcspServerConf.ResponseOption;
 
 public class ResponderImpl implements Responder {
 
+  /**
+   * Routing table from the issuer to the stores which know it. It is valid as long as the
+   * issuers versions of all stores are unchanged.
+   */
+  private static class IssuerRouting {
+
+    private final long[] issuersVersions;
+
+    private final Map<RequestIssuer, List<OcspStore>> routes = new ConcurrentHashMap<>();
+
+    private IssuerRouting(long[] issuersVersions) {
+      this.issuersVersions = issuersVersions;
+    }
+
+  } // class IssuerRouting
+
   private final ResponderOption responderOption;
 
   private final RequestOption requestOption;
@@ -45,6 +67,8 @@ public class ResponderImpl implements Responder {
 
   private final List<OcspStore> stores;
 
+  private volatile IssuerRouting issuerRouting;
+
   ResponderImpl(ResponderOption responderOption, RequestOption requestOption,
       ResponseOption responseOption, ResponseSigner signer, List<OcspStore> stores) {
     this.responderOption = notNull(responderOption, "responderOption");
@@ -74,6 +98,63 @@ public class ResponderImpl implements Responder {
     return stores;
   }
 
+  /**
+   * Returns the stores which know the given issuer.
+   *
+   * @param reqIssuer
+   *          Requested issuer
+   * @return the stores which know the given issuer, in the configured order. An empty list if
+   *         no store knows it.
+   */
+  public List<OcspStore> getStores(RequestIssuer reqIssuer) {
+    final int size = stores.size();
+    long[] versions = new long[size];
+    boolean cacheable = true;
+    for (int i = 0; i < size; i++) {
+      versions[i] = stores.get(i).getIssuersVersion();
+      if (versions[i] == -1) {
+        cacheable = false;
+      }
+    }
+
+    IssuerRouting routing = null;
+    if (cacheable) {
+      routing = issuerRouting;
+      if (routing == null || !Arrays.equals(routing.issuersVersions, versions)) {
+        routing = new IssuerRouting(versions);
+        issuerRouting = routing;
+      } else {
+        List<OcspStore> route = routing.routes.get(reqIssuer);
+        if (route != null) {
+          return route;
+        }
+      }
+    }
+
+    List<OcspStore> route = new ArrayList<>(1);
+    for (OcspStore store : stores) {
+      if (store.knowsIssuer(reqIssuer)) {
+        route.add(store);
+      }
+    }
+
+    if (route.isEmpty()) {
+      // unknown issuers are not cached, they may come from arbitrary requests.
+      return Collections.emptyList();
+    }
+
+    route = Collections.unmodifiableList(route);
+    if (routing != null) {
+      // the issuer may reference the whole request
+      byte[] data = reqIssuer.getData();
+      int from = reqIssuer.getFrom();
+      RequestIssuer key = new RequestIssuer(
+          Arrays.copyOfRange(data, from, from + reqIssuer.getLength()));
+      routing.routes.put(key, route);
+    }
+    return route;
+  } // method getStores
+
   @Override
   public int getMaxRequestSize() {
     return requestOption.getMaxRequestSize();
@@ -0,0 +1,329 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server;
+
+import static org.xipki.util.Args.notNull;
+
+import java.io.Closeable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo.ResponseCacheInfo;
+import org.xipki.ocsp.api.OcspStore;
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.ocsp.server.store.ResponseCacher;
+import org.xipki.ocsp.server.type.CertID;
+import org.xipki.security.AlgorithmCode;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.X509Cert;
+import org.xipki.util.LogUtil;
+
+/**
+ * Generates the nonce-less OCSP responses (RFC 5019 style) of all certificates known by the
+ * stores in background, before the cached ones expire, and feeds them into the
+ * {@link ResponseCacher}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+class ResponsePregenerator implements Closeable {
+
+  private class PregenerateService implements Runnable {
+
+    @Override
+    public void run() {
+      if (!inProcess.compareAndSet(false, true)) {
+        return;
+      }
+
+      try {
+        pregenerate();
+      } catch (Throwable th) {
+        LogUtil.error(LOG, th, "error while pre-generating OCSP responses");
+      } finally {
+        inProcess.set(false);
+      }
+    }
+
+  } // class PregenerateService
+
+  private static final Logger LOG = LoggerFactory.getLogger(ResponsePregenerator.class);
+
+  private static final int PAGE_SIZE = 1000;
+
+  private static final int BATCH_SIZE = 50;
+
+  private final OcspServerImpl server;
+
+  private final ResponseCacher responseCacher;
+
+  private final List<ResponderImpl> responders;
+
+  private final long leadTimeSec;
+
+  private final long intervalSec;
+
+  private final int parallelism;
+
+  private final AtomicBoolean inProcess = new AtomicBoolean(false);
+
+  private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
+
+  private ExecutorService signExecutor;
+
+  private final AtomicLong numProcessed = new AtomicLong(0);
+
+  private final AtomicLong numGenerated = new AtomicLong(0);
+
+  private final AtomicLong numFailed = new AtomicLong(0);
+
+  // maximal delay in seconds of a response which should have been re-generated earlier
+  private final AtomicLong maxLag = new AtomicLong(0);
+
+  private volatile long lastRunStart;
+
+  private volatile long lastRunDuration;
+
+  ResponsePregenerator(OcspServerImpl server, ResponseCacher responseCacher,
+      List<ResponderImpl> responders, OcspServerConf.Pregeneration conf) {
+    this.server = notNull(server, "server");
+    this.responseCacher = notNull(responseCacher, "responseCacher");
+    this.responders = notNull(responders, "responders");
+    notNull(conf, "conf");
+    this.leadTimeSec = conf.leadTime().approxMinutes() * 60;
+    this.intervalSec = conf.interval().approxMinutes() * 60;
+    this.parallelism = conf.getParallelism();
+  }
+
+  void init() {
+    signExecutor = Executors.newFixedThreadPool(parallelism);
+    scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1);
+    scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+    scheduledThreadPoolExecutor.scheduleWithFixedDelay(new PregenerateService(), 60,
+        intervalSec, TimeUnit.SECONDS);
+    LOG.info("started pre-generation of OCSP responses: leadTime={}s, interval={}s, "
+        + "parallelism={}", leadTimeSec, intervalSec, parallelism);
+  }
+
+  @Override
+  public void close() {
+    if (scheduledThreadPoolExecutor != null) {
+      scheduledThreadPoolExecutor.shutdownNow();
+      scheduledThreadPoolExecutor = null;
+    }
+
+    if (signExecutor != null) {
+      signExecutor.shutdownNow();
+      signExecutor = null;
+    }
+  }
+
+  /**
+   * Returns the metrics of the pre-generation.
+   * @return the metrics.
+   */
+  Map<String, Object> getStatuses() {
+    Map<String, Object> statuses = new HashMap<>();
+    statuses.put("inProcess", inProcess.get());
+    statuses.put("processed", numProcessed.get());
+    statuses.put("generated", numGenerated.get());
+    statuses.put("failed", numFailed.get());
+    statuses.put("maxLagSeconds", maxLag.get());
+    statuses.put("lastRunStart", lastRunStart);
+    statuses.put("lastRunDurationMs", lastRunDuration);
+    return statuses;
+  }
+
+  private void pregenerate() {
+    long start = System.currentTimeMillis();
+    lastRunStart = start;
+    numProcessed.set(0);
+    numGenerated.set(0);
+    numFailed.set(0);
+    maxLag.set(0);
+
+    for (ResponderImpl responder : responders) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      pregenerate(responder);
+    }
+
+    lastRunDuration = System.currentTimeMillis() - start;
+    LOG.info("pre-generated {} of {} OCSP responses in {} ms, {} failed, max. lag {} s",
+        numGenerated.get(), numProcessed.get(), lastRunDuration, numFailed.get(), maxLag.get());
+  } // method pregenerate
+
+  private void pregenerate(ResponderImpl responder) {
+    // RFC 5019 requires SHA-1 in CertID
+    if (!responder.getRequestOption().allows(HashAlgo.SHA1)) {
+      LOG.warn("responder does not allow the CertID hash algorithm SHA1, skip it");
+      return;
+    }
+
+    AlgorithmCode sigAlg = responder.getSigner().getFirstSigner().getAlgorithmCode();
+
+    // an issuer known by several stores is answered by the first one
+    Set<RequestIssuer> processedIssuers = new HashSet<>();
+    for (OcspStore store : responder.getStores()) {
+      List<RequestIssuer> issuers = store.getIssuers(HashAlgo.SHA1);
+      if (issuers == null) {
+        LOG.info("store {} does not support the pre-generation of responses, skip it",
+            store.getName());
+        continue;
+      }
+
+      for (RequestIssuer issuer : issuers) {
+        if (!processedIssuers.add(issuer)) {
+          continue;
+        }
+
+        try {
+          pregenerate(responder, store, issuer, sigAlg);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch (Exception ex) {
+          LogUtil.error(LOG, ex, "could not pre-generate responses of issuer " + issuer
+              + " in store " + store.getName());
+        }
+      }
+    }
+  } // method pregenerate
+
+  private void pregenerate(ResponderImpl responder, OcspStore store, RequestIssuer issuer,
+      AlgorithmCode sigAlg)
+          throws Exception {
+    Integer cacheIssuerId = responseCacher.getIssuerId(issuer);
+    if (cacheIssuerId == null) {
+      X509Cert issuerCert = store.getIssuerCert(issuer);
+      if (issuerCert == null) {
+        return;
+      }
+      cacheIssuerId = responseCacher.storeIssuer(issuerCert);
+    }
+
+    final int iid = cacheIssuerId;
+    long fromId = 0;
+    while (true) {
+      SortedMap<Long, BigInteger> serials = store.getSerialNumbers(issuer, fromId, PAGE_SIZE);
+      if (serials == null || serials.isEmpty()) {
+        break;
+      }
+
+      numProcessed.addAndGet(serials.size());
+
+      // the cache info of the whole page is read at once
+      Map<BigInteger, ResponseCacheInfo> cacheInfos = responseCacher.getResponseCacheInfos(
+          iid, serials.values(), sigAlg, issuer.hashAlgorithm());
+
+      // sign the responses in batches, each with one borrowed signer. value: number of
+      // serial numbers in the batch
+      Map<Future<?>, Integer> futures = new LinkedHashMap<>();
+      long now = System.currentTimeMillis() / 1000;
+      List<BigInteger> batch = new ArrayList<>(BATCH_SIZE);
+      for (BigInteger serial : serials.values()) {
+        if (isFresh(cacheInfos.get(serial), now)) {
+          continue;
+        }
+
+        batch.add(serial);
+        if (batch.size() == BATCH_SIZE) {
+          futures.put(submit(responder, issuer, batch, iid), batch.size());
+          batch = new ArrayList<>(BATCH_SIZE);
+        }
+      }
+
+      if (!batch.isEmpty()) {
+        futures.put(submit(responder, issuer, batch, iid), batch.size());
+      }
+
+      for (Map.Entry<Future<?>, Integer> m : futures.entrySet()) {
+        try {
+          m.getKey().get();
+        } catch (ExecutionException ex) {
+          numFailed.addAndGet(m.getValue());
+          LogUtil.warn(LOG, ex.getCause(), "could not pre-generate response");
+        }
+      }
+
+      fromId = serials.lastKey();
+    }
+  } // method pregenerate
+
+  /**
+   * Returns whether the cached response does not need to be re-generated yet. Updates the
+   * max. lag if it should have been re-generated earlier.
+   */
+  private boolean isFresh(ResponseCacheInfo cacheInfo, long now) {
+    if (cacheInfo == null) {
+      return false;
+    }
+
+    // the cached response is removed once it is older than validity
+    long expiresAt = cacheInfo.getGeneratedAt() + responseCacher.getValidity();
+    Long nextUpdate = cacheInfo.getNextUpdate();
+    if (nextUpdate != null) {
+      expiresAt = Math.min(expiresAt, nextUpdate);
+    }
+
+    long lag = now - (expiresAt - leadTimeSec);
+    if (lag < 0) {
+      return true;
+    }
+
+    long prevMaxLag;
+    while (lag > (prevMaxLag = maxLag.get())) {
+      if (maxLag.compareAndSet(prevMaxLag, lag)) {
+        break;
+      }
+    }
+    return false;
+  } // method isFresh
+
+  private Future<?> submit(ResponderImpl responder, RequestIssuer issuer,
+      List<BigInteger> serials, int cacheIssuerId) {
+    return signExecutor.submit(() -> {
+      List<CertID> certIds = new ArrayList<>(serials.size());
+      for (BigInteger serial : serials) {
+        certIds.add(new CertID(issuer, serial));
+      }
+      numGenerated.addAndGet(server.pregenerateResponses(responder, certIds, cacheIssuerId));
+      return null;
+    });
+  } // method submit
+
+}
@@ -519,6 +519,11 @@ public class CaDbCertStatusStore extends OcspStore {
     return issuerStore != null && null != issuerStore.getIssuerForFp(reqIssuer);
   }
 
+  @Override
+  public long getIssuersVersion() {
+    return issuerStore.getVersion();
+  }
+
   @Override
   public X509Cert getIssuerCert(RequestIssuer reqIssuer) {
     if (issuerStore == null) {
@@ -0,0 +1,253 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.xipki.ocsp.server.store.DbCertStatusStore.CertRecord;
+
+/**
+ * Compact table of the status of all certificates of one issuer. The serial numbers are
+ * packed into one byte array, and the other fields into primitive arrays. An entry is found
+ * via an open addressing hash index over the serial numbers.
+ *
+ * <p>The table is filled via {@link #add(BigInteger, CertRecord)} and then frozen via
+ * {@link #buildIndex()}. A frozen table is never modified and can be read concurrently.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+class CertStatusTable {
+
+  private static final byte NOT_REVOKED = -1;
+
+  private final int certHashLen;
+
+  private byte[] serials;
+
+  // serial number of entry i is serials[serialOffsets[i]..serialOffsets[i + 1]]
+  private int[] serialOffsets;
+
+  private long[] notBefores;
+
+  private long[] notAfters;
+
+  // NOT_REVOKED if not revoked
+  private byte[] reasons;
+
+  private long[] revocationTimes;
+
+  private long[] invalidityTimes;
+
+  private int[] crlIds;
+
+  // certHashLen bytes per entry, all zero if the hash is not available
+  private byte[] certHashes;
+
+  private int size;
+
+  // index + 1 of the entry, 0 for empty slot
+  private int[] slots;
+
+  CertStatusTable(int certHashLen) {
+    this.certHashLen = certHashLen;
+
+    int initSize = 1024;
+    serials = new byte[initSize * 16];
+    serialOffsets = new int[initSize + 1];
+    notBefores = new long[initSize];
+    notAfters = new long[initSize];
+    reasons = new byte[initSize];
+    revocationTimes = new long[initSize];
+    invalidityTimes = new long[initSize];
+    crlIds = new int[initSize];
+    certHashes = new byte[initSize * certHashLen];
+  }
+
+  void add(BigInteger serialNumber, CertRecord record) {
+    if (slots != null) {
+      throw new IllegalStateException("table is already frozen");
+    }
+
+    byte[] serial = toBytes(serialNumber);
+
+    if (size == notBefores.length) {
+      int newSize = size * 2;
+      serialOffsets = Arrays.copyOf(serialOffsets, newSize + 1);
+      notBefores = Arrays.copyOf(notBefores, newSize);
+      notAfters = Arrays.copyOf(notAfters, newSize);
+      reasons = Arrays.copyOf(reasons, newSize);
+      revocationTimes = Arrays.copyOf(revocationTimes, newSize);
+      invalidityTimes = Arrays.copyOf(invalidityTimes, newSize);
+      crlIds = Arrays.copyOf(crlIds, newSize);
+      certHashes = Arrays.copyOf(certHashes, newSize * certHashLen);
+    }
+
+    int offset = serialOffsets[size];
+    if (offset + serial.length > serials.length) {
+      serials = Arrays.copyOf(serials, Math.max(serials.length * 2, offset + serial.length));
+    }
+    System.arraycopy(serial, 0, serials, offset, serial.length);
+    serialOffsets[size + 1] = offset + serial.length;
+
+    notBefores[size] = record.notBefore;
+    notAfters[size] = record.notAfter;
+    reasons[size] = record.revoked ? (byte) record.reason : NOT_REVOKED;
+    revocationTimes[size] = record.revTime;
+    invalidityTimes[size] = record.invalidityTime;
+    crlIds[size] = record.crlId;
+    if (certHashLen > 0 && record.certHash != null && record.certHash.length == certHashLen) {
+      System.arraycopy(record.certHash, 0, certHashes, size * certHashLen, certHashLen);
+    }
+
+    size++;
+  } // method add
+
+  /**
+   * Trims the arrays and builds the hash index. Afterwards no entry can be added.
+   */
+  void buildIndex() {
+    serials = Arrays.copyOf(serials, serialOffsets[size]);
+    serialOffsets = Arrays.copyOf(serialOffsets, size + 1);
+    notBefores = Arrays.copyOf(notBefores, size);
+    notAfters = Arrays.copyOf(notAfters, size);
+    reasons = Arrays.copyOf(reasons, size);
+    revocationTimes = Arrays.copyOf(revocationTimes, size);
+    invalidityTimes = Arrays.copyOf(invalidityTimes, size);
+    crlIds = Arrays.copyOf(crlIds, size);
+    certHashes = Arrays.copyOf(certHashes, size * certHashLen);
+
+    // load factor at most 0.5
+    int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+    int[] newSlots = new int[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < size; i++) {
+      int offset = serialOffsets[i];
+      int slot = hash(serials, offset, serialOffsets[i + 1] - offset) & mask;
+      while (newSlots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      newSlots[slot] = i + 1;
+    }
+    slots = newSlots;
+  } // method buildIndex
+
+  int size() {
+    return size;
+  }
+
+  boolean contains(BigInteger serialNumber) {
+    return indexOf(toBytes(serialNumber)) != -1;
+  }
+
+  /**
+   * Gets the record of given certificate.
+   *
+   * @param serialNumber Serial number of the certificate.
+   * @return the record, or {@code null} if the table does not contain the certificate.
+   */
+  CertRecord get(BigInteger serialNumber) {
+    int index = indexOf(toBytes(serialNumber));
+    return (index == -1) ? null : getRecord(index);
+  }
+
+  BigInteger getSerialNumber(int index) {
+    int offset = serialOffsets[index];
+    return new BigInteger(1,
+        Arrays.copyOfRange(serials, offset, serialOffsets[index + 1]));
+  }
+
+  CertRecord getRecord(int index) {
+    CertRecord record = new CertRecord();
+    record.notBefore = notBefores[index];
+    record.notAfter = notAfters[index];
+    record.revoked = reasons[index] != NOT_REVOKED;
+    if (record.revoked) {
+      record.reason = reasons[index];
+      record.revTime = revocationTimes[index];
+      record.invalidityTime = invalidityTimes[index];
+    }
+    record.crlId = crlIds[index];
+
+    if (certHashLen > 0) {
+      int offset = index * certHashLen;
+      for (int i = 0; i < certHashLen; i++) {
+        if (certHashes[offset + i] != 0) {
+          record.certHash = Arrays.copyOfRange(certHashes, offset, offset + certHashLen);
+          break;
+        }
+      }
+    }
+    return record;
+  } // method getRecord
+
+  private int indexOf(byte[] serial) {
+    if (slots == null) {
+      throw new IllegalStateException("table is not frozen yet");
+    }
+
+    int mask = slots.length - 1;
+    int slot = hash(serial, 0, serial.length) & mask;
+    while (true) {
+      int entry = slots[slot];
+      if (entry == 0) {
+        return -1;
+      }
+
+      int index = entry - 1;
+      int offset = serialOffsets[index];
+      int len = serialOffsets[index + 1] - offset;
+      if (len == serial.length) {
+        boolean equals = true;
+        for (int i = 0; i < len; i++) {
+          if (serials[offset + i] != serial[i]) {
+            equals = false;
+            break;
+          }
+        }
+
+        if (equals) {
+          return index;
+        }
+      }
+
+      slot = (slot + 1) & mask;
+    }
+  } // method indexOf
+
+  private static int hash(byte[] bytes, int offset, int len) {
+    int hash = 1;
+    for (int i = offset; i < offset + len; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    // spread the bits, since only the lower bits are used
+    hash ^= (hash >>> 16);
+    hash *= 0x85ebca6b;
+    hash ^= (hash >>> 13);
+    return hash;
+  }
+
+  private static byte[] toBytes(BigInteger serialNumber) {
+    byte[] bytes = serialNumber.toByteArray();
+    return (bytes.length > 1 && bytes[0] == 0)
+        ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+  }
+
+}
@@ -0,0 +1,626 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xipki.ocsp.server.store;
+
+import static org.xipki.util.Args.min;
+import static org.xipki.util.Args.notNull;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataAccessException.Reason;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.ocsp.server.store.ImportCrl.ImportCrlException;
+import org.xipki.security.CrlReason;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCert;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCertsIterator;
+
+/**
+ * Imports the revoked certificates of a full CRL in bulk mode: the existing entries of the
+ * issuer are prefetched into a compact in-memory index, the CRL is diffed against it and the
+ * resulting inserts and updates are applied via JDBC batches, optionally in several threads,
+ * each responsible for one partition of the serial numbers. Serial numbers occurring more than
+ * once in the CRL are rejected by the unique constraint (IID, SN), the failed batch is then
+ * applied again statement by statement.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+class CrlBulkImporter {
+
+  /**
+   * Existing entries of one issuer, sorted by the serial number.
+   */
+  private static class ExistingCerts {
+
+    private BigInteger[] serials;
+
+    private long[] ids;
+
+    // -1 if not revoked
+    private int[] reasons;
+
+    private long[] revocationTimes;
+
+    private long[] invalidityTimes;
+
+    private int[] crlIds;
+
+    // whether the entry has been seen in the CRL, set after sort()
+    private boolean[] seen;
+
+    private int size;
+
+    private ExistingCerts() {
+      int initSize = 1024;
+      serials = new BigInteger[initSize];
+      ids = new long[initSize];
+      reasons = new int[initSize];
+      revocationTimes = new long[initSize];
+      invalidityTimes = new long[initSize];
+      crlIds = new int[initSize];
+    }
+
+    private void add(BigInteger serial, long id, boolean revoked, int reason,
+        long revocationTime, long invalidityTime, int crlId) {
+      if (size == serials.length) {
+        int newSize = size * 2;
+        serials = Arrays.copyOf(serials, newSize);
+        ids = Arrays.copyOf(ids, newSize);
+        reasons = Arrays.copyOf(reasons, newSize);
+        revocationTimes = Arrays.copyOf(revocationTimes, newSize);
+        invalidityTimes = Arrays.copyOf(invalidityTimes, newSize);
+        crlIds = Arrays.copyOf(crlIds, newSize);
+      }
+
+      serials[size] = serial;
+      ids[size] = id;
+      reasons[size] = revoked ? reason : -1;
+      revocationTimes[size] = revocationTime;
+      invalidityTimes[size] = invalidityTime;
+      crlIds[size] = crlId;
+      size++;
+    } // method add
+
+    private void sort() {
+      Integer[] indexes = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        indexes[i] = i;
+      }
+      Arrays.sort(indexes, (a, b) -> serials[a].compareTo(serials[b]));
+
+      BigInteger[] newSerials = new BigInteger[size];
+      long[] newIds = new long[size];
+      int[] newReasons = new int[size];
+      long[] newRevocationTimes = new long[size];
+      long[] newInvalidityTimes = new long[size];
+      int[] newCrlIds = new int[size];
+
+      for (int i = 0; i < size; i++) {
+        int idx = indexes[i];
+        newSerials[i] = serials[idx];
+        newIds[i] = ids[idx];
+        newReasons[i] = reasons[idx];
+        newRevocationTimes[i] = revocationTimes[idx];
+        newInvalidityTimes[i] = invalidityTimes[idx];
+        newCrlIds[i] = crlIds[idx];
+      }
+
+      serials = newSerials;
+      ids = newIds;
+      reasons = newReasons;
+      revocationTimes = newRevocationTimes;
+      invalidityTimes = newInvalidityTimes;
+      crlIds = newCrlIds;
+      seen = new boolean[size];
+    } // method sort
+
+    private int indexOf(BigInteger serial) {
+      return Arrays.binarySearch(serials, 0, size, serial);
+    }
+
+    private boolean isDifferent(int index, RevokedCert revokedCert, int crlId) {
+      return crlIds[index] != crlId
+          || reasons[index] != revokedCert.getReason()
+          || revocationTimes[index] != revokedCert.getRevocationDate()
+          || invalidityTimes[index] != revokedCert.getInvalidityDate();
+    }
+
+  } // class ExistingCerts
+
+  private static class Operation {
+
+    private static final Operation END = new Operation(0, 0, null, null, 0);
+
+    private static final int INSERT = 1;
+
+    private static final int UPDATE = 2;
+
+    private static final int TOUCH = 3;
+
+    private final int type;
+
+    private final long id;
+
+    private final BigInteger serial;
+
+    private final RevokedCert revokedCert;
+
+    private final long updateTimeSec;
+
+    private Operation(int type, long id, BigInteger serial, RevokedCert revokedCert,
+        long updateTimeSec) {
+      this.type = type;
+      this.id = id;
+      this.serial = serial;
+      this.revokedCert = revokedCert;
+      this.updateTimeSec = updateTimeSec;
+    }
+
+  } // class Operation
+
+  /**
+   * Applies the operations of one partition via JDBC batches.
+   */
+  private class Partition {
+
+    private final Connection conn;
+
+    private final int caId;
+
+    private final int crlInfoId;
+
+    private final PreparedStatement psInsert;
+
+    private final PreparedStatement psUpdate;
+
+    private final PreparedStatement psTouch;
+
+    // operations of the current batch, applied again one by one if the batch fails
+    private final List<Operation> pendingOps = new ArrayList<>();
+
+    private Partition(Connection conn, int caId, int crlInfoId) throws DataAccessException {
+      this.conn = conn;
+      this.caId = caId;
+      this.crlInfoId = crlInfoId;
+      PreparedStatement insert = null;
+      PreparedStatement update = null;
+      try {
+        insert = datasource.prepareStatement(conn, ImportCrl.SQL_INSERT_CERT_REV);
+        update = datasource.prepareStatement(conn, ImportCrl.SQL_UPDATE_CERT_REV);
+        this.psTouch = datasource.prepareStatement(conn, ImportCrl.SQL_UPDATE_CERT_LUPDATE);
+      } catch (DataAccessException ex) {
+        datasource.releaseResources(insert, null, false);
+        datasource.releaseResources(update, null, false);
+        throw ex;
+      }
+      this.psInsert = insert;
+      this.psUpdate = update;
+    }
+
+    private void apply(Operation op) throws DataAccessException {
+      try {
+        bind(op).addBatch();
+      } catch (SQLException ex) {
+        throw datasource.translate(getSql(op), ex);
+      }
+
+      pendingOps.add(op);
+      if (pendingOps.size() >= sqlBatchCommit) {
+        flush();
+      }
+    } // method apply
+
+    private void flush() throws DataAccessException {
+      if (pendingOps.isEmpty()) {
+        return;
+      }
+
+      String sql = null;
+      try {
+        sql = ImportCrl.SQL_INSERT_CERT_REV;
+        psInsert.executeBatch();
+        sql = ImportCrl.SQL_UPDATE_CERT_REV;
+        psUpdate.executeBatch();
+        sql = ImportCrl.SQL_UPDATE_CERT_LUPDATE;
+        psTouch.executeBatch();
+        sql = "commit";
+        conn.commit();
+      } catch (SQLException ex) {
+        DataAccessException dex = datasource.translate(sql, ex);
+        if (!dex.getReason().isDescendantOrSelfOf(Reason.DataIntegrityViolation)) {
+          throw dex;
+        }
+
+        // most probably a serial number occurring more than once in the CRL
+        LOG.info("could not apply batch of {} operations, apply them one by one",
+            pendingOps.size());
+        rollback();
+        applyOneByOne();
+      }
+      pendingOps.clear();
+    } // method flush
+
+    private void applyOneByOne() throws DataAccessException {
+      clearBatches();
+
+      for (Operation op : pendingOps) {
+        String sql = getSql(op);
+        try {
+          bind(op).executeUpdate();
+          sql = "commit";
+          conn.commit();
+        } catch (SQLException ex) {
+          DataAccessException dex = datasource.translate(sql, ex);
+          if (op.type != Operation.INSERT
+              || !dex.getReason().isDescendantOrSelfOf(Reason.DataIntegrityViolation)) {
+            throw dex;
+          }
+
+          rollback();
+          // the last entry of a serial number in the CRL wins
+          LOG.warn("duplicated CRL entry for certificate number {}", op.serial);
+          if (updateBySerial(op) == 0) {
+            throw dex;
+          }
+        }
+      }
+    } // method applyOneByOne
+
+    private int updateBySerial(Operation op) throws DataAccessException {
+      final String sql = SQL_UPDATE_CERT_REV_BY_SN;
+      PreparedStatement ps = datasource.prepareStatement(conn, sql);
+      try {
+        int offset = setRevocationParams(ps, 1, op);
+        ps.setInt(offset++, caId);
+        ps.setString(offset++, op.serial.toString(16));
+        int num = ps.executeUpdate();
+        conn.commit();
+        return num;
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, null, false);
+      }
+    } // method updateBySerial
+
+    private PreparedStatement bind(Operation op) throws SQLException {
+      if (op.type == Operation.TOUCH) {
+        psTouch.setLong(1, op.updateTimeSec);
+        psTouch.setLong(2, op.id);
+        return psTouch;
+      }
+
+      PreparedStatement ps;
+      int offset = 1;
+      if (op.type == Operation.INSERT) {
+        ps = psInsert;
+        ps.setLong(offset++, op.id);
+        ps.setInt(offset++, caId);
+        ps.setString(offset++, op.serial.toString(16));
+      } else {
+        ps = psUpdate;
+      }
+
+      offset = setRevocationParams(ps, offset, op);
+      if (op.type == Operation.UPDATE) {
+        ps.setLong(offset++, op.id);
+      }
+      return ps;
+    } // method bind
+
+    private int setRevocationParams(PreparedStatement ps, int offset, Operation op)
+        throws SQLException {
+      RevokedCert revCert = op.revokedCert;
+      int idx = offset;
+      ps.setInt(idx++, 1);
+      ps.setInt(idx++, revCert.getReason());
+      ps.setLong(idx++, revCert.getRevocationDate());
+      if (revCert.getInvalidityDate() != 0) {
+        ps.setLong(idx++, revCert.getInvalidityDate());
+      } else {
+        ps.setNull(idx++, Types.BIGINT);
+      }
+      ps.setLong(idx++, op.updateTimeSec);
+      ps.setInt(idx++, crlInfoId);
+      return idx;
+    } // method setRevocationParams
+
+    private void clearBatches() throws DataAccessException {
+      try {
+        psInsert.clearBatch();
+        psUpdate.clearBatch();
+        psTouch.clearBatch();
+      } catch (SQLException ex) {
+        throw datasource.translate(null, ex);
+      }
+    }
+
+    private void rollback() throws DataAccessException {
+      try {
+        conn.rollback();
+      } catch (SQLException ex) {
+        throw datasource.translate("rollback", ex);
+      }
+    }
+
+    private void close() {
+      datasource.releaseResources(psInsert, null, false);
+      datasource.releaseResources(psUpdate, null, false);
+      datasource.releaseResources(psTouch, null, false);
+    }
+
+    private String getSql(Operation op) {
+      return (op.type == Operation.INSERT) ? ImportCrl.SQL_INSERT_CERT_REV
+          : (op.type == Operation.UPDATE) ? ImportCrl.SQL_UPDATE_CERT_REV
+          : ImportCrl.SQL_UPDATE_CERT_LUPDATE;
+    }
+
+  } // class Partition
+
+  private static final Logger LOG = LoggerFactory.getLogger(CrlBulkImporter.class);
+
+  private static final String SQL_SELECT_CERTS_OF_ISSUER =
+      "SELECT ID,SN,REV,RR,RT,RIT,CRL_ID FROM CERT WHERE IID=?";
+
+  private static final String SQL_UPDATE_CERT_REV_BY_SN =
+      "UPDATE CERT SET REV=?,RR=?,RT=?,RIT=?,LUPDATE=?,CRL_ID=? WHERE IID=? AND SN=?";
+
+  private static final int QUEUE_SIZE = 10000;
+
+  private final DataSourceWrapper datasource;
+
+  private final int sqlBatchCommit;
+
+  private final int numThreads;
+
+  CrlBulkImporter(DataSourceWrapper datasource, int sqlBatchCommit, int numThreads) {
+    this.datasource = notNull(datasource, "datasource");
+    this.sqlBatchCommit = min(sqlBatchCommit, "sqlBatchCommit", 1);
+    this.numThreads = min(numThreads, "numThreads", 1);
+  }
+
+  /**
+   * Imports the revoked certificates of a full CRL.
+   *
+   * @param conn The database connection.
+   * @param caId The issuer id in the database.
+   * @param caSubject The subject of the issuer.
+   * @param crlInfoId The CRL id.
+   * @param revokedCerts The revoked certificates in the CRL.
+   * @param maxId The maximal id in the table CERT.
+   * @param startTimeSec Start time of the import process in seconds.
+   * @return number of imported revoked certificates.
+   * @throws DataAccessException
+   *         If database exception occurs.
+   * @throws ImportCrlException
+   *         If other exception occurs.
+   */
+  int importRevokedCertificates(Connection conn, int caId, X500Name caSubject, int crlInfoId,
+      RevokedCertsIterator revokedCerts, AtomicLong maxId, long startTimeSec)
+          throws DataAccessException, ImportCrlException {
+    long start = System.currentTimeMillis();
+    ExistingCerts existingCerts = loadExistingCerts(conn, caId);
+    LOG.info("prefetched {} entries of issuer {} in {} ms", existingCerts.size, caId,
+        System.currentTimeMillis() - start);
+
+    if (numThreads == 1) {
+      // a failed batch is rolled back, this must not affect the changes made before
+      try {
+        conn.commit();
+      } catch (SQLException ex) {
+        throw datasource.translate("commit", ex);
+      }
+
+      Partition partition = new Partition(conn, caId, crlInfoId);
+      try {
+        int num = 0;
+        while (revokedCerts.hasNext()) {
+          Operation op = diff(revokedCerts.next(), caSubject, crlInfoId, existingCerts,
+              maxId, startTimeSec);
+          if (op != null) {
+            num++;
+            partition.apply(op);
+          }
+        }
+        partition.flush();
+        return num;
+      } finally {
+        partition.close();
+      }
+    }
+
+    List<BlockingQueue<Operation>> queues = new ArrayList<>(numThreads);
+    List<Future<?>> futures = new ArrayList<>(numThreads);
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      for (int i = 0; i < numThreads; i++) {
+        BlockingQueue<Operation> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        queues.add(queue);
+        futures.add(executor.submit(() -> {
+          applyOperations(queue, caId, crlInfoId);
+          return null;
+        }));
+      }
+
+      int num = 0;
+      try {
+        while (revokedCerts.hasNext()) {
+          Operation op = diff(revokedCerts.next(), caSubject, crlInfoId, existingCerts,
+              maxId, startTimeSec);
+          if (op != null) {
+            num++;
+            // partition by the lowest bits of the serial number
+            int index = (op.serial.intValue() & 0x7FFFFFFF) % numThreads;
+            if (!putOperation(queues.get(index), op, futures.get(index))) {
+              // the consumer has been terminated, the cause will be thrown by future.get()
+              break;
+            }
+          }
+        }
+      } finally {
+        for (int i = 0; i < numThreads; i++) {
+          putOperation(queues.get(i), Operation.END, futures.get(i));
+        }
+      }
+
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      return num;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new ImportCrlException("interrupted", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof DataAccessException) {
+        throw (DataAccessException) cause;
+      }
+      throw new ImportCrlException("error importing revoked certificates", cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  } // method importRevokedCertificates
+
+  private Operation diff(RevokedCert revCert, X500Name caSubject, int crlInfoId,
+      ExistingCerts existingCerts, AtomicLong maxId, long startTimeSec)
+          throws ImportCrlException {
+    BigInteger serial = revCert.getSerialNumber();
+    X500Name issuer = revCert.getCertificateIssuer();
+    if (issuer != null && !issuer.equals(caSubject)) {
+      throw new ImportCrlException("invalid CRLEntry for certificate number " + serial);
+    }
+
+    if (revCert.getReason() == CrlReason.REMOVE_FROM_CRL.getCode()) {
+      LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
+      return null;
+    }
+
+    // see ImportCrl.importCrlRevokedCertificates for why not use the current time directly.
+    long updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
+
+    // A serial number may occur more than once in the CRL. The last entry wins, it overwrites
+    // the previous ones with an UPDATE, since the updates of a partition are executed in order
+    // and after the inserts. Repeated new serial numbers are inserted again, the unique
+    // constraint rejects them, see Partition.flush().
+    int index = existingCerts.indexOf(serial);
+    if (index < 0) {
+      return new Operation(Operation.INSERT, maxId.incrementAndGet(), serial, revCert,
+          updateTimeSec);
+    }
+
+    int type;
+    if (existingCerts.seen[index]) {
+      LOG.warn("duplicated CRL entry for certificate number {}", serial);
+      type = Operation.UPDATE;
+    } else {
+      existingCerts.seen[index] = true;
+      type = existingCerts.isDifferent(index, revCert, crlInfoId)
+          ? Operation.UPDATE : Operation.TOUCH;
+    }
+    return new Operation(type, existingCerts.ids[index], serial, revCert, updateTimeSec);
+  } // method diff
+
+  private void applyOperations(BlockingQueue<Operation> queue, int caId, int crlInfoId)
+      throws DataAccessException, InterruptedException {
+    Connection conn = datasource.getConnection();
+    Partition partition = null;
+    try {
+      conn.setAutoCommit(false);
+      partition = new Partition(conn, caId, crlInfoId);
+      while (true) {
+        Operation op = queue.take();
+        if (op == Operation.END) {
+          break;
+        }
+        partition.apply(op);
+      }
+      partition.flush();
+    } catch (SQLException ex) {
+      throw datasource.translate(null, ex);
+    } finally {
+      if (partition != null) {
+        partition.close();
+      }
+
+      try {
+        conn.setAutoCommit(true);
+      } catch (SQLException ex) {
+        LOG.warn("could not set autoCommit of connection to true");
+      }
+      datasource.returnConnection(conn);
+    }
+  } // method applyOperations
+
+  private static boolean putOperation(BlockingQueue<Operation> queue, Operation op,
+      Future<?> consumer) throws InterruptedException {
+    // do not block forever if the consumer has been terminated
+    while (!queue.offer(op, 100, TimeUnit.MILLISECONDS)) {
+      if (consumer.isDone()) {
+        return false;
+      }
+    }
+    return true;
+  } // method putOperation
+
+  private ExistingCerts loadExistingCerts(Connection conn, int caId)
+      throws DataAccessException {
+    final String sql = SQL_SELECT_CERTS_OF_ISSUER;
+    ExistingCerts existingCerts = new ExistingCerts();
+
+    PreparedStatement ps = datasource.prepareStatement(conn, sql);
+    ResultSet rs = null;
+    try {
+      ps.setFetchSize(1000);
+      ps.setInt(1, caId);
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        existingCerts.add(new BigInteger(rs.getString("SN"), 16), rs.getLong("ID"),
+            rs.getBoolean("REV"), rs.getInt("RR"), rs.getLong("RT"), rs.getLong("RIT"),
+            rs.getInt("CRL_ID"));
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      datasource.releaseResources(ps, rs, false);
+    }
+
+    existingCerts.sort();
+    return existingCerts;
+  } // method loadExistingCerts
+
+}
@@ -69,6 +69,12 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
 
   private boolean ignoreExpiredCrls;
 
+  private boolean bulkImport;
+
+  private int bulkImportThreads;
+
+  private boolean incrementalImport;
+
   private boolean crlUpdated;
 
   /**
@@ -86,6 +92,17 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
    * <li>ignoreExpiredCrls:
    *   <p>
    *   Whether expired CRLs are ignored, default to true.</li>
+   * <li>bulkImport:
+   *   <p>
+   *   Whether the revoked certificates of full CRLs are imported in bulk mode, default to
+   *   false. In this mode all entries of the issuer are prefetched into memory.</li>
+   * <li>bulkImportThreads:
+   *   <p>
+   *   Number of threads to import the revoked certificates in bulk mode, default to 1.</li>
+   * <li>incrementalImport:
+   *   <p>
+   *   Whether only the differences between a full CRL and the last imported one are
+   *   applied, default to false.</li>
    * </ul>
    * @param datasource DataSource.
    */
@@ -100,6 +117,15 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
     value = getStrValue(sourceConf, "ignoreExpiredCrls", false);
     this.ignoreExpiredCrls = StringUtil.isBlank(value) ? true : Boolean.parseBoolean(value);
 
+    value = getStrValue(sourceConf, "bulkImport", false);
+    this.bulkImport = StringUtil.isBlank(value) ? false : Boolean.parseBoolean(value);
+
+    value = getStrValue(sourceConf, "bulkImportThreads", false);
+    this.bulkImportThreads = StringUtil.isBlank(value) ? 1 : Integer.parseInt(value);
+
+    value = getStrValue(sourceConf, "incrementalImport", false);
+    this.incrementalImport = StringUtil.isBlank(value) ? false : Boolean.parseBoolean(value);
+
     super.datasource = datasource;
     updateStore(true);
     super.init(sourceConf, datasource);
@@ -170,7 +196,8 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
           return;
         }
 
-        ImportCrl importCrl = new ImportCrl(datasource, dir, sqlBatchCommit, ignoreExpiredCrls);
+        ImportCrl importCrl = new ImportCrl(datasource, dir, sqlBatchCommit, ignoreExpiredCrls,
+            bulkImport, bulkImportThreads, incrementalImport);
 
         if (importCrl.importCrlToOcspDb()) {
           LOG.info("updated CertStore {} successfully", name);
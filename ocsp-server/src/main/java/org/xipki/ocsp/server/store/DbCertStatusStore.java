@@ -27,6 +27,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -38,6 +39,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -84,12 +87,38 @@ public class DbCertStatusStore extends OcspStore {
 
   } // class StoreUpdateService
 
+  /**
+   * Status relevant fields of an entry in the table CERT. All times are in seconds since
+   * January 1, 1970, 00:00:00 GMT, 0 if not present.
+   */
+  protected static class CertRecord {
+
+    protected long notBefore;
+
+    protected long notAfter;
+
+    protected boolean revoked;
+
+    protected int reason;
+
+    protected long revTime;
+
+    protected long invalidityTime;
+
+    protected int crlId;
+
+    protected byte[] certHash;
+
+  } // class CertRecord
+
   protected DataSourceWrapper datasource;
 
   private static final Logger LOG = LoggerFactory.getLogger(DbCertStatusStore.class);
 
   private static final long MS_PER_5MIN = 300L * 1000;
 
+  protected static final int MAX_SERIALS_PER_QUERY = 100;
+
   private final Object lock = new Object();
 
   private final AtomicBoolean storeUpdateInProcess = new AtomicBoolean(false);
@@ -148,6 +177,7 @@ public class DbCertStatusStore extends OcspStore {
       try {
         updateIssuers();
         updateCrls();
+        updateCertStatuses();
       } finally {
         initialized = true;
         storeUpdateInProcess.set(false);
@@ -283,6 +313,13 @@ public class DbCertStatusStore extends OcspStore {
     }
   } // method updateCrls
 
+  /**
+   * Updates the certificate status information held by the store. Does nothing by default,
+   * since the certificate status is read from the database for each request.
+   */
+  protected void updateCertStatuses() {
+  }
+
   @Override
   protected CertStatusInfo getCertStatus0(Date time, RequestIssuer reqIssuer,
       BigInteger serialNumber, boolean includeCertHash, boolean includeRit,
@@ -296,195 +333,349 @@ public class DbCertStatusStore extends OcspStore {
       throw new OcspStoreException("initialization of CertStore is still in process");
     }
 
-    String sql;
+    IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return null;
+    }
+
+    if (isCrlExpired(time, issuer.getCrlId())) {
+      return CertStatusInfo.getCrlExpiredStatusInfo();
+    }
 
     try {
-      IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
-      if (issuer == null) {
-        return null;
-      }
+      CertRecord record = getCertRecord(issuer.getId(), serialNumber, includeCertHash,
+          includeRit);
+      return buildCertStatusInfo(time, issuer, record, includeCertHash, includeRit,
+          inheritCaRevocation);
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+  } // method getCertStatus0
 
-      CrlInfo crlInfo = null;
-      if (issuer.getCrlId() != 0) {
-        crlInfo = issuerStore.getCrlInfo(issuer.getCrlId());
-        // check whether CRL is expired
-        if (isIgnoreExpiredCrls()) {
-          // CRL will expire in 5 minutes
-          if (crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN) {
-            return CertStatusInfo.getCrlExpiredStatusInfo();
-          }
-        }
-      }
+  @Override
+  protected Map<BigInteger, CertStatusInfo> getCertStatuses0(Date time,
+      RequestIssuer reqIssuer, Collection<BigInteger> serialNumbers, boolean includeCertHash,
+      boolean includeRit, boolean inheritCaRevocation)
+          throws OcspStoreException {
+    if (!initialized) {
+      throw new OcspStoreException("initialization of CertStore is still in process");
+    }
 
-      if (includeCertHash) {
-        sql = includeRit ? sqlCsWithCertHash : sqlCsNoRitWithCertHash;
+    Map<BigInteger, CertStatusInfo> infos = new HashMap<>();
+
+    IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    boolean crlExpired = issuer != null && isCrlExpired(time, issuer.getCrlId());
+
+    Set<BigInteger> serials = new HashSet<>();
+    for (BigInteger serialNumber : serialNumbers) {
+      if (serialNumber.signum() != 1) { // non-positive serial number
+        infos.put(serialNumber, CertStatusInfo.getUnknownCertStatusInfo(new Date(), null));
+      } else if (issuer == null) {
+        infos.put(serialNumber, null);
+      } else if (crlExpired) {
+        infos.put(serialNumber, CertStatusInfo.getCrlExpiredStatusInfo());
       } else {
-        sql = includeRit ? sqlCs : sqlCsNoRit;
+        serials.add(serialNumber);
       }
+    }
 
-      ResultSet rs = null;
-      CertStatusInfo certStatusInfo = null;
+    if (serials.isEmpty()) {
+      return infos;
+    }
 
-      boolean unknown = true;
-      boolean ignore = false;
-      String b64CertHash = null;
-      boolean revoked = false;
-      int reason = 0;
-      long revTime = 0;
-      long invalTime = 0;
-      int crlId = 0;
+    try {
+      Map<BigInteger, CertRecord> records = getCertRecords(issuer.getId(), serials,
+          includeCertHash, includeRit);
+      for (BigInteger serialNumber : serials) {
+        infos.put(serialNumber, buildCertStatusInfo(time, issuer, records.get(serialNumber),
+            includeCertHash, includeRit, inheritCaRevocation));
+      }
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
 
-      PreparedStatement ps = datasource.prepareStatement(sql);
+    return infos;
+  } // method getCertStatuses0
 
-      try {
-        ps.setInt(1, issuer.getId());
-        ps.setString(2, serialNumber.toString(16));
-        rs = ps.executeQuery();
+  private boolean isCrlExpired(Date time, int crlId) {
+    if (crlId == 0 || !isIgnoreExpiredCrls()) {
+      return false;
+    }
 
-        if (rs.next()) {
-          unknown = false;
-          crlId = rs.getInt("CRL_ID");
+    CrlInfo crlInfo = issuerStore.getCrlInfo(crlId);
+    // CRL will expire in 5 minutes
+    return crlInfo != null && crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN;
+  } // method isCrlExpired
 
-          long timeInSec = time.getTime() / 1000;
-          if (!ignore && ignoreNotYetValidCert) {
-            long notBeforeInSec = rs.getLong("NBEFORE");
-            if (notBeforeInSec != 0 && timeInSec < notBeforeInSec) {
-              ignore = true;
-            }
-          }
+  private CertStatusInfo buildCertStatusInfo(Date time, IssuerEntry issuer, CertRecord record,
+      boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation) {
+    CrlInfo crlInfo = (issuer.getCrlId() == 0) ? null : issuerStore.getCrlInfo(issuer.getCrlId());
 
-          if (!ignore && ignoreExpiredCert) {
-            long notAfterInSec = rs.getLong("NAFTER");
-            if (notAfterInSec != 0 && timeInSec > notAfterInSec) {
-              ignore = true;
-            }
-          }
+    boolean unknown = record == null;
+    boolean ignore = false;
+    int crlId = 0;
 
-          if (!ignore) {
-            if (includeCertHash) {
-              b64CertHash = rs.getString("HASH");
-            }
+    if (record != null) {
+      crlId = record.crlId;
 
-            revoked = rs.getBoolean("REV");
-            if (revoked) {
-              reason = rs.getInt("RR");
-              revTime = rs.getLong("RT");
-              if (includeRit) {
-                invalTime = rs.getLong("RIT");
-              }
-            }
-          }
-        } // end if (rs.next())
-      } catch (SQLException ex) {
-        throw datasource.translate(sql, ex);
-      } finally {
-        releaseDbResources(ps, rs);
+      long timeInSec = time.getTime() / 1000;
+      if (ignoreNotYetValidCert) {
+        if (record.notBefore != 0 && timeInSec < record.notBefore) {
+          ignore = true;
+        }
       }
 
-      if (crlId == 0) {
-        crlId = issuer.getCrlId();
+      if (!ignore && ignoreExpiredCert) {
+        if (record.notAfter != 0 && timeInSec > record.notAfter) {
+          ignore = true;
+        }
       }
+    }
 
-      if (crlInfo == null && crlId != 0) {
-        crlInfo = issuerStore.getCrlInfo(crlId);
-      }
+    if (crlId == 0) {
+      crlId = issuer.getCrlId();
+    }
 
-      Date thisUpdate;
-      Date nextUpdate;
-      if (crlInfo == null) {
-        thisUpdate = new Date();
-        nextUpdate = null;
-      } else {
-        thisUpdate = crlInfo.getThisUpdate();
-        nextUpdate = crlInfo.getNextUpdate();
+    if (crlInfo == null && crlId != 0) {
+      crlInfo = issuerStore.getCrlInfo(crlId);
+    }
 
-        if (isIgnoreExpiredCrls()) {
-          // CRL will expire in 5 minutes
-          if (crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN) {
-            return CertStatusInfo.getCrlExpiredStatusInfo();
-          }
+    Date thisUpdate;
+    Date nextUpdate;
+    if (crlInfo == null) {
+      thisUpdate = new Date();
+      nextUpdate = null;
+    } else {
+      thisUpdate = crlInfo.getThisUpdate();
+      nextUpdate = crlInfo.getNextUpdate();
+
+      if (isIgnoreExpiredCrls()) {
+        // CRL will expire in 5 minutes
+        if (crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN) {
+          return CertStatusInfo.getCrlExpiredStatusInfo();
         }
       }
+    }
 
-      if (unknown) {
-        certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
-      } else if (ignore) {
-        certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
+    CertStatusInfo certStatusInfo;
+    if (unknown) {
+      certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
+    } else if (ignore) {
+      certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
+    } else {
+      byte[] certHash = includeCertHash ? record.certHash : null;
+      if (record.revoked) {
+        long revTime = record.revTime;
+        long invalTime = includeRit ? record.invalidityTime : 0;
+        Date invTime = (invalTime == 0 || invalTime == revTime)
+            ? null : new Date(invalTime * 1000);
+        CertRevocationInfo revInfo = new CertRevocationInfo(record.reason,
+            new Date(revTime * 1000), invTime);
+        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
+            certHashAlgo, certHash, thisUpdate, nextUpdate, null);
       } else {
-        byte[] certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
-        if (revoked) {
-          Date invTime = (invalTime == 0 || invalTime == revTime)
-              ? null : new Date(invalTime * 1000);
-          CertRevocationInfo revInfo = new CertRevocationInfo(reason,
-              new Date(revTime * 1000), invTime);
-          certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
-              certHashAlgo, certHash, thisUpdate, nextUpdate, null);
+        certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
+            certHash, thisUpdate, nextUpdate, null);
+      }
+    }
+
+    if (includeCrlId && crlInfo != null) {
+      certStatusInfo.setCrlId(crlInfo.getCrlId());
+    }
+
+    if (includeArchiveCutoff) {
+      if (retentionInterval != 0) {
+        Date date;
+        // expired certificate remains in status store for ever
+        if (retentionInterval < 0) {
+          date = issuer.getNotBefore();
         } else {
-          certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
-              certHash, thisUpdate, nextUpdate, null);
+          long nowInMs = System.currentTimeMillis();
+          long dateInMs = Math.max(issuer.getNotBefore().getTime(),
+              nowInMs - DAY * retentionInterval);
+          date = new Date(dateInMs);
         }
+
+        certStatusInfo.setArchiveCutOff(date);
       }
+    }
 
-      if (includeCrlId && crlInfo != null) {
-        certStatusInfo.setCrlId(crlInfo.getCrlId());
+    if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
+      return certStatusInfo;
+    }
+
+    CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
+    CertStatus certStatus = certStatusInfo.getCertStatus();
+    boolean replaced = false;
+    if (certStatus == CertStatus.GOOD) {
+      replaced = true;
+    } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
+      if (unknownCertBehaviour == UnknownCertBehaviour.good) {
+        replaced = true;
       }
+    } else if (certStatus == CertStatus.REVOKED) {
+      if (certStatusInfo.getRevocationInfo().getRevocationTime().after(
+            caRevInfo.getRevocationTime())) {
+        replaced = true;
+      }
+    }
 
-      if (includeArchiveCutoff) {
-        if (retentionInterval != 0) {
-          Date date;
-          // expired certificate remains in status store for ever
-          if (retentionInterval < 0) {
-            date = issuer.getNotBefore();
-          } else {
-            long nowInMs = System.currentTimeMillis();
-            long dateInMs = Math.max(issuer.getNotBefore().getTime(),
-                nowInMs - DAY * retentionInterval);
-            date = new Date(dateInMs);
-          }
+    if (replaced) {
+      CertRevocationInfo newRevInfo;
+      if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
+        newRevInfo = caRevInfo;
+      } else {
+        newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
+            caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+      }
+      certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
+          certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
+          certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
+          certStatusInfo.getCertprofile());
+    }
+    return certStatusInfo;
+  } // method buildCertStatusInfo
 
-          certStatusInfo.setArchiveCutOff(date);
-        }
+  /**
+   * Retrieves the status relevant fields of the certificate from the database.
+   *
+   * @param issuerId ID of the issuer.
+   * @param serialNumber Serial number of the certificate.
+   * @param includeCertHash Whether the certificate hash is required.
+   * @param includeRit Whether the revocation invalidity time is required.
+   * @return the record of the certificate, or {@code null} if the certificate is unknown.
+   * @throws DataAccessException if database error occurs.
+   */
+  protected CertRecord getCertRecord(int issuerId, BigInteger serialNumber,
+      boolean includeCertHash, boolean includeRit)
+          throws DataAccessException {
+    String sql;
+    if (includeCertHash) {
+      sql = includeRit ? sqlCsWithCertHash : sqlCsNoRitWithCertHash;
+    } else {
+      sql = includeRit ? sqlCs : sqlCsNoRit;
+    }
+
+    PreparedStatement ps = datasource.prepareStatement(sql);
+    ResultSet rs = null;
+
+    try {
+      ps.setInt(1, issuerId);
+      ps.setString(2, serialNumber.toString(16));
+      rs = ps.executeQuery();
+
+      if (!rs.next()) {
+        return null;
       }
 
-      if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
-        return certStatusInfo;
+      CertRecord record = new CertRecord();
+      record.crlId = rs.getInt("CRL_ID");
+      record.notBefore = rs.getLong("NBEFORE");
+      record.notAfter = rs.getLong("NAFTER");
+      if (includeCertHash) {
+        String b64CertHash = rs.getString("HASH");
+        record.certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
       }
 
-      CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
-      CertStatus certStatus = certStatusInfo.getCertStatus();
-      boolean replaced = false;
-      if (certStatus == CertStatus.GOOD) {
-        replaced = true;
-      } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
-        if (unknownCertBehaviour == UnknownCertBehaviour.good) {
-          replaced = true;
-        }
-      } else if (certStatus == CertStatus.REVOKED) {
-        if (certStatusInfo.getRevocationInfo().getRevocationTime().after(
-              caRevInfo.getRevocationTime())) {
-          replaced = true;
+      record.revoked = rs.getBoolean("REV");
+      if (record.revoked) {
+        record.reason = rs.getInt("RR");
+        record.revTime = rs.getLong("RT");
+        if (includeRit) {
+          record.invalidityTime = rs.getLong("RIT");
         }
       }
+      return record;
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      releaseDbResources(ps, rs);
+    }
+  } // method getCertRecord
 
-      if (replaced) {
-        CertRevocationInfo newRevInfo;
-        if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
-          newRevInfo = caRevInfo;
-        } else {
-          newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
-              caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+  /**
+   * Retrieves the status relevant fields of several certificates of the same issuer from the
+   * database, with at most {@link #MAX_SERIALS_PER_QUERY} serial numbers per query.
+   *
+   * @param issuerId ID of the issuer.
+   * @param serialNumbers Serial numbers of the certificates.
+   * @param includeCertHash Whether the certificate hash is required.
+   * @param includeRit Whether the revocation invalidity time is required.
+   * @return the records of the known certificates, indexed by the serial number.
+   * @throws DataAccessException if database error occurs.
+   */
+  protected Map<BigInteger, CertRecord> getCertRecords(int issuerId,
+      Collection<BigInteger> serialNumbers, boolean includeCertHash, boolean includeRit)
+          throws DataAccessException {
+    Map<BigInteger, CertRecord> records = new HashMap<>();
+    if (serialNumbers.size() == 1) {
+      BigInteger serialNumber = serialNumbers.iterator().next();
+      CertRecord record = getCertRecord(issuerId, serialNumber, includeCertHash, includeRit);
+      if (record != null) {
+        records.put(serialNumber, record);
+      }
+      return records;
+    }
+
+    List<BigInteger> serials = new ArrayList<>(serialNumbers);
+    for (int from = 0; from < serials.size(); from += MAX_SERIALS_PER_QUERY) {
+      List<BigInteger> chunk = serials.subList(from,
+          Math.min(serials.size(), from + MAX_SERIALS_PER_QUERY));
+
+      StringBuilder sb = new StringBuilder(150 + chunk.size() * 2);
+      sb.append("SELECT SN,NBEFORE,NAFTER,REV,RR,RT,CRL_ID");
+      if (includeRit) {
+        sb.append(",RIT");
+      }
+      if (includeCertHash) {
+        sb.append(",HASH");
+      }
+      sb.append(" FROM CERT WHERE IID=? AND SN IN (?");
+      for (int i = 1; i < chunk.size(); i++) {
+        sb.append(",?");
+      }
+      sb.append(")");
+      final String sql = sb.toString();
+
+      PreparedStatement ps = datasource.prepareStatement(sql);
+      ResultSet rs = null;
+      try {
+        int idx = 1;
+        ps.setInt(idx++, issuerId);
+        for (BigInteger serial : chunk) {
+          ps.setString(idx++, serial.toString(16));
+        }
+        rs = ps.executeQuery();
+
+        while (rs.next()) {
+          CertRecord record = new CertRecord();
+          record.crlId = rs.getInt("CRL_ID");
+          record.notBefore = rs.getLong("NBEFORE");
+          record.notAfter = rs.getLong("NAFTER");
+          if (includeCertHash) {
+            String b64CertHash = rs.getString("HASH");
+            record.certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
+          }
+
+          record.revoked = rs.getBoolean("REV");
+          if (record.revoked) {
+            record.reason = rs.getInt("RR");
+            record.revTime = rs.getLong("RT");
+            if (includeRit) {
+              record.invalidityTime = rs.getLong("RIT");
+            }
+          }
+          records.put(new BigInteger(rs.getString("SN"), 16), record);
         }
-        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
-            certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
-            certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
-            certStatusInfo.getCertprofile());
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        releaseDbResources(ps, rs);
       }
-      return certStatusInfo;
-    } catch (DataAccessException ex) {
-      throw new OcspStoreException(ex.getMessage(), ex);
     }
 
-  } // method getCertStatus0
+    return records;
+  } // method getCertRecords
 
   /**
    * Borrow Prepared Statement.
@@ -623,6 +814,11 @@ public class DbCertStatusStore extends OcspStore {
     return issuerStore != null && null != issuerStore.getIssuerForFp(reqIssuer);
   }
 
+  @Override
+  public long getIssuersVersion() {
+    return issuerStore.getVersion();
+  }
+
   @Override
   public X509Cert getIssuerCert(RequestIssuer reqIssuer) {
     if (issuerStore == null) {
@@ -632,6 +828,55 @@ public class DbCertStatusStore extends OcspStore {
     return (issuer == null) ? null : issuer.getCert();
   }
 
+  @Override
+  public List<RequestIssuer> getIssuers(HashAlgo hashAlgo) {
+    if (issuerStore == null) {
+      return null;
+    }
+
+    List<RequestIssuer> issuers = new LinkedList<>();
+    for (Integer id : issuerStore.getIds()) {
+      IssuerEntry issuer = issuerStore.getIssuerForId(id);
+      if (issuer != null) {
+        issuers.add(new RequestIssuer(hashAlgo, issuer.getEncodedHash(hashAlgo)));
+      }
+    }
+    return issuers;
+  } // method getIssuers
+
+  @Override
+  public SortedMap<Long, BigInteger> getSerialNumbers(RequestIssuer reqIssuer, long fromId,
+      int numEntries)
+          throws OcspStoreException {
+    IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return new TreeMap<>();
+    }
+
+    final String sql = datasource.buildSelectFirstSql(numEntries, "ID ASC",
+        "ID,SN FROM CERT WHERE IID=? AND ID>?");
+    SortedMap<Long, BigInteger> serials = new TreeMap<>();
+    try {
+      PreparedStatement ps = preparedStatement(sql);
+      ResultSet rs = null;
+      try {
+        ps.setInt(1, issuer.getId());
+        ps.setLong(2, fromId);
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          serials.put(rs.getLong("ID"), new BigInteger(rs.getString("SN"), 16));
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        releaseDbResources(ps, rs);
+      }
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+    return serials;
+  } // method getSerialNumbers
+
   protected boolean isInitialized() {
     return initialized;
   }
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.cert.CertificateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -36,6 +37,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Properties;
@@ -114,6 +116,90 @@ class ImportCrl {
 
   } // class CertInfo
 
+  /**
+   * Revoked entries of the last imported CRL, sorted by the serial number.
+   */
+  private static class ImportedCrlEntries {
+
+    private BigInteger[] serials;
+
+    private int[] reasons;
+
+    private long[] revocationTimes;
+
+    private long[] invalidityTimes;
+
+    private int size;
+
+    private BitSet seen;
+
+    private static ImportedCrlEntries load(CrlStreamParser crl) throws IOException {
+      ImportedCrlEntries entries = new ImportedCrlEntries();
+      int capacity = 1024;
+      BigInteger[] serials = new BigInteger[capacity];
+      int[] reasons = new int[capacity];
+      long[] revocationTimes = new long[capacity];
+      long[] invalidityTimes = new long[capacity];
+
+      int size = 0;
+      try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
+        while (revokedCertList.hasNext()) {
+          RevokedCert revCert = revokedCertList.next();
+          if (revCert.getReason() == CrlReason.REMOVE_FROM_CRL.getCode()) {
+            continue;
+          }
+
+          if (size == capacity) {
+            capacity *= 2;
+            serials = Arrays.copyOf(serials, capacity);
+            reasons = Arrays.copyOf(reasons, capacity);
+            revocationTimes = Arrays.copyOf(revocationTimes, capacity);
+            invalidityTimes = Arrays.copyOf(invalidityTimes, capacity);
+          }
+
+          serials[size] = revCert.getSerialNumber();
+          reasons[size] = revCert.getReason();
+          revocationTimes[size] = revCert.getRevocationDate();
+          invalidityTimes[size] = revCert.getInvalidityDate();
+          size++;
+        }
+      }
+
+      Integer[] indexes = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        indexes[i] = i;
+      }
+      final BigInteger[] unsortedSerials = serials;
+      Arrays.sort(indexes, (a, b) -> unsortedSerials[a].compareTo(unsortedSerials[b]));
+
+      entries.serials = new BigInteger[size];
+      entries.reasons = new int[size];
+      entries.revocationTimes = new long[size];
+      entries.invalidityTimes = new long[size];
+      for (int i = 0; i < size; i++) {
+        int idx = indexes[i];
+        entries.serials[i] = serials[idx];
+        entries.reasons[i] = reasons[idx];
+        entries.revocationTimes[i] = revocationTimes[idx];
+        entries.invalidityTimes[i] = invalidityTimes[idx];
+      }
+      entries.size = size;
+      entries.seen = new BitSet(size);
+      return entries;
+    } // method load
+
+    private int indexOf(BigInteger serial) {
+      return Arrays.binarySearch(serials, 0, size, serial);
+    }
+
+    private boolean isSame(int index, RevokedCert revCert) {
+      return reasons[index] == revCert.getReason()
+          && revocationTimes[index] == revCert.getRevocationDate()
+          && invalidityTimes[index] == revCert.getInvalidityDate();
+    }
+
+  } // class ImportedCrlEntries
+
   private static class CrlDirInfo {
 
     private final int crlId;
@@ -167,7 +253,7 @@ class ImportCrl {
 
   } // class CertWrapper
 
-  private static class ImportCrlException extends Exception {
+  static class ImportCrlException extends Exception {
 
     private static final long serialVersionUID = 1L;
 
@@ -193,15 +279,21 @@ class ImportCrl {
   private static final String SQL_INSERT_CRL_INFO
       = "INSERT INTO CRL_INFO (ID,NAME,INFO) VALUES(?,?,?)";
 
-  private static final String SQL_UPDATE_CERT_REV
+  static final String SQL_UPDATE_CERT_REV
       = "UPDATE CERT SET REV=?,RR=?,RT=?,RIT=?,LUPDATE=?,CRL_ID=? WHERE ID=?";
 
-  private static final String SQL_INSERT_CERT_REV
+  static final String SQL_INSERT_CERT_REV
       = "INSERT INTO CERT (ID,IID,SN,REV,RR,RT,RIT,LUPDATE,CRL_ID) VALUES(?,?,?,?,?,?,?,?,?)";
 
   private static final String SQL_DELETE_CERT = "DELETE FROM CERT WHERE IID=? AND SN=?";
 
-  private static final String SQL_UPDATE_CERT_LUPDATE = "UPDATE CERT SET LUPDATE=? WHERE ID=?";
+  private static final String SQL_DELETE_CERT_OF_CRL
+      = "DELETE FROM CERT WHERE IID=? AND SN=? AND CRL_ID=?";
+
+  // copy of the last successfully imported full CRL, used by the incremental import
+  private static final String IMPORTED_CRL_FILENAME = "ca.crl.imported";
+
+  static final String SQL_UPDATE_CERT_LUPDATE = "UPDATE CERT SET LUPDATE=? WHERE ID=?";
 
   private static final String SQL_UPDATE_CERT
       = "UPDATE CERT SET LUPDATE=?,NBEFORE=?,NAFTER=?,CRL_ID=?,HASH=? WHERE ID=?";
@@ -225,8 +317,15 @@ class ImportCrl {
 
   private final boolean ignoreExpiredCrls;
 
+  // null if the bulk mode is not activated
+  private final CrlBulkImporter bulkImporter;
+
+  private final boolean incrementalImport;
+
   private PreparedStatement psDeleteCert;
 
+  private PreparedStatement psDeleteCertOfCrl;
+
   private PreparedStatement psInsertCert;
 
   private PreparedStatement psInsertCertRev;
@@ -244,7 +343,17 @@ class ImportCrl {
   public ImportCrl(DataSourceWrapper datasource, String basedir, int sqlBatchCommit,
       boolean ignoreExpiredCrls)
           throws DataAccessException {
+    this(datasource, basedir, sqlBatchCommit, ignoreExpiredCrls, false, 1, false);
+  }
+
+  public ImportCrl(DataSourceWrapper datasource, String basedir, int sqlBatchCommit,
+      boolean ignoreExpiredCrls, boolean bulkImport, int bulkImportThreads,
+      boolean incrementalImport)
+          throws DataAccessException {
+    this.incrementalImport = incrementalImport;
     this.sqlBatchCommit = min(sqlBatchCommit, "sqlBatchCommit", 1);
+    this.bulkImporter = bulkImport
+        ? new CrlBulkImporter(datasource, this.sqlBatchCommit, bulkImportThreads) : null;
     this.ignoreExpiredCrls = ignoreExpiredCrls;
     this.datasource = notNull(datasource, "datasource");
     this.basedir = notNull(basedir, "basedir");
@@ -389,6 +498,7 @@ class ImportCrl {
       }
 
       psDeleteCert = datasource.prepareStatement(conn, SQL_DELETE_CERT);
+      psDeleteCertOfCrl = datasource.prepareStatement(conn, SQL_DELETE_CERT_OF_CRL);
       psInsertCert = datasource.prepareStatement(conn, SQL_INSERT_CERT);
       psInsertCertRev = datasource.prepareStatement(conn, SQL_INSERT_CERT_REV);
       psSelectIdCert = datasource.prepareStatement(conn, sqlSelectIdCert);
@@ -422,6 +532,7 @@ class ImportCrl {
       }
 
       releaseResources(psDeleteCert, null);
+      releaseResources(psDeleteCertOfCrl, null);
       releaseResources(psInsertCert, null);
       releaseResources(psInsertCertRev, null);
       releaseResources(psSelectIdCert, null);
@@ -449,7 +560,9 @@ class ImportCrl {
     File crlDir = crlDirInfo.crlDir;
 
     boolean updateSucc = false;
+    boolean dbChanged = false;
     CertWrapper caCert = null;
+    File importedCrlFile = new File(crlDir, IMPORTED_CRL_FILENAME);
 
     try {
       LOG.info("Importing CRL (id={}, name={}) in the folder {}",
@@ -465,6 +578,8 @@ class ImportCrl {
       }
 
       CrlStreamParser crl = null;
+      // last imported full CRL, null if the incremental import is not possible
+      CrlStreamParser importedCrl = null;
       CrlInfo crlInfo = null;
 
       if (!crlDirInfo.deleteMe & crlDirInfo.revocationinfo == null) {
@@ -533,6 +648,7 @@ class ImportCrl {
         String str = datasource.getFirstValue(
                       conn, "CRL_INFO", "INFO", "ID='" + id + "'", String.class);
         boolean addNew = str == null;
+        CrlInfo oldCrlInfo = null;
 
         if (addNew) {
           if (crl.isDeltaCrl()) {
@@ -541,7 +657,7 @@ class ImportCrl {
             return;
           }
         } else {
-          CrlInfo oldCrlInfo = new CrlInfo(str);
+          oldCrlInfo = new CrlInfo(str);
           if (crlNumber.compareTo(oldCrlInfo.getCrlNumber()) < 0) {
             // It is permitted if the CRL number equals to the one in Database,
             // which enables the resume of importing process if error occurred.
@@ -570,10 +686,18 @@ class ImportCrl {
           return;
         }
 
+        if (crl.isDeltaCrl()) {
+          // the database will not reflect the last imported full CRL any more
+          IoUtil.deleteFile(importedCrlFile);
+        } else if (incrementalImport && oldCrlInfo != null && importedCrlFile.exists()) {
+          importedCrl = getImportedCrl(importedCrlFile, oldCrlInfo, issuer);
+        }
+
         crlInfo = new CrlInfo(crlNumber, baseCrlNumber,
             crl.getThisUpdate(), crl.getNextUpdate(), crlId);
       }
 
+      dbChanged = true;
       if (crlDirInfo.deleteMe) {
         deleteCa(conn, crlDirInfo, caCert);
       } else {
@@ -583,6 +707,7 @@ class ImportCrl {
       commit(conn);
 
       if (crl == null) {
+        IoUtil.deleteFile(importedCrlFile);
         LOG.info("Ignored CRL (name={}) in the folder {}: CA is revoked",
             crlName, crlDir.getPath());
       } else {
@@ -590,12 +715,20 @@ class ImportCrl {
             crlDirInfo.shareCaWithOtherCrl, caCert.base64Sha1Fp);
         commit(conn);
 
-        importCrlRevokedCertificates(conn, id, caCert, crl, crlDir, startTimeSec);
+        importCrlRevokedCertificates(conn, id, caCert, crl, importedCrl, crlDir, startTimeSec);
         commit(conn);
 
         if (!crl.isDeltaCrl()) {
-          deleteEntriesNotUpdatedSince(conn, id, startTimeSec);
+          // the unchanged revoked entries are not touched in the incremental import
+          deleteEntriesNotUpdatedSince(conn, id, startTimeSec, importedCrl != null);
           commit(conn);
+
+          if (incrementalImport) {
+            Files.copy(new File(crlDir, "ca.crl").toPath(), importedCrlFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+          } else {
+            IoUtil.deleteFile(importedCrlFile);
+          }
         }
       }
 
@@ -616,6 +749,11 @@ class ImportCrl {
       File updatemeFile = new File(crlDirInfo.crlDir, "UPDATEME");
       updatemeFile.setLastModified(System.currentTimeMillis());
       updatemeFile.renameTo(new File(updatemeFile.getPath() + (updateSucc ? ".SUCC" : ".FAIL")));
+      if (!updateSucc && dbChanged) {
+        // the database may not reflect the last imported CRL
+        IoUtil.deleteFile(importedCrlFile);
+      }
+
       if (!updateSucc && caCert != null) {
         if (!crlDirInfo.shareCaWithOtherCrl && caCert.databaseId != null) {
           // try to delete the issuer if there is not certificate associated with it
@@ -772,7 +910,7 @@ class ImportCrl {
   } // method importCrlInfo
 
   private void importCrlRevokedCertificates(Connection conn, int crlInfoId, CertWrapper caCert,
-      CrlStreamParser crl, File crlDir, long startTimeSec)
+      CrlStreamParser crl, CrlStreamParser importedCrl, File crlDir, long startTimeSec)
           throws DataAccessException, ImportCrlException, IOException {
     int caId = caCert.databaseId.intValue();
     AtomicLong maxId = new AtomicLong(datasource.getMax(conn, "CERT", "ID"));
@@ -780,101 +918,17 @@ class ImportCrl {
     boolean isDeltaCrl = crl.isDeltaCrl();
 
     // import the revoked information
-    try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
-      int num = 0;
-      while (revokedCertList.hasNext()) {
-        num++;
-
-        // If the system time is adjusted to a previous time point during the
-        // import process, System.currentTime...() may be before startTime.
-        // Since all entries in the database whose Last-Update is before
-        // startTime will be deleted, we must ensure that the Last-Update is
-        // not before startTime.
-        long updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
-
-        RevokedCert revCert = revokedCertList.next();
-        BigInteger serial = revCert.getSerialNumber();
-        long rt = revCert.getRevocationDate();
-        long rit = revCert.getInvalidityDate();
-        int reason = revCert.getReason();
-        X500Name issuer = revCert.getCertificateIssuer();
-        if (issuer != null && !issuer.equals(caCert.subject)) {
-          throw new ImportCrlException("invalid CRLEntry for certificate number " + serial);
-        }
-
-        String sql = null;
-        try {
-          if (reason == CrlReason.REMOVE_FROM_CRL.getCode()) {
-            if (isDeltaCrl) {
-              // delete the entry
-              sql = SQL_DELETE_CERT;
-              psDeleteCert.setInt(1, caId);
-              psDeleteCert.setString(2, serial.toString(16));
-              psDeleteCert.executeUpdate();
-            } else {
-              LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
-            }
-            continue;
-          }
-
-          CertInfo existingCertInfo = getCertInfo(caId, serial);
-          PreparedStatement ps;
-
-          if (existingCertInfo == null) {
-            sql = SQL_INSERT_CERT_REV;
-            long id = maxId.incrementAndGet();
-            ps = psInsertCertRev;
-            int offset = 1;
-
-            ps.setLong(offset++, id);
-            ps.setInt(offset++, caId);
-            ps.setString(offset++, serial.toString(16));
-            ps.setInt(offset++, 1);
-            ps.setInt(offset++, reason);
-            ps.setLong(offset++, rt);
-            if (rit != 0) {
-              ps.setLong(offset++, rit);
-            } else {
-              ps.setNull(offset++, Types.BIGINT);
-            }
-            ps.setLong(offset++, updateTimeSec);
-            ps.setInt(offset++, crlInfoId);
-          } else {
-            if (existingCertInfo.isDifferent(revCert, crlInfoId)) {
-              sql = SQL_UPDATE_CERT_REV;
-              ps = psUpdateCertRev;
-              int offset = 1;
-
-              ps.setInt(offset++, 1);
-              ps.setInt(offset++, reason);
-              ps.setLong(offset++, rt);
-              if (rit != 0) {
-                ps.setLong(offset++, rit);
-              } else {
-                ps.setNull(offset++, Types.BIGINT);
-              }
-              ps.setLong(offset++, updateTimeSec);
-              ps.setInt(offset++, crlInfoId);
-              ps.setLong(offset++, existingCertInfo.id);
-            } else {
-              sql = SQL_UPDATE_CERT_LUPDATE;
-              ps = psUpdateCertLastupdate;
-              ps.setLong(1, updateTimeSec);
-              ps.setLong(2, existingCertInfo.id);
-            }
-          }
-
-          ps.executeUpdate();
-
-          if (num % sqlBatchCommit == 0) {
-            commit(conn);
-          }
-        } catch (SQLException ex) {
-          throw datasource.translate(sql, ex);
-        }
+    if (importedCrl != null) {
+      importCrlRevokedCertificatesIncrementally(conn, crlInfoId, caCert, crl, importedCrl,
+          maxId, startTimeSec);
+    } else if (bulkImporter != null && !isDeltaCrl) {
+      try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
+        int num = bulkImporter.importRevokedCertificates(conn, caId, caCert.subject, crlInfoId,
+            revokedCertList, maxId, startTimeSec);
+        LOG.info("imported {} revoked certificates in bulk mode", num);
       }
-
-      LOG.info("imported {} revoked certificates", num);
+    } else {
+      importCrlRevokedCertificatesOneByOne(conn, crlInfoId, caCert, crl, maxId, startTimeSec);
     }
 
     commit(conn);
@@ -964,6 +1018,234 @@ class ImportCrl {
     }
   } // method importCrlRevokedCertificates
 
+  /**
+   * Imports the revoked certificates of the CRL entry by entry.
+   *
+   * @param conn The database connection.
+   * @param crlInfoId The CRL id.
+   * @param caCert The CA certificate.
+   * @param crl The CRL to be imported.
+   * @param maxId The maximal id in the table CERT.
+   * @param startTimeSec Start time of the import process in seconds.
+   * @throws DataAccessException
+   *         If database exception occurs.
+   * @throws IOException
+   *         If IO error occurs.
+   * @throws ImportCrlException
+   *         If other exception occurs.
+   */
+  private void importCrlRevokedCertificatesOneByOne(Connection conn, int crlInfoId,
+      CertWrapper caCert, CrlStreamParser crl, AtomicLong maxId, long startTimeSec)
+          throws DataAccessException, ImportCrlException, IOException {
+    int caId = caCert.databaseId.intValue();
+    boolean isDeltaCrl = crl.isDeltaCrl();
+
+    try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
+      int num = 0;
+      while (revokedCertList.hasNext()) {
+        num++;
+
+        // If the system time is adjusted to a previous time point during the
+        // import process, System.currentTime...() may be before startTime.
+        // Since all entries in the database whose Last-Update is before
+        // startTime will be deleted, we must ensure that the Last-Update is
+        // not before startTime.
+        long updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
+
+        RevokedCert revCert = revokedCertList.next();
+        assertCertificateIssuer(revCert, caCert);
+
+        importRevokedCert(caId, crlInfoId, isDeltaCrl, revCert, maxId, updateTimeSec);
+
+        if (num % sqlBatchCommit == 0) {
+          commit(conn);
+        }
+      }
+
+      LOG.info("imported {} revoked certificates", num);
+    }
+  } // method importCrlRevokedCertificatesOneByOne
+
+  /**
+   * Imports only the differences between the full CRL and the last imported one.
+   *
+   * @param conn The database connection.
+   * @param crlInfoId The CRL id.
+   * @param caCert The CA certificate.
+   * @param crl The full CRL to be imported.
+   * @param importedCrl The last imported full CRL.
+   * @param maxId The maximal id in the table CERT.
+   * @param startTimeSec Start time of the import process in seconds.
+   * @throws DataAccessException
+   *         If database exception occurs.
+   * @throws IOException
+   *         If IO error occurs.
+   * @throws ImportCrlException
+   *         If other exception occurs.
+   */
+  private void importCrlRevokedCertificatesIncrementally(Connection conn, int crlInfoId,
+      CertWrapper caCert, CrlStreamParser crl, CrlStreamParser importedCrl, AtomicLong maxId,
+      long startTimeSec)
+          throws DataAccessException, ImportCrlException, IOException {
+    int caId = caCert.databaseId.intValue();
+    ImportedCrlEntries importedEntries = ImportedCrlEntries.load(importedCrl);
+
+    int num = 0;
+    int numChanged = 0;
+    try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
+      while (revokedCertList.hasNext()) {
+        num++;
+        RevokedCert revCert = revokedCertList.next();
+        assertCertificateIssuer(revCert, caCert);
+
+        int index = importedEntries.indexOf(revCert.getSerialNumber());
+        if (index >= 0) {
+          importedEntries.seen.set(index);
+          if (importedEntries.isSame(index, revCert)) {
+            continue;
+          }
+        }
+
+        // see importCrlRevokedCertificates() for why not use the current time directly.
+        long updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
+        importRevokedCert(caId, crlInfoId, false, revCert, maxId, updateTimeSec);
+
+        if (++numChanged % sqlBatchCommit == 0) {
+          commit(conn);
+        }
+      }
+    }
+
+    // remove the entries which are not contained in the new CRL any more
+    int numRemoved = 0;
+    final String sql = SQL_DELETE_CERT_OF_CRL;
+    try {
+      for (int i = 0; i < importedEntries.size; i++) {
+        if (importedEntries.seen.get(i)) {
+          continue;
+        }
+
+        psDeleteCertOfCrl.setInt(1, caId);
+        psDeleteCertOfCrl.setString(2, importedEntries.serials[i].toString(16));
+        psDeleteCertOfCrl.setInt(3, crlInfoId);
+        psDeleteCertOfCrl.executeUpdate();
+
+        if (++numRemoved % sqlBatchCommit == 0) {
+          commit(conn);
+        }
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    }
+
+    LOG.info("imported {} revoked certificates incrementally: {} added or changed, {} removed",
+        num, numChanged, numRemoved);
+  } // method importCrlRevokedCertificatesIncrementally
+
+  private CrlStreamParser getImportedCrl(File importedCrlFile, CrlInfo oldCrlInfo,
+      X500Name issuer) {
+    try {
+      CrlStreamParser importedCrl = new CrlStreamParser(importedCrlFile);
+      // the database reflects the CRL only if it has been imported as last one.
+      if (!importedCrl.isDeltaCrl() && issuer.equals(importedCrl.getIssuer())
+          && oldCrlInfo.getCrlNumber().equals(importedCrl.getCrlNumber())) {
+        LOG.info("import the CRL incrementally based on the CRL with number {}",
+            importedCrl.getCrlNumber());
+        return importedCrl;
+      }
+    } catch (IOException | RuntimeException ex) {
+      LogUtil.warn(LOG, ex, "could not parse the last imported CRL " + importedCrlFile.getPath());
+    }
+
+    LOG.info("last imported CRL does not match the database, import the CRL completely");
+    return null;
+  } // method getImportedCrl
+
+  private void importRevokedCert(int caId, int crlInfoId, boolean isDeltaCrl,
+      RevokedCert revCert, AtomicLong maxId, long updateTimeSec)
+          throws DataAccessException {
+    BigInteger serial = revCert.getSerialNumber();
+    long rt = revCert.getRevocationDate();
+    long rit = revCert.getInvalidityDate();
+    int reason = revCert.getReason();
+
+    String sql = null;
+    try {
+      if (reason == CrlReason.REMOVE_FROM_CRL.getCode()) {
+        if (isDeltaCrl) {
+          // delete the entry
+          sql = SQL_DELETE_CERT;
+          psDeleteCert.setInt(1, caId);
+          psDeleteCert.setString(2, serial.toString(16));
+          psDeleteCert.executeUpdate();
+        } else {
+          LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
+        }
+        return;
+      }
+
+      CertInfo existingCertInfo = getCertInfo(caId, serial);
+      PreparedStatement ps;
+
+      if (existingCertInfo == null) {
+        sql = SQL_INSERT_CERT_REV;
+        long id = maxId.incrementAndGet();
+        ps = psInsertCertRev;
+        int offset = 1;
+
+        ps.setLong(offset++, id);
+        ps.setInt(offset++, caId);
+        ps.setString(offset++, serial.toString(16));
+        ps.setInt(offset++, 1);
+        ps.setInt(offset++, reason);
+        ps.setLong(offset++, rt);
+        if (rit != 0) {
+          ps.setLong(offset++, rit);
+        } else {
+          ps.setNull(offset++, Types.BIGINT);
+        }
+        ps.setLong(offset++, updateTimeSec);
+        ps.setInt(offset++, crlInfoId);
+      } else {
+        if (existingCertInfo.isDifferent(revCert, crlInfoId)) {
+          sql = SQL_UPDATE_CERT_REV;
+          ps = psUpdateCertRev;
+          int offset = 1;
+
+          ps.setInt(offset++, 1);
+          ps.setInt(offset++, reason);
+          ps.setLong(offset++, rt);
+          if (rit != 0) {
+            ps.setLong(offset++, rit);
+          } else {
+            ps.setNull(offset++, Types.BIGINT);
+          }
+          ps.setLong(offset++, updateTimeSec);
+          ps.setInt(offset++, crlInfoId);
+          ps.setLong(offset++, existingCertInfo.id);
+        } else {
+          sql = SQL_UPDATE_CERT_LUPDATE;
+          ps = psUpdateCertLastupdate;
+          ps.setLong(1, updateTimeSec);
+          ps.setLong(2, existingCertInfo.id);
+        }
+      }
+
+      ps.executeUpdate();
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    }
+  } // method importRevokedCert
+
+  private static void assertCertificateIssuer(RevokedCert revCert, CertWrapper caCert)
+      throws ImportCrlException {
+    X500Name issuer = revCert.getCertificateIssuer();
+    if (issuer != null && !issuer.equals(caCert.subject)) {
+      throw new ImportCrlException("invalid CRLEntry for certificate number "
+          + revCert.getSerialNumber());
+    }
+  } // method assertCertificateIssuer
+
   private static X509Cert parseCert(File certFile)
       throws ImportCrlException {
     try {
@@ -1170,10 +1452,14 @@ class ImportCrl {
     LOG.info(" Imported certificate by serial number {}", serialNumber);
   } // method addCertificateBySerialNumber
 
-  private void deleteEntriesNotUpdatedSince(Connection conn, int crlInfoId, long timeSec)
-      throws DataAccessException {
+  private void deleteEntriesNotUpdatedSince(Connection conn, int crlInfoId, long timeSec,
+      boolean onlyUnrevoked)
+          throws DataAccessException {
     // remove the unmodified entries
     String sql = "DELETE FROM CERT WHERE CRL_ID=" + crlInfoId + " AND LUPDATE<" + timeSec;
+    if (onlyUnrevoked) {
+      sql += " AND REV=0";
+    }
     Statement stmt = datasource.createStatement(conn);
     try {
       stmt.executeUpdate(sql);
@@ -0,0 +1,369 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.ocsp.api.OcspStoreException;
+import org.xipki.util.Base64;
+import org.xipki.util.LogUtil;
+import org.xipki.util.Validity;
+
+/**
+ * OcspStore for XiPKI OCSP database, which holds the status of all certificates in memory.
+ * The requests are answered without accessing the database. The status is refreshed
+ * incrementally based on the indexed column LUPDATE, and reloaded completely for an issuer
+ * periodically, which removes the deleted entries.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class InMemoryCertStatusStore extends DbCertStatusStore {
+
+  /**
+   * Status of the certificates of one issuer: a compact table plus the changes applied
+   * since the table has been built.
+   */
+  private static class IssuerCertStatuses {
+
+    private final CertStatusTable table;
+
+    private final Map<BigInteger, CertRecord> changes;
+
+    private final long loadTime;
+
+    private IssuerCertStatuses(CertStatusTable table, Map<BigInteger, CertRecord> changes,
+        long loadTime) {
+      this.table = table;
+      this.changes = changes;
+      this.loadTime = loadTime;
+    }
+
+    private CertRecord get(BigInteger serialNumber) {
+      CertRecord record = changes.isEmpty() ? null : changes.get(serialNumber);
+      return (record != null) ? record : table.get(serialNumber);
+    }
+
+  } // class IssuerCertStatuses
+
+  private static final Logger LOG = LoggerFactory.getLogger(InMemoryCertStatusStore.class);
+
+  private static final int PAGE_SIZE = 10000;
+
+  private static final int MIN_CHANGES_TO_MERGE = 10000;
+
+  // entries written shortly before the last update may be committed after it.
+  private static final long LUPDATE_OVERLAP_SEC = 60;
+
+  private static final String SQL_COUNT_CHANGED_CERTS =
+      "SELECT IID,COUNT(*) FROM CERT WHERE LUPDATE>=? GROUP BY IID";
+
+  private final Map<Integer, IssuerCertStatuses> issuerCertStatuses = new ConcurrentHashMap<>();
+
+  private boolean loadCertHash;
+
+  private int certHashLen;
+
+  private long reloadIntervalMs;
+
+  private long lastUpdate;
+
+  private String sqlCerts;
+
+  private String sqlChangedCerts;
+
+  /**
+   * Initialize the store.
+   *
+   * @param sourceConf
+   * the store source configuration. It contains following key-value pairs:
+   * <ul>
+   * <li>caCerts: optional
+   *   <p>
+   *   CA certificate files to be included / excluded.</li>
+   * <li>loadCertHash: optional
+   *   <p>
+   *   Whether the certificate hashes are held in memory, default to false. If false, the
+   *   requests which require the certificate hash are answered from the database.</li>
+   * <li>reloadInterval: optional
+   *   <p>
+   *   Interval to reload the status of all certificates of an issuer, default to 1d. Deleted
+   *   entries, which are not visible in the column LUPDATE, are removed latest then.</li>
+   * </ul>
+   * @param datasource DataSource.
+   */
+  @Override
+  public void init(Map<String, ? extends Object> sourceConf, DataSourceWrapper datasource)
+      throws OcspStoreException {
+    Object value = (sourceConf == null) ? null : sourceConf.get("loadCertHash");
+    this.loadCertHash = (value == null) ? false : Boolean.parseBoolean(value.toString());
+
+    value = (sourceConf == null) ? null : sourceConf.get("reloadInterval");
+    Validity reloadInterval = Validity.getInstance((value == null) ? "1d" : value.toString());
+    this.reloadIntervalMs = reloadInterval.approxMinutes() * 60 * 1000;
+
+    if (loadCertHash) {
+      try {
+        this.certHashLen = getCertHashAlgo(datasource).getLength();
+      } catch (DataAccessException ex) {
+        throw new OcspStoreException(
+            "Could not retrieve the certhash's algorithm from the database", ex);
+      }
+    } else {
+      this.certHashLen = 0;
+    }
+
+    String columns = "ID,SN,NBEFORE,NAFTER,REV,RR,RT,RIT,CRL_ID" + (loadCertHash ? ",HASH" : "");
+    this.sqlCerts = datasource.buildSelectFirstSql(PAGE_SIZE, "ID ASC",
+        columns + " FROM CERT WHERE IID=? AND ID>?");
+    this.sqlChangedCerts = "SELECT " + columns + " FROM CERT WHERE IID=? AND LUPDATE>=?";
+
+    issuerCertStatuses.clear();
+    lastUpdate = 0;
+
+    super.init(sourceConf, datasource);
+  } // method init
+
+  @Override
+  protected CertRecord getCertRecord(int issuerId, BigInteger serialNumber,
+      boolean includeCertHash, boolean includeRit)
+          throws DataAccessException {
+    IssuerCertStatuses statuses = issuerCertStatuses.get(issuerId);
+    if (statuses == null || (includeCertHash && !loadCertHash)) {
+      // not loaded yet, or the required certificate hash is not held in memory
+      return super.getCertRecord(issuerId, serialNumber, includeCertHash, includeRit);
+    }
+
+    return statuses.get(serialNumber);
+  } // method getCertRecord
+
+  @Override
+  protected Map<BigInteger, CertRecord> getCertRecords(int issuerId,
+      Collection<BigInteger> serialNumbers, boolean includeCertHash, boolean includeRit)
+          throws DataAccessException {
+    IssuerCertStatuses statuses = issuerCertStatuses.get(issuerId);
+    if (statuses == null || (includeCertHash && !loadCertHash)) {
+      return super.getCertRecords(issuerId, serialNumbers, includeCertHash, includeRit);
+    }
+
+    Map<BigInteger, CertRecord> records = new HashMap<>();
+    for (BigInteger serialNumber : serialNumbers) {
+      CertRecord record = statuses.get(serialNumber);
+      if (record != null) {
+        records.put(serialNumber, record);
+      }
+    }
+    return records;
+  } // method getCertRecords
+
+  @Override
+  protected void updateCertStatuses() {
+    updateCertStatuses(false);
+  }
+
+  /**
+   * Reloads the status of all certificates, and removes the deleted entries immediately.
+   */
+  void reloadCertStatuses() {
+    updateCertStatuses(true);
+  }
+
+  private synchronized void updateCertStatuses(boolean reloadAll) {
+    long startTime = System.currentTimeMillis();
+    try {
+      Set<Integer> issuerIds = getIssuerStore().getIds();
+      issuerCertStatuses.keySet().retainAll(issuerIds);
+
+      long since = lastUpdate / 1000 - LUPDATE_OVERLAP_SEC;
+      // uses the index on LUPDATE
+      Map<Integer, Integer> changedCounts = (lastUpdate == 0 || reloadAll)
+          ? Collections.emptyMap() : countChangedCerts(since);
+
+      for (Integer issuerId : issuerIds) {
+        IssuerCertStatuses statuses = issuerCertStatuses.get(issuerId);
+        if (reloadAll || statuses == null || startTime - statuses.loadTime > reloadIntervalMs) {
+          loadCerts(issuerId);
+          continue;
+        }
+
+        Integer numChanged = changedCounts.get(issuerId);
+        if (numChanged == null) {
+          continue;
+        }
+
+        if (statuses.changes.size() + numChanged > getMaxChanges(statuses)) {
+          // cheaper to reload all entries than to merge the changes
+          loadCerts(issuerId);
+        } else {
+          applyChanges(issuerId, statuses, since);
+        }
+      }
+
+      lastUpdate = startTime;
+    } catch (Throwable th) {
+      LogUtil.error(LOG, th, "error while executing updateCertStatuses()");
+    }
+  } // method updateCertStatuses
+
+  private static int getMaxChanges(IssuerCertStatuses statuses) {
+    return Math.max(MIN_CHANGES_TO_MERGE, statuses.table.size() / 8);
+  }
+
+  private Map<Integer, Integer> countChangedCerts(long since)
+      throws DataAccessException {
+    Map<Integer, Integer> counts = new HashMap<>();
+    final String sql = SQL_COUNT_CHANGED_CERTS;
+    PreparedStatement ps = datasource.prepareStatement(sql);
+    ResultSet rs = null;
+    try {
+      ps.setLong(1, since);
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        counts.put(rs.getInt(1), rs.getInt(2));
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+    return counts;
+  } // method countChangedCerts
+
+  private void loadCerts(int issuerId)
+      throws DataAccessException {
+    long start = System.currentTimeMillis();
+    CertStatusTable table = new CertStatusTable(certHashLen);
+
+    final String sql = sqlCerts;
+    PreparedStatement ps = datasource.prepareStatement(sql);
+    ResultSet rs = null;
+    try {
+      long lastId = 0;
+      boolean hasMore = true;
+      while (hasMore) {
+        ps.setInt(1, issuerId);
+        ps.setLong(2, lastId);
+        rs = ps.executeQuery();
+
+        int num = 0;
+        while (rs.next()) {
+          num++;
+          lastId = rs.getLong("ID");
+          table.add(new BigInteger(rs.getString("SN"), 16), readCertRecord(rs));
+        }
+        rs.close();
+        rs = null;
+
+        hasMore = num == PAGE_SIZE;
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+
+    table.buildIndex();
+    issuerCertStatuses.put(issuerId,
+        new IssuerCertStatuses(table, Collections.emptyMap(), start));
+    LOG.info("loaded status of {} certificates of issuer {} in {} ms", table.size(), issuerId,
+        System.currentTimeMillis() - start);
+  } // method loadCerts
+
+  private void applyChanges(int issuerId, IssuerCertStatuses statuses, long since)
+      throws DataAccessException {
+    Map<BigInteger, CertRecord> changes = new HashMap<>(statuses.changes);
+    int numChanged = 0;
+
+    final String sql = sqlChangedCerts;
+    PreparedStatement ps = datasource.prepareStatement(sql);
+    ResultSet rs = null;
+    try {
+      ps.setInt(1, issuerId);
+      ps.setLong(2, since);
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        numChanged++;
+        changes.put(new BigInteger(rs.getString("SN"), 16), readCertRecord(rs));
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+
+    IssuerCertStatuses newStatuses;
+    if (changes.size() > getMaxChanges(statuses)) {
+      // merge the changes into a new table
+      CertStatusTable oldTable = statuses.table;
+      CertStatusTable table = new CertStatusTable(certHashLen);
+      for (int i = 0; i < oldTable.size(); i++) {
+        BigInteger serial = oldTable.getSerialNumber(i);
+        if (!changes.containsKey(serial)) {
+          table.add(serial, oldTable.getRecord(i));
+        }
+      }
+
+      for (Map.Entry<BigInteger, CertRecord> entry : changes.entrySet()) {
+        table.add(entry.getKey(), entry.getValue());
+      }
+
+      table.buildIndex();
+      newStatuses = new IssuerCertStatuses(table, Collections.emptyMap(), statuses.loadTime);
+    } else {
+      newStatuses = new IssuerCertStatuses(statuses.table, changes, statuses.loadTime);
+    }
+
+    issuerCertStatuses.put(issuerId, newStatuses);
+    LOG.info("applied {} changed certificates of issuer {}", numChanged, issuerId);
+  } // method applyChanges
+
+  private CertRecord readCertRecord(ResultSet rs)
+      throws SQLException {
+    CertRecord record = new CertRecord();
+    record.notBefore = rs.getLong("NBEFORE");
+    record.notAfter = rs.getLong("NAFTER");
+    record.crlId = rs.getInt("CRL_ID");
+    record.revoked = rs.getBoolean("REV");
+    if (record.revoked) {
+      record.reason = rs.getInt("RR");
+      record.revTime = rs.getLong("RT");
+      record.invalidityTime = rs.getLong("RIT");
+    }
+
+    if (loadCertHash) {
+      String b64CertHash = rs.getString("HASH");
+      record.certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
+    }
+    return record;
+  } // method readCertRecord
+
+}
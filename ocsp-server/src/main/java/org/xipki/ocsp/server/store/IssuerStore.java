@@ -26,9 +26,12 @@ import java.util.Map;
 import java.util.Set;
 
 import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.CompareUtil;
 
 /**
- * Issuer store.
+ * Issuer store. The issuers are indexed by the ID and by the issuer name and key hash, and
+ * the index is replaced atomically if the issuers are changed.
  *
  * @author Lijun Liao
  * @since 2.0.0
@@ -36,9 +39,100 @@ import org.xipki.ocsp.api.RequestIssuer;
 
 class IssuerStore {
 
-  private List<IssuerEntry> issuers = new ArrayList<>();
+  /**
+   * Hash algorithm plus the issuerNameHash and issuerKeyHash (each with the DER tag and
+   * length) as in the CertID.
+   */
+  private static class HashKey {
 
-  private Set<Integer> ids = Collections.emptySet();
+    private final HashAlgo hashAlgo;
+
+    private final byte[] data;
+
+    private final int from;
+
+    private final int length;
+
+    private final int hashCode;
+
+    private HashKey(HashAlgo hashAlgo, byte[] data, int from, int length) {
+      this.hashAlgo = hashAlgo;
+      this.data = data;
+      this.from = from;
+      this.length = length;
+
+      int hash = hashAlgo.hashCode();
+      for (int i = from; i < from + length; i++) {
+        hash = 31 * hash + data[i];
+      }
+      this.hashCode = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof HashKey)) {
+        return false;
+      }
+
+      HashKey other = (HashKey) obj;
+      return hashAlgo == other.hashAlgo && length == other.length
+          && CompareUtil.areEqual(data, from, other.data, other.from, length);
+    }
+
+  } // class HashKey
+
+  private static class Index {
+
+    private final List<IssuerEntry> issuers;
+
+    private final Set<Integer> ids;
+
+    private final Map<Integer, IssuerEntry> idMap;
+
+    private final Map<HashKey, IssuerEntry> hashMap;
+
+    private Index(List<IssuerEntry> issuers) {
+      Set<Integer> newIds = new HashSet<>();
+      Map<Integer, IssuerEntry> newIdMap = new HashMap<>();
+      Map<HashKey, IssuerEntry> newHashMap = new HashMap<>();
+
+      for (IssuerEntry issuer : issuers) {
+        int id = issuer.getId();
+        if (newIds.contains(id)) {
+          throw new IllegalArgumentException(
+              "issuer with the same id " + id + " duplicated");
+        }
+        newIds.add(id);
+        newIdMap.put(id, issuer);
+
+        for (HashAlgo hashAlgo : HashAlgo.values()) {
+          byte[] encodedHash = issuer.getEncodedHash(hashAlgo);
+          HashKey key = new HashKey(hashAlgo, encodedHash, 0, encodedHash.length);
+          // the first one wins, as in the previous linear search
+          if (!newHashMap.containsKey(key)) {
+            newHashMap.put(key, issuer);
+          }
+        }
+      }
+
+      this.issuers = Collections.unmodifiableList(new ArrayList<>(issuers));
+      this.ids = Collections.unmodifiableSet(newIds);
+      this.idMap = newIdMap;
+      this.hashMap = newHashMap;
+    } // constructor
+
+  } // class Index
+
+  private volatile Index index = new Index(Collections.emptyList());
+
+  private volatile long version;
 
   private Map<Integer, CrlInfo> crlInfos = new HashMap<>();
 
@@ -46,28 +140,28 @@ class IssuerStore {
   }
 
   public void setIssuers(List<IssuerEntry> issuers) {
-    Set<Integer> newIds = new HashSet<>();
-    for (IssuerEntry issuer : issuers) {
-      int id = issuer.getId();
-      if (newIds.contains(id)) {
-        throw new IllegalArgumentException(
-            "issuer with the same id " + id + " duplicated");
-      }
-      newIds.add(id);
+    Index newIndex = new Index(issuers);
+    synchronized (this) {
+      this.index = newIndex;
+      version++;
     }
-
-    // to accelerate the switch
-    List<IssuerEntry> copy = new ArrayList<IssuerEntry>(issuers);
-    this.ids = Collections.unmodifiableSet(newIds);
-    this.issuers = copy;
   } // method setIssuers
 
   public int size() {
-    return ids.size();
+    return index.ids.size();
   }
 
   public Set<Integer> getIds() {
-    return ids;
+    return index.ids;
+  }
+
+  /**
+   * Returns the version of this store, which is increased each time the issuers are changed.
+   *
+   * @return the version of this store.
+   */
+  public long getVersion() {
+    return version;
   }
 
   public Integer getIssuerIdForFp(RequestIssuer reqIssuer) {
@@ -76,31 +170,30 @@ class IssuerStore {
   }
 
   public IssuerEntry getIssuerForId(int id) {
-    for (IssuerEntry entry : issuers) {
-      if (entry.getId() == id) {
-        return entry;
-      }
-    }
-
-    return null;
+    return index.idMap.get(id);
   }
 
   public IssuerEntry getIssuerForFp(RequestIssuer reqIssuer) {
-    for (IssuerEntry entry : issuers) {
-      if (entry.matchHash(reqIssuer)) {
-        return entry;
-      }
+    HashAlgo hashAlgo = reqIssuer.hashAlgorithm();
+    if (hashAlgo == null) {
+      return null;
     }
 
-    return null;
-  }
+    // OCTET STRING issuerNameHash, OCTET STRING issuerKeyHash
+    int length = (2 + hashAlgo.getLength()) << 1;
+    int from = reqIssuer.getNameHashFrom();
+    if (from + length > reqIssuer.getFrom() + reqIssuer.getLength()) {
+      return null;
+    }
 
-  public void addIssuer(IssuerEntry issuer) {
-    this.issuers.add(issuer);
+    return index.hashMap.get(new HashKey(hashAlgo, reqIssuer.getData(), from, length));
+  } // method getIssuerForFp
 
-    Set<Integer> newIds = new HashSet<>(this.ids);
-    newIds.add(issuer.getId());
-    this.ids = Collections.unmodifiableSet(newIds);
+  public synchronized void addIssuer(IssuerEntry issuer) {
+    List<IssuerEntry> newIssuers = new ArrayList<>(index.issuers);
+    newIssuers.add(issuer);
+    this.index = new Index(newIssuers);
+    version++;
   }
 
   public void setCrlInfos(Map<Integer, CrlInfo> crlInfos) {
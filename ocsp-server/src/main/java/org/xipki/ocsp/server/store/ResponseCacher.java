@@ -26,16 +26,24 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bouncycastle.crypto.Digest;
 import org.slf4j.Logger;
@@ -51,6 +59,7 @@ import org.xipki.security.HashAlgo;
 import org.xipki.security.X509Cert;
 import org.xipki.security.util.X509Util;
 import org.xipki.util.Base64;
+import org.xipki.util.ConcurrentCache;
 import org.xipki.util.InvalidConfException;
 import org.xipki.util.LogUtil;
 import org.xipki.util.StringUtil;
@@ -87,11 +96,114 @@ public class ResponseCacher implements Closeable {
   private static final String SQL_ADD_RESP = "INSERT INTO OCSP (ID,IID,IDENT,"
       + "GENERATED_AT,NEXT_UPDATE,RESP) VALUES (?,?,?,?,?,?)";
 
+  private static final int WRITE_BATCH_SIZE = 100;
+
+  // max. number of values in the IN clause, Oracle accepts at most 1000
+  private static final int MAX_IN_SIZE = 1000;
+
+  private static final String SQL_SELECT_CACHE_INFOS =
+      "SELECT ID,IID,IDENT,GENERATED_AT,NEXT_UPDATE FROM OCSP WHERE ID IN (";
+
   private static final String SQL_UPDATE_RESP = "UPDATE OCSP SET GENERATED_AT=?,"
       + "NEXT_UPDATE=?,RESP=? WHERE ID=?";
 
   private final ConcurrentBag<ConcurrentBagEntry<Digest>> idDigesters;
 
+  private static class MemCacheKey {
+
+    private final int issuerId;
+
+    private final BigInteger serialNumber;
+
+    private final AlgorithmCode sigAlg;
+
+    private final HashAlgo certIdHashAlgo;
+
+    MemCacheKey(int issuerId, BigInteger serialNumber, AlgorithmCode sigAlg,
+        HashAlgo certIdHashAlgo) {
+      this.issuerId = issuerId;
+      this.serialNumber = serialNumber;
+      this.sigAlg = sigAlg;
+      this.certIdHashAlgo = certIdHashAlgo;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * (31 * issuerId + serialNumber.hashCode()) + sigAlg.hashCode())
+          + certIdHashAlgo.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof MemCacheKey)) {
+        return false;
+      }
+
+      MemCacheKey other = (MemCacheKey) obj;
+      return issuerId == other.issuerId && sigAlg == other.sigAlg
+          && certIdHashAlgo == other.certIdHashAlgo && serialNumber.equals(other.serialNumber);
+    }
+
+  } // class MemCacheKey
+
+  private static class MemCacheEntry {
+
+    private final byte[] response;
+
+    private final ResponseCacheInfo cacheInfo;
+
+    // expiration time in seconds
+    private final long expiresAt;
+
+    MemCacheEntry(byte[] response, ResponseCacheInfo cacheInfo, long expiresAt) {
+      this.response = response;
+      this.cacheInfo = cacheInfo;
+      this.expiresAt = expiresAt;
+    }
+
+  } // class MemCacheEntry
+
+  private static class PendingResponse {
+
+    private final long id;
+
+    private final int issuerId;
+
+    private final String ident;
+
+    private final long generatedAt;
+
+    private final long nextUpdate;
+
+    private final byte[] response;
+
+    PendingResponse(long id, int issuerId, String ident, long generatedAt, long nextUpdate,
+        byte[] response) {
+      this.id = id;
+      this.issuerId = issuerId;
+      this.ident = ident;
+      this.generatedAt = generatedAt;
+      this.nextUpdate = nextUpdate;
+      this.response = response;
+    }
+
+  } // class PendingResponse
+
+  private class ResponseWriter implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        flushWriteQueue();
+      } catch (Throwable th) {
+        LogUtil.error(LOG, th, "error while calling flushWriteQueue()");
+      }
+    }
+
+  } // class ResponseWriter
+
   private class IssuerUpdater implements Runnable {
 
     @Override
@@ -134,6 +246,16 @@ public class ResponseCacher implements Closeable {
         } catch (Throwable th) {
           LogUtil.error(LOG, th, "could not remove expired responses");
         } finally {
+          if (memCache != null) {
+            LOG.info("in-memory OCSP response cache: size={}, hits={}, misses={}",
+                memCache.size(), memCacheHits.get(), memCacheMisses.get());
+          }
+
+          if (writeQueue != null) {
+            LOG.info("OCSP response write queue: size={}, dropped={}",
+                getWriteQueueSize(), writeQueueDropped.get());
+          }
+
           inProcess.set(false);
         }
       } // end lock
@@ -145,6 +267,11 @@ public class ResponseCacher implements Closeable {
 
   private final String sqlSelectOcsp;
 
+  private final String sqlSelectResp;
+
+  // whether the column OCSP.RESP is binary (BLOB, BYTEA, VARBINARY) instead of Base64 text
+  private boolean binaryResp;
+
   private final boolean master;
 
   // validity in seconds
@@ -164,13 +291,53 @@ public class ResponseCacher implements Closeable {
 
   private final AtomicInteger cachedIssuerId = new AtomicInteger(0);
 
+  private final ConcurrentCache<MemCacheKey, MemCacheEntry> memCache;
+
+  private final AtomicLong memCacheHits = new AtomicLong(0);
+
+  private final AtomicLong memCacheMisses = new AtomicLong(0);
+
+  private final int writeQueueSize;
+
+  // pending responses, keyed by the ID derived from (IID, IDENT)
+  private final LinkedHashMap<Long, PendingResponse> writeQueue;
+
+  private final AtomicLong writeQueueDropped = new AtomicLong(0);
+
+  private ScheduledFuture<?> responseWriter;
+
   public ResponseCacher(DataSourceWrapper datasource, boolean master, Validity validity) {
+    this(datasource, master, validity, 0, 0);
+  }
+
+  /**
+   * Constructor.
+   * @param datasource
+   *          Datasource of the cache database. Must not be {@code null}.
+   * @param master
+   *          Whether this responder is master.
+   * @param validity
+   *          Validity of the cached responses. Must not be {@code null}.
+   * @param memCacheSize
+   *          Maximal number of responses held in memory in front of the database.
+   *          Values less than 1 disable the in-memory cache.
+   * @param writeQueueSize
+   *          Maximal number of responses waiting to be written to the database by
+   *          the background writer. Values less than 1 disable the write-behind, and
+   *          the responses are written synchronously.
+   */
+  public ResponseCacher(DataSourceWrapper datasource, boolean master, Validity validity,
+      int memCacheSize, int writeQueueSize) {
     this.datasource = notNull(datasource, "datasource");
+    this.memCache = memCacheSize > 0 ? new ConcurrentCache<>(memCacheSize) : null;
+    this.writeQueueSize = writeQueueSize;
+    this.writeQueue = writeQueueSize > 0 ? new LinkedHashMap<>() : null;
     this.master = master;
     this.validity = (int) (notNull(validity, "validity").approxMinutes() * 60);
     this.sqlSelectIssuerCert = datasource.buildSelectFirstSql(1, "CERT FROM ISSUER WHERE ID=?");
     this.sqlSelectOcsp = datasource.buildSelectFirstSql(1,
         "IID,IDENT,GENERATED_AT,NEXT_UPDATE,RESP FROM OCSP WHERE ID=?");
+    this.sqlSelectResp = datasource.buildSelectFirstSql(1, "RESP FROM OCSP");
     this.onService = new AtomicBoolean(false);
 
     this.idDigesters = new ConcurrentBag<>();
@@ -180,16 +347,36 @@ public class ResponseCacher implements Closeable {
     }
   }
 
+  /**
+   * Returns the validity of the cached responses.
+   * @return the validity in seconds.
+   */
+  public int getValidity() {
+    return validity;
+  }
+
   public boolean isOnService() {
     return onService.get() && issuerStore != null;
   }
 
   public void init() {
+    try {
+      binaryResp = detectBinaryResp();
+      LOG.info("OCSP responses are cached in {} format", binaryResp ? "binary" : "Base64");
+    } catch (DataAccessException ex) {
+      LogUtil.error(LOG, ex, "could not detect the type of column OCSP.RESP, assume Base64");
+    }
+
     updateCacheStore();
 
-    scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1);
+    scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(writeQueue == null ? 1 : 2);
     scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
 
+    if (writeQueue != null) {
+      this.responseWriter = scheduledThreadPoolExecutor.scheduleWithFixedDelay(
+          new ResponseWriter(), 100, 100, TimeUnit.MILLISECONDS);
+    }
+
     // check every 600 seconds (10 minutes)
     this.responseCleaner = scheduledThreadPoolExecutor.scheduleAtFixedRate(
         new ExpiredResponsesCleaner(), 348, 600, TimeUnit.SECONDS);
@@ -201,9 +388,9 @@ public class ResponseCacher implements Closeable {
 
   @Override
   public void close() {
-    if (datasource != null) {
-      datasource.close();
-      datasource = null;
+    if (responseWriter != null) {
+      responseWriter.cancel(false);
+      responseWriter = null;
     }
 
     if (responseCleaner != null) {
@@ -227,6 +414,16 @@ public class ResponseCacher implements Closeable {
       }
       scheduledThreadPoolExecutor = null;
     }
+
+    if (datasource != null) {
+      if (writeQueue != null) {
+        // write the pending responses
+        flushWriteQueue();
+      }
+
+      datasource.close();
+      datasource = null;
+    }
   } // method close
 
   public Integer getIssuerId(RequestIssuer reqIssuer) {
@@ -281,12 +478,181 @@ public class ResponseCacher implements Closeable {
     }
   } // method storeIssuer
 
+  public long getMemCacheHits() {
+    return memCacheHits.get();
+  }
+
+  public long getMemCacheMisses() {
+    return memCacheMisses.get();
+  }
+
+  public int getWriteQueueSize() {
+    if (writeQueue == null) {
+      return 0;
+    }
+
+    synchronized (writeQueue) {
+      return writeQueue.size();
+    }
+  }
+
+  public long getWriteQueueDropped() {
+    return writeQueueDropped.get();
+  }
+
+  /**
+   * Returns the metrics of this cacher.
+   * @return the metrics.
+   */
+  public Map<String, Object> getStatuses() {
+    Map<String, Object> statuses = new HashMap<>();
+    if (memCache != null) {
+      statuses.put("memCacheSize", memCache.size());
+      statuses.put("memCacheHits", memCacheHits.get());
+      statuses.put("memCacheMisses", memCacheMisses.get());
+    }
+
+    if (writeQueue != null) {
+      statuses.put("writeQueueSize", getWriteQueueSize());
+      statuses.put("writeQueueDropped", writeQueueDropped.get());
+    }
+    return statuses;
+  }
+
+  /**
+   * Returns the {@link ResponseCacheInfo} of the cached responses, without reading the
+   * responses themselves and without touching the in-memory cache. The responses are read
+   * from the database with one query per {@value #MAX_IN_SIZE} serial numbers.
+   * @param issuerId
+   *          Issuer ID in the cache database.
+   * @param serialNumbers
+   *          Serial numbers of the target certificates.
+   * @param sigAlg
+   *          Signature algorithm.
+   * @param certIdHashAlgo
+   *          Hash algorithm of the CertID in the responses.
+   * @return map of serial number to the cache info. Serial numbers without cached response
+   *         are not contained.
+   * @throws DataAccessException
+   *           If database error occurs.
+   */
+  public Map<BigInteger, ResponseCacheInfo> getResponseCacheInfos(int issuerId,
+      Collection<BigInteger> serialNumbers, AlgorithmCode sigAlg, HashAlgo certIdHashAlgo)
+          throws DataAccessException {
+    Map<BigInteger, ResponseCacheInfo> ret = new HashMap<>();
+
+    // key: ID derived from (IID, IDENT)
+    Map<Long, BigInteger> serials = new HashMap<>();
+    Map<Long, String> idents = new HashMap<>();
+    for (BigInteger serialNumber : serialNumbers) {
+      byte[] identBytes = buildIdent(serialNumber, sigAlg, certIdHashAlgo);
+      long id = deriveId(issuerId, identBytes);
+      serials.put(id, serialNumber);
+      idents.put(id, Base64.encodeToString(identBytes));
+    }
+
+    List<Long> ids = new ArrayList<>(serials.size());
+    if (writeQueue != null) {
+      // the response may not have been written to the database yet
+      synchronized (writeQueue) {
+        for (Long id : serials.keySet()) {
+          PendingResponse pending = writeQueue.get(id);
+          if (pending != null && pending.issuerId == issuerId
+              && pending.ident.equals(idents.get(id))) {
+            ret.put(serials.get(id), newCacheInfo(pending.generatedAt, pending.nextUpdate));
+          } else {
+            ids.add(id);
+          }
+        }
+      }
+    } else {
+      ids.addAll(serials.keySet());
+    }
+
+    for (int off = 0; off < ids.size(); off += MAX_IN_SIZE) {
+      List<Long> subIds = ids.subList(off, Math.min(ids.size(), off + MAX_IN_SIZE));
+      StringBuilder sb = new StringBuilder(SQL_SELECT_CACHE_INFOS.length() + 2 * subIds.size());
+      sb.append(SQL_SELECT_CACHE_INFOS).append("?");
+      for (int i = 1; i < subIds.size(); i++) {
+        sb.append(",?");
+      }
+      sb.append(")");
+
+      final String sql = sb.toString();
+      PreparedStatement ps = datasource.prepareStatement(sql);
+      ResultSet rs = null;
+
+      try {
+        int idx = 1;
+        for (Long id : subIds) {
+          ps.setLong(idx++, id);
+        }
+
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          long id = rs.getLong("ID");
+          if (rs.getInt("IID") != issuerId || !rs.getString("IDENT").equals(idents.get(id))) {
+            continue;
+          }
+
+          ret.put(serials.get(id),
+              newCacheInfo(rs.getLong("GENERATED_AT"), rs.getLong("NEXT_UPDATE")));
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, rs);
+      }
+    }
+
+    return ret;
+  } // method getResponseCacheInfos
+
+  private static ResponseCacheInfo newCacheInfo(long generatedAt, long nextUpdate) {
+    ResponseCacheInfo cacheInfo = new ResponseCacheInfo(generatedAt);
+    if (nextUpdate != 0) {
+      cacheInfo.setNextUpdate(nextUpdate);
+    }
+    return cacheInfo;
+  }
+
   public OcspRespWithCacheInfo getOcspResponse(int issuerId, BigInteger serialNumber,
-      AlgorithmCode sigAlg)
+      AlgorithmCode sigAlg, HashAlgo certIdHashAlgo)
           throws DataAccessException {
+    MemCacheKey memCacheKey = null;
+    if (memCache != null) {
+      memCacheKey = new MemCacheKey(issuerId, serialNumber, sigAlg, certIdHashAlgo);
+      MemCacheEntry entry = memCache.get(memCacheKey);
+      if (entry != null) {
+        if (entry.expiresAt > System.currentTimeMillis() / 1000) {
+          memCacheHits.incrementAndGet();
+          return new OcspRespWithCacheInfo(entry.response, entry.cacheInfo);
+        }
+        memCache.remove(memCacheKey);
+      }
+      memCacheMisses.incrementAndGet();
+    }
+
     final String sql = sqlSelectOcsp;
-    byte[] identBytes = buildIdent(serialNumber, sigAlg);
+    byte[] identBytes = buildIdent(serialNumber, sigAlg, certIdHashAlgo);
     long id = deriveId(issuerId, identBytes);
+
+    if (writeQueue != null) {
+      // the response may not have been written to the database yet
+      PendingResponse pending;
+      synchronized (writeQueue) {
+        pending = writeQueue.get(id);
+      }
+
+      if (pending != null && pending.issuerId == issuerId
+          && pending.ident.equals(Base64.encodeToString(identBytes))
+          && pending.nextUpdate >= System.currentTimeMillis() / 1000 + SEC_NEXT_UPDATE_BUFFER) {
+        ResponseCacheInfo cacheInfo = new ResponseCacheInfo(pending.generatedAt);
+        cacheInfo.setNextUpdate(pending.nextUpdate);
+        return new OcspRespWithCacheInfo(pending.response, cacheInfo);
+      }
+    }
+
     PreparedStatement ps = datasource.prepareStatement(sql);
     ResultSet rs = null;
 
@@ -311,7 +677,7 @@ public class ResponseCacher implements Closeable {
       long nextUpdate = rs.getLong("NEXT_UPDATE");
       if (nextUpdate != 0) {
         // nextUpdate must be at least in 600 seconds
-        long minNextUpdate = System.currentTimeMillis() / 1000 + 600;
+        long minNextUpdate = System.currentTimeMillis() / 1000 + SEC_NEXT_UPDATE_BUFFER;
 
         if (nextUpdate < minNextUpdate) {
           return null;
@@ -319,12 +685,15 @@ public class ResponseCacher implements Closeable {
       }
 
       long generatedAt = rs.getLong("GENERATED_AT");
-      String b64Resp = rs.getString("RESP");
-      byte[] resp = Base64.decodeFast(b64Resp);
+      byte[] resp = binaryResp ? rs.getBytes("RESP") : Base64.decodeFast(rs.getString("RESP"));
       ResponseCacheInfo cacheInfo = new ResponseCacheInfo(generatedAt);
       if (nextUpdate != 0) {
         cacheInfo.setNextUpdate(nextUpdate);
       }
+
+      if (memCacheKey != null) {
+        putMemCache(memCacheKey, resp, cacheInfo);
+      }
       return new OcspRespWithCacheInfo(resp, cacheInfo);
     } catch (SQLException ex) {
       throw datasource.translate(sql, ex);
@@ -334,36 +703,93 @@ public class ResponseCacher implements Closeable {
   } // method getOcspResponse
 
   public void storeOcspResponse(int issuerId, BigInteger serialNumber, long generatedAt,
-      Long nextUpdate, AlgorithmCode sigAlgCode, byte[] response) {
+      Long nextUpdate, AlgorithmCode sigAlgCode, HashAlgo certIdHashAlgo, byte[] response) {
+    storeOcspResponse(issuerId, serialNumber, generatedAt, nextUpdate, sigAlgCode,
+        certIdHashAlgo, response, false);
+  }
+
+  /**
+   * Stores the OCSP response.
+   * @param issuerId
+   *          Issuer ID in the cache database.
+   * @param serialNumber
+   *          Serial number of the target certificate.
+   * @param generatedAt
+   *          Generation time in seconds.
+   * @param nextUpdate
+   *          Next update in seconds. Could be {@code null}.
+   * @param sigAlgCode
+   *          Code of the signature algorithm.
+   * @param certIdHashAlgo
+   *          Hash algorithm of the CertID in the response.
+   * @param response
+   *          Encoded OCSP response.
+   * @param pregenerated
+   *          Whether the response is generated in background. Such responses are not put
+   *          into the in-memory cache, and are written synchronously if the write queue
+   *          is full.
+   * @return whether the response has been accepted by the cache.
+   */
+  public boolean storeOcspResponse(int issuerId, BigInteger serialNumber, long generatedAt,
+      Long nextUpdate, AlgorithmCode sigAlgCode, HashAlgo certIdHashAlgo, byte[] response,
+      boolean pregenerated) {
     long nowInSec = System.currentTimeMillis() / 1000;
     if (nextUpdate == null) {
       nextUpdate = nowInSec + SEC_DFLT_NEXT_UPDATE_DURATION;
     }
 
     if (nextUpdate - nowInSec < validity) {
-      return;
+      return false;
     }
 
-    byte[] identBytes = buildIdent(serialNumber, sigAlgCode);
-    String ident = Base64.encodeToString(identBytes);
-    try {
-      long id = deriveId(issuerId, identBytes);
+    if (memCache != null && !pregenerated) {
+      ResponseCacheInfo cacheInfo = new ResponseCacheInfo(generatedAt);
+      cacheInfo.setNextUpdate(nextUpdate);
+      putMemCache(new MemCacheKey(issuerId, serialNumber, sigAlgCode, certIdHashAlgo),
+          response, cacheInfo);
+    }
+
+    byte[] identBytes = buildIdent(serialNumber, sigAlgCode, certIdHashAlgo);
+    long id = deriveId(issuerId, identBytes);
+    PendingResponse pending = new PendingResponse(id, issuerId,
+        Base64.encodeToString(identBytes), generatedAt, nextUpdate, response);
+
+    if (writeQueue == null) {
+      storeOcspResponse0(pending);
+      return true;
+    }
+
+    synchronized (writeQueue) {
+      if (writeQueue.size() < writeQueueSize || writeQueue.containsKey(id)) {
+        // the later response replaces the pending one with the same (IID, IDENT)
+        writeQueue.put(id, pending);
+        return true;
+      }
+    }
+
+    if (pregenerated) {
+      // background generation can wait for the database
+      storeOcspResponse0(pending);
+      return true;
+    }
+
+    // the cache is only an optimization, drop the response instead of blocking the request
+    writeQueueDropped.incrementAndGet();
+    LOG.debug("write queue is full, dropped OCSP response iid={}, ident={}",
+        issuerId, pending.ident);
+    return false;
+  } // method storeOcspResponse
 
+  private void storeOcspResponse0(PendingResponse resp) {
+    try {
       Connection conn = datasource.getConnection();
       try {
         String sql = SQL_ADD_RESP;
         PreparedStatement ps = datasource.prepareStatement(conn, sql);
 
-        String b64Response = Base64.encodeToString(response);
         Boolean dataIntegrityViolationException = null;
         try {
-          int idx = 1;
-          ps.setLong(idx++, id);
-          ps.setInt(idx++, issuerId);
-          ps.setString(idx++, ident);
-          ps.setLong(idx++, generatedAt);
-          ps.setLong(idx++, nextUpdate);
-          ps.setString(idx++, b64Response);
+          setAddRespParams(ps, resp);
           ps.execute();
         } catch (SQLException ex) {
           DataAccessException dex = datasource.translate(sql, ex);
@@ -377,18 +803,14 @@ public class ResponseCacher implements Closeable {
         }
 
         if (dataIntegrityViolationException == null) {
-          LOG.debug("added cached OCSP response iid={}, ident={}", issuerId, ident);
+          LOG.debug("added cached OCSP response iid={}, ident={}", resp.issuerId, resp.ident);
           return;
         }
 
         sql = SQL_UPDATE_RESP;
         ps = datasource.prepareStatement(conn, sql);
         try {
-          int idx = 1;
-          ps.setLong(idx++, generatedAt);
-          ps.setLong(idx++, nextUpdate);
-          ps.setString(idx++, b64Response);
-          ps.setLong(idx++, id);
+          setUpdateRespParams(ps, resp);
           ps.executeUpdate();
         } catch (SQLException ex) {
           throw datasource.translate(sql, ex);
@@ -399,12 +821,169 @@ public class ResponseCacher implements Closeable {
         datasource.returnConnection(conn);
       }
     } catch (DataAccessException ex) {
-      LOG.info("could not cache OCSP response iid={}, ident={}", issuerId, ident);
+      LOG.info("could not cache OCSP response iid={}, ident={}", resp.issuerId, resp.ident);
       if (LOG.isDebugEnabled()) {
-        LOG.debug("could not cache OCSP response iid=" + issuerId + ", ident=" + ident, ex);
+        LOG.debug("could not cache OCSP response iid=" + resp.issuerId
+            + ", ident=" + resp.ident, ex);
       }
     }
-  } // method storeOcspResponse
+  } // method storeOcspResponse0
+
+  private void flushWriteQueue() {
+    while (true) {
+      List<PendingResponse> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+      synchronized (writeQueue) {
+        Iterator<PendingResponse> it = writeQueue.values().iterator();
+        while (it.hasNext() && batch.size() < WRITE_BATCH_SIZE) {
+          batch.add(it.next());
+          it.remove();
+        }
+      }
+
+      if (batch.isEmpty()) {
+        return;
+      }
+
+      try {
+        storeOcspResponses(batch);
+      } catch (DataAccessException ex) {
+        LogUtil.warn(LOG, ex, "could not store " + batch.size()
+            + " OCSP responses in batch, try them one by one");
+        for (PendingResponse m : batch) {
+          storeOcspResponse0(m);
+        }
+      }
+    }
+  } // method flushWriteQueue
+
+  /**
+   * Stores the responses with JDBC batch: the existing rows are updated first, the
+   * remaining ones are inserted. If the driver does not report the update count of a row
+   * (e.g. {@code Statement.SUCCESS_NO_INFO}), this row is stored individually.
+   */
+  private void storeOcspResponses(List<PendingResponse> responses)
+      throws DataAccessException {
+    List<PendingResponse> unknown = new LinkedList<>();
+
+    Connection conn = datasource.getConnection();
+    try {
+      List<PendingResponse> toAdd = new LinkedList<>();
+
+      String sql = SQL_UPDATE_RESP;
+      PreparedStatement ps = datasource.prepareStatement(conn, sql);
+      try {
+        for (PendingResponse m : responses) {
+          setUpdateRespParams(ps, m);
+          ps.addBatch();
+        }
+
+        int[] counts = ps.executeBatch();
+        for (int i = 0; i < responses.size(); i++) {
+          if (i >= counts.length || counts[i] < 0) {
+            // e.g. Statement.SUCCESS_NO_INFO: whether the row exists is unknown
+            unknown.add(responses.get(i));
+          } else if (counts[i] == 0) {
+            toAdd.add(responses.get(i));
+          }
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, null, false);
+      }
+
+      if (!toAdd.isEmpty()) {
+        sql = SQL_ADD_RESP;
+        ps = datasource.prepareStatement(conn, sql);
+        try {
+          for (PendingResponse m : toAdd) {
+            setAddRespParams(ps, m);
+            ps.addBatch();
+          }
+          ps.executeBatch();
+        } catch (SQLException ex) {
+          throw datasource.translate(sql, ex);
+        } finally {
+          datasource.releaseResources(ps, null, false);
+        }
+      }
+
+      LOG.debug("stored {} cached OCSP responses, {} new, {} unknown", responses.size(),
+          toAdd.size(), unknown.size());
+    } finally {
+      datasource.returnConnection(conn);
+    }
+
+    // insert, or update if the row exists
+    for (PendingResponse m : unknown) {
+      storeOcspResponse0(m);
+    }
+  } // method storeOcspResponses
+
+  private void setAddRespParams(PreparedStatement ps, PendingResponse resp)
+      throws SQLException {
+    int idx = 1;
+    ps.setLong(idx++, resp.id);
+    ps.setInt(idx++, resp.issuerId);
+    ps.setString(idx++, resp.ident);
+    ps.setLong(idx++, resp.generatedAt);
+    ps.setLong(idx++, resp.nextUpdate);
+    setResp(ps, idx++, resp.response);
+  }
+
+  private void setUpdateRespParams(PreparedStatement ps, PendingResponse resp)
+      throws SQLException {
+    int idx = 1;
+    ps.setLong(idx++, resp.generatedAt);
+    ps.setLong(idx++, resp.nextUpdate);
+    setResp(ps, idx++, resp.response);
+    ps.setLong(idx++, resp.id);
+  }
+
+  private void putMemCache(MemCacheKey key, byte[] response, ResponseCacheInfo cacheInfo) {
+    // the database entry is removed once generatedAt is older than validity,
+    // the in-memory entry must not live longer.
+    long expiresAt = cacheInfo.getGeneratedAt() + validity;
+    Long nextUpdate = cacheInfo.getNextUpdate();
+    if (nextUpdate != null) {
+      expiresAt = Math.min(expiresAt, nextUpdate - SEC_NEXT_UPDATE_BUFFER);
+    }
+
+    if (expiresAt > System.currentTimeMillis() / 1000) {
+      memCache.put(key, new MemCacheEntry(response, cacheInfo, expiresAt));
+    }
+  } // method putMemCache
+
+  private void setResp(PreparedStatement ps, int index, byte[] response)
+      throws SQLException {
+    if (binaryResp) {
+      ps.setBytes(index, response);
+    } else {
+      ps.setString(index, Base64.encodeToString(response));
+    }
+  }
+
+  /**
+   * Detects whether the column OCSP.RESP stores the binary or the Base64-encoded response.
+   * @return whether the column OCSP.RESP is binary.
+   */
+  private boolean detectBinaryResp()
+      throws DataAccessException {
+    final String sql = sqlSelectResp;
+    PreparedStatement ps = null;
+    ResultSet rs = null;
+    try {
+      ps = datasource.prepareStatement(sql);
+      rs = ps.executeQuery();
+      int type = rs.getMetaData().getColumnType(1);
+      return type == Types.BLOB || type == Types.BINARY
+          || type == Types.VARBINARY || type == Types.LONGVARBINARY;
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+  } // method detectBinaryResp
 
   private int removeExpiredResponses(long maxGeneratedAt, long minNextUpdate)
       throws DataAccessException {
@@ -566,11 +1145,15 @@ public class ResponseCacher implements Closeable {
     return true;
   } // method initIssuerStore
 
-  private static byte[] buildIdent(BigInteger serialNumber, AlgorithmCode sigAlg) {
+  private static byte[] buildIdent(BigInteger serialNumber, AlgorithmCode sigAlg,
+      HashAlgo certIdHashAlgo) {
     byte[] snBytes = serialNumber.toByteArray();
-    byte[] bytes = new byte[1 + snBytes.length];
+    byte[] bytes = new byte[2 + snBytes.length];
     bytes[0] = sigAlg.getCode();
-    System.arraycopy(snBytes, 0, bytes, 1, snBytes.length);
+    // the response contains the CertID of the request, hence it can only be reused
+    // for requests with the same CertID.hashAlgorithm
+    bytes[1] = certIdHashAlgo.getAlgorithmCode().getCode();
+    System.arraycopy(snBytes, 0, bytes, 2, snBytes.length);
     return bytes;
   }
 
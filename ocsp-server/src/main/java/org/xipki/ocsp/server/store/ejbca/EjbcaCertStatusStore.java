@@ -103,6 +103,8 @@ public class EjbcaCertStatusStore extends OcspStore {
 
   private EjbcaIssuerStore issuerStore;
 
+  private volatile long issuersVersion;
+
   private boolean initialized;
 
   private boolean initializationFailed;
@@ -199,6 +201,7 @@ public class EjbcaCertStatusStore extends OcspStore {
 
           initialized = false;
           this.issuerStore = new EjbcaIssuerStore(newIssuers.values());
+          issuersVersion++;
           LOG.info("Updated issuers: {}", name);
           initializationFailed = false;
           initialized = true;
@@ -510,6 +513,11 @@ public class EjbcaCertStatusStore extends OcspStore {
     return null != issuerStore.getIssuerForFp(reqIssuer);
   }
 
+  @Override
+  public long getIssuersVersion() {
+    return issuersVersion;
+  }
+
   @Override
   public X509Cert getIssuerCert(RequestIssuer reqIssuer) {
     EjbcaIssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
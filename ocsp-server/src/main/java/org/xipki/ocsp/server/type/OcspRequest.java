@@ -22,7 +22,6 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -68,18 +67,55 @@ public class OcspRequest {
 
   private final List<CertID> requestList;
 
+  private final boolean signaturePresent;
+
   public OcspRequest(int version, List<CertID> requestList, List<ExtendedExtension> extensions) {
+    this(version, requestList, extensions, false);
+  }
+
+  public OcspRequest(int version, List<CertID> requestList, List<ExtendedExtension> extensions,
+      boolean signaturePresent) {
     this.version = version;
     this.requestList = requestList;
     this.extensions = extensions;
+    this.signaturePresent = signaturePresent;
   }
 
+  /**
+   * Parses the request in one pass. The version, the signature presence, the CertIDs and
+   * the extensions are read directly from the given bytes. The issuers of the CertIDs and
+   * the extensions reference the given array, so it must not be modified afterwards.
+   *
+   * @param request the DER encoded OCSP request.
+   * @return the parsed request.
+   * @throws EncodingException if the request is not well encoded.
+   */
   public static OcspRequest getInstance(byte[] request)
       throws EncodingException {
+    try {
+      return getInstance0(request);
+    } catch (RuntimeException ex) {
+      // e.g. an element which exceeds the enclosing one, or an invalid OID
+      throw new EncodingException("invalid request: " + ex.getMessage(), ex);
+    }
+  } // method getInstance
+
+  private static OcspRequest getInstance0(byte[] request)
+      throws EncodingException {
     // OCSPRequest
     Header hdr = readHeader(request, 0);
+    int requestEnd = hdr.readerIndex + hdr.len;
+    if (requestEnd != request.length) {
+      throw new EncodingException("trailing bytes after the OCSPRequest");
+    }
+
     // tbsRequest
     Header hdrTbs = readHeader(request, hdr.readerIndex);
+    if (hdrTbs.readerIndex + hdrTbs.len > requestEnd) {
+      throw new EncodingException("tbsRequest exceeds the OCSPRequest");
+    }
+    // optionalSignature follows the tbsRequest
+    boolean signaturePresent = hdrTbs.readerIndex + hdrTbs.len < requestEnd;
 
     int version = 0;
 
@@ -104,7 +140,7 @@ public class OcspRequest {
       }
     }
 
-    List<CertID> requestList = new LinkedList<>();
+    List<CertID> requestList = new ArrayList<>();
     Header hdrRequestList = hdr;
 
     Header hdrSingleReq = readHeader(request, hdr.readerIndex);
@@ -131,7 +167,7 @@ public class OcspRequest {
     }
 
     // extensions
-    List<ExtendedExtension> extensions = new LinkedList<>();
+    List<ExtendedExtension> extensions = new ArrayList<>(2);
     int extensionsOffset = hdrRequestList.readerIndex + hdrRequestList.len;
 
     if (extensionsOffset < hdrTbs.readerIndex + hdrTbs.len) {
@@ -161,8 +197,8 @@ public class OcspRequest {
       }
     }
 
-    return new OcspRequest(version, requestList, extensions);
-  } // method getInstance
+    return new OcspRequest(version, requestList, extensions, signaturePresent);
+  } // method getInstance0
 
   public static OcspRequest getInstance(OCSPRequest req)
       throws EncodingException {
@@ -198,7 +234,7 @@ public class OcspRequest {
       requestList.add(certId);
     }
 
-    List<ExtendedExtension> extensions = new LinkedList<>();
+    List<ExtendedExtension> extensions = new ArrayList<>(2);
     if (extensions0 != null) {
       ASN1ObjectIdentifier[] extOids = extensions0.getExtensionOIDs();
       for (ASN1ObjectIdentifier oid : extOids) {
@@ -213,7 +249,8 @@ public class OcspRequest {
       }
     }
 
-    return new OcspRequest(tbsReq0.getVersion().getValue().intValue(), requestList, extensions);
+    return new OcspRequest(tbsReq0.getVersion().getValue().intValue(), requestList, extensions,
+        req.getOptionalSignature() != null);
   } // method getInstance
 
   public static int readRequestVersion(byte[] request)
@@ -249,12 +286,18 @@ public class OcspRequest {
 
   static Header readHeader(byte[] encoded, int readerIndex)
       throws EncodingException {
+    if (readerIndex < 0 || readerIndex + 2 > encoded.length) {
+      throw new EncodingException("truncated ASN.1 object at " + readerIndex);
+    }
+
     int off = readerIndex;
     byte tag = encoded[off++];
     int len = 0xFF & encoded[off++];
     if (len >= 0x80) {
       int lenSize = len & 0x7F;
-      if (lenSize == 1) {
+      if (off + lenSize > encoded.length) {
+        throw new EncodingException("truncated length field at " + readerIndex);
+      } else if (lenSize == 1) {
         len = 0xFF & encoded[off++];
       } else if (lenSize == 2) {
         len = ((0xFF & encoded[off++]) << 8)
@@ -272,6 +315,10 @@ public class OcspRequest {
         throw new EncodingException("invalid length field at " + readerIndex);
       }
     }
+
+    if (len < 0 || len > encoded.length - off) {
+      throw new EncodingException("invalid length " + len + " at " + readerIndex);
+    }
     return new Header(readerIndex, tag, len, off);
   } // method readHeader
 
@@ -293,4 +340,8 @@ public class OcspRequest {
     return extensions;
   }
 
+  public boolean isSignaturePresent() {
+    return signaturePresent;
+  }
+
 }
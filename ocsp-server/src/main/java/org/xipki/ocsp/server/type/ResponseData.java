@@ -39,6 +39,8 @@ public class ResponseData extends ASN1Type {
 
   private final Extensions extensions;
 
+  private final int responsesBodyLength;
+
   private final int bodyLength;
 
   private final int encodedLength;
@@ -68,6 +70,7 @@ public class ResponseData extends ASN1Type {
     for (SingleResponse sr : responses) {
       responsesBodyLen += sr.getEncodedLength();
     }
+    this.responsesBodyLength = responsesBodyLen;
     len += getLen(responsesBodyLen);
 
     // extensions
@@ -100,11 +103,7 @@ public class ResponseData extends ASN1Type {
     idx += writeGeneralizedTime(producedAt, out, idx);
 
     // responses
-    int responsesBodyLen = 0;
-    for (SingleResponse sr : responses) {
-      responsesBodyLen += sr.getEncodedLength();
-    }
-    idx += writeHeader((byte) 0x30, responsesBodyLen, out, idx);
+    idx += writeHeader((byte) 0x30, responsesBodyLength, out, idx);
     for (SingleResponse sr : responses) {
       idx += sr.write(out, idx);
     }
@@ -0,0 +1,128 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.asn1.ocsp.OCSPResponse;
+import org.bouncycastle.asn1.ocsp.OCSPResponseStatus;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo;
+import org.xipki.ocsp.api.OcspStore;
+import org.xipki.ocsp.server.store.DbCertStatusStore;
+import org.xipki.ocsp.server.type.OcspRequestTest;
+import org.xipki.security.DfltConcurrentContentSigner;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.XiContentSigner;
+import org.xipki.security.pkcs12.HmacContentSigner;
+
+/**
+ * Test that malformed requests are answered with the status malformedRequest.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class MalformedRequestTest {
+
+  private static final int MAX_REQUEST_SIZE = 1000;
+
+  private static OcspServerImpl server;
+
+  private static ResponderImpl responder;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    OcspServerConf.Nonce nonceConf = new OcspServerConf.Nonce();
+    nonceConf.setOccurrence(QuadrupleState.optional);
+
+    OcspServerConf.RequestOption requestConf = new OcspServerConf.RequestOption();
+    requestConf.setMaxRequestListCount(10);
+    requestConf.setMaxRequestSize(MAX_REQUEST_SIZE);
+    requestConf.setVersions(Collections.singletonList("v1"));
+    requestConf.setNonce(nonceConf);
+    requestConf.setHashAlgorithms(Collections.singletonList("SHA1"));
+
+    OcspServerConf.Responder responderConf = new OcspServerConf.Responder();
+    responderConf.setStores(Collections.singletonList("store"));
+    responderConf.setServletPaths(Collections.singletonList("/"));
+
+    SecretKey key = new SecretKeySpec(new byte[32], "HmacSHA256");
+    AlgorithmIdentifier algId = new AlgorithmIdentifier(PKCSObjectIdentifiers.id_hmacWithSHA256);
+    DfltConcurrentContentSigner signer = new DfltConcurrentContentSigner(true,
+        Collections.<XiContentSigner>singletonList(new HmacContentSigner(algId, key)), key);
+    signer.setSha1DigestOfMacKey(HashAlgo.SHA1.hash(key.getEncoded()));
+
+    responder = new ResponderImpl(new ResponderOption(responderConf),
+        new RequestOption(requestConf), new OcspServerConf.ResponseOption(),
+        new ResponseSigner(Collections.singletonList(signer)),
+        Collections.<OcspStore>singletonList(new DbCertStatusStore()));
+    server = new OcspServerImpl();
+  } // method init
+
+  @Test
+  public void testTruncatedLength() throws Exception {
+    assertMalformed(new byte[] {0x30, (byte) 0x82, 0x01});
+    byte[] request = OcspRequestTest.createRequest();
+    for (int len = 0; len < request.length; len++) {
+      assertMalformed(Arrays.copyOf(request, len));
+    }
+  }
+
+  @Test
+  public void testOverlongLength() throws Exception {
+    assertMalformed(new byte[] {0x30, (byte) 0x84, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF});
+    assertMalformed(new byte[] {0x30, (byte) 0x85, 0x00, 0x00, 0x00, 0x00, 0x01, 0x00});
+
+    byte[] request = OcspRequestTest.createRequest();
+    request[2]++;
+    assertMalformed(request);
+  }
+
+  @Test
+  public void testTrailingBytes() throws Exception {
+    byte[] request = OcspRequestTest.createRequest();
+    assertMalformed(Arrays.copyOf(request, request.length + 2));
+  }
+
+  @Test
+  public void testRequestTooLarge() throws Exception {
+    byte[] request = OcspRequestTest.createRequest();
+    // a well-formed prefix followed by the padding is rejected by size, not parsed at all
+    assertMalformed(Arrays.copyOf(request, MAX_REQUEST_SIZE + 1));
+  }
+
+  private static void assertMalformed(byte[] request) {
+    OcspRespWithCacheInfo resp = server.answer(responder, request, false);
+    Assert.assertNotNull("response", resp);
+    OCSPResponse ocspResp = OCSPResponse.getInstance(resp.getResponse());
+    Assert.assertEquals("responseStatus", OCSPResponseStatus.MALFORMED_REQUEST,
+        ocspResp.getResponseStatus().getIntValue());
+    Assert.assertNull("responseBytes", ocspResp.getResponseBytes());
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.ocsp.server.store.DbCertStatusStore.CertRecord;
+
+/**
+ * CertStatusTable test.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class CertStatusTableTest {
+
+  private static final int CERTHASH_LEN = 32;
+
+  @Test
+  public void testLookupAfterGrowth() {
+    // more entries than the initial capacity, and serial numbers of different lengths
+    final int num = 5000;
+    CertStatusTable table = new CertStatusTable(CERTHASH_LEN);
+    for (int i = 0; i < num; i++) {
+      table.add(serial(i), record(i));
+    }
+    table.buildIndex();
+
+    Assert.assertEquals("size", num, table.size());
+    for (int i = 0; i < num; i++) {
+      BigInteger serial = serial(i);
+      Assert.assertTrue("contains " + serial, table.contains(serial));
+      Assert.assertEquals("serial number of entry " + i, serial, table.getSerialNumber(i));
+      assertRecordEquals(record(i), table.get(serial));
+    }
+
+    Assert.assertNull("unknown serial number", table.get(serial(num)));
+    Assert.assertFalse("unknown serial number", table.contains(BigInteger.valueOf(-1)));
+  } // method testLookupAfterGrowth
+
+  @Test
+  public void testRecordWithoutCertHash() {
+    CertStatusTable table = new CertStatusTable(CERTHASH_LEN);
+    CertRecord record = record(1);
+    record.certHash = null;
+    table.add(BigInteger.ONE, record);
+    table.buildIndex();
+
+    Assert.assertNull("certHash", table.get(BigInteger.ONE).certHash);
+  }
+
+  @Test
+  public void testEmptyTable() {
+    CertStatusTable table = new CertStatusTable(0);
+    table.buildIndex();
+    Assert.assertEquals("size", 0, table.size());
+    Assert.assertNull("unknown serial number", table.get(BigInteger.ONE));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAddToFrozenTable() {
+    CertStatusTable table = new CertStatusTable(0);
+    table.buildIndex();
+    table.add(BigInteger.ONE, record(1));
+  }
+
+  static BigInteger serial(int index) {
+    // 1 to 9 bytes, with and without leading sign byte
+    return BigInteger.valueOf(index).shiftLeft(8 * (index % 9)).add(BigInteger.valueOf(index));
+  }
+
+  static CertRecord record(int index) {
+    CertRecord record = new CertRecord();
+    record.notBefore = 1600000000L + index;
+    record.notAfter = 1700000000L + index;
+    record.crlId = index % 3;
+    record.revoked = index % 2 == 1;
+    if (record.revoked) {
+      record.reason = index % 10;
+      record.revTime = 1650000000L + index;
+      record.invalidityTime = (index % 4 == 1) ? 1640000000L + index : 0;
+    }
+
+    record.certHash = new byte[CERTHASH_LEN];
+    for (int i = 0; i < CERTHASH_LEN; i++) {
+      record.certHash[i] = (byte) (index + i + 1);
+    }
+    return record;
+  } // method record
+
+  static void assertRecordEquals(CertRecord expected, CertRecord actual) {
+    Assert.assertNotNull("record", actual);
+    Assert.assertEquals("notBefore", expected.notBefore, actual.notBefore);
+    Assert.assertEquals("notAfter", expected.notAfter, actual.notAfter);
+    Assert.assertEquals("crlId", expected.crlId, actual.crlId);
+    Assert.assertEquals("revoked", expected.revoked, actual.revoked);
+    Assert.assertEquals("reason", expected.reason, actual.reason);
+    Assert.assertEquals("revTime", expected.revTime, actual.revTime);
+    Assert.assertEquals("invalidityTime", expected.invalidityTime, actual.invalidityTime);
+    Assert.assertArrayEquals("certHash", expected.certHash, actual.certHash);
+  } // method assertRecordEquals
+
+}
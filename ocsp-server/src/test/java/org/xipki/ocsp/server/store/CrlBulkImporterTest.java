@@ -0,0 +1,193 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceFactory;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.security.CrlReason;
+import org.xipki.security.asn1.CrlStreamParser;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCertsIterator;
+
+/**
+ * CrlBulkImporter test, based on an in-memory H2 database.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class CrlBulkImporterTest {
+
+  private static final AtomicInteger DB_INDEX = new AtomicInteger();
+
+  private static final int ISSUER_ID = 1;
+
+  private static final int CRL_ID = 1;
+
+  private static final X500Name CA_SUBJECT = new X500Name("CN=ca,O=example,C=DE");
+
+  private static final long REV_TIME = 1600000000;
+
+  private DataSourceWrapper datasource;
+
+  private File crlFile;
+
+  @Before
+  public void initDatabase() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("dataSourceClassName", "org.h2.jdbcx.JdbcDataSource");
+    props.setProperty("dataSource.url",
+        "jdbc:h2:mem:ocsp-crl-" + DB_INDEX.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+    props.setProperty("dataSource.user", "sa");
+    props.setProperty("maximumPoolSize", "4");
+    props.setProperty("minimumIdle", "1");
+    datasource = new DataSourceFactory().createDataSource("ocsp", props, null);
+
+    execute("CREATE TABLE CERT (ID BIGINT NOT NULL PRIMARY KEY, IID INT NOT NULL,"
+        + " SN VARCHAR(40) NOT NULL, LUPDATE BIGINT NOT NULL, NBEFORE BIGINT, NAFTER BIGINT,"
+        + " REV SMALLINT NOT NULL, RR SMALLINT, RT BIGINT, RIT BIGINT, HASH VARCHAR(86),"
+        + " CRL_ID INT, CONSTRAINT CONST_ISSUER_SN UNIQUE (IID, SN))",
+        // existing entries with serial numbers 1 and 2
+        "INSERT INTO CERT (ID,IID,SN,LUPDATE,REV,RR,RT,CRL_ID) VALUES(1," + ISSUER_ID
+            + ",'1',0,1,1," + REV_TIME + "," + CRL_ID + ")",
+        "INSERT INTO CERT (ID,IID,SN,LUPDATE,REV,RR,RT,CRL_ID) VALUES(2," + ISSUER_ID
+            + ",'2',0,1,1," + REV_TIME + "," + CRL_ID + ")");
+
+    crlFile = File.createTempFile("ocsp-bulk-", ".crl");
+  } // method initDatabase
+
+  @After
+  public void cleanup() {
+    if (datasource != null) {
+      datasource.close();
+    }
+
+    if (crlFile != null) {
+      crlFile.delete();
+    }
+  }
+
+  @Test
+  public void testDuplicatedEntriesOneThread() throws Exception {
+    importDuplicatedEntries(1);
+  }
+
+  @Test
+  public void testDuplicatedEntriesMultipleThreads() throws Exception {
+    importDuplicatedEntries(3);
+  }
+
+  private void importDuplicatedEntries(int numThreads) throws Exception {
+    // serial numbers 10 to 19 are new, 10 and 2 occur twice, in different batches
+    X509v2CRLBuilder builder = new X509v2CRLBuilder(CA_SUBJECT, new Date());
+    addEntry(builder, 10, CrlReason.KEY_COMPROMISE);
+    addEntry(builder, 2, CrlReason.KEY_COMPROMISE);
+    for (int i = 11; i < 20; i++) {
+      addEntry(builder, i, CrlReason.KEY_COMPROMISE);
+    }
+    addEntry(builder, 10, CrlReason.CA_COMPROMISE);
+    addEntry(builder, 2, CrlReason.CA_COMPROMISE);
+    // repeated in the same batch
+    addEntry(builder, 20, CrlReason.KEY_COMPROMISE);
+    addEntry(builder, 20, CrlReason.SUPERSEDED);
+
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(256);
+    KeyPair keypair = kpGen.generateKeyPair();
+    Files.write(crlFile.toPath(), builder.build(new JcaContentSignerBuilder("SHA256withECDSA")
+        .build(keypair.getPrivate())).getEncoded());
+
+    CrlBulkImporter importer = new CrlBulkImporter(datasource, 3, numThreads);
+    long startTimeSec = System.currentTimeMillis() / 1000;
+    Connection conn = datasource.getConnection();
+    try {
+      conn.setAutoCommit(false);
+      try (RevokedCertsIterator revokedCerts = new CrlStreamParser(crlFile).revokedCertificates()) {
+        importer.importRevokedCertificates(conn, ISSUER_ID, CA_SUBJECT, CRL_ID, revokedCerts,
+            new AtomicLong(2), startTimeSec);
+      }
+      conn.commit();
+      conn.setAutoCommit(true);
+    } finally {
+      datasource.returnConnection(conn);
+    }
+
+    Assert.assertEquals("number of entries", 13, queryInt("SELECT COUNT(*) FROM CERT"));
+    // the last entry wins
+    Assert.assertEquals("reason of 2", CrlReason.CA_COMPROMISE.getCode(), getReason(2));
+    Assert.assertEquals("reason of 10", CrlReason.CA_COMPROMISE.getCode(), getReason(10));
+    Assert.assertEquals("reason of 20", CrlReason.SUPERSEDED.getCode(), getReason(20));
+    Assert.assertEquals("reason of 1", CrlReason.KEY_COMPROMISE.getCode(), getReason(1));
+    Assert.assertEquals("reason of 15", CrlReason.KEY_COMPROMISE.getCode(), getReason(15));
+  } // method importDuplicatedEntries
+
+  private static void addEntry(X509v2CRLBuilder builder, int serial, CrlReason reason) {
+    builder.addCRLEntry(BigInteger.valueOf(serial), new Date(REV_TIME * 1000),
+        reason.getCode());
+  }
+
+  private int getReason(int serial) throws Exception {
+    return queryInt("SELECT RR FROM CERT WHERE IID=" + ISSUER_ID + " AND SN='"
+        + BigInteger.valueOf(serial).toString(16) + "'");
+  }
+
+  private int queryInt(String sql) throws DataAccessException, SQLException {
+    Statement stmt = datasource.createStatement();
+    ResultSet rs = null;
+    try {
+      rs = stmt.executeQuery(sql);
+      Assert.assertTrue("has result", rs.next());
+      return rs.getInt(1);
+    } finally {
+      datasource.releaseResources(stmt, rs);
+    }
+  }
+
+  private void execute(String... sqls) throws DataAccessException, SQLException {
+    Statement stmt = datasource.createStatement();
+    try {
+      for (String sql : sqls) {
+        stmt.execute(sql);
+      }
+    } finally {
+      datasource.releaseResources(stmt, null);
+    }
+  }
+
+}
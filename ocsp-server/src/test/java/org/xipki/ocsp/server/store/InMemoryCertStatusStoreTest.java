@@ -0,0 +1,243 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceFactory;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.ocsp.server.store.DbCertStatusStore.CertRecord;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Base64;
+
+/**
+ * InMemoryCertStatusStore test, based on an in-memory H2 database.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class InMemoryCertStatusStoreTest {
+
+  private static final AtomicInteger DB_INDEX = new AtomicInteger();
+
+  private static final int ISSUER_ID = 1;
+
+  private static final int NUM_CERTS = 3000;
+
+  private DataSourceWrapper datasource;
+
+  private InMemoryCertStatusStore store;
+
+  @Before
+  public void initStore() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("dataSourceClassName", "org.h2.jdbcx.JdbcDataSource");
+    props.setProperty("dataSource.url",
+        "jdbc:h2:mem:ocsp-" + DB_INDEX.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+    props.setProperty("dataSource.user", "sa");
+    props.setProperty("maximumPoolSize", "2");
+    props.setProperty("minimumIdle", "1");
+    datasource = new DataSourceFactory().createDataSource("ocsp", props, null);
+
+    execute("CREATE TABLE DBSCHEMA (NAME VARCHAR(45) NOT NULL, VALUE2 VARCHAR(100))",
+        "CREATE TABLE ISSUER (ID INT NOT NULL, NBEFORE BIGINT, REV_INFO VARCHAR(200),"
+            + " S1C CHAR(28), CERT VARCHAR(4000), CRL_ID INT)",
+        "CREATE TABLE CRL_INFO (ID INT NOT NULL, NAME VARCHAR(45), INFO VARCHAR(1000))",
+        "CREATE TABLE CERT (ID BIGINT NOT NULL, IID INT NOT NULL, SN VARCHAR(40) NOT NULL,"
+            + " LUPDATE BIGINT NOT NULL, NBEFORE BIGINT, NAFTER BIGINT, REV SMALLINT,"
+            + " RR SMALLINT, RT BIGINT, RIT BIGINT, HASH VARCHAR(86), CRL_ID INT)",
+        "INSERT INTO DBSCHEMA (NAME,VALUE2) VALUES('CERTHASH_ALGO','SHA256')");
+
+    byte[] encodedCaCert = createCaCert();
+    execute("INSERT INTO ISSUER (ID,NBEFORE,S1C,CERT) VALUES(" + ISSUER_ID + ","
+        + (System.currentTimeMillis() / 1000 - 3600) + ",'"
+        + HashAlgo.SHA1.base64Hash(encodedCaCert) + "','"
+        + Base64.encodeToString(encodedCaCert) + "')");
+
+    long lupdate = System.currentTimeMillis() / 1000 - 3600;
+    for (int i = 0; i < NUM_CERTS; i++) {
+      insertCert(i + 1, CertStatusTableTest.serial(i), CertStatusTableTest.record(i), lupdate);
+    }
+
+    store = new InMemoryCertStatusStore();
+    store.setName("ocsp");
+    store.init(null, datasource);
+  } // method initStore
+
+  @After
+  public void closeStore() {
+    if (store != null) {
+      store.close();
+    } else if (datasource != null) {
+      datasource.close();
+    }
+  }
+
+  @Test
+  public void testLookupAfterGrowth() throws Exception {
+    for (int i = 0; i < NUM_CERTS; i++) {
+      CertRecord expected = CertStatusTableTest.record(i);
+      // the certificate hash is not loaded by default
+      expected.certHash = null;
+      CertStatusTableTest.assertRecordEquals(expected, getCertRecord(i));
+    }
+
+    Assert.assertNull("unknown serial number",
+        store.getCertRecord(ISSUER_ID, CertStatusTableTest.serial(NUM_CERTS), false, true));
+  }
+
+  @Test
+  public void testAnsweredFromMemory() throws Exception {
+    // a change without new LUPDATE is not visible, the status is not read from the database
+    String sn = CertStatusTableTest.serial(0).toString(16);
+    execute("UPDATE CERT SET REV=1,RR=1,RT=1600000000 WHERE SN='" + sn + "'");
+    store.updateCertStatuses();
+
+    Assert.assertFalse("revoked", getCertRecord(0).revoked);
+  }
+
+  @Test
+  public void testOverwriteExistingSerial() throws Exception {
+    // entry 0 is not revoked
+    Assert.assertFalse("revoked", getCertRecord(0).revoked);
+
+    long now = System.currentTimeMillis() / 1000;
+    String sn = CertStatusTableTest.serial(0).toString(16);
+    execute("UPDATE CERT SET REV=1,RR=1,RT=" + now + ",RIT=" + (now - 60) + ",LUPDATE=" + now
+        + " WHERE SN='" + sn + "'");
+    store.updateCertStatuses();
+
+    CertRecord record = getCertRecord(0);
+    Assert.assertTrue("revoked", record.revoked);
+    Assert.assertEquals("reason", 1, record.reason);
+    Assert.assertEquals("revTime", now, record.revTime);
+    Assert.assertEquals("invalidityTime", now - 60, record.invalidityTime);
+
+    // the other entries are not affected
+    Assert.assertFalse("revoked", getCertRecord(2).revoked);
+    Assert.assertTrue("revoked", getCertRecord(1).revoked);
+  } // method testOverwriteExistingSerial
+
+  @Test
+  public void testRevokedToUnrevoked() throws Exception {
+    // entry 1 is revoked
+    Assert.assertTrue("revoked", getCertRecord(1).revoked);
+
+    long now = System.currentTimeMillis() / 1000;
+    String sn = CertStatusTableTest.serial(1).toString(16);
+    execute("UPDATE CERT SET REV=0,RR=NULL,RT=NULL,RIT=NULL,LUPDATE=" + now
+        + " WHERE SN='" + sn + "'");
+    store.updateCertStatuses();
+
+    CertRecord record = getCertRecord(1);
+    Assert.assertFalse("revoked", record.revoked);
+    Assert.assertEquals("reason", 0, record.reason);
+    Assert.assertEquals("revTime", 0, record.revTime);
+  } // method testRevokedToUnrevoked
+
+  @Test
+  public void testAddedCertificate() throws Exception {
+    BigInteger serial = CertStatusTableTest.serial(NUM_CERTS);
+    CertRecord expected = CertStatusTableTest.record(NUM_CERTS);
+    insertCert(NUM_CERTS + 1, serial, expected, System.currentTimeMillis() / 1000);
+    store.updateCertStatuses();
+
+    expected.certHash = null;
+    CertStatusTableTest.assertRecordEquals(expected, getCertRecord(NUM_CERTS));
+  }
+
+  @Test
+  public void testFullReloadAfterDeletion() throws Exception {
+    Assert.assertNotNull("record", getCertRecord(5));
+
+    // the deletion does not touch LUPDATE, it is only detected by the full reload
+    String sn = CertStatusTableTest.serial(5).toString(16);
+    execute("DELETE FROM CERT WHERE SN='" + sn + "'");
+    store.updateCertStatuses();
+    Assert.assertNotNull("record before full reload", getCertRecord(5));
+
+    store.reloadCertStatuses();
+    Assert.assertNull("deleted entry", getCertRecord(5));
+    Assert.assertNotNull("record", getCertRecord(4));
+    Assert.assertNotNull("record", getCertRecord(6));
+  } // method testFullReloadAfterDeletion
+
+  private CertRecord getCertRecord(int index) throws Exception {
+    return store.getCertRecord(ISSUER_ID, CertStatusTableTest.serial(index), false, true);
+  }
+
+  private void insertCert(long id, BigInteger serial, CertRecord record, long lupdate)
+      throws Exception {
+    StringBuilder sb = new StringBuilder(200);
+    sb.append("INSERT INTO CERT (ID,IID,SN,LUPDATE,NBEFORE,NAFTER,REV,RR,RT,RIT,HASH,CRL_ID)")
+      .append(" VALUES(").append(id).append(",").append(ISSUER_ID).append(",'")
+      .append(serial.toString(16)).append("',").append(lupdate).append(",")
+      .append(record.notBefore).append(",").append(record.notAfter).append(",");
+    if (record.revoked) {
+      sb.append("1,").append(record.reason).append(",").append(record.revTime).append(",")
+        .append(record.invalidityTime == 0 ? "NULL" : Long.toString(record.invalidityTime));
+    } else {
+      sb.append("0,NULL,NULL,NULL");
+    }
+    sb.append(",'").append(Base64.encodeToString(record.certHash)).append("',")
+      .append(record.crlId).append(")");
+    execute(sb.toString());
+  } // method insertCert
+
+  private void execute(String... sqls) throws DataAccessException, SQLException {
+    Statement stmt = datasource.createStatement();
+    try {
+      for (String sql : sqls) {
+        stmt.execute(sql);
+      }
+    } finally {
+      datasource.releaseResources(stmt, null);
+    }
+  }
+
+  private static byte[] createCaCert() throws Exception {
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(256);
+    KeyPair keypair = kpGen.generateKeyPair();
+
+    X500Name subject = new X500Name("CN=ca,O=example,C=DE");
+    Date notBefore = new Date(System.currentTimeMillis() - 3600_000L);
+    Date notAfter = new Date(notBefore.getTime() + 365 * 86400_000L);
+    JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(subject,
+        BigInteger.ONE, notBefore, notAfter, subject, keypair.getPublic());
+    return builder.build(new JcaContentSignerBuilder("SHA256withECDSA")
+        .build(keypair.getPrivate())).getEncoded();
+  }
+
+}
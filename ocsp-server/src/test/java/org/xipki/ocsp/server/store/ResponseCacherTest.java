@@ -0,0 +1,163 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceFactory;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo.ResponseCacheInfo;
+import org.xipki.security.AlgorithmCode;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Validity;
+
+/**
+ * ResponseCacher test, based on an in-memory H2 database.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class ResponseCacherTest {
+
+  private static final AtomicInteger DB_INDEX = new AtomicInteger();
+
+  private static final int ISSUER_ID = 1;
+
+  // more than the maximal number of values in one IN clause
+  private static final int NUM_RESPONSES = 1200;
+
+  private static final AlgorithmCode SIG_ALG = AlgorithmCode.SHA256WITHRSA;
+
+  private DataSourceWrapper datasource;
+
+  private ResponseCacher cacher;
+
+  private long generatedAt;
+
+  private long nextUpdate;
+
+  @Before
+  public void initDatabase() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("dataSourceClassName", "org.h2.jdbcx.JdbcDataSource");
+    props.setProperty("dataSource.url",
+        "jdbc:h2:mem:ocsp-cache-" + DB_INDEX.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+    props.setProperty("dataSource.user", "sa");
+    props.setProperty("maximumPoolSize", "2");
+    props.setProperty("minimumIdle", "1");
+    datasource = new DataSourceFactory().createDataSource("ocsp-cache", props, null);
+
+    Statement stmt = datasource.createStatement();
+    try {
+      stmt.execute("CREATE TABLE OCSP (ID BIGINT NOT NULL PRIMARY KEY, IID INT NOT NULL,"
+          + " IDENT CHAR(86) NOT NULL, GENERATED_AT BIGINT NOT NULL,"
+          + " NEXT_UPDATE BIGINT NOT NULL, RESP VARCHAR(4000) NOT NULL)");
+    } finally {
+      datasource.releaseResources(stmt, null);
+    }
+
+    generatedAt = System.currentTimeMillis() / 1000;
+    nextUpdate = generatedAt + 2 * 86400;
+  } // method initDatabase
+
+  @After
+  public void closeCacher() {
+    if (cacher != null) {
+      cacher.close();
+    } else if (datasource != null) {
+      datasource.close();
+    }
+  }
+
+  @Test
+  public void testCacheInfosOfStoredResponses() throws Exception {
+    cacher = new ResponseCacher(datasource, true, Validity.getInstance("1d"));
+    storeResponses(HashAlgo.SHA1);
+    assertCacheInfos();
+  }
+
+  @Test
+  public void testCacheInfosOfPendingResponses() throws Exception {
+    // the responses stay in the write queue, since the writer is not started
+    cacher = new ResponseCacher(datasource, true, Validity.getInstance("1d"), 0,
+        NUM_RESPONSES);
+    storeResponses(HashAlgo.SHA1);
+    Assert.assertEquals("rows in database", 0, countRows());
+    assertCacheInfos();
+  }
+
+  private void assertCacheInfos() throws Exception {
+    // every second serial number is not cached
+    List<BigInteger> serials = new ArrayList<>();
+    for (int i = 0; i < 2 * NUM_RESPONSES; i++) {
+      serials.add(BigInteger.valueOf(i + 1));
+    }
+
+    Map<BigInteger, ResponseCacheInfo> infos =
+        cacher.getResponseCacheInfos(ISSUER_ID, serials, SIG_ALG, HashAlgo.SHA1);
+    Assert.assertEquals("number of cache infos", NUM_RESPONSES, infos.size());
+    for (int i = 0; i < NUM_RESPONSES; i++) {
+      ResponseCacheInfo info = infos.get(BigInteger.valueOf(2 * i + 1));
+      Assert.assertNotNull("cache info of serial " + (2 * i + 1), info);
+      Assert.assertEquals("generatedAt", generatedAt + i, info.getGeneratedAt());
+      Assert.assertEquals("nextUpdate", Long.valueOf(nextUpdate), info.getNextUpdate());
+    }
+
+    Assert.assertTrue("other CertID hash algorithm",
+        cacher.getResponseCacheInfos(ISSUER_ID, serials, SIG_ALG, HashAlgo.SHA256).isEmpty());
+    Assert.assertTrue("other signature algorithm", cacher.getResponseCacheInfos(ISSUER_ID,
+        serials, AlgorithmCode.SHA256WITHRSAANDMGF1, HashAlgo.SHA1).isEmpty());
+    Assert.assertTrue("other issuer",
+        cacher.getResponseCacheInfos(ISSUER_ID + 1, serials, SIG_ALG, HashAlgo.SHA1).isEmpty());
+  } // method assertCacheInfos
+
+  private void storeResponses(HashAlgo certIdHashAlgo) {
+    for (int i = 0; i < NUM_RESPONSES; i++) {
+      boolean stored = cacher.storeOcspResponse(ISSUER_ID, BigInteger.valueOf(2 * i + 1),
+          generatedAt + i, nextUpdate, SIG_ALG, certIdHashAlgo, new byte[] {0x30, 0x00}, true);
+      Assert.assertTrue("response stored", stored);
+    }
+  }
+
+  private int countRows() throws DataAccessException, SQLException {
+    Statement stmt = datasource.createStatement();
+    ResultSet rs = null;
+    try {
+      rs = stmt.executeQuery("SELECT COUNT(*) FROM OCSP");
+      rs.next();
+      return rs.getInt(1);
+    } finally {
+      datasource.releaseResources(stmt, rs);
+    }
+  }
+
+}
@@ -0,0 +1,190 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.type;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.ocsp.OCSPRequest;
+import org.bouncycastle.asn1.ocsp.Request;
+import org.bouncycastle.asn1.ocsp.TBSRequest;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * OcspRequest test with malformed requests.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class OcspRequestTest {
+
+  @Test
+  public void testValidRequest() throws Exception {
+    OcspRequest req = OcspRequest.getInstance(createRequest());
+    Assert.assertEquals("version", 0, req.getVersion());
+    Assert.assertEquals("number of CertIDs", 2, req.getRequestList().size());
+    Assert.assertEquals("serialNumber", BigInteger.valueOf(0x1235),
+        req.getRequestList().get(1).getSerialNumber());
+    Assert.assertEquals("number of extensions", 1, req.getExtensions().size());
+    Assert.assertFalse("signature present", req.isSignaturePresent());
+  }
+
+  @Test
+  public void testReadHeaderTruncatedLength() {
+    // only 1 of 2 length bytes present
+    assertInvalidHeader(new byte[] {0x30, (byte) 0x82, 0x01});
+    // length byte missing
+    assertInvalidHeader(new byte[] {0x30});
+    assertInvalidHeader(new byte[0]);
+  }
+
+  @Test
+  public void testReadHeaderOverlongLength() {
+    // length exceeds the available bytes
+    assertInvalidHeader(new byte[] {0x30, 0x05, 0x01, 0x02});
+    assertInvalidHeader(new byte[] {0x30, (byte) 0x82, 0x01, 0x00, 0x01});
+    // negative length
+    assertInvalidHeader(new byte[] {0x30, (byte) 0x84, (byte) 0x80, 0x00, 0x00, 0x00});
+    assertInvalidHeader(new byte[] {0x30, (byte) 0x84, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF});
+    // length field of 5 bytes
+    assertInvalidHeader(new byte[] {0x30, (byte) 0x85, 0x00, 0x00, 0x00, 0x00, 0x01, 0x00});
+    // indefinite length
+    assertInvalidHeader(new byte[] {0x30, (byte) 0x80, 0x00, 0x00});
+  }
+
+  @Test
+  public void testReadHeaderInvalidIndex() {
+    assertInvalidHeader(new byte[] {0x30, 0x00}, -1);
+    assertInvalidHeader(new byte[] {0x30, 0x00}, 1);
+  }
+
+  @Test
+  public void testTruncatedRequest() throws Exception {
+    byte[] request = createRequest();
+    for (int len = 0; len < request.length; len++) {
+      assertMalformed(Arrays.copyOf(request, len));
+    }
+  }
+
+  @Test
+  public void testOverlongLength() throws Exception {
+    byte[] request = createRequest();
+    // 30 81 xx (OCSPRequest) 30 81 yy (tbsRequest): the tbsRequest exceeds the OCSPRequest
+    Assert.assertEquals("length field of OCSPRequest", (byte) 0x81, request[1]);
+    byte[] modified = request.clone();
+    modified[5]++;
+    assertMalformed(modified);
+
+    // the OCSPRequest exceeds the available bytes
+    modified = request.clone();
+    modified[2]++;
+    assertMalformed(modified);
+  }
+
+  @Test
+  public void testTrailingBytes() throws Exception {
+    byte[] request = createRequest();
+    assertMalformed(Arrays.copyOf(request, request.length + 1));
+    assertMalformed(Arrays.copyOf(request, request.length + 10));
+  }
+
+  @Test
+  public void testCorruptedRequest() throws Exception {
+    byte[] request = createRequest();
+    Random random = new Random(1);
+    for (int i = 0; i < 10000; i++) {
+      byte[] modified = request.clone();
+      int numChanges = 1 + random.nextInt(3);
+      for (int j = 0; j < numChanges; j++) {
+        modified[random.nextInt(modified.length)] = (byte) random.nextInt(256);
+      }
+
+      try {
+        OcspRequest.getInstance(modified);
+      } catch (EncodingException ex) {
+        // expected for most of the modifications
+      }
+    }
+  } // method testCorruptedRequest
+
+  private static void assertInvalidHeader(byte[] encoded) {
+    assertInvalidHeader(encoded, 0);
+  }
+
+  private static void assertInvalidHeader(byte[] encoded, int readerIndex) {
+    try {
+      OcspRequest.Header hdr = OcspRequest.readHeader(encoded, readerIndex);
+      Assert.fail("EncodingException expected, but got header " + hdr);
+    } catch (EncodingException ex) {
+      // expected
+    }
+  }
+
+  private static void assertMalformed(byte[] request) {
+    try {
+      OcspRequest.getInstance(request);
+      Assert.fail("EncodingException expected for request of " + request.length + " bytes");
+    } catch (EncodingException ex) {
+      // expected
+    }
+  }
+
+  public static byte[] createRequest() throws Exception {
+    AlgorithmIdentifier algId = new AlgorithmIdentifier(
+        OIWObjectIdentifiers.idSHA1, DERNull.INSTANCE);
+    byte[] nameHash = new byte[20];
+    Arrays.fill(nameHash, (byte) 0x11);
+    byte[] keyHash = new byte[20];
+    Arrays.fill(keyHash, (byte) 0x12);
+
+    ASN1EncodableVector requests = new ASN1EncodableVector();
+    for (int i = 0; i < 2; i++) {
+      CertID certId = new CertID(algId, new DEROctetString(nameHash),
+          new DEROctetString(keyHash), new ASN1Integer(BigInteger.valueOf(0x1234 + i)));
+      requests.add(new Request(certId, null));
+    }
+
+    byte[] nonce = new byte[16];
+    Arrays.fill(nonce, (byte) 0x44);
+    Extensions extensions = new Extensions(new Extension(
+        OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, new DEROctetString(nonce)));
+
+    ASN1EncodableVector vec = new ASN1EncodableVector();
+    vec.add(new DERSequence(requests));
+    vec.add(new DERTaggedObject(true, 2, extensions));
+    TBSRequest tbsRequest = TBSRequest.getInstance(new DERSequence(vec));
+    return new OCSPRequest(tbsRequest, null).getEncoded();
+  } // method createRequest
+
+}
@@ -21,13 +21,17 @@ import static org.xipki.util.Args.notNull;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.bouncycastle.asn1.ocsp.OCSPResponse;
+import org.bouncycastle.asn1.ocsp.OCSPResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.ocsp.api.OcspRespWithCacheInfo;
@@ -39,7 +43,6 @@ import org.xipki.util.Base64;
 import org.xipki.util.Base64Url;
 import org.xipki.util.Hex;
 import org.xipki.util.HttpConstants;
-import org.xipki.util.IoUtil;
 import org.xipki.util.LogUtil;
 import org.xipki.util.StringUtil;
 
@@ -62,10 +65,22 @@ public class OcspServlet extends HttpServlet {
 
   private static final String CT_RESPONSE = "application/ocsp-response";
 
+  private static final byte[] MALFORMED_REQUEST_RESPONSE;
+
   private boolean logReqResp;
 
   private OcspServer server;
 
+  static {
+    try {
+      MALFORMED_REQUEST_RESPONSE = new OCSPResponse(
+          new OCSPResponseStatus(OCSPResponseStatus.MALFORMED_REQUEST), null).getEncoded();
+    } catch (IOException ex) {
+      throw new ExceptionInInitializerError(
+          "could not encode OCSPResp for status malformedRequest: " + ex.getMessage());
+    }
+  }
+
   public void setLogReqResp(boolean logReqResp) {
     this.logReqResp = logReqResp;
   }
@@ -93,10 +108,20 @@ public class OcspServlet extends HttpServlet {
       }
 
       Responder responder = responderAndPath.getResponder();
-      byte[] reqContent = IoUtil.read(req.getInputStream());
+      int maxRequestSize = responder.getMaxRequestSize();
+      // request too long, reject it before reading the body
+      if (req.getContentLength() > maxRequestSize) {
+        LOG.warn("request too large: {} > {}", req.getContentLength(), maxRequestSize);
+        sendOcspResponse(resp, MALFORMED_REQUEST_RESPONSE);
+        return;
+      }
+
+      byte[] reqContent = readRequest(req.getInputStream(), req.getContentLength(),
+          maxRequestSize);
       // request too long
-      if (reqContent.length > responder.getMaxRequestSize()) {
-        sendError(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+      if (reqContent == null) {
+        LOG.warn("request too large: > {}", maxRequestSize);
+        sendOcspResponse(resp, MALFORMED_REQUEST_RESPONSE);
         return;
       }
 
@@ -104,6 +129,7 @@ public class OcspServlet extends HttpServlet {
       if (ocspRespWithCacheInfo == null || ocspRespWithCacheInfo.getResponse() == null) {
         LOG.error("processRequest returned null, this should not happen");
         sendError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        return;
       }
 
       byte[] encodedOcspResp = ocspRespWithCacheInfo.getResponse();
@@ -112,10 +138,7 @@ public class OcspServlet extends HttpServlet {
             LogUtil.base64Encode(reqContent), LogUtil.base64Encode(encodedOcspResp));
       }
 
-      resp.setStatus(HttpServletResponse.SC_OK);
-      resp.setContentType(CT_RESPONSE);
-      resp.setContentLength(encodedOcspResp.length);
-      resp.getOutputStream().write(encodedOcspResp);
+      sendOcspResponse(resp, encodedOcspResp);
     } catch (Throwable th) {
       if (th instanceof EOFException) {
         LogUtil.warn(LOG, th, "Connection reset by peer");
@@ -252,6 +275,56 @@ public class OcspServlet extends HttpServlet {
     }
   } // method doGet
 
+  /**
+   * Reads the request body. If the content length is known, exactly that many bytes are read
+   * into an array of the final size; otherwise at most {@code maxSize + 1} bytes are read.
+   *
+   * @return the request body, or {@code null} if it is longer than {@code maxSize}.
+   */
+  static byte[] readRequest(InputStream in, int contentLength, int maxSize)
+      throws IOException {
+    if (contentLength >= 0) {
+      byte[] bytes = new byte[contentLength];
+      int off = 0;
+      while (off < contentLength) {
+        int read = in.read(bytes, off, contentLength - off);
+        if (read == -1) {
+          throw new EOFException("expected " + contentLength + " bytes, but only received " + off);
+        }
+        off += read;
+      }
+      return bytes;
+    }
+
+    // content length unknown (e.g. chunked transfer encoding)
+    byte[] buffer = new byte[Math.min(maxSize + 1, 2048)];
+    int off = 0;
+    while (true) {
+      if (off == buffer.length) {
+        if (buffer.length > maxSize) {
+          return null;
+        }
+        buffer = Arrays.copyOf(buffer, Math.min(maxSize + 1, buffer.length << 1));
+      }
+
+      int read = in.read(buffer, off, buffer.length - off);
+      if (read == -1) {
+        break;
+      }
+      off += read;
+    }
+
+    return off > maxSize ? null : (off == buffer.length ? buffer : Arrays.copyOf(buffer, off));
+  } // method readRequest
+
+  private static void sendOcspResponse(HttpServletResponse resp, byte[] encodedOcspResp)
+      throws IOException {
+    resp.setStatus(HttpServletResponse.SC_OK);
+    resp.setContentType(CT_RESPONSE);
+    resp.setContentLength(encodedOcspResp.length);
+    resp.getOutputStream().write(encodedOcspResp);
+  }
+
   private static void sendError(HttpServletResponse resp, int status) {
     resp.setStatus(status);
     resp.setContentLength(0);
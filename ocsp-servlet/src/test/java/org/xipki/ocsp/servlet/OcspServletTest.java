@@ -0,0 +1,278 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.servlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.bouncycastle.asn1.ocsp.OCSPResponse;
+import org.bouncycastle.asn1.ocsp.OCSPResponseStatus;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo;
+import org.xipki.ocsp.api.OcspServer;
+import org.xipki.ocsp.api.Responder;
+import org.xipki.ocsp.api.ResponderAndPath;
+import org.xipki.util.HealthCheckResult;
+
+/**
+ * OcspServlet test with request bodies larger than maxRequestSize.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class OcspServletTest {
+
+  private static final int MAX_REQUEST_SIZE = 1000;
+
+  private static class MockResponse {
+
+    private int status;
+
+    private String contentType;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+  } // class MockResponse
+
+  private final AtomicInteger answerCalls = new AtomicInteger();
+
+  @Test
+  public void testBodyTooLargeWithContentLength() throws Exception {
+    CountingInputStream body = new CountingInputStream(new byte[MAX_REQUEST_SIZE + 1]);
+    MockResponse resp = doPost(body, MAX_REQUEST_SIZE + 1);
+    assertMalformedRequest(resp);
+    Assert.assertEquals("bytes read", 0, body.count);
+  }
+
+  @Test
+  public void testBodyTooLargeWithoutContentLength() throws Exception {
+    CountingInputStream body = new CountingInputStream(new byte[10 * MAX_REQUEST_SIZE]);
+    MockResponse resp = doPost(body, -1);
+    assertMalformedRequest(resp);
+    Assert.assertTrue("read more than maxRequestSize + 1 bytes: " + body.count,
+        body.count <= MAX_REQUEST_SIZE + 1);
+  }
+
+  @Test
+  public void testReadRequest() throws Exception {
+    byte[] bytes = new byte[MAX_REQUEST_SIZE + 1];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+
+    // content length unknown
+    Assert.assertNull(OcspServlet.readRequest(
+        new ByteArrayInputStream(bytes), -1, MAX_REQUEST_SIZE));
+    byte[] read = OcspServlet.readRequest(
+        new ByteArrayInputStream(bytes, 0, MAX_REQUEST_SIZE), -1, MAX_REQUEST_SIZE);
+    Assert.assertArrayEquals(Arrays.copyOf(bytes, MAX_REQUEST_SIZE), read);
+    read = OcspServlet.readRequest(new ByteArrayInputStream(bytes, 0, 10), -1, MAX_REQUEST_SIZE);
+    Assert.assertArrayEquals(Arrays.copyOf(bytes, 10), read);
+
+    // content length known
+    read = OcspServlet.readRequest(new ByteArrayInputStream(bytes), 10, MAX_REQUEST_SIZE);
+    Assert.assertArrayEquals(Arrays.copyOf(bytes, 10), read);
+  } // method testReadRequest
+
+  private void assertMalformedRequest(MockResponse resp) {
+    Assert.assertEquals("answer() calls", 0, answerCalls.get());
+    Assert.assertEquals("HTTP status", HttpServletResponse.SC_OK, resp.status);
+    Assert.assertEquals("Content-Type", "application/ocsp-response", resp.contentType);
+    OCSPResponse ocspResp = OCSPResponse.getInstance(resp.body.toByteArray());
+    Assert.assertEquals("responseStatus", OCSPResponseStatus.MALFORMED_REQUEST,
+        ocspResp.getResponseStatus().getIntValue());
+  }
+
+  private MockResponse doPost(final InputStream body, final int contentLength)
+      throws Exception {
+    final ServletInputStream servletIn = new ServletInputStream() {
+
+      @Override
+      public int read() throws IOException {
+        return body.read();
+      }
+
+      @Override
+      public int read(byte[] buf, int off, int len) throws IOException {
+        return body.read(buf, off, len);
+      }
+
+      @Override
+      public boolean isFinished() {
+        return false;
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setReadListener(ReadListener readListener) {
+      }
+
+    };
+
+    HttpServletRequest req = proxy(HttpServletRequest.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "getAttribute":
+          return "/";
+        case "getHeader":
+          return "Content-Type".equalsIgnoreCase((String) args[0])
+              ? "application/ocsp-request" : null;
+        case "getContentLength":
+          return contentLength;
+        case "getInputStream":
+          return servletIn;
+        default:
+          return null;
+      }
+    });
+
+    final MockResponse mockResp = new MockResponse();
+    final ServletOutputStream servletOut = new ServletOutputStream() {
+
+      @Override
+      public void write(int b) throws IOException {
+        mockResp.body.write(b);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+      }
+
+    };
+
+    HttpServletResponse resp = proxy(HttpServletResponse.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "setStatus":
+          mockResp.status = (Integer) args[0];
+          return null;
+        case "setContentType":
+          mockResp.contentType = (String) args[0];
+          return null;
+        case "getOutputStream":
+          return servletOut;
+        default:
+          return null;
+      }
+    });
+
+    OcspServlet servlet = new OcspServlet();
+    servlet.setServer(new MockOcspServer());
+    servlet.doPost(req, resp);
+    return mockResp;
+  } // method doPost
+
+  private static <T> T proxy(Class<T> clazz, InvocationHandler handler) {
+    return clazz.cast(Proxy.newProxyInstance(
+        OcspServletTest.class.getClassLoader(), new Class<?>[] {clazz}, handler));
+  }
+
+  private static class CountingInputStream extends ByteArrayInputStream {
+
+    private int count;
+
+    CountingInputStream(byte[] buf) {
+      super(buf);
+    }
+
+    @Override
+    public synchronized int read() {
+      int b = super.read();
+      if (b != -1) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public synchronized int read(byte[] buf, int off, int len) {
+      int read = super.read(buf, off, len);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+  } // class CountingInputStream
+
+  private class MockOcspServer implements OcspServer {
+
+    private final Responder responder = new Responder() {
+
+      @Override
+      public int getMaxRequestSize() {
+        return MAX_REQUEST_SIZE;
+      }
+
+      @Override
+      public boolean supportsHttpGet() {
+        return false;
+      }
+
+      @Override
+      public Long getCacheMaxAge() {
+        return null;
+      }
+
+    };
+
+    @Override
+    public ResponderAndPath getResponderForPath(String path) {
+      return new ResponderAndPath("/", responder);
+    }
+
+    @Override
+    public OcspRespWithCacheInfo answer(Responder responder, byte[] request, boolean viaGet) {
+      answerCalls.incrementAndGet();
+      return null;
+    }
+
+    @Override
+    public HealthCheckResult healthCheck(Responder responder) {
+      return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+  } // class MockOcspServer
+
+}
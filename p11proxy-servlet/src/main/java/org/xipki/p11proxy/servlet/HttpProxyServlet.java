@@ -19,6 +19,7 @@ package org.xipki.p11proxy.servlet;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -46,12 +47,18 @@ public class HttpProxyServlet extends HttpServlet {
 
   private static final String RESPONSE_MIMETYPE = "application/x-xipki-pkcs11";
 
+  private static final String BATCH_REQUEST_MIMETYPE = "application/x-xipki-pkcs11-batch";
+
+  private static final String BATCH_RESPONSE_MIMETYPE = "application/x-xipki-pkcs11-batch";
+
   private final P11ProxyResponder responder;
 
   private LocalP11CryptServicePool localP11CryptServicePool;
 
   private boolean logReqResp;
 
+  private Executor batchExecutor;
+
   public HttpProxyServlet() {
     responder = new P11ProxyResponder();
   }
@@ -66,13 +73,28 @@ public class HttpProxyServlet extends HttpServlet {
     try {
       // accept only "application/ocsp-request" as content type
       String reqContentType = req.getHeader("Content-Type");
-      if (!REQUEST_MIMETYPE.equalsIgnoreCase(reqContentType)) {
+      boolean batch;
+      if (REQUEST_MIMETYPE.equalsIgnoreCase(reqContentType)) {
+        batch = false;
+      } else if (BATCH_REQUEST_MIMETYPE.equalsIgnoreCase(reqContentType)) {
+        batch = true;
+      } else {
         sendError(resp, HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
         return;
       }
 
       byte[] requestBytes = IoUtil.read(req.getInputStream());
-      byte[] responseBytes = responder.processRequest(localP11CryptServicePool, requestBytes);
+      byte[] responseBytes;
+      if (batch) {
+        responseBytes = responder.processBatchRequest(localP11CryptServicePool, requestBytes,
+            batchExecutor);
+        if (responseBytes == null) {
+          sendError(resp, HttpServletResponse.SC_BAD_REQUEST);
+          return;
+        }
+      } else {
+        responseBytes = responder.processRequest(localP11CryptServicePool, requestBytes);
+      }
 
       if (logReqResp && LOG.isDebugEnabled()) {
         LOG.debug("HTTP POST OCSP path: {}\nRequest:\n{}\nResponse:\n{}", req.getRequestURI(),
@@ -80,7 +102,7 @@ public class HttpProxyServlet extends HttpServlet {
       }
 
       resp.setStatus(HttpServletResponse.SC_OK);
-      resp.setContentType(RESPONSE_MIMETYPE);
+      resp.setContentType(batch ? BATCH_RESPONSE_MIMETYPE : RESPONSE_MIMETYPE);
       resp.setContentLength(responseBytes.length);
       resp.getOutputStream().write(responseBytes);
     } catch (Throwable th) {
@@ -100,6 +122,10 @@ public class HttpProxyServlet extends HttpServlet {
     this.localP11CryptServicePool = localP11CryptServicePool;
   }
 
+  public void setBatchExecutor(Executor batchExecutor) {
+    this.batchExecutor = batchExecutor;
+  }
+
   private static void sendError(HttpServletResponse resp, int status) {
     resp.setStatus(status);
     resp.setContentLength(0);
@@ -37,6 +37,12 @@ public class P11ProxyConf extends ValidatableConf {
 
   private SecurityConf security;
 
+  /**
+   * Number of threads to process the requests of one batch request in parallel. Values less
+   * than 2 process the requests one after another. The default is 16.
+   */
+  private int batchThreads = 16;
+
   public static P11ProxyConf readConfFromFile(String fileName)
       throws IOException, InvalidConfException {
     notBlank(fileName, "fileName");
@@ -56,6 +62,14 @@ public class P11ProxyConf extends ValidatableConf {
     this.security = security;
   }
 
+  public int getBatchThreads() {
+    return batchThreads;
+  }
+
+  public void setBatchThreads(int batchThreads) {
+    this.batchThreads = batchThreads;
+  }
+
   @Override
   public void validate()
       throws InvalidConfException {
@@ -21,10 +21,15 @@ import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1Integer;
@@ -495,6 +500,71 @@ public class P11ProxyResponder {
     }
   } // method processRequest
 
+  /**
+   * Processes a batch request, which is the concatenation of requests as described in
+   * {@link #processRequest(LocalP11CryptServicePool, byte[])}. The response is the
+   * concatenation of the responses, in the order of the requests. The client matches the
+   * responses to the requests via the transaction IDs.
+   *
+   * @param pool
+   *          The pool that holds the P11CryptService.
+   * @param request
+   *          The batch request.
+   * @param executor
+   *          Executor to process the requests in parallel. If {@code null}, the requests are
+   *          processed one after another.
+   * @return batch response, or {@code null} if the batch request is malformed.
+   */
+  public byte[] processBatchRequest(LocalP11CryptServicePool pool, byte[] request,
+      Executor executor) {
+    List<byte[]> requests = new LinkedList<>();
+    int offset = 0;
+    while (offset < request.length) {
+      if (request.length - offset < 10) {
+        LOG.error("batch request too short");
+        return null;
+      }
+
+      int frameLen = 10 + IoUtil.parseInt(request, offset + 6);
+      if (frameLen < 10 || frameLen > request.length - offset) {
+        LOG.error("message length unmatch in batch request");
+        return null;
+      }
+
+      requests.add(Arrays.copyOfRange(request, offset, offset + frameLen));
+      offset += frameLen;
+    }
+
+    List<byte[]> responses = new ArrayList<>(requests.size());
+    if (executor == null || requests.size() == 1) {
+      for (byte[] req : requests) {
+        responses.add(processRequest(pool, req));
+      }
+    } else {
+      List<CompletableFuture<byte[]>> futures = new ArrayList<>(requests.size());
+      for (byte[] req : requests) {
+        futures.add(CompletableFuture.supplyAsync(() -> processRequest(pool, req), executor));
+      }
+
+      for (CompletableFuture<byte[]> future : futures) {
+        responses.add(future.join());
+      }
+    }
+
+    int size = 0;
+    for (byte[] resp : responses) {
+      size += resp.length;
+    }
+
+    byte[] batchResponse = new byte[size];
+    offset = 0;
+    for (byte[] resp : responses) {
+      System.arraycopy(resp, 0, batchResponse, offset, resp.length);
+      offset += resp.length;
+    }
+    return batchResponse;
+  } // method processBatchRequest
+
   private static String buildErrorMsg(short action, byte[] transactionId) {
     return "could not process action " + P11ProxyConstants.getActionName(action)
         + " (tid=" + Hex.encode(transactionId) + ")";
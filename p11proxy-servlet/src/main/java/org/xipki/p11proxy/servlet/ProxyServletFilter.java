@@ -18,6 +18,9 @@
 package org.xipki.p11proxy.servlet;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -56,6 +59,8 @@ public class ProxyServletFilter implements Filter {
 
   private boolean logReqResp;
 
+  private ExecutorService batchExecutor;
+
   @Override
   public void init(FilterConfig filterConfig)
       throws ServletException {
@@ -93,10 +98,26 @@ public class ProxyServletFilter implements Filter {
     servlet = new HttpProxyServlet();
     servlet.setLogReqResp(logReqResp);
     servlet.setLocalP11CryptServicePool(pool);
+
+    int batchThreads = conf.getBatchThreads();
+    LOG.info("batchThreads: {}", batchThreads);
+    if (batchThreads > 1) {
+      AtomicInteger threadNo = new AtomicInteger();
+      batchExecutor = Executors.newFixedThreadPool(batchThreads, r -> {
+        Thread thread = new Thread(r, "p11proxy-batch-" + threadNo.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      servlet.setBatchExecutor(batchExecutor);
+    }
   } // method init
 
   @Override
   public void destroy() {
+    if (batchExecutor != null) {
+      batchExecutor.shutdown();
+    }
+
     if (securities != null) {
       securities.close();
     }
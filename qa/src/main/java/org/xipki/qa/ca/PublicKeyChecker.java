@@ -45,7 +45,7 @@ import org.xipki.ca.api.profile.KeyParametersOption.RSAParametersOption;
 import org.xipki.qa.ValidationIssue;
 import org.xipki.security.util.AlgorithmUtil;
 import org.xipki.security.util.X509Util;
-import org.xipki.util.LruCache;
+import org.xipki.util.ConcurrentCache;
 
 /**
  * Public key checker.
@@ -58,8 +58,8 @@ public class PublicKeyChecker {
 
   private static final Logger LOG = LoggerFactory.getLogger(PublicKeyChecker.class);
 
-  private static final LruCache<ASN1ObjectIdentifier, Integer> EC_CURVEFIELD_SIZES
-      = new LruCache<>(100);
+  private static final ConcurrentCache<ASN1ObjectIdentifier, Integer> EC_CURVEFIELD_SIZES
+      = new ConcurrentCache<>(100);
 
   private Map<ASN1ObjectIdentifier, KeyParametersOption> keyAlgorithms;
 
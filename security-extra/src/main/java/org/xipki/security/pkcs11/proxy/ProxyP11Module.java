@@ -30,9 +30,20 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -87,13 +98,221 @@ public class ProxyP11Module extends P11Module {
 
   private static final String PROP_SSL_HOStNAMEVERIFIER = "ssl.hostnameVerifier";
 
+  private static final String PROP_BATCH_SIZE = "batch.size";
+
+  private static final String PROP_BATCH_CONNECTIONS = "batch.connections";
+
   private static final Logger LOG = LoggerFactory.getLogger(ProxyP11Module.class);
 
   private static final String REQUEST_MIMETYPE = "application/x-xipki-pkcs11";
 
   private static final String RESPONSE_MIMETYPE = "application/x-xipki-pkcs11";
 
-  private final Random random = new Random();
+  private static final String BATCH_REQUEST_MIMETYPE = "application/x-xipki-pkcs11-batch";
+
+  private static final String BATCH_RESPONSE_MIMETYPE = "application/x-xipki-pkcs11-batch";
+
+  private static class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    HttpStatusException(int status, String message) {
+      super("bad response: code=" + status + ", message=" + message);
+      this.status = status;
+    }
+
+  } // class HttpStatusException
+
+  /**
+   * Collects the sign requests of concurrent callers and sends them in one HTTP request
+   * to the server. Several batches are sent in parallel over the persistent connections.
+   * The responses are matched to the requests via the transaction IDs.
+   */
+  private class BatchSender {
+
+    private class Entry {
+
+      private final int transactionId;
+
+      private final byte[] request;
+
+      private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+      Entry(byte[] request) {
+        this.transactionId = IoUtil.parseInt(request, 2);
+        this.request = request;
+      }
+
+    } // class Entry
+
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+
+    private final int maxBatchSize;
+
+    private final List<Thread> threads;
+
+    private volatile boolean running = true;
+
+    private volatile boolean batchSupported = true;
+
+    BatchSender(int maxBatchSize, int connections) {
+      this.maxBatchSize = maxBatchSize;
+      this.threads = new ArrayList<>(connections);
+      for (int i = 0; i < connections; i++) {
+        Thread thread = new Thread(this::run, "p11proxy-sender-" + moduleId + "-" + (i + 1));
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+      }
+    } // constructor
+
+    byte[] send(byte[] request)
+        throws IOException {
+      if (!batchSupported || !running) {
+        return ProxyP11Module.this.send(request);
+      }
+
+      Entry entry = new Entry(request);
+      queue.add(entry);
+
+      try {
+        return entry.future.get();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new IOException("interrupted", ex);
+      } catch (ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        throw (cause instanceof IOException) ? (IOException) cause
+            : new IOException(cause.getMessage(), cause);
+      }
+    } // method send
+
+    void close() {
+      running = false;
+      for (Thread thread : threads) {
+        try {
+          thread.join();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      // requests added after the threads have stopped
+      List<Entry> batch = new ArrayList<>();
+      queue.drainTo(batch);
+      for (Entry entry : batch) {
+        entry.future.completeExceptionally(new IOException("module closed"));
+      }
+    } // method close
+
+    private void run() {
+      while (running) {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        try {
+          Entry first = queue.poll(1, TimeUnit.SECONDS);
+          if (first == null) {
+            continue;
+          }
+          batch.add(first);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+
+        queue.drainTo(batch, maxBatchSize - 1);
+        try {
+          sendBatch(batch);
+        } catch (Throwable th) {
+          LogUtil.error(LOG, th, "could not send batch request");
+          for (Entry entry : batch) {
+            entry.future.completeExceptionally(th);
+          }
+        }
+      }
+    } // method run
+
+    private void sendBatch(List<Entry> batch) {
+      if (batch.size() > 1 && batchSupported) {
+        int size = 0;
+        for (Entry entry : batch) {
+          size += entry.request.length;
+        }
+
+        byte[] batchRequest = new byte[size];
+        int offset = 0;
+        for (Entry entry : batch) {
+          System.arraycopy(entry.request, 0, batchRequest, offset, entry.request.length);
+          offset += entry.request.length;
+        }
+
+        byte[] batchResponse;
+        try {
+          batchResponse = post(batchRequest, BATCH_REQUEST_MIMETYPE, BATCH_RESPONSE_MIMETYPE);
+        } catch (HttpStatusException ex) {
+          if (ex.status != HttpURLConnection.HTTP_UNSUPPORTED_TYPE) {
+            failAll(batch, ex);
+            return;
+          }
+
+          LOG.warn("server does not support batch requests, send the requests one by one");
+          batchSupported = false;
+          batchResponse = null;
+        } catch (IOException ex) {
+          failAll(batch, ex);
+          return;
+        }
+
+        if (batchResponse != null) {
+          dispatch(batch, batchResponse);
+          return;
+        }
+      }
+
+      for (Entry entry : batch) {
+        try {
+          entry.future.complete(ProxyP11Module.this.send(entry.request));
+        } catch (IOException ex) {
+          entry.future.completeExceptionally(ex);
+        }
+      }
+    } // method sendBatch
+
+    private void dispatch(List<Entry> batch, byte[] batchResponse) {
+      Map<Integer, byte[]> responses = new HashMap<>();
+      int offset = 0;
+      while (batchResponse.length - offset >= 10) {
+        int frameLen = 10 + IoUtil.parseInt(batchResponse, offset + 6);
+        if (frameLen < 10 || frameLen > batchResponse.length - offset) {
+          break;
+        }
+
+        responses.put(IoUtil.parseInt(batchResponse, offset + 2),
+            Arrays.copyOfRange(batchResponse, offset, offset + frameLen));
+        offset += frameLen;
+      }
+
+      for (Entry entry : batch) {
+        byte[] response = responses.get(entry.transactionId);
+        if (response != null) {
+          entry.future.complete(response);
+        } else {
+          entry.future.completeExceptionally(
+              new IOException("no response in the batch response"));
+        }
+      }
+    } // method dispatch
+
+    private void failAll(List<Entry> batch, IOException ex) {
+      for (Entry entry : batch) {
+        entry.future.completeExceptionally(ex);
+      }
+    }
+
+  } // class BatchSender
+
+  private final AtomicInteger transactionIdCounter = new AtomicInteger(new Random().nextInt());
 
   private final short version = P11ProxyConstants.VERSION_V1_0;
 
@@ -109,6 +328,9 @@ public class ProxyP11Module extends P11Module {
 
   private HostnameVerifier hostnameVerifier;
 
+  // null if the sign requests are sent one by one
+  private BatchSender batchSender;
+
   private ProxyP11Module(P11ModuleConf moduleConf)
       throws P11TokenException {
     super(moduleConf);
@@ -188,7 +410,16 @@ public class ProxyP11Module extends P11Module {
       throw new P11TokenException("could not create HostnameVerifier", ex);
     }
 
+    int batchSize = getInt(confPairs, PROP_BATCH_SIZE, 0);
+    int connections = getInt(confPairs, PROP_BATCH_CONNECTIONS, 4);
+
     refresh();
+
+    if (batchSize > 1) {
+      LOG.info("send sign requests in batches: batch.size={}, batch.connections={}",
+          batchSize, connections);
+      this.batchSender = new BatchSender(batchSize, Math.max(1, connections));
+    }
   } // constructor
 
   public static P11Module getInstance(P11ModuleConf moduleConf)
@@ -197,6 +428,20 @@ public class ProxyP11Module extends P11Module {
     return new ProxyP11Module(moduleConf);
   }
 
+  private static int getInt(ConfPairs confPairs, String name, int defaultValue)
+      throws P11TokenException {
+    String str = confPairs.value(name);
+    if (str == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(str.trim());
+    } catch (NumberFormatException ex) {
+      throw new P11TokenException("invalid " + name + ": " + str);
+    }
+  } // method getInt
+
   @Override
   public boolean isReadOnly() {
     return readOnly || super.isReadOnly();
@@ -263,6 +508,10 @@ public class ProxyP11Module extends P11Module {
 
   @Override
   public void close() {
+    if (batchSender != null) {
+      batchSender.close();
+    }
+
     for (P11SlotIdentifier slotId : getSlotIds()) {
       try {
         getSlot(slotId).close();
@@ -274,7 +523,11 @@ public class ProxyP11Module extends P11Module {
 
   protected byte[] send(byte[] request)
       throws IOException {
-    Args.notNull(request, "request");
+    return post(Args.notNull(request, "request"), REQUEST_MIMETYPE, RESPONSE_MIMETYPE);
+  }
+
+  private byte[] post(byte[] request, String requestMimeType, String responseMimeType)
+      throws IOException {
     HttpURLConnection httpUrlConnection = IoUtil.openHttpConn(serverUrl);
 
     if (httpUrlConnection instanceof HttpsURLConnection) {
@@ -293,7 +546,7 @@ public class ProxyP11Module extends P11Module {
     int size = request.length;
 
     httpUrlConnection.setRequestMethod("POST");
-    httpUrlConnection.setRequestProperty("Content-Type", REQUEST_MIMETYPE);
+    httpUrlConnection.setRequestProperty("Content-Type", requestMimeType);
     httpUrlConnection.setRequestProperty("Content-Length", Integer.toString(size));
     OutputStream outputstream = httpUrlConnection.getOutputStream();
     outputstream.write(request);
@@ -316,8 +569,8 @@ public class ProxyP11Module extends P11Module {
         // ignore it
       }
 
-      throw new IOException("bad response: code=" + httpUrlConnection.getResponseCode()
-          + ", message=" + httpUrlConnection.getResponseMessage());
+      throw new HttpStatusException(httpUrlConnection.getResponseCode(),
+          httpUrlConnection.getResponseMessage());
     }
 
     InputStream inputstream = null;
@@ -335,7 +588,7 @@ public class ProxyP11Module extends P11Module {
       String responseContentType = httpUrlConnection.getContentType();
       boolean isValidContentType = false;
       if (responseContentType != null) {
-        if (responseContentType.equalsIgnoreCase(RESPONSE_MIMETYPE)) {
+        if (responseContentType.equalsIgnoreCase(responseMimeType)) {
           isValidContentType = true;
         }
       }
@@ -358,7 +611,7 @@ public class ProxyP11Module extends P11Module {
     } finally {
       inputstream.close();
     }
-  } // method send
+  } // method post
 
   /**
    * The request is constructed as follows.
@@ -397,8 +650,9 @@ public class ProxyP11Module extends P11Module {
     // version
     IoUtil.writeShort(version, request, 0);
 
-    // transaction id
-    byte[] transactionId = randomTransactionId();
+    // transaction id, unique among the outstanding requests of a batch
+    byte[] transactionId = new byte[4];
+    IoUtil.writeInt(transactionIdCounter.incrementAndGet(), transactionId, 0);
     System.arraycopy(transactionId, 0, request, 2, 4);
 
     // length
@@ -417,7 +671,8 @@ public class ProxyP11Module extends P11Module {
 
     byte[] response;
     try {
-      response = send(request);
+      response = (batchSender != null && action == P11ProxyConstants.ACTION_SIGN)
+          ? batchSender.send(request) : send(request);
     } catch (IOException ex) {
       final String msg = "could not send the request";
       LOG.error(msg + " {}", request);
@@ -471,12 +726,6 @@ public class ProxyP11Module extends P11Module {
     return respContent;
   } // method send
 
-  private byte[] randomTransactionId() {
-    byte[] tid = new byte[4];
-    random.nextBytes(tid);
-    return tid;
-  }
-
   private static boolean equals(byte[] bytes, byte[] bytesB, int offsetB) {
     if (bytesB.length - offsetB < bytes.length) {
       return false;
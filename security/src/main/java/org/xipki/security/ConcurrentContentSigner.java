@@ -101,10 +101,11 @@ public interface ConcurrentContentSigner extends Closeable {
       throws NoIdleSignerException, SignatureException;
 
   /**
-   * Sign the data.
+   * Sign the data in batch. All data are signed by one borrowed signer, so that the
+   * overhead to borrow the signer and to set up its context is paid only once.
    * @param data
    *          Data to be signed. Must not be {@code null}.
-   * @return the signature
+   * @return the signatures, in the same order as the data.
    * @throws NoIdleSignerException
    *         If no idle signer is available
    * @throws SignatureException
@@ -134,6 +135,13 @@ public interface ConcurrentContentSigner extends Closeable {
 
   void requiteSigner(ConcurrentBagEntrySigner signer);
 
+  /**
+   * Returns the number of signers in the pool, namely the max. number of signing operations
+   * that can be processed in parallel.
+   * @return the number of signers in the pool.
+   */
+  int getPoolSize();
+
   boolean isHealthy();
 
 }
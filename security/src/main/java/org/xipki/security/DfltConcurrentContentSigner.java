@@ -172,6 +172,11 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
     signers.requite(signer);
   }
 
+  @Override
+  public int getPoolSize() {
+    return signers.size();
+  }
+
   @Override
   public void initialize(String conf, PasswordResolver passwordResolver)
       throws XiSecurityException {
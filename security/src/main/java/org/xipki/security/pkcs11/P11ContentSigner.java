@@ -59,6 +59,10 @@ import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
 /**
  * PKCS#11 {@link XiContentSigner}.
  *
+ * <p>If the token supports both the combined mechanism (e.g. CKM_ECDSA_SHA256) and the raw
+ * mechanism (e.g. CKM_ECDSA), the flag hostHashing decides which one is used. With host hashing
+ * only the hash value is sent to the token, independent of the size of the data to be signed.
+ *
  * @author Lijun Liao
  *
  */
@@ -133,7 +137,7 @@ abstract class P11ContentSigner implements XiContentSigner {
     } // method static
 
     DSA(P11CryptService cryptService, P11IdentityId identityId,
-        AlgorithmIdentifier signatureAlgId, boolean plain)
+        AlgorithmIdentifier signatureAlgId, boolean plain, boolean hostHashing)
         throws XiSecurityException, P11TokenException {
       super(cryptService, identityId, signatureAlgId);
 
@@ -149,10 +153,11 @@ abstract class P11ContentSigner implements XiContentSigner {
       P11Slot slot = cryptService.getSlot(slotId);
 
       long mech = hashMechMap.get(hashAlgo).longValue();
-      if (slot.supportsMechanism(mech)) {
+      boolean rawSupported = slot.supportsMechanism(PKCS11Constants.CKM_DSA);
+      if (slot.supportsMechanism(mech) && !(hostHashing && rawSupported)) {
         mechanism = mech;
         this.outputStream = new ByteArrayOutputStream();
-      } else if (slot.supportsMechanism(PKCS11Constants.CKM_DSA)) {
+      } else if (rawSupported) {
         mechanism = PKCS11Constants.CKM_DSA;
         this.outputStream = new DigestOutputStream(hashAlgo.createDigest());
       } else {
@@ -242,7 +247,7 @@ abstract class P11ContentSigner implements XiContentSigner {
     } // method static
 
     ECDSA(P11CryptService cryptService, P11IdentityId identityId,
-        AlgorithmIdentifier signatureAlgId, boolean plain)
+        AlgorithmIdentifier signatureAlgId, boolean plain, boolean hostHashing)
         throws XiSecurityException, P11TokenException {
       super(cryptService, identityId, signatureAlgId);
 
@@ -257,10 +262,11 @@ abstract class P11ContentSigner implements XiContentSigner {
       P11Slot slot = cryptService.getSlot(identityId.getSlotId());
 
       long mech = hashMechMap.get(hashAlgo).longValue();
-      if (slot.supportsMechanism(mech)) {
+      boolean rawSupported = slot.supportsMechanism(PKCS11Constants.CKM_ECDSA);
+      if (slot.supportsMechanism(mech) && !(hostHashing && rawSupported)) {
         mechanism = mech;
         this.outputStream = new ByteArrayOutputStream();
-      } else if (slot.supportsMechanism(PKCS11Constants.CKM_ECDSA)) {
+      } else if (rawSupported) {
         mechanism = PKCS11Constants.CKM_ECDSA;
         this.outputStream = new DigestOutputStream(hashAlgo.createDigest());
       } else {
@@ -461,7 +467,7 @@ abstract class P11ContentSigner implements XiContentSigner {
     } // method static
 
     RSA(P11CryptService cryptService, P11IdentityId identityId,
-        AlgorithmIdentifier signatureAlgId)
+        AlgorithmIdentifier signatureAlgId, boolean hostHashing)
             throws XiSecurityException, P11TokenException {
       super(cryptService, identityId, signatureAlgId);
 
@@ -475,7 +481,9 @@ abstract class P11ContentSigner implements XiContentSigner {
       P11Slot slot = cryptService.getSlot(slotId);
 
       long mech = hashAlgMechMap.get(hashAlgo).longValue();
-      if (slot.supportsMechanism(mech)) {
+      boolean rawSupported = slot.supportsMechanism(PKCS11Constants.CKM_RSA_PKCS)
+          || slot.supportsMechanism(PKCS11Constants.CKM_RSA_X_509);
+      if (slot.supportsMechanism(mech) && !(hostHashing && rawSupported)) {
         mechanism = mech;
       } else if (slot.supportsMechanism(PKCS11Constants.CKM_RSA_PKCS)) {
         mechanism = PKCS11Constants.CKM_RSA_PKCS;
@@ -609,7 +617,7 @@ abstract class P11ContentSigner implements XiContentSigner {
     private final OutputStream outputStream;
 
     RSAPSS(P11CryptService cryptService, P11IdentityId identityId,
-        AlgorithmIdentifier signatureAlgId, SecureRandom random)
+        AlgorithmIdentifier signatureAlgId, SecureRandom random, boolean hostHashing)
         throws XiSecurityException, P11TokenException {
       super(cryptService, identityId, signatureAlgId);
       notNull(random, "random");
@@ -631,7 +639,9 @@ abstract class P11ContentSigner implements XiContentSigner {
       P11Slot slot = cryptService.getSlot(slotId);
 
       long mech = hashAlgMechMap.get(hashAlgo).longValue();
-      if (slot.supportsMechanism(mech)) {
+      boolean rawSupported = slot.supportsMechanism(PKCS11Constants.CKM_RSA_PKCS_PSS)
+          || slot.supportsMechanism(PKCS11Constants.CKM_RSA_X_509);
+      if (slot.supportsMechanism(mech) && !(hostHashing && rawSupported)) {
         this.mechanism = mech;
         this.parameters = new P11Params.P11RSAPkcsPssParams(asn1Params);
         this.outputStream = new ByteArrayOutputStream();
@@ -720,7 +730,7 @@ abstract class P11ContentSigner implements XiContentSigner {
 
     SM2(P11CryptService cryptService, P11IdentityId identityId,
         AlgorithmIdentifier signatureAlgId, ASN1ObjectIdentifier curveOid, BigInteger pubPointX,
-        BigInteger pubPointY)
+        BigInteger pubPointY, boolean hostHashing)
             throws XiSecurityException, P11TokenException {
       super(cryptService, identityId, signatureAlgId);
 
@@ -733,11 +743,12 @@ abstract class P11ContentSigner implements XiContentSigner {
       P11Slot slot = cryptService.getSlot(identityId.getSlotId());
 
       long mech = hashMechMap.get(hashAlgo);
-      if (slot.supportsMechanism(mech)) {
+      boolean rawSupported = slot.supportsMechanism(PKCS11Constants.CKM_VENDOR_SM2);
+      if (slot.supportsMechanism(mech) && !(hostHashing && rawSupported)) {
         this.mechanism = mech;
         this.z = null; // not required
         this.outputStream = new ByteArrayOutputStream();
-      } else if (slot.supportsMechanism(PKCS11Constants.CKM_VENDOR_SM2)) {
+      } else if (rawSupported) {
         this.mechanism = PKCS11Constants.CKM_VENDOR_SM2;
         this.z = GMUtil.getSM2Z(curveOid, pubPointX, pubPointY);
         this.outputStream = new DigestOutputStream(hashAlgo.createDigest());
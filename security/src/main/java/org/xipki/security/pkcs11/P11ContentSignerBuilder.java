@@ -121,6 +121,29 @@ public class P11ContentSignerBuilder {
   public ConcurrentContentSigner createSigner(AlgorithmIdentifier signatureAlgId,
       int parallelism)
           throws XiSecurityException, P11TokenException {
+    return createSigner(signatureAlgId, parallelism, false);
+  }
+
+  /**
+   * Creates the signer.
+   * @param signatureAlgId
+   *          Signature algorithm.
+   * @param parallelism
+   *          Number of signers which can be used in parallel.
+   * @param hostHashing
+   *          Whether to hash the data to be signed in the host and sign the hash value with the
+   *          raw mechanism (e.g. CKM_ECDSA), even if the token supports the combined mechanism
+   *          (e.g. CKM_ECDSA_SHA256). Ignored for EdDSA, and if the token does not support the
+   *          raw mechanism.
+   * @return the signer.
+   * @throws XiSecurityException
+   *          If the algorithm is not supported.
+   * @throws P11TokenException
+   *          If error occurred while accessing the token.
+   */
+  public ConcurrentContentSigner createSigner(AlgorithmIdentifier signatureAlgId,
+      int parallelism, boolean hostHashing)
+          throws XiSecurityException, P11TokenException {
     positive(parallelism, "parallelism");
 
     List<XiContentSigner> signers = new ArrayList<>(parallelism);
@@ -134,7 +157,7 @@ public class P11ContentSignerBuilder {
               "the given algorithm is not a valid RSA signature algorithm '"
               + signatureAlgId.getAlgorithm().getId() + "'");
         }
-        signer = createRSAContentSigner(signatureAlgId);
+        signer = createRSAContentSigner(signatureAlgId, hostHashing);
       } else if (publicKey instanceof ECPublicKey) {
         ECPublicKey ecKey = (ECPublicKey) publicKey;
 
@@ -158,9 +181,9 @@ public class P11ContentSignerBuilder {
         if (isSm2p256v1) {
           java.security.spec.ECPoint w = ecKey.getW();
           signer = createSM2ContentSigner(signatureAlgId, GMObjectIdentifiers.sm2p256v1,
-              w.getAffineX(), w.getAffineY());
+              w.getAffineX(), w.getAffineY(), hostHashing);
         } else {
-          signer = createECContentSigner(signatureAlgId);
+          signer = createECContentSigner(signatureAlgId, hostHashing);
         }
       } else if (publicKey instanceof DSAPublicKey) {
         if (i == 0 && !AlgorithmUtil.isDSASigAlg(signatureAlgId)) {
@@ -168,7 +191,7 @@ public class P11ContentSignerBuilder {
               "the given algorithm is not a valid DSA signature algorithm '"
               + signatureAlgId.getAlgorithm().getId() + "'");
         }
-        signer = createDSAContentSigner(signatureAlgId);
+        signer = createDSAContentSigner(signatureAlgId, hostHashing);
       } else if (publicKey instanceof EdDSAKey) {
         signer = createEdDSAContentSigner(signatureAlgId);
       } else {
@@ -196,36 +219,40 @@ public class P11ContentSignerBuilder {
   } // method createSigner
 
   // CHECKSTYLE:SKIP
-  private XiContentSigner createRSAContentSigner(AlgorithmIdentifier signatureAlgId)
+  private XiContentSigner createRSAContentSigner(AlgorithmIdentifier signatureAlgId,
+      boolean hostHashing)
       throws XiSecurityException, P11TokenException {
     if (PKCSObjectIdentifiers.id_RSASSA_PSS.equals(signatureAlgId.getAlgorithm())) {
       return new P11ContentSigner.RSAPSS(cryptService, identityId, signatureAlgId,
-          securityFactory.getRandom4Sign());
+          securityFactory.getRandom4Sign(), hostHashing);
     } else {
-      return new P11ContentSigner.RSA(cryptService, identityId, signatureAlgId);
+      return new P11ContentSigner.RSA(cryptService, identityId, signatureAlgId, hostHashing);
     }
   }
 
   // CHECKSTYLE:SKIP
-  private XiContentSigner createECContentSigner(AlgorithmIdentifier signatureAlgId)
+  private XiContentSigner createECContentSigner(AlgorithmIdentifier signatureAlgId,
+      boolean hostHashing)
       throws XiSecurityException, P11TokenException {
     return new P11ContentSigner.ECDSA(cryptService, identityId, signatureAlgId,
-        AlgorithmUtil.isDSAPlainSigAlg(signatureAlgId));
+        AlgorithmUtil.isDSAPlainSigAlg(signatureAlgId), hostHashing);
   }
 
   // CHECKSTYLE:SKIP
   private XiContentSigner createSM2ContentSigner(AlgorithmIdentifier signatureAlgId,
-      ASN1ObjectIdentifier curveOid, BigInteger pubPointX, BigInteger pubPointy)
+      ASN1ObjectIdentifier curveOid, BigInteger pubPointX, BigInteger pubPointy,
+      boolean hostHashing)
       throws XiSecurityException, P11TokenException {
     return new P11ContentSigner.SM2(cryptService, identityId, signatureAlgId,
-        curveOid, pubPointX, pubPointy);
+        curveOid, pubPointX, pubPointy, hostHashing);
   }
 
   // CHECKSTYLE:SKIP
-  private XiContentSigner createDSAContentSigner(AlgorithmIdentifier signatureAlgId)
+  private XiContentSigner createDSAContentSigner(AlgorithmIdentifier signatureAlgId,
+      boolean hostHashing)
       throws XiSecurityException, P11TokenException {
     return new P11ContentSigner.DSA(cryptService, identityId, signatureAlgId,
-        AlgorithmUtil.isDSAPlainSigAlg(signatureAlgId));
+        AlgorithmUtil.isDSAPlainSigAlg(signatureAlgId), hostHashing);
   }
 
   // CHECKSTYLE:SKIP
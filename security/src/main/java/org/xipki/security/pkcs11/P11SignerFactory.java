@@ -107,6 +107,18 @@ public class P11SignerFactory implements SignerFactory {
       }
     }
 
+    // token: use the combined mechanism (e.g. CKM_ECDSA_SHA256) if supported by the token,
+    // host: hash in the host and sign the hash value with the raw mechanism (e.g. CKM_ECDSA)
+    str = conf.getConfValue("hashing");
+    boolean hostHashing;
+    if (str == null || "token".equalsIgnoreCase(str)) {
+      hostHashing = false;
+    } else if ("host".equalsIgnoreCase(str)) {
+      hostHashing = true;
+    } else {
+      throw new ObjectCreationException("invalid hashing " + str);
+    }
+
     String moduleName = conf.getConfValue("module");
     str = conf.getConfValue("slot");
     Integer slotIndex = (str == null) ? null : Integer.parseInt(str);
@@ -181,7 +193,7 @@ public class P11SignerFactory implements SignerFactory {
 
         P11ContentSignerBuilder signerBuilder = new P11ContentSignerBuilder(p11Service,
             securityFactory, identityId, certificateChain);
-        return signerBuilder.createSigner(signatureAlgId, parallelism);
+        return signerBuilder.createSigner(signatureAlgId, parallelism, hostHashing);
       }
     } catch (P11TokenException | NoSuchAlgorithmException | XiSecurityException ex) {
       throw new ObjectCreationException(ex.getMessage(), ex);
@@ -135,15 +135,15 @@ public class KeyUtil {
       tmpPublicExponent = RSAKeyGenParameterSpec.F4;
     }
     AlgorithmParameterSpec params = new RSAKeyGenParameterSpec(keysize, tmpPublicExponent);
-    KeyPairGenerator kpGen = getKeyPairGenerator("RSA");
-    synchronized (kpGen) {
-      if (random == null) {
-        kpGen.initialize(params);
-      } else {
-        kpGen.initialize(params, random);
-      }
-      return kpGen.generateKeyPair();
+    // RSA keypair generation is slow, use a new generator instead of serializing all
+    // generations on the shared one.
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA", "BC");
+    if (random == null) {
+      kpGen.initialize(params);
+    } else {
+      kpGen.initialize(params, random);
     }
+    return kpGen.generateKeyPair();
   }
 
   // CHECKSTYLE:SKIP
@@ -0,0 +1,324 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache for concurrent access.
+ *
+ * <p>In contrast to {@link LruCache}, the method {@link #get(Object)} does not take any lock:
+ * the entries are held in a {@link ConcurrentHashMap}, and a hit only marks the entry as
+ * referenced. If the cache is full, the entries are evicted in the CLOCK (second chance)
+ * order: the oldest entry which has not been referenced since the last pass is evicted first.
+ * Only the eviction is serialized.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+public class ConcurrentCache<K, V> {
+
+  private static class Node<K, V> {
+
+    private final K key;
+
+    private final V value;
+
+    private final int weight;
+
+    private volatile boolean referenced;
+
+    private volatile boolean removed;
+
+    Node(K key, V value, int weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+
+  } // class Node
+
+  private final ConcurrentHashMap<K, Node<K, V>> map;
+
+  /**
+   * The clock, entries are appended at the tail, and the hand is at the head.
+   */
+  private final ConcurrentLinkedQueue<Node<K, V>> clock = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Number of nodes in the clock which have been removed from the map.
+   */
+  private final AtomicInteger staleNodes = new AtomicInteger();
+
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  /** Size of this cache in units. Not necessarily the number of elements. */
+  private final AtomicLong size = new AtomicLong();
+
+  private final int maxSize;
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  private final LongAdder putCount = new LongAdder();
+
+  private final LongAdder evictionCount = new LongAdder();
+
+  /**
+   * Constructor with the maximal size.
+   *
+   * @param maxSize for caches that do not override {@link #sizeOf}, this is
+   *     the maximum number of entries in the cache. For all other caches,
+   *     this is the maximum sum of the sizes of the entries in this cache.
+   */
+  public ConcurrentCache(int maxSize) {
+    this.maxSize = Args.positive(maxSize, "maxSize");
+    this.map = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+  }
+
+  /**
+   * Returns the value for {@code key} if it exists in the cache.
+   *
+   * @param key the key
+   * @return the value for {@code key}, or {@code null} if it is not cached.
+   */
+  public final V get(K key) {
+    Node<K, V> node = map.get(Args.notNull(key, "key"));
+    if (node == null) {
+      missCount.increment();
+      return null;
+    }
+
+    // avoid the write if the entry is already marked, reads of hot entries stay read-only
+    if (!node.referenced) {
+      node.referenced = true;
+    }
+    hitCount.increment();
+    return node.value;
+  } // method get
+
+  /**
+   * Caches {@code value} for {@code key}.
+   *
+   * @param key the key.
+   * @param value the value.
+   * @return the previous value mapped by {@code key}.
+   */
+  public final V put(K key, V value) {
+    Args.notNull(key, "key");
+    Args.notNull(value, "value");
+
+    Node<K, V> node = new Node<>(key, value, safeSizeOf(key, value));
+    putCount.increment();
+
+    size.addAndGet(node.weight);
+    Node<K, V> previous = map.put(key, node);
+    clock.offer(node);
+    if (previous != null) {
+      unlink(previous);
+    }
+
+    if (size.get() > maxSize || staleNodes.get() > map.size() + 16) {
+      evict();
+    }
+
+    return previous == null ? null : previous.value;
+  } // method put
+
+  /**
+   * Removes the entry for {@code key} if it exists.
+   *
+   * @param key the key
+   * @return the previous value mapped by {@code key}.
+   */
+  public final V remove(K key) {
+    Node<K, V> previous = map.remove(Args.notNull(key, "key"));
+    if (previous == null) {
+      return null;
+    }
+
+    unlink(previous);
+    return previous.value;
+  } // method remove
+
+  /**
+   * Removes all entries.
+   */
+  public final void clear() {
+    evictionLock.lock();
+    try {
+      for (K key : map.keySet()) {
+        remove(key);
+      }
+      purgeStaleNodes();
+    } finally {
+      evictionLock.unlock();
+    }
+  } // method clear
+
+  private void unlink(Node<K, V> node) {
+    node.removed = true;
+    size.addAndGet(-node.weight);
+    staleNodes.incrementAndGet();
+  }
+
+  private void evict() {
+    evictionLock.lock();
+    try {
+      if (staleNodes.get() > map.size() + 16) {
+        purgeStaleNodes();
+      }
+
+      // each node is passed at most twice: the first pass clears the referenced flag.
+      while (size.get() > maxSize) {
+        Node<K, V> node = clock.poll();
+        if (node == null) {
+          break;
+        }
+
+        if (node.removed) {
+          staleNodes.decrementAndGet();
+        } else if (node.referenced) {
+          node.referenced = false;
+          clock.offer(node);
+        } else if (map.remove(node.key, node)) {
+          node.removed = true;
+          size.addAndGet(-node.weight);
+          evictionCount.increment();
+        } else {
+          // replaced or removed concurrently, the remover accounts the node as stale.
+          clock.offer(node);
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  } // method evict
+
+  private void purgeStaleNodes() {
+    int purged = 0;
+    for (Iterator<Node<K, V>> it = clock.iterator(); it.hasNext();) {
+      if (it.next().removed) {
+        it.remove();
+        purged++;
+      }
+    }
+    staleNodes.addAndGet(-purged);
+  } // method purgeStaleNodes
+
+  private int safeSizeOf(K key, V value) {
+    int result = sizeOf(key, value);
+    if (result < 0) {
+      throw new IllegalStateException("Negative size: " + key + "=" + value);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the size of the entry for {@code key} and {@code value} in
+   * user-defined units. The default implementation returns 1 so that size
+   * is the number of entries and max size is the maximum number of entries.
+   *
+   * <p>An entry's size may not change while it is in the cache.
+   * @param key the key
+   * @param value the value
+   * @return the size of the entry for {@code key} and {@code value} in
+   *      user-defined units
+   */
+  protected int sizeOf(K key, V value) {
+    return 1;
+  }
+
+  /**
+   * For caches that do not override {@link #sizeOf}, this returns the number
+   * of entries in the cache. For all other caches, this returns the sum of
+   * the sizes of the entries in this cache.
+   * @return the size
+   */
+  public final int size() {
+    return (int) size.get();
+  }
+
+  /**
+   * Returns the number of entries in the cache.
+   * @return the number of entries.
+   */
+  public final int count() {
+    return map.size();
+  }
+
+  /**
+   * For caches that do not override {@link #sizeOf}, this returns the maximum
+   * number of entries in the cache. For all other caches, this returns the
+   * maximum sum of the sizes of the entries in this cache.
+   * @return the maximal size
+   */
+  public final int maxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of times {@link #get} returned a value.
+   * @return the number of times
+   */
+  public final long hitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Returns the number of times {@link #get} returned {@code null}.
+   * @return the number of times
+   */
+  public final long missCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Returns the number of times {@link #put} was called.
+   * @return the number of times {@link #put} was called.
+   */
+  public final long putCount() {
+    return putCount.sum();
+  }
+
+  /**
+   * Returns the number of values that have been evicted.
+   * @return the number of values that have been evicted.
+   */
+  public final long evictionCount() {
+    return evictionCount.sum();
+  }
+
+  @Override
+  public final String toString() {
+    long hits = hitCount.sum();
+    long accesses = hits + missCount.sum();
+    long hitPercent = (accesses == 0) ? 0 : (100 * hits / accesses);
+    return String.format(
+        "ConcurrentCache[maxSize=%d,hits=%d,misses=%d,evictions=%d,hitRate=%d%%]",
+        maxSize, hits, missCount.sum(), evictionCount.sum(), hitPercent);
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.common.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.util.ConcurrentCache;
+
+/**
+ * Test for {@link ConcurrentCache}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.12
+ */
+
+public class ConcurrentCacheTest {
+
+  @Test
+  public void testGetPutRemove() {
+    ConcurrentCache<String, Integer> cache = new ConcurrentCache<>(10);
+    Assert.assertNull(cache.put("a", 1));
+    Assert.assertEquals(Integer.valueOf(1), cache.put("a", 2));
+    Assert.assertEquals(Integer.valueOf(2), cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+    Assert.assertEquals(1, cache.size());
+
+    Assert.assertEquals(Integer.valueOf(2), cache.remove("a"));
+    Assert.assertNull(cache.get("a"));
+    Assert.assertEquals(0, cache.size());
+
+    Assert.assertEquals(1, cache.hitCount());
+    Assert.assertEquals(2, cache.missCount());
+    Assert.assertEquals(2, cache.putCount());
+  }
+
+  @Test
+  public void testEviction() {
+    ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<>(10);
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+    }
+
+    // referenced entries get a second chance
+    cache.get(0);
+    cache.get(1);
+
+    cache.put(10, 10);
+    cache.put(11, 11);
+
+    Assert.assertEquals(10, cache.size());
+    Assert.assertEquals(2, cache.evictionCount());
+    Assert.assertNotNull(cache.get(0));
+    Assert.assertNotNull(cache.get(1));
+    Assert.assertNull(cache.get(2));
+    Assert.assertNull(cache.get(3));
+  }
+
+  @Test
+  public void testSizeOf() {
+    ConcurrentCache<String, byte[]> cache = new ConcurrentCache<String, byte[]>(100) {
+      @Override
+      protected int sizeOf(String key, byte[] value) {
+        return value.length;
+      }
+    };
+
+    cache.put("a", new byte[40]);
+    cache.put("b", new byte[40]);
+    Assert.assertEquals(80, cache.size());
+
+    cache.put("c", new byte[40]);
+    Assert.assertEquals(80, cache.size());
+    Assert.assertEquals(2, cache.count());
+    Assert.assertNull(cache.get("a"));
+
+    cache.clear();
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.count());
+  }
+
+  @Test
+  public void testConcurrentAccess()
+      throws Exception {
+    final ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<>(100);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(500);
+            Integer value = cache.get(key);
+            if (value == null) {
+              cache.put(key, key);
+            } else {
+              Assert.assertEquals(key, value.intValue());
+              if (random.nextInt(10) == 0) {
+                cache.remove(key);
+              }
+            }
+          }
+        }));
+      }
+
+      // rethrow the failures of the worker threads in the test thread
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw ex;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertTrue("size " + cache.size(), cache.size() <= 100);
+    Assert.assertEquals(cache.count(), cache.size());
+  }
+
+}